@@ -0,0 +1,18 @@
+@echo off
+chcp 65001 >nul
+
+set PROJECT_DIR=%~dp0
+set BENCH_DIR=%PROJECT_DIR%bench
+set JAVA="C:\Program Files\Eclipse Adoptium\jdk-25.0.1.8-hotspot\bin\java.exe"
+
+call mvn -B -q -f "%BENCH_DIR%\pom.xml" package
+if %errorlevel% neq 0 (
+    echo 效能測試模組編譯失敗。 1>&2
+    exit /b 1
+)
+
+if "%~1"=="" (
+    %JAVA% -Dfile.encoding=UTF-8 -jar "%BENCH_DIR%\target\benchmarks.jar" -prof gc
+) else (
+    %JAVA% -Dfile.encoding=UTF-8 -jar "%BENCH_DIR%\target\benchmarks.jar" %*
+)
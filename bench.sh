@@ -0,0 +1,22 @@
+#!/bin/bash
+
+# RFID 讀取頭控制系統 - 效能測試腳本
+# 使用方式: ./bench.sh [JMH 參數]，例如 ./bench.sh TagDedup -p uniqueTags=100000
+# 未指定參數時執行全部測試並附加 -prof gc（每筆讀取配置量見 gc.alloc.rate.norm）
+
+# 設定目錄
+PROJECT_DIR="$(cd "$(dirname "$0")" && pwd)"
+BENCH_DIR="$PROJECT_DIR/bench"
+
+# 編譯效能測試模組（需要 Maven）
+mvn -B -q -f "$BENCH_DIR/pom.xml" package
+if [ $? -ne 0 ]; then
+    echo "效能測試模組編譯失敗。" >&2
+    exit 1
+fi
+
+if [ $# -eq 0 ]; then
+    set -- -prof gc
+fi
+
+java -Dfile.encoding=UTF-8 -jar "$BENCH_DIR/target/benchmarks.jar" "$@"
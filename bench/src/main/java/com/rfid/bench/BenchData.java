@@ -0,0 +1,58 @@
+package com.rfid.bench;
+
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagRecord;
+
+/**
+ * 效能測試資料產生器
+ * 以固定規則產生 EPC/TID，與模擬器相同的 96 位元 EPC 格式，結果可重現
+ */
+final class BenchData {
+
+    private BenchData() {
+    }
+
+    static String epcHex(int index) {
+        return String.format("E200%020X", index);
+    }
+
+    static String tidHex(int index) {
+        return String.format("E2801160%016X", index);
+    }
+
+    static int rssi(int index) {
+        return 40 + (index * 7) % 40;
+    }
+
+    static int antenna(int index) {
+        return 1 + index % 4;
+    }
+
+    /**
+     * 建立讀取記錄（非池化，release() 不會歸還）
+     */
+    static TagRecord[] records(int count) {
+        TagRecord[] records = new TagRecord[count];
+        long now = TagRecord.nowEpochNanos();
+        for (int i = 0; i < count; i++) {
+            TagRecord record = new TagRecord();
+            record.setEpcHex(epcHex(i));
+            record.setTidHex(tidHex(i));
+            record.setRssi(rssi(i));
+            record.setAntennaId(antenna(i));
+            record.setTagType(TagInfo.TagType.EPC_6C);
+            record.setReaderName("127.0.0.1:8160");
+            record.setTimestampNanos(now + i);
+            records[i] = record;
+        }
+        return records;
+    }
+
+    static TagInfo[] tagInfos(int count) {
+        TagInfo[] tags = new TagInfo[count];
+        for (int i = 0; i < count; i++) {
+            tags[i] = new TagInfo(epcHex(i), tidHex(i), "", rssi(i), antenna(i), TagInfo.TagType.EPC_6C);
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,97 @@
+package com.rfid.bench;
+
+import com.rfid.reader.TagInfo;
+import com.rfid.ui.TagTableModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JTable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 標籤表格更新效能測試
+ * 與 MainControlPanel 相同使用 TagTableModel，表格掛在 JTable 上以計入事件通知成本
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TableModelBenchmark {
+
+    /** 每次批次更新的標籤數（約等於 33ms 內合併後的不同標籤數） */
+    private static final int BATCH_SIZE = 256;
+
+    @Param({"1000", "10000", "100000"})
+    public int uniqueTags;
+
+    private TagInfo[] tagInfos;
+    private TagTableModel tableModel;
+    private JTable table;
+    private int next;
+
+    @Setup
+    public void setup() {
+        tagInfos = BenchData.tagInfos(uniqueTags);
+        tableModel = new TagTableModel();
+        table = new JTable(tableModel);
+        for (TagInfo tagInfo : tagInfos) {
+            tableModel.upsert(tagInfo);
+        }
+        tableModel.fireBatchChanges();
+    }
+
+    private TagInfo nextTag() {
+        TagInfo tagInfo = tagInfos[next];
+        next = next + 1 == uniqueTags ? 0 : next + 1;
+        return tagInfo;
+    }
+
+    /** 已存在標籤的重複讀取，每筆各自通知（最差情況） */
+    @Benchmark
+    public int updateExistingRow() {
+        int row = tableModel.upsert(nextTag());
+        tableModel.fireBatchChanges();
+        return row;
+    }
+
+    /** 一次批次更新多個已存在標籤，合併為一個範圍事件 */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int updateExistingBatch() {
+        int row = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            row = tableModel.upsert(nextTag());
+        }
+        tableModel.fireBatchChanges();
+        return row;
+    }
+
+    /** 從空表格新增全部標籤（每次操作新增 uniqueTags 列） */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int fillEmptyTable() {
+        TagTableModel model = new TagTableModel();
+        JTable view = new JTable(model);
+        for (int i = 0; i < tagInfos.length; i++) {
+            model.upsert(tagInfos[i]);
+            if ((i + 1) % BATCH_SIZE == 0) {
+                model.fireBatchChanges();
+            }
+        }
+        model.fireBatchChanges();
+        return view.getRowCount();
+    }
+}
@@ -0,0 +1,84 @@
+package com.rfid.bench;
+
+import com.rfid.reader.TagEventPipeline;
+import com.rfid.reader.TagIndex;
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EPC 去重效能測試
+ * 標籤群體預先建立完畢，量測重複讀取（穩定狀態）的合併成本
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagDedupBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int uniqueTags;
+
+    private TagRecord[] records;
+    private TagInfo[] tagInfos;
+    private TagIndex tagIndex;
+    private TagEventPipeline pipeline;
+    private int next;
+
+    @Setup
+    public void setup() {
+        records = BenchData.records(uniqueTags);
+        tagInfos = BenchData.tagInfos(uniqueTags);
+        tagIndex = new TagIndex();
+        pipeline = new TagEventPipeline(uniqueTags);
+        for (int i = 0; i < uniqueTags; i++) {
+            tagIndex.upsert(records[i]);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void drainPipeline() {
+        pipeline.drain(tagInfo -> { });
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == uniqueTags ? 0 : index + 1;
+        return index;
+    }
+
+    /** 讀取執行緒：池化記錄合併到待處理標籤 */
+    @Benchmark
+    public long pipelineAcceptRecord() {
+        pipeline.acceptRecord(records[nextIndex()]);
+        return pipeline.getMergedCount();
+    }
+
+    /** EDT：合併後的 TagInfo 寫入索引（MainControlPanel 的路徑） */
+    @Benchmark
+    public int indexUpsertTagInfo() {
+        return tagIndex.upsert(tagInfos[nextIndex()]);
+    }
+
+    /** 池化記錄直接寫入索引 */
+    @Benchmark
+    public int indexUpsertRecord() {
+        return tagIndex.upsert(records[nextIndex()]);
+    }
+}
@@ -0,0 +1,51 @@
+package com.rfid.bench;
+
+import com.rfid.reader.TagInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TagInfo 表格顯示效能測試
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagInfoBenchmark {
+
+    private TagInfo[] tags;
+    private int next;
+
+    @Setup
+    public void setup() {
+        tags = BenchData.tagInfos(1024);
+    }
+
+    private TagInfo nextTag() {
+        TagInfo tag = tags[next];
+        next = (next + 1) & 1023;
+        return tag;
+    }
+
+    @Benchmark
+    public Object[] toTableRow() {
+        return nextTag().toTableRow();
+    }
+
+    @Benchmark
+    public String getReadTimeString() {
+        return nextTag().getReadTimeString();
+    }
+}
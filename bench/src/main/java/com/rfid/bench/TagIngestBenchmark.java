@@ -0,0 +1,114 @@
+package com.rfid.bench;
+
+import com.gg.reader.api.dal.HandlerTagEpcLog;
+import com.gg.reader.api.protocol.gx.LogBaseEpcInfo;
+import com.rfid.connection.ReaderConnection;
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagReader;
+import com.rfid.reader.TagRecord;
+import com.rfid.simulator.ReaderSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 讀取回調效能測試
+ * 直接呼叫 TagReader 安裝在 GClient 上的 HandlerTagEpcLog，
+ * 量測 LogBaseEpcInfo → TagRecord → TagInfo 的轉換成本（不含網路）。
+ * 每筆讀取的日誌為 DEBUG 等級，預設不輸出；加上 -jvmArgsAppend -Drfid.log.level=DEBUG 可量測開啟時的成本
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagIngestBenchmark {
+
+    private static final int DISTINCT_READS = 1024;
+
+    private ReaderSimulator simulator;
+    private ReaderConnection connection;
+
+    private HandlerTagEpcLog tagInfoHandler;
+    private HandlerTagEpcLog recordHandler;
+    private LogBaseEpcInfo[] reads;
+    private int next;
+
+    private TagInfo lastTagInfo;
+    private long lastRecordNanos;
+
+    @Setup
+    public void setup() throws Exception {
+        // 連接本機模擬器以取得真實的 GClient，處理器由 TagReader 安裝
+        simulator = new ReaderSimulator(0);
+        simulator.start();
+        connection = new ReaderConnection();
+        if (!connection.connect("127.0.0.1", simulator.getPort(), 3000)) {
+            throw new IllegalStateException("無法連接模擬器");
+        }
+
+        TagReader tagInfoReader = new TagReader(connection);
+        tagInfoReader.setupEventHandlers();
+        tagInfoReader.setOnTagReadCallback(tagInfo -> lastTagInfo = tagInfo);
+        tagInfoHandler = connection.getClient().onTagEpcLog;
+
+        TagReader recordReader = new TagReader(connection);
+        recordReader.setupEventHandlers();
+        recordReader.setOnTagRecordCallback(this::onRecord);
+        recordHandler = connection.getClient().onTagEpcLog;
+
+        reads = new LogBaseEpcInfo[DISTINCT_READS];
+        for (int i = 0; i < DISTINCT_READS; i++) {
+            LogBaseEpcInfo info = new LogBaseEpcInfo();
+            info.setEpc(BenchData.epcHex(i));
+            info.setTid(BenchData.tidHex(i));
+            info.setUserdata("");
+            info.setRssi(BenchData.rssi(i));
+            info.setAntId(BenchData.antenna(i));
+            info.setResult(0);
+            reads[i] = info;
+        }
+    }
+
+    private void onRecord(TagRecord record) {
+        lastRecordNanos = record.getTimestampNanos();
+        record.release();
+    }
+
+    @TearDown
+    public void tearDown() {
+        connection.disconnect();
+        simulator.stop();
+    }
+
+    private LogBaseEpcInfo nextRead() {
+        LogBaseEpcInfo info = reads[next];
+        next = (next + 1) & (DISTINCT_READS - 1);
+        return info;
+    }
+
+    /** 轉換為 TagInfo（onTagReadCallback 路徑） */
+    @Benchmark
+    public TagInfo epcLogToTagInfo() {
+        tagInfoHandler.log("127.0.0.1:8160", nextRead());
+        return lastTagInfo;
+    }
+
+    /** 只填入池化記錄（onTagRecordCallback 路徑） */
+    @Benchmark
+    public long epcLogToRecord() {
+        recordHandler.log("127.0.0.1:8160", nextRead());
+        return lastRecordNanos;
+    }
+}
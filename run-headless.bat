@@ -0,0 +1,17 @@
+@echo off
+chcp 65001 >nul
+
+set PROJECT_DIR=%~dp0
+set LIB_DIR=%PROJECT_DIR%lib
+set OUT_DIR=%PROJECT_DIR%out
+set JAVA="C:\Program Files\Eclipse Adoptium\jdk-25.0.1.8-hotspot\bin\java.exe"
+
+if not exist "%OUT_DIR%\com" (
+    call "%PROJECT_DIR%build.bat" 1>&2
+    if %errorlevel% neq 0 (
+        echo 編譯失敗，無法啟動程式。 1>&2
+        exit /b 1
+    )
+)
+
+%JAVA% -cp "%OUT_DIR%;%LIB_DIR%\*" -Dfile.encoding=UTF-8 -Djava.awt.headless=true -Xms16m -Xmx128m -XX:+UseSerialGC com.rfid.headless.HeadlessCapture %*
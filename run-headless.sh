@@ -0,0 +1,26 @@
+#!/bin/bash
+
+# RFID 讀取頭控制系統 - 無介面擷取腳本
+# 使用方式: ./run-headless.sh --reader 192.168.1.168:8160 [選項]
+
+# 設定目錄
+PROJECT_DIR="$(cd "$(dirname "$0")" && pwd)"
+LIB_DIR="$PROJECT_DIR/lib"
+OUT_DIR="$PROJECT_DIR/out"
+
+# 檢查是否已編譯
+if [ ! -d "$OUT_DIR" ] || [ -z "$(ls -A $OUT_DIR 2>/dev/null)" ]; then
+    "$PROJECT_DIR/build.sh" >&2
+    if [ $? -ne 0 ]; then
+        echo "編譯失敗，無法啟動程式。" >&2
+        exit 1
+    fi
+fi
+
+# 執行程式（小堆積、無 AWT）
+java -cp "$OUT_DIR:$LIB_DIR/*" \
+     -Dfile.encoding=UTF-8 \
+     -Djava.awt.headless=true \
+     -Xms16m -Xmx128m \
+     -XX:+UseSerialGC \
+     com.rfid.headless.HeadlessCapture "$@"
@@ -0,0 +1,85 @@
+package com.rfid.connection;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * 讀取頭設備資訊快照
+ * 由 ReaderConnection 於背景查詢後快取，讀取時不會阻塞
+ */
+public final class DeviceInfo {
+
+    private final String serialNumber;
+    private final String appVersion;
+    private final String baseVersion;
+    private final int maxPower;
+    private final int minPower;
+    private final int antennaCount;
+    private final Map<Integer, Integer> antennaPowers;
+    private final long fetchedAtMillis;
+
+    public DeviceInfo(String serialNumber, String appVersion, String baseVersion,
+                      int maxPower, int minPower, int antennaCount,
+                      Map<Integer, Integer> antennaPowers, long fetchedAtMillis) {
+        this.serialNumber = serialNumber;
+        this.appVersion = appVersion;
+        this.baseVersion = baseVersion;
+        this.maxPower = maxPower;
+        this.minPower = minPower;
+        this.antennaCount = antennaCount;
+        this.antennaPowers = antennaPowers != null
+            ? Collections.unmodifiableMap(new Hashtable<>(antennaPowers))
+            : null;
+        this.fetchedAtMillis = fetchedAtMillis;
+    }
+
+    /**
+     * 複製並更新單一天線功率
+     */
+    public DeviceInfo withAntennaPower(int antennaId, int power) {
+        Map<Integer, Integer> powers = antennaPowers != null ? new Hashtable<>(antennaPowers) : new Hashtable<>();
+        powers.put(antennaId, power);
+        return new DeviceInfo(serialNumber, appVersion, baseVersion, maxPower, minPower, antennaCount, powers, fetchedAtMillis);
+    }
+
+    /**
+     * 是否已超過有效期限
+     */
+    public boolean isExpired(long ttlMillis) {
+        return System.currentTimeMillis() - fetchedAtMillis > ttlMillis;
+    }
+
+    // Getters
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    public String getAppVersion() {
+        return appVersion;
+    }
+
+    public String getBaseVersion() {
+        return baseVersion;
+    }
+
+    public int getMaxPower() {
+        return maxPower;
+    }
+
+    public int getMinPower() {
+        return minPower;
+    }
+
+    public int getAntennaCount() {
+        return antennaCount;
+    }
+
+    public Map<Integer, Integer> getAntennaPowers() {
+        return antennaPowers;
+    }
+
+    public long getFetchedAtMillis() {
+        return fetchedAtMillis;
+    }
+}
@@ -0,0 +1,367 @@
+package com.rfid.connection;
+
+import com.rfid.reader.TagReader;
+import com.rfid.reader.TagRecord;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 由 ReaderManager 管理的單一讀取頭
+ * 包含連接、標籤讀取器與健康狀態
+ */
+public class ManagedReader {
+
+    /** 讀取頭健康狀態 */
+    public enum Health {
+        DISCONNECTED("未連接"),
+        CONNECTING("連接中"),
+        CONNECTED("已連接"),
+        FAILED("連接失敗"),
+        LOST("連接已斷開"),
+        RECONNECTING("重新連接中");
+
+        private final String displayName;
+
+        Health(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /** 收取讀取頭快取的最長等待時間 */
+    private static final long CACHE_HARVEST_TIMEOUT_MS = 10_000;
+
+    /** 重新連接後等待讀取頭繼續上報的時間，逾時才重新下盤存指令 */
+    private static final long LIVE_READ_WAIT_MS = 1_000;
+
+    private final String name;
+    private final String ip;
+    private final int port;
+    private final ReaderConnection connection;
+    private TagReader tagReader;
+
+    private volatile Health health;
+    private final Object healthLock = new Object();
+    private boolean linkDropped; // 連接程序進行中斷線（受 healthLock 保護）
+    private volatile String lastError;
+    private volatile long connectedAtMillis;
+    private volatile long lastReadNanos;
+    private final AtomicLong readCount;
+    private final AtomicLong disconnectCount;
+
+    // 重連與恢復時間統計
+    private volatile int connectTimeout;
+    private volatile boolean userDisconnected;
+    private volatile boolean offlineBuffering = true;
+    private volatile long lostAtNanos;
+    private volatile int reconnectAttempts;
+    private volatile int connectAttempts;  // 連續失敗的初次連接次數
+    private final AtomicLong recoveryCount;
+    private volatile long lastRecoveryMillis;
+    private volatile long maxRecoveryMillis;
+    private volatile long totalRecoveryMillis;
+
+    // 由 ReaderManager 設置
+    private Consumer<TagRecord> tagRecordSink;
+    private Consumer<ManagedReader> stateSink;
+
+    ManagedReader(String name, String ip, int port) {
+        this.name = name;
+        this.ip = ip;
+        this.port = port;
+        this.connection = new ReaderConnection();
+        this.health = Health.DISCONNECTED;
+        this.readCount = new AtomicLong();
+        this.disconnectCount = new AtomicLong();
+        this.recoveryCount = new AtomicLong();
+
+        connection.setOnDisconnectedCallback(readerName -> {
+            synchronized (healthLock) {
+                // 連接程序尚未完成（設置斷點續傳、收取快取、等待上報），記錄後由連接程序處理
+                if (health == Health.CONNECTING || health == Health.RECONNECTING) {
+                    linkDropped = true;
+                    return;
+                }
+                // 同一次斷線可能觸發多次，只處理第一次
+                if (health != Health.CONNECTED) {
+                    return;
+                }
+                markLost("連接已斷開: " + readerName);
+            }
+            notifyState();
+        });
+    }
+
+    /**
+     * 建立連接並設置事件處理器（於連接執行緒呼叫）
+     */
+    boolean connect(int timeout) {
+        this.connectTimeout = timeout;
+        this.userDisconnected = false;
+        setHealth(Health.CONNECTING, null);
+
+        if (!connection.connect(ip, port, timeout)) {
+            connectAttempts++;
+            setHealth(Health.FAILED, "無法連接 " + ip + ":" + port);
+            return false;
+        }
+        clearLinkDropped();
+
+        if (tagReader == null) {
+            tagReader = new TagReader(connection);
+            tagReader.setOnTagRecordCallback(this::onTagRecord);
+        }
+        tagReader.setupEventHandlers();
+        if (offlineBuffering) {
+            // 只開啟斷點續傳；前次程序留下的快取於之後重新連接時一併收取，不延遲連接完成
+            connection.setBreakpointResume(true);
+        }
+
+        connectedAtMillis = System.currentTimeMillis();
+        if (!markConnected(null)) {
+            connectAttempts++;
+            setHealth(Health.FAILED, "連接建立後隨即斷開 " + ip + ":" + port);
+            return false;
+        }
+        connectAttempts = 0;
+        notifyState();
+        return true;
+    }
+
+    /**
+     * 斷線後重新連接，成功時重設事件處理器並恢復斷線前的盤存（於連接執行緒呼叫）
+     */
+    boolean reconnect() {
+        reconnectAttempts++;
+        setHealth(Health.RECONNECTING, null);
+
+        if (userDisconnected || !connection.connect(ip, port, connectTimeout)) {
+            setHealth(Health.LOST, userDisconnected ? null : "重新連接失敗 (第 " + reconnectAttempts + " 次)");
+            return false;
+        }
+        clearLinkDropped();
+
+        tagReader.setupEventHandlers();
+        boolean resumed;
+        if (offlineBuffering) {
+            // 斷線期間的讀取在讀取頭快取中，併入讀取串流後清除；
+            // 讀取頭仍在盤存時會直接繼續上報，不需重新下盤存指令
+            tagReader.harvestCache(CACHE_HARVEST_TIMEOUT_MS);
+            connection.setBreakpointResume(true);
+            resumed = tagReader.isReading() && tagReader.awaitReads(LIVE_READ_WAIT_MS);
+            if (!resumed) {
+                resumed = tagReader.resumeInventory();
+            }
+        } else {
+            resumed = tagReader.resumeInventory();
+        }
+
+        connectedAtMillis = System.currentTimeMillis();
+        if (!markConnected(resumed ? null : (tagReader.isReading() ? "盤存恢復失敗" : null))) {
+            // 恢復期間再次斷線，依重連策略繼續重試
+            setHealth(Health.LOST, "重新連接後再次斷開 (第 " + reconnectAttempts + " 次)");
+            return false;
+        }
+
+        long recoveryMillis = (System.nanoTime() - lostAtNanos) / 1_000_000L;
+        lastRecoveryMillis = recoveryMillis;
+        totalRecoveryMillis += recoveryMillis;
+        if (recoveryMillis > maxRecoveryMillis) {
+            maxRecoveryMillis = recoveryMillis;
+        }
+        recoveryCount.incrementAndGet();
+        notifyState();
+        return true;
+    }
+
+    private void clearLinkDropped() {
+        synchronized (healthLock) {
+            linkDropped = false;
+        }
+    }
+
+    /**
+     * 連接程序期間沒有斷線時轉為 CONNECTED（不通知，由呼叫端於統計更新後呼叫 notifyState）
+     * @return false 表示期間已斷線，連線不可用
+     */
+    private boolean markConnected(String error) {
+        synchronized (healthLock) {
+            if (linkDropped) {
+                return false;
+            }
+            health = Health.CONNECTED;
+            if (error != null) {
+                lastError = error;
+            }
+            return true;
+        }
+    }
+
+    private void markLost(String error) {
+        disconnectCount.incrementAndGet();
+        lostAtNanos = System.nanoTime();
+        reconnectAttempts = 0;
+        health = Health.LOST;
+        lastError = error;
+    }
+
+    /**
+     * 停止讀取並斷開連接
+     */
+    void disconnect() {
+        userDisconnected = true;
+        if (tagReader != null && tagReader.isReading()) {
+            tagReader.stopRead();
+        }
+        connection.disconnect();
+        setHealth(Health.DISCONNECTED, null);
+    }
+
+    private void onTagRecord(TagRecord record) {
+        readCount.incrementAndGet();
+        lastReadNanos = record.getTimestampNanos();
+        if (record.getReaderName() == null || record.getReaderName().isEmpty()) {
+            record.setReaderName(name);
+        }
+
+        Consumer<TagRecord> sink = tagRecordSink;
+        if (sink != null) {
+            sink.accept(record);
+        } else {
+            record.release();
+        }
+    }
+
+    private void setHealth(Health health, String error) {
+        synchronized (healthLock) {
+            this.health = health;
+            if (error != null) {
+                this.lastError = error;
+            }
+        }
+        notifyState();
+    }
+
+    private void notifyState() {
+        Consumer<ManagedReader> sink = stateSink;
+        if (sink != null) {
+            sink.accept(this);
+        }
+    }
+
+    void setTagRecordSink(Consumer<TagRecord> sink) {
+        this.tagRecordSink = sink;
+    }
+
+    void setStateSink(Consumer<ManagedReader> sink) {
+        this.stateSink = sink;
+    }
+
+    /**
+     * 設置是否使用讀取頭斷線快取（斷點續傳），於下次連接時生效
+     */
+    void setOfflineBuffering(boolean offlineBuffering) {
+        this.offlineBuffering = offlineBuffering;
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getAddress() {
+        return ip + ":" + port;
+    }
+
+    public ReaderConnection getConnection() {
+        return connection;
+    }
+
+    public TagReader getTagReader() {
+        return tagReader;
+    }
+
+    public Health getHealth() {
+        return health;
+    }
+
+    public boolean isReading() {
+        return tagReader != null && tagReader.isReading();
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public long getConnectedAtMillis() {
+        return connectedAtMillis;
+    }
+
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    public long getReadCount() {
+        return readCount.get();
+    }
+
+    public long getDisconnectCount() {
+        return disconnectCount.get();
+    }
+
+    public boolean isOfflineBuffering() {
+        return offlineBuffering;
+    }
+
+    public boolean isUserDisconnected() {
+        return userDisconnected;
+    }
+
+    public int getReconnectAttempts() {
+        return reconnectAttempts;
+    }
+
+    /** 連續失敗的初次連接次數，連接成功後歸零 */
+    public int getConnectAttempts() {
+        return connectAttempts;
+    }
+
+    int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public long getRecoveryCount() {
+        return recoveryCount.get();
+    }
+
+    /** 最近一次從斷線到恢復的時間（毫秒） */
+    public long getLastRecoveryMillis() {
+        return lastRecoveryMillis;
+    }
+
+    public long getMaxRecoveryMillis() {
+        return maxRecoveryMillis;
+    }
+
+    public long getAvgRecoveryMillis() {
+        long count = recoveryCount.get();
+        return count > 0 ? totalRecoveryMillis / count : 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + getAddress() + ") " + health.getDisplayName();
+    }
+}
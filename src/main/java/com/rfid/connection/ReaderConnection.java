@@ -3,8 +3,16 @@ package com.rfid.connection;
 import com.gg.reader.api.dal.GClient;
 import com.gg.reader.api.dal.HandlerTcpDisconnected;
 import com.gg.reader.api.protocol.gx.*;
+import com.rfid.metrics.MetricsRegistry;
 
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 /**
@@ -13,21 +21,41 @@ import java.util.function.Consumer;
  */
 public class ReaderConnection {
 
-    private GClient client;
+    /** 設備資訊快取預設有效時間（毫秒） */
+    public static final long DEFAULT_DEVICE_INFO_TTL_MILLIS = 60_000;
+
+    // 多組匹配規則的封包編號：最後一個封包、清除所有規則
+    private static final long MULTI_MATCH_LAST_PACKET = 0xFFFFFFFEL;
+    private static final long MULTI_MATCH_CLEAR = 0xFFFFFFFFL;
+
+    // 讀取快取的結果碼：有資料、沒有資料（2 為上報結束，見 GClient.cacheDataOver）
+    private static final int CACHE_HAVE_DATA = 0;
+    private static final int CACHE_NO_DATA = 1;
+
+    private static final AtomicInteger DEVICE_INFO_THREADS = new AtomicInteger();
+
+    // 所有連接共用的設備資訊查詢執行緒池，不同讀取頭的查詢可並行
+    private static final ExecutorService DEVICE_INFO_EXECUTOR = Executors.newFixedThreadPool(4, r -> {
+        Thread thread = new Thread(r, "device-info-" + DEVICE_INFO_THREADS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile GClient client;
     private String ip;
     private int port;
-    private boolean connected;
+    private volatile boolean connected;
     private Consumer<String> onDisconnectedCallback;
     private Consumer<String> onLogCallback;
+    private volatile Consumer<DeviceInfo> onDeviceInfoCallback;
+
+    // 同步指令鎖
+    private final Object sendLock = new Object();
 
-    // 設備資訊
-    private String serialNumber;
-    private String appVersion;
-    private String baseVersion;
-    private int maxPower;
-    private int minPower;
-    private int antennaCount;
-    private Hashtable<Integer, Integer> antennaPowers;
+    // 設備資訊快取
+    private volatile DeviceInfo deviceInfo;
+    private volatile long deviceInfoTtlMillis = DEFAULT_DEVICE_INFO_TTL_MILLIS;
+    private final AtomicReference<CompletableFuture<DeviceInfo>> pendingDeviceInfo = new AtomicReference<>();
 
     public ReaderConnection() {
         this.connected = false;
@@ -42,11 +70,18 @@ public class ReaderConnection {
      * @return 是否連接成功
      */
     public boolean connect(String ip, int port, int timeout) {
+        if (!ip.equals(this.ip) || port != this.port) {
+            deviceInfo = null;
+        }
         this.ip = ip;
         this.port = port;
 
         try {
-            client = new GClient();
+            // 重新連接時先關閉舊的連接
+            closeStaleClient();
+
+            GClient newClient = new GClient();
+            client = newClient;
             String connectionString = ip + ":" + port;
 
             log("正在連接到 " + connectionString + "...");
@@ -59,6 +94,10 @@ public class ReaderConnection {
                 client.onDisconnected = new HandlerTcpDisconnected() {
                     @Override
                     public void log(String readerName) {
+                        // 忽略已被取代的舊連接
+                        if (client != newClient) {
+                            return;
+                        }
                         connected = false;
                         if (onDisconnectedCallback != null) {
                             onDisconnectedCallback.accept(readerName);
@@ -70,8 +109,8 @@ public class ReaderConnection {
                 connected = true;
                 log("連接成功！");
 
-                // 查詢設備資訊
-                queryDeviceInfo();
+                // 於背景查詢設備資訊，不延遲連接完成
+                refreshDeviceInfo();
 
                 return true;
             } else {
@@ -84,6 +123,23 @@ public class ReaderConnection {
         }
     }
 
+    /**
+     * 關閉已斷線但尚未釋放的舊連接
+     */
+    private void closeStaleClient() {
+        GClient stale = client;
+        if (stale == null) {
+            return;
+        }
+        client = null;
+        connected = false;
+        try {
+            stale.close();
+        } catch (Exception e) {
+            log("關閉舊連接錯誤: " + e.getMessage());
+        }
+    }
+
     /**
      * 使用預設端口連接
      */
@@ -121,7 +177,7 @@ public class ReaderConnection {
 
         try {
             MsgBaseStop stopMsg = new MsgBaseStop();
-            client.sendSynMsg(stopMsg);
+            sendSynMsg(stopMsg);
             return stopMsg.getRtCode() == 0;
         } catch (Exception e) {
             log("停止指令錯誤: " + e.getMessage());
@@ -130,17 +186,60 @@ public class ReaderConnection {
     }
 
     /**
-     * 查詢設備資訊
+     * 非同步查詢設備資訊並更新快取
+     * 同一時間只會有一個查詢在進行，重複呼叫會取得同一個結果
      */
-    private void queryDeviceInfo() {
+    public CompletableFuture<DeviceInfo> refreshDeviceInfo() {
+        CompletableFuture<DeviceInfo> pending = pendingDeviceInfo.get();
+        if (pending != null) {
+            return pending;
+        }
+        CompletableFuture<DeviceInfo> future = new CompletableFuture<>();
+        if (!pendingDeviceInfo.compareAndSet(null, future)) {
+            return pendingDeviceInfo.get();
+        }
+
+        DEVICE_INFO_EXECUTOR.execute(() -> {
+            try {
+                DeviceInfo info = queryDeviceInfo();
+                if (info != null) {
+                    deviceInfo = info;
+                    Consumer<DeviceInfo> callback = onDeviceInfoCallback;
+                    if (callback != null) {
+                        callback.accept(info);
+                    }
+                }
+                future.complete(info);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            } finally {
+                pendingDeviceInfo.set(null);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 查詢設備資訊（於背景執行緒呼叫）
+     * 原廠 GClient 以非執行緒安全的 HashMap 等待回應，因此同一連接的查詢依序送出
+     */
+    private DeviceInfo queryDeviceInfo() {
         if (client == null || !connected) {
-            return;
+            return null;
         }
 
+        String serialNumber = null;
+        String appVersion = null;
+        String baseVersion = null;
+        int maxPower = 0;
+        int minPower = 0;
+        int antennaCount = 0;
+        Hashtable<Integer, Integer> antennaPowers = null;
+
         try {
             // 查詢讀寫器資訊
             MsgAppGetReaderInfo infoMsg = new MsgAppGetReaderInfo();
-            client.sendSynMsg(infoMsg);
+            sendSynMsg(infoMsg);
             if (infoMsg.getRtCode() == 0) {
                 serialNumber = infoMsg.getReaderSerialNumber();
                 appVersion = infoMsg.getAppVersions();
@@ -150,7 +249,7 @@ public class ReaderConnection {
 
             // 查詢基帶版本
             MsgAppGetBaseVersion baseVersionMsg = new MsgAppGetBaseVersion();
-            client.sendSynMsg(baseVersionMsg);
+            sendSynMsg(baseVersionMsg);
             if (baseVersionMsg.getRtCode() == 0) {
                 baseVersion = baseVersionMsg.getBaseVersions();
                 log("基帶版本: " + baseVersion);
@@ -158,7 +257,7 @@ public class ReaderConnection {
 
             // 查詢設備能力
             MsgBaseGetCapabilities capMsg = new MsgBaseGetCapabilities();
-            client.sendSynMsg(capMsg);
+            sendSynMsg(capMsg);
             if (capMsg.getRtCode() == 0) {
                 maxPower = capMsg.getMaxPower();
                 minPower = capMsg.getMinPower();
@@ -169,7 +268,7 @@ public class ReaderConnection {
 
             // 查詢天線功率
             MsgBaseGetPower powerMsg = new MsgBaseGetPower();
-            client.sendSynMsg(powerMsg);
+            sendSynMsg(powerMsg);
             if (powerMsg.getRtCode() == 0) {
                 antennaPowers = powerMsg.getDicPower();
                 if (antennaPowers != null) {
@@ -182,6 +281,25 @@ public class ReaderConnection {
         } catch (Exception e) {
             log("查詢設備資訊錯誤: " + e.getMessage());
         }
+
+        return new DeviceInfo(serialNumber, appVersion, baseVersion, maxPower, minPower,
+            antennaCount, antennaPowers, System.currentTimeMillis());
+    }
+
+    /**
+     * 同步發送指令
+     * 同一連接的同步指令依序送出，避免原廠 GClient 的回應等待表被並行修改
+     */
+    public void sendSynMsg(Message msg) {
+        GClient current = client;
+        if (current == null) {
+            return;
+        }
+        synchronized (sendLock) {
+            long start = System.nanoTime();
+            current.sendSynMsg(msg);
+            MetricsRegistry.getDefault().recordCommandLatency(System.nanoTime() - start);
+        }
     }
 
     /**
@@ -198,15 +316,15 @@ public class ReaderConnection {
 
             MsgBaseSetPower powerMsg = new MsgBaseSetPower();
             powerMsg.setDicPower(powers);
-            client.sendSynMsg(powerMsg);
+            sendSynMsg(powerMsg);
 
             if (powerMsg.getRtCode() == 0) {
                 log("設置天線 " + antennaId + " 功率為 " + power + " dBm 成功");
                 // 更新本地快取
-                if (antennaPowers == null) {
-                    antennaPowers = new Hashtable<>();
+                DeviceInfo info = deviceInfo;
+                if (info != null) {
+                    deviceInfo = info.withAntennaPower(antennaId, power);
                 }
-                antennaPowers.put(antennaId, power);
                 return true;
             } else {
                 log("設置功率失敗: " + powerMsg.getRtMsg());
@@ -218,6 +336,217 @@ public class ReaderConnection {
         }
     }
 
+    /**
+     * 設置天線駐留時間（每支天線連續盤存多久後切換）
+     * @param millis 駐留時間（毫秒），0 表示每輪盤存後即切換
+     */
+    public boolean setAntennaResidenceTime(int millis) {
+        if (client == null || !connected) {
+            return false;
+        }
+
+        try {
+            MsgBaseSetResidenceTime residenceMsg = new MsgBaseSetResidenceTime();
+            residenceMsg.setAntResidenceTime((long) millis);
+            sendSynMsg(residenceMsg);
+
+            if (residenceMsg.getRtCode() == 0) {
+                log("設置天線駐留時間為 " + millis + " ms 成功");
+                return true;
+            } else {
+                log("設置天線駐留時間失敗: " + residenceMsg.getRtMsg());
+                return false;
+            }
+        } catch (Exception e) {
+            log("設置天線駐留時間錯誤: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 設置多組 EPC 匹配規則，讀取頭只上報符合任一規則的標籤
+     * 每條規則一個封包，最後一個封包編號為 0xFFFFFFFE 表示結束
+     */
+    public boolean setMultiMatchRules(List<ParamEpcFilter> filters) {
+        if (client == null || !connected || filters.isEmpty()) {
+            return false;
+        }
+
+        try {
+            for (int i = 0; i < filters.size(); i++) {
+                MsgBaseSetMultiMatchRule ruleMsg = new MsgBaseSetMultiMatchRule();
+                ruleMsg.setPacketNumber(i == filters.size() - 1 ? MULTI_MATCH_LAST_PACKET : (long) i);
+                ruleMsg.setFilter(filters.get(i));
+                sendSynMsg(ruleMsg);
+
+                if (ruleMsg.getRtCode() != 0) {
+                    log("設置匹配規則 " + (i + 1) + " 失敗: " + ruleMsg.getRtMsg());
+                    return false;
+                }
+            }
+            log("設置 " + filters.size() + " 條匹配規則成功");
+            return true;
+        } catch (Exception e) {
+            log("設置匹配規則錯誤: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 清除多組 EPC 匹配規則
+     */
+    public boolean clearMultiMatchRules() {
+        if (client == null || !connected) {
+            return false;
+        }
+
+        try {
+            MsgBaseSetMultiMatchRule ruleMsg = new MsgBaseSetMultiMatchRule();
+            ruleMsg.setPacketNumber(MULTI_MATCH_CLEAR);
+            sendSynMsg(ruleMsg);
+
+            if (ruleMsg.getRtCode() == 0) {
+                log("已清除匹配規則");
+                return true;
+            } else {
+                log("清除匹配規則失敗: " + ruleMsg.getRtMsg());
+                return false;
+            }
+        } catch (Exception e) {
+            log("清除匹配規則錯誤: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 設置重複標籤過濾：同一標籤在 repeatedTime 內只上報一次
+     * @param repeatedTime 重複過濾時間（單位 10 ms），0 表示每次讀到都上報
+     * @param rssiThreshold 只上報 RSSI 不低於此值的讀取，0 表示不限制
+     */
+    public boolean setTagLog(int repeatedTime, int rssiThreshold) {
+        if (client == null || !connected) {
+            return false;
+        }
+
+        try {
+            MsgBaseSetTagLog tagLogMsg = new MsgBaseSetTagLog();
+            tagLogMsg.setRepeatedTime(repeatedTime);
+            tagLogMsg.setRssiTV(rssiThreshold);
+            sendSynMsg(tagLogMsg);
+
+            if (tagLogMsg.getRtCode() == 0) {
+                log("設置重複過濾時間 " + repeatedTime + "、RSSI 門檻 " + rssiThreshold + " 成功");
+                return true;
+            } else {
+                log("設置重複過濾失敗: " + tagLogMsg.getRtMsg());
+                return false;
+            }
+        } catch (Exception e) {
+            log("設置重複過濾錯誤: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 設置斷點續傳：開啟時讀取頭在連接中斷後繼續盤存，讀取暫存於讀取頭快取
+     */
+    public boolean setBreakpointResume(boolean enabled) {
+        if (client == null || !connected) {
+            return false;
+        }
+
+        try {
+            MsgAppSetBreakpointResume resumeMsg = new MsgAppSetBreakpointResume();
+            resumeMsg.setOnOrOff(enabled ? 1 : 0);
+            sendSynMsg(resumeMsg);
+
+            if (resumeMsg.getRtCode() == 0) {
+                log((enabled ? "開啟" : "關閉") + "斷點續傳成功");
+                return true;
+            } else {
+                log("設置斷點續傳失敗: " + resumeMsg.getRtMsg());
+                return false;
+            }
+        } catch (Exception e) {
+            log("設置斷點續傳錯誤: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 要求讀取頭上報快取的讀取
+     * 快取的讀取經一般標籤事件上報，全部上報後觸發 GClient.cacheDataOver
+     * @return 讀取頭有快取資料時回傳 true；沒有資料或失敗時回傳 false
+     */
+    public boolean requestCachedTags() {
+        if (client == null || !connected) {
+            return false;
+        }
+
+        try {
+            MsgAppGetCacheTagData cacheMsg = new MsgAppGetCacheTagData();
+            sendSynMsg(cacheMsg);
+
+            if (cacheMsg.getRtCode() == CACHE_HAVE_DATA) {
+                return true;
+            }
+            if (cacheMsg.getRtCode() != CACHE_NO_DATA) {
+                log("讀取快取失敗: " + cacheMsg.getRtMsg());
+            }
+        } catch (Exception e) {
+            log("讀取快取錯誤: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * 清除讀取頭快取的讀取
+     */
+    public boolean clearCachedTags() {
+        if (client == null || !connected) {
+            return false;
+        }
+
+        try {
+            MsgAppClearCacheData clearMsg = new MsgAppClearCacheData();
+            sendSynMsg(clearMsg);
+
+            if (clearMsg.getRtCode() == 0) {
+                log("已清除讀取頭快取");
+                return true;
+            } else {
+                log("清除讀取頭快取失敗: " + clearMsg.getRtMsg());
+                return false;
+            }
+        } catch (Exception e) {
+            log("清除讀取頭快取錯誤: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 查詢重複標籤過濾設定
+     * @return 查詢結果（getRepeatedTime / getRssiTV），失敗時回傳 null
+     */
+    public MsgBaseGetTagLog queryTagLog() {
+        if (client == null || !connected) {
+            return null;
+        }
+
+        try {
+            MsgBaseGetTagLog tagLogMsg = new MsgBaseGetTagLog();
+            sendSynMsg(tagLogMsg);
+
+            if (tagLogMsg.getRtCode() == 0) {
+                return tagLogMsg;
+            }
+            log("查詢重複過濾失敗: " + tagLogMsg.getRtMsg());
+        } catch (Exception e) {
+            log("查詢重複過濾錯誤: " + e.getMessage());
+        }
+        return null;
+    }
+
     private void log(String message) {
         System.out.println("[ReaderConnection] " + message);
         if (onLogCallback != null) {
@@ -242,32 +571,59 @@ public class ReaderConnection {
         return port;
     }
 
+    /**
+     * 取得快取的設備資訊，不會阻塞
+     * 尚未查詢完成時回傳 null；已過期時回傳舊資料並於背景重新查詢
+     */
+    public DeviceInfo getDeviceInfo() {
+        DeviceInfo info = deviceInfo;
+        if (connected && (info == null || info.isExpired(deviceInfoTtlMillis))) {
+            refreshDeviceInfo();
+        }
+        return info;
+    }
+
     public String getSerialNumber() {
-        return serialNumber;
+        DeviceInfo info = deviceInfo;
+        return info != null ? info.getSerialNumber() : null;
     }
 
     public String getAppVersion() {
-        return appVersion;
+        DeviceInfo info = deviceInfo;
+        return info != null ? info.getAppVersion() : null;
     }
 
     public String getBaseVersion() {
-        return baseVersion;
+        DeviceInfo info = deviceInfo;
+        return info != null ? info.getBaseVersion() : null;
     }
 
     public int getMaxPower() {
-        return maxPower;
+        DeviceInfo info = deviceInfo;
+        return info != null ? info.getMaxPower() : 0;
     }
 
     public int getMinPower() {
-        return minPower;
+        DeviceInfo info = deviceInfo;
+        return info != null ? info.getMinPower() : 0;
     }
 
     public int getAntennaCount() {
-        return antennaCount;
+        DeviceInfo info = deviceInfo;
+        return info != null ? info.getAntennaCount() : 0;
     }
 
-    public Hashtable<Integer, Integer> getAntennaPowers() {
-        return antennaPowers;
+    public Map<Integer, Integer> getAntennaPowers() {
+        DeviceInfo info = deviceInfo;
+        return info != null ? info.getAntennaPowers() : null;
+    }
+
+    public long getDeviceInfoTtlMillis() {
+        return deviceInfoTtlMillis;
+    }
+
+    public void setDeviceInfoTtlMillis(long ttlMillis) {
+        this.deviceInfoTtlMillis = ttlMillis;
     }
 
     // Setters for callbacks
@@ -278,4 +634,11 @@ public class ReaderConnection {
     public void setOnLogCallback(Consumer<String> callback) {
         this.onLogCallback = callback;
     }
+
+    /**
+     * 設置設備資訊更新回調（於背景執行緒呼叫）
+     */
+    public void setOnDeviceInfoCallback(Consumer<DeviceInfo> callback) {
+        this.onDeviceInfoCallback = callback;
+    }
 }
@@ -0,0 +1,333 @@
+package com.rfid.connection;
+
+import com.rfid.reader.TagReader;
+import com.rfid.reader.TagRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 多讀取頭連接管理類
+ * 以有界執行緒池並行連接多台讀取頭，並將所有讀取頭的標籤合併為單一串流
+ */
+public class ReaderManager {
+
+    /** 預設同時連接的讀取頭數 */
+    public static final int DEFAULT_CONNECT_PARALLELISM = 8;
+
+    private final List<ManagedReader> readers;
+    private final ExecutorService connectExecutor;
+    private final ScheduledExecutorService reconnectScheduler;
+
+    // 自動重連策略，為 null 時不自動重連
+    private volatile ReconnectPolicy reconnectPolicy;
+    private volatile boolean retryFailedConnects;
+
+    // 是否使用讀取頭斷線快取
+    private volatile boolean offlineBuffering = true;
+
+    // 合併後的標籤串流與狀態變更回調
+    private volatile Consumer<TagRecord> onTagRecordCallback;
+    private volatile Consumer<ManagedReader> onReaderStateChangedCallback;
+    private Consumer<String> onLogCallback;
+
+    public ReaderManager() {
+        this(DEFAULT_CONNECT_PARALLELISM);
+    }
+
+    /**
+     * @param connectParallelism 同時進行連接的最大數量
+     */
+    public ReaderManager(int connectParallelism) {
+        if (connectParallelism <= 0) {
+            throw new IllegalArgumentException("connectParallelism must be positive: " + connectParallelism);
+        }
+        this.readers = new CopyOnWriteArrayList<>();
+        this.connectExecutor = Executors.newFixedThreadPool(connectParallelism, daemonThreadFactory("reader-connect-"));
+        this.reconnectScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("reader-reconnect-"));
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * 新增讀取頭（尚未連接）
+     * @param name 讀取頭名稱，為 null 時使用 IP:Port
+     */
+    public ManagedReader addReader(String name, String ip, int port) {
+        ManagedReader reader = new ManagedReader(name != null ? name : ip + ":" + port, ip, port);
+        reader.setTagRecordSink(this::onTagRecord);
+        reader.setStateSink(this::onReaderStateChanged);
+        reader.setOfflineBuffering(offlineBuffering);
+        readers.add(reader);
+        return reader;
+    }
+
+    /**
+     * 斷開並移除讀取頭
+     */
+    public void removeReader(ManagedReader reader) {
+        if (readers.remove(reader)) {
+            reader.disconnect();
+            reader.setTagRecordSink(null);
+            reader.setStateSink(null);
+        }
+    }
+
+    /**
+     * 非同步連接單一讀取頭
+     */
+    public CompletableFuture<Boolean> connect(ManagedReader reader, int timeout) {
+        return CompletableFuture.supplyAsync(() -> {
+            boolean success = reader.connect(timeout);
+            log(reader.getName() + (success ? " 連接成功" : " 連接失敗"));
+            return success;
+        }, connectExecutor);
+    }
+
+    /**
+     * 並行連接所有尚未連接的讀取頭
+     * @return 所有連接嘗試完成後，回傳成功連接的數量
+     */
+    public CompletableFuture<Integer> connectAll(int timeout) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (ManagedReader reader : readers) {
+            if (reader.getHealth() != ManagedReader.Health.CONNECTED) {
+                futures.add(connect(reader, timeout));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .thenApply(v -> {
+                int connected = 0;
+                for (CompletableFuture<Boolean> future : futures) {
+                    if (future.join()) {
+                        connected++;
+                    }
+                }
+                return connected;
+            });
+    }
+
+    /**
+     * 所有已連接的讀取頭開始讀取 EPC 標籤
+     * @return 成功啟動的讀取頭數
+     */
+    public int startReadEpcAll(long antennaEnable, TagReader.ReadMode mode, boolean readTid, boolean readUserData) {
+        return startAll(tagReader -> tagReader.startReadEpc(antennaEnable, mode, readTid, readUserData));
+    }
+
+    /**
+     * 所有已連接的讀取頭以指定動作開始讀取
+     * @return 成功啟動的讀取頭數
+     */
+    public int startAll(Predicate<TagReader> starter) {
+        int started = 0;
+        for (ManagedReader reader : readers) {
+            TagReader tagReader = reader.getTagReader();
+            if (reader.getHealth() == ManagedReader.Health.CONNECTED && tagReader != null
+                    && starter.test(tagReader)) {
+                started++;
+            }
+        }
+        return started;
+    }
+
+    /**
+     * 所有讀取頭停止讀取
+     */
+    public void stopAll() {
+        for (ManagedReader reader : readers) {
+            if (reader.isReading()) {
+                reader.getTagReader().stopRead();
+            }
+        }
+    }
+
+    /**
+     * 斷開單一讀取頭（保留於管理清單中，可再次連接）
+     */
+    public void disconnect(ManagedReader reader) {
+        reader.disconnect();
+    }
+
+    /**
+     * 斷開所有讀取頭
+     */
+    public void disconnectAll() {
+        for (ManagedReader reader : readers) {
+            reader.disconnect();
+        }
+    }
+
+    /**
+     * 斷開所有讀取頭並關閉連接執行緒池
+     */
+    public void shutdown() {
+        disconnectAll();
+        reconnectScheduler.shutdownNow();
+        connectExecutor.shutdownNow();
+    }
+
+    private void onTagRecord(TagRecord record) {
+        Consumer<TagRecord> callback = onTagRecordCallback;
+        if (callback != null) {
+            callback.accept(record);
+        } else {
+            record.release();
+        }
+    }
+
+    private void onReaderStateChanged(ManagedReader reader) {
+        Consumer<ManagedReader> callback = onReaderStateChangedCallback;
+        if (callback != null) {
+            callback.accept(reader);
+        }
+
+        if (reader.getHealth() == ManagedReader.Health.LOST) {
+            scheduleReconnect(reader);
+        } else if (reader.getHealth() == ManagedReader.Health.FAILED && retryFailedConnects) {
+            scheduleConnectRetry(reader);
+        } else if (reader.getHealth() == ManagedReader.Health.CONNECTED && reader.getReconnectAttempts() > 0) {
+            log(reader.getName() + " 已恢復連接，耗時 " + reader.getLastRecoveryMillis() + " ms");
+        }
+    }
+
+    /**
+     * 依重連策略排程下一次重連
+     */
+    private void scheduleReconnect(ManagedReader reader) {
+        scheduleRetry(reader, reader.getReconnectAttempts(), reader::reconnect);
+    }
+
+    /**
+     * 初次連接失敗時依重連策略排程下一次連接
+     */
+    private void scheduleConnectRetry(ManagedReader reader) {
+        scheduleRetry(reader, reader.getConnectAttempts() - 1, () -> {
+            boolean success = reader.connect(reader.getConnectTimeout());
+            log(reader.getName() + (success ? " 連接成功" : " 連接失敗"));
+        });
+    }
+
+    private void scheduleRetry(ManagedReader reader, int attempt, Runnable action) {
+        ReconnectPolicy policy = reconnectPolicy;
+        if (policy == null || reader.isUserDisconnected() || !readers.contains(reader)) {
+            return;
+        }
+        if (!policy.canRetry(attempt)) {
+            log(reader.getName() + " 已達最大重連次數 " + attempt);
+            return;
+        }
+
+        long delay = policy.delayMillis(attempt);
+        log(reader.getName() + " 將於 " + delay + " ms 後重新連接 (第 " + (attempt + 1) + " 次)");
+        try {
+            reconnectScheduler.schedule(() -> connectExecutor.execute(() -> {
+                if (!reader.isUserDisconnected() && readers.contains(reader)) {
+                    action.run();
+                }
+            }), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已關閉
+        }
+    }
+
+    private void log(String message) {
+        System.out.println("[ReaderManager] " + message);
+        if (onLogCallback != null) {
+            onLogCallback.accept(message);
+        }
+    }
+
+    // Getters
+    public List<ManagedReader> getReaders() {
+        return Collections.unmodifiableList(readers);
+    }
+
+    public int getConnectedCount() {
+        int count = 0;
+        for (ManagedReader reader : readers) {
+            if (reader.getHealth() == ManagedReader.Health.CONNECTED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Setters
+    /**
+     * 設置自動重連策略，為 null 時停用自動重連
+     */
+    public void setReconnectPolicy(ReconnectPolicy policy) {
+        this.reconnectPolicy = policy;
+    }
+
+    public ReconnectPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    /**
+     * 設置初次連接失敗時是否也依重連策略重試（無人值守時讀取頭可能晚於程式啟動）
+     */
+    public void setRetryFailedConnects(boolean retryFailedConnects) {
+        this.retryFailedConnects = retryFailedConnects;
+    }
+
+    public boolean isRetryFailedConnects() {
+        return retryFailedConnects;
+    }
+
+    /**
+     * 設置是否使用讀取頭斷線快取（斷點續傳）：斷線期間讀取頭繼續盤存並快取讀取，
+     * 重新連接後批次收取、依時間順序併入標籤串流並清除快取。於下次連接時生效
+     */
+    public void setOfflineBuffering(boolean offlineBuffering) {
+        this.offlineBuffering = offlineBuffering;
+        for (ManagedReader reader : readers) {
+            reader.setOfflineBuffering(offlineBuffering);
+        }
+    }
+
+    public boolean isOfflineBuffering() {
+        return offlineBuffering;
+    }
+
+    // Setters for callbacks
+    /**
+     * 設置合併標籤串流回調（於各讀取頭的回調執行緒呼叫）
+     * 接收端處理完畢後須呼叫 TagRecord.release()
+     */
+    public void setOnTagRecordCallback(Consumer<TagRecord> callback) {
+        this.onTagRecordCallback = callback;
+    }
+
+    public void setOnReaderStateChangedCallback(Consumer<ManagedReader> callback) {
+        this.onReaderStateChangedCallback = callback;
+    }
+
+    public void setOnLogCallback(Consumer<String> callback) {
+        this.onLogCallback = callback;
+    }
+}
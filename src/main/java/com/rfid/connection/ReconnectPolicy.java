@@ -0,0 +1,85 @@
+package com.rfid.connection;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 自動重連策略
+ * 指數退避加上隨機抖動，避免大量讀取頭同時重連
+ */
+public class ReconnectPolicy {
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final double jitter;
+    private final int maxAttempts;
+
+    /**
+     * @param initialDelayMillis 第一次重連前的等待時間
+     * @param maxDelayMillis 等待時間上限
+     * @param multiplier 每次失敗後等待時間的倍數
+     * @param jitter 隨機抖動比例（0 ~ 1），實際等待時間為 delay * (1 - jitter * random)
+     * @param maxAttempts 最大重連次數，0 表示不限
+     */
+    public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, double multiplier, double jitter, int maxAttempts) {
+        if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("invalid delay range: " + initialDelayMillis + " ~ " + maxDelayMillis);
+        }
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("multiplier must be >= 1: " + multiplier);
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be within [0, 1]: " + jitter);
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 預設策略：200 ms 起，每次加倍，最多 30 秒，抖動 50%，不限次數
+     */
+    public static ReconnectPolicy defaultPolicy() {
+        return new ReconnectPolicy(200, 30_000, 2.0, 0.5, 0);
+    }
+
+    /**
+     * 計算第 attempt 次重連（從 0 起算）前的等待時間
+     */
+    public long delayMillis(int attempt) {
+        double delay = initialDelayMillis * Math.pow(multiplier, attempt);
+        delay = Math.min(delay, maxDelayMillis);
+        delay *= 1.0 - jitter * ThreadLocalRandom.current().nextDouble();
+        return (long) delay;
+    }
+
+    /**
+     * 是否還能進行第 attempt 次重連
+     */
+    public boolean canRetry(int attempt) {
+        return maxAttempts <= 0 || attempt < maxAttempts;
+    }
+
+    // Getters
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
@@ -0,0 +1,508 @@
+package com.rfid.headless;
+
+import com.rfid.presence.PresenceEngine;
+import com.rfid.presence.ZoneMap;
+import com.rfid.reader.AntennaScheduler;
+import com.rfid.reader.EpcFilter;
+import com.rfid.reader.ReportPolicy;
+import com.rfid.reader.TagReader;
+import com.rfid.storage.TagJournal;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 無介面擷取模式設定
+ * 可由設定檔（Properties 格式）載入，再以命令列參數覆寫
+ */
+public class CaptureConfig {
+
+    /** 預設讀取頭端口 */
+    public static final int DEFAULT_PORT = 8160;
+
+    private final List<String> readers = new ArrayList<>();
+    private EnumSet<TagReader.TagProtocol> protocols = EnumSet.of(TagReader.TagProtocol.EPC_6C); // 多種時混合盤存
+    private long antennaMask = 1L;  // 0 表示讀取頭所有天線
+    private int dwellMillis;        // 0 表示每輪盤存後切換天線
+    private EpcFilter epcFilter;    // null 表示不過濾
+    private ReportPolicy reportPolicy = ReportPolicy.all();
+    private boolean readTid;
+    private boolean fastId;         // EPC 盤存以 FastID 取得 TID
+    private boolean readUserData;
+    private String output;        // null 表示輸出到 stdout
+    private int flushIntervalMs = 1000;
+    private boolean uniqueOnly;   // 只輸出第一次讀到的標籤
+    private int connectTimeout = 3000;
+    private boolean offlineBuffer = true; // 斷線期間由讀取頭快取讀取，重新連接後收取
+    private ZoneMap zoneMap;          // 不為 null 時輸出區域在場事件而非標籤
+    private int absenceMillis = PresenceEngine.DEFAULT_ABSENCE_MILLIS;
+    private int presenceDwellMillis = PresenceEngine.DEFAULT_DWELL_MILLIS;
+    private String journalDirectory; // null 表示不寫入原始讀取日誌
+    private int journalMaxMb = (int) (TagJournal.DEFAULT_MAX_BYTES / (1024 * 1024)); // 0 表示不限
+    private String historyDirectory; // null 表示不寫入標籤歷史
+    private String historyQuery;     // 不為 null 時只查詢標籤歷史（EPC/TID 前綴）後結束
+    private int queryHours;          // 查詢最近幾小時，0 表示全部
+    private String replayDirectory;  // 不為 null 時改為重播日誌，不連接讀取頭
+    private double replaySpeed = 1.0; // 0 表示最快
+    private boolean replayLoop;
+    private int metricsPort;          // 0 表示不啟動指標端點
+    private int pushPort;             // 0 表示不啟動推送端點
+
+    /**
+     * 解析命令列參數
+     * @throws IllegalArgumentException 參數格式錯誤
+     * @throws IOException 設定檔讀取失敗
+     */
+    public static CaptureConfig parse(String[] args) throws IOException {
+        CaptureConfig config = new CaptureConfig();
+
+        // 先載入設定檔，命令列參數優先
+        for (int i = 0; i < args.length - 1; i++) {
+            if ("--config".equals(args[i])) {
+                config.load(args[i + 1]);
+            }
+        }
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--config":
+                    i++;
+                    break;
+                case "--reader":
+                    config.addReaders(requireValue(args, ++i, arg));
+                    break;
+                case "--protocol":
+                    config.protocols = parseProtocols(requireValue(args, ++i, arg));
+                    break;
+                case "--antennas":
+                    config.antennaMask = parseAntennaMask(requireValue(args, ++i, arg));
+                    break;
+                case "--dwell-ms":
+                    config.dwellMillis = parseDwell(requireValue(args, ++i, arg));
+                    break;
+                case "--filter":
+                    config.epcFilter = EpcFilter.parse(requireValue(args, ++i, arg));
+                    break;
+                case "--report":
+                    config.reportPolicy = ReportPolicy.parse(requireValue(args, ++i, arg));
+                    break;
+                case "--tid":
+                    config.readTid = true;
+                    break;
+                case "--fastid":
+                    config.readTid = true;
+                    config.fastId = true;
+                    break;
+                case "--user-data":
+                    config.readUserData = true;
+                    break;
+                case "--output":
+                    config.output = requireValue(args, ++i, arg);
+                    break;
+                case "--flush-ms":
+                    config.flushIntervalMs = parsePositiveInt(requireValue(args, ++i, arg), arg);
+                    break;
+                case "--unique":
+                    config.uniqueOnly = true;
+                    break;
+                case "--timeout":
+                    config.connectTimeout = parsePositiveInt(requireValue(args, ++i, arg), arg);
+                    break;
+                case "--no-offline-buffer":
+                    config.offlineBuffer = false;
+                    break;
+                case "--presence":
+                    config.zoneMap = parseZones(requireValue(args, ++i, arg));
+                    break;
+                case "--absence-ms":
+                    config.absenceMillis = parsePositiveInt(requireValue(args, ++i, arg), arg);
+                    break;
+                case "--presence-dwell-ms":
+                    config.presenceDwellMillis = parseNonNegativeInt(requireValue(args, ++i, arg), arg);
+                    break;
+                case "--journal":
+                    config.journalDirectory = requireValue(args, ++i, arg);
+                    break;
+                case "--journal-max-mb":
+                    config.journalMaxMb = parseNonNegativeInt(requireValue(args, ++i, arg), arg);
+                    break;
+                case "--history":
+                    config.historyDirectory = requireValue(args, ++i, arg);
+                    break;
+                case "--query":
+                    config.historyQuery = requireValue(args, ++i, arg);
+                    break;
+                case "--query-hours":
+                    config.queryHours = parsePositiveInt(requireValue(args, ++i, arg), arg);
+                    break;
+                case "--replay":
+                    config.replayDirectory = requireValue(args, ++i, arg);
+                    break;
+                case "--speed":
+                    config.replaySpeed = parseSpeed(requireValue(args, ++i, arg));
+                    break;
+                case "--loop":
+                    config.replayLoop = true;
+                    break;
+                case "--metrics-port":
+                    config.metricsPort = parsePositiveInt(requireValue(args, ++i, arg), arg);
+                    break;
+                case "--push-port":
+                    config.pushPort = parsePositiveInt(requireValue(args, ++i, arg), arg);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知參數: " + arg);
+            }
+        }
+
+        if (config.historyQuery != null) {
+            if (config.historyDirectory == null) {
+                throw new IllegalArgumentException("--query 需要 --history");
+            }
+            return config;
+        }
+        if (config.readers.isEmpty() && config.replayDirectory == null) {
+            throw new IllegalArgumentException("至少需要一個 --reader 或 --replay");
+        }
+        if (config.zoneMap != null && config.uniqueOnly) {
+            throw new IllegalArgumentException("--unique 不適用於 --presence");
+        }
+        return config;
+    }
+
+    /**
+     * 載入設定檔
+     */
+    private void load(String path) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+
+        String value = props.getProperty("readers");
+        if (value != null) {
+            addReaders(value);
+        }
+        if ((value = props.getProperty("protocol")) != null) {
+            protocols = parseProtocols(value);
+        }
+        if ((value = props.getProperty("antennas")) != null) {
+            antennaMask = parseAntennaMask(value);
+        }
+        if ((value = props.getProperty("dwellMs")) != null) {
+            dwellMillis = parseDwell(value);
+        }
+        if ((value = props.getProperty("filter")) != null) {
+            epcFilter = EpcFilter.parse(value);
+        }
+        if ((value = props.getProperty("report")) != null) {
+            reportPolicy = ReportPolicy.parse(value);
+        }
+        readTid = Boolean.parseBoolean(props.getProperty("tid", String.valueOf(readTid)));
+        fastId = Boolean.parseBoolean(props.getProperty("fastId", String.valueOf(fastId)));
+        readTid |= fastId;
+        readUserData = Boolean.parseBoolean(props.getProperty("userData", String.valueOf(readUserData)));
+        output = props.getProperty("output", output);
+        if ((value = props.getProperty("flushMs")) != null) {
+            flushIntervalMs = parsePositiveInt(value, "flushMs");
+        }
+        uniqueOnly = Boolean.parseBoolean(props.getProperty("unique", String.valueOf(uniqueOnly)));
+        if ((value = props.getProperty("timeout")) != null) {
+            connectTimeout = parsePositiveInt(value, "timeout");
+        }
+        offlineBuffer = Boolean.parseBoolean(props.getProperty("offlineBuffer", String.valueOf(offlineBuffer)));
+        if ((value = props.getProperty("presence")) != null) {
+            zoneMap = parseZones(value);
+        }
+        if ((value = props.getProperty("absenceMs")) != null) {
+            absenceMillis = parsePositiveInt(value, "absenceMs");
+        }
+        if ((value = props.getProperty("presenceDwellMs")) != null) {
+            presenceDwellMillis = parseNonNegativeInt(value, "presenceDwellMs");
+        }
+        journalDirectory = props.getProperty("journal", journalDirectory);
+        if ((value = props.getProperty("journalMaxMb")) != null) {
+            journalMaxMb = parseNonNegativeInt(value, "journalMaxMb");
+        }
+        historyDirectory = props.getProperty("history", historyDirectory);
+        replayDirectory = props.getProperty("replay", replayDirectory);
+        if ((value = props.getProperty("speed")) != null) {
+            replaySpeed = parseSpeed(value);
+        }
+        replayLoop = Boolean.parseBoolean(props.getProperty("loop", String.valueOf(replayLoop)));
+        if ((value = props.getProperty("metricsPort")) != null) {
+            metricsPort = parsePositiveInt(value, "metricsPort");
+        }
+        if ((value = props.getProperty("pushPort")) != null) {
+            pushPort = parsePositiveInt(value, "pushPort");
+        }
+    }
+
+    private void addReaders(String value) {
+        for (String address : value.split(",")) {
+            address = address.trim();
+            if (!address.isEmpty()) {
+                readers.add(address);
+            }
+        }
+    }
+
+    private static String requireValue(String[] args, int index, String name) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(name + " 缺少參數值");
+        }
+        return args[index];
+    }
+
+    private static int parsePositiveInt(String value, String name) {
+        try {
+            int result = Integer.parseInt(value.trim());
+            if (result <= 0) {
+                throw new IllegalArgumentException(name + " 必須大於 0: " + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " 格式錯誤: " + value);
+        }
+    }
+
+    private static int parseNonNegativeInt(String value, String name) {
+        try {
+            int result = Integer.parseInt(value.trim());
+            if (result < 0) {
+                throw new IllegalArgumentException(name + " 不可小於 0: " + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " 格式錯誤: " + value);
+        }
+    }
+
+    /**
+     * 解析區域設定，each 表示每支天線各一個區域
+     */
+    private static ZoneMap parseZones(String value) {
+        return "each".equalsIgnoreCase(value.trim()) ? ZoneMap.perAntenna() : ZoneMap.parse(value);
+    }
+
+    private static int parseDwell(String value) {
+        int millis = parsePositiveInt(value, "dwellMs");
+        if (millis > AntennaScheduler.MAX_DWELL_MILLIS) {
+            throw new IllegalArgumentException("dwellMs 超出範圍 (1~" + AntennaScheduler.MAX_DWELL_MILLIS + "): " + value);
+        }
+        return millis;
+    }
+
+    /**
+     * 解析重播速度：1、2.5、10x 或 max
+     */
+    static double parseSpeed(String value) {
+        value = value.trim().toLowerCase();
+        if ("max".equals(value)) {
+            return 0;
+        }
+        if (value.endsWith("x")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            double speed = Double.parseDouble(value);
+            if (speed <= 0) {
+                throw new IllegalArgumentException("重播速度必須大於 0: " + value);
+            }
+            return speed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("重播速度格式錯誤: " + value);
+        }
+    }
+
+    /**
+     * 解析協議設定，以逗號分隔多種協議（如 epc,gb）時使用混合盤存
+     */
+    static EnumSet<TagReader.TagProtocol> parseProtocols(String value) {
+        EnumSet<TagReader.TagProtocol> result = EnumSet.noneOf(TagReader.TagProtocol.class);
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) {
+                result.add(parseProtocol(part));
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("未指定協議: " + value);
+        }
+        return result;
+    }
+
+    static TagReader.TagProtocol parseProtocol(String value) {
+        switch (value.trim().toLowerCase()) {
+            case "epc":
+            case "6c":
+                return TagReader.TagProtocol.EPC_6C;
+            case "6b":
+                return TagReader.TagProtocol.ISO_6B;
+            case "gb":
+                return TagReader.TagProtocol.GB;
+            case "gjb":
+                return TagReader.TagProtocol.GJB;
+            default:
+                throw new IllegalArgumentException("未知協議: " + value);
+        }
+    }
+
+    /**
+     * 解析天線設定（格式見 AntennaScheduler.parseMask，all 表示讀取頭所有天線）
+     */
+    static long parseAntennaMask(String value) {
+        return AntennaScheduler.parseMask(value);
+    }
+
+    /**
+     * 命令列用法說明
+     */
+    public static String usage() {
+        return "用法: HeadlessCapture --reader <ip[:port]>[,...] [選項]\n" +
+               "  --config <file>     設定檔（Properties 格式，命令列參數優先）\n" +
+               "  --reader <list>     讀取頭位址，可重複或以逗號分隔\n" +
+               "  --protocol <p>      epc | 6b | gb | gjb，以逗號分隔多種時混合盤存（預設 epc）\n" +
+               "  --antennas <list>   天線編號 1,2,5-8、遮罩 0x0F 或 all（預設 1）\n" +
+               "  --dwell-ms <ms>     每支天線駐留時間（預設每輪切換）\n" +
+               "  --filter <rules>    EPC 過濾：前綴 E280、mask:<起始>:<位元數>:<hex>、sgtin:<廠商碼>[.<品項碼>][:<起>-<迄>]\n" +
+               "  --report <mode>     讀取頭上報：all | once | change[:ms] | <ms>，可加 @<RSSI 門檻>（預設 all）\n" +
+               "  --tid               讀取 TID\n" +
+               "  --fastid            以 FastID 隨 EPC 一併讀取 TID（不支援時改用一般讀取）\n" +
+               "  --user-data         讀取用戶數據區\n" +
+               "  --output <file>     輸出檔案（預設 stdout）\n" +
+               "  --flush-ms <ms>     輸出間隔（預設 1000）\n" +
+               "  --unique            每個標籤只輸出一次\n" +
+               "  --timeout <ms>      連接超時（預設 3000）\n" +
+               "  --no-offline-buffer 不使用讀取頭斷線快取，重新連接後重新下盤存指令\n" +
+               "  --presence <zones>  輸出區域在場事件（ENTER/DWELL/EXIT）：名稱=[讀取頭/]天線[@逾時ms];...，each 為每支天線一區\n" +
+               "  --absence-ms <ms>   離場逾時（預設 3000）\n" +
+               "  --presence-dwell-ms <ms> 停留報告間隔（預設 10000，0 不報告）\n" +
+               "  --journal <dir>     同時將每筆原始讀取寫入日誌目錄\n" +
+               "  --journal-max-mb <n> 日誌大小上限，超過時刪除最舊區段（預設 1024，0 不限）\n" +
+               "  --history <dir>     同時將讀取合併為出現寫入標籤歷史目錄\n" +
+               "  --query <prefix>    查詢 --history 中 EPC/TID 以此十六進位前綴開頭的出現後結束（空字串為全部）\n" +
+               "  --query-hours <h>   只查詢最近幾小時（預設全部）\n" +
+               "  --replay <dir>      重播日誌目錄而不連接讀取頭\n" +
+               "  --speed <x|max>     重播速度倍率（預設 1，max 為最快）\n" +
+               "  --loop              重播結束後從頭重播\n" +
+               "  --metrics-port <p>  於 127.0.0.1 提供 /metrics 抓取端點\n" +
+               "  --push-port <p>     於 127.0.0.1 提供 WebSocket/TCP 標籤推送端點";
+    }
+
+    // Getters
+    public List<String> getReaders() {
+        return readers;
+    }
+
+    public EnumSet<TagReader.TagProtocol> getProtocols() {
+        return protocols;
+    }
+
+    public long getAntennaMask() {
+        return antennaMask;
+    }
+
+    public int getDwellMillis() {
+        return dwellMillis;
+    }
+
+    public EpcFilter getEpcFilter() {
+        return epcFilter;
+    }
+
+    public ReportPolicy getReportPolicy() {
+        return reportPolicy;
+    }
+
+    public boolean isReadTid() {
+        return readTid;
+    }
+
+    public boolean isFastId() {
+        return fastId;
+    }
+
+    public boolean isReadUserData() {
+        return readUserData;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public int getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public boolean isUniqueOnly() {
+        return uniqueOnly;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public boolean isOfflineBuffer() {
+        return offlineBuffer;
+    }
+
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
+    public int getAbsenceMillis() {
+        return absenceMillis;
+    }
+
+    public int getPresenceDwellMillis() {
+        return presenceDwellMillis;
+    }
+
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public int getJournalMaxMb() {
+        return journalMaxMb;
+    }
+
+    public String getHistoryDirectory() {
+        return historyDirectory;
+    }
+
+    public String getHistoryQuery() {
+        return historyQuery;
+    }
+
+    public int getQueryHours() {
+        return queryHours;
+    }
+
+    public String getReplayDirectory() {
+        return replayDirectory;
+    }
+
+    public double getReplaySpeed() {
+        return replaySpeed;
+    }
+
+    public boolean isReplayLoop() {
+        return replayLoop;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public int getPushPort() {
+        return pushPort;
+    }
+}
@@ -0,0 +1,483 @@
+package com.rfid.headless;
+
+import com.rfid.connection.ManagedReader;
+import com.rfid.connection.ReaderManager;
+import com.rfid.connection.ReconnectPolicy;
+import com.rfid.metrics.MetricsRegistry;
+import com.rfid.metrics.MetricsServer;
+import com.rfid.presence.PresenceEngine;
+import com.rfid.presence.PresenceEvent;
+import com.rfid.push.TagPushServer;
+import com.rfid.reader.AntennaScheduler;
+import com.rfid.reader.TagEventPipeline;
+import com.rfid.reader.TagIndex;
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagReader;
+import com.rfid.reader.TagRecord;
+import com.rfid.reader.TagSignalModel;
+import com.rfid.storage.JournalReplayer;
+import com.rfid.storage.Sighting;
+import com.rfid.storage.TagHistory;
+import com.rfid.storage.TagJournal;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 無介面高吞吐擷取模式
+ * 不載入 Swing，連續盤存並將去重後的標籤以 CSV 輸出到 stdout 或檔案；
+ * 設定區域時改為輸出區域在場事件
+ */
+public class HeadlessCapture {
+
+    private static final String CSV_HEADER = "time,reader,type,epc,tid,user_data,rssi,antenna,count,smoothed_rssi,direction";
+    private static final String EVENT_CSV_HEADER = "time,event,zone,tag,type,reader,antenna,dwell_ms,count,peak_rssi,direction";
+    private static final String SIGHTING_CSV_HEADER = "first_seen,last_seen,key,key_type,type,reader,antenna,count,max_rssi";
+
+    /** 歷史查詢最多輸出的出現數 */
+    private static final int QUERY_LIMIT = 1_000_000;
+
+    private final CaptureConfig config;
+    private final ReaderManager readerManager;
+    private final TagEventPipeline pipeline;
+    private final TagIndex uniqueIndex;
+    private final PresenceEngine presence;
+    private final ConcurrentLinkedQueue<PresenceEvent> events = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+    private final CountDownLatch stopped;
+    private final AtomicBoolean shuttingDown = new AtomicBoolean();
+    private Writer writer;
+    private TagJournal journal;
+    private TagHistory history;
+    private JournalReplayer replayer;
+    private MetricsServer metricsServer;
+    private TagPushServer pushServer;
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    public HeadlessCapture(CaptureConfig config) {
+        this.config = config;
+        this.readerManager = new ReaderManager(Math.max(1, Math.min(config.getReaders().size(), 16)));
+        this.pipeline = new TagEventPipeline();
+        this.uniqueIndex = config.isUniqueOnly() ? new TagIndex() : null;
+        this.presence = config.getZoneMap() != null
+            ? new PresenceEngine(config.getZoneMap(), config.getAbsenceMillis(), config.getPresenceDwellMillis())
+            : null;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "capture-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.stopped = new CountDownLatch(1);
+    }
+
+    /**
+     * 連接所有讀取頭並開始擷取，直到程序結束
+     * @param writeHeader 是否輸出 CSV 標題列（附加到既有檔案時不需要）
+     */
+    public void run(OutputStream dataOut, boolean writeHeader) throws IOException, InterruptedException {
+        writer = new BufferedWriter(new OutputStreamWriter(dataOut, StandardCharsets.UTF_8), 64 * 1024);
+        if (writeHeader) {
+            writer.write(presence != null ? EVENT_CSV_HEADER : CSV_HEADER);
+            writer.write('\n');
+        }
+        if (presence != null) {
+            presence.setOnPresenceEventCallback(events::offer);
+            presence.start();
+        }
+
+        if (config.getJournalDirectory() != null) {
+            journal = new TagJournal(new File(config.getJournalDirectory()),
+                    config.getJournalMaxMb() * 1024L * 1024);
+        }
+        if (config.getHistoryDirectory() != null) {
+            history = new TagHistory(new File(config.getHistoryDirectory()));
+        }
+
+        metrics.registerGauge(MetricsRegistry.TAG_BACKLOG, "等待輸出的標籤數", pipeline::getPendingCount);
+        if (config.getMetricsPort() > 0) {
+            metricsServer = new MetricsServer(metrics, config.getMetricsPort());
+            metricsServer.start();
+        }
+        if (config.getPushPort() > 0) {
+            pushServer = new TagPushServer(config.getPushPort());
+            pushServer.start();
+        }
+
+        readerManager.setReconnectPolicy(ReconnectPolicy.defaultPolicy());
+        readerManager.setOfflineBuffering(config.isOfflineBuffer());
+        // 啟動時離線的讀取頭也持續重試，連接後才開始盤存
+        readerManager.setRetryFailedConnects(true);
+        readerManager.setOnTagRecordCallback(this::onTagRecord);
+        readerManager.setOnReaderStateChangedCallback(this::onReaderStateChanged);
+        for (String address : config.getReaders()) {
+            int separator = address.lastIndexOf(':');
+            String ip = separator > 0 ? address.substring(0, separator) : address;
+            int port = separator > 0 ? Integer.parseInt(address.substring(separator + 1)) : CaptureConfig.DEFAULT_PORT;
+            ManagedReader reader = readerManager.addReader(address, ip, port);
+            readerManager.connect(reader, config.getConnectTimeout());
+        }
+
+        flusher.scheduleAtFixedRate(this::flush, config.getFlushIntervalMs(),
+            config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "capture-shutdown"));
+        if (config.getReplayDirectory() != null) {
+            startReplay();
+        }
+
+        stopped.await();
+    }
+
+    /**
+     * 重播日誌取代讀取頭，重播結束後自動停止
+     */
+    private void startReplay() throws IOException {
+        replayer = new JournalReplayer(new File(config.getReplayDirectory()));
+        replayer.setSpeed(config.getReplaySpeed());
+        replayer.setLoop(config.isReplayLoop());
+        // 重播的讀取不再寫入日誌
+        replayer.setOnTagRecordCallback(this::deliver);
+        replayer.setOnReadOverCallback(() -> {
+            if (config.getReaders().isEmpty()) {
+                new Thread(this::shutdown, "capture-shutdown").start();
+            }
+        });
+        if (!replayer.start()) {
+            throw new IOException("無法重播日誌: " + config.getReplayDirectory());
+        }
+    }
+
+    /**
+     * 處理原始讀取記錄：先寫入日誌與歷史再交給管線
+     */
+    private void onTagRecord(TagRecord record) {
+        if (journal != null) {
+            try {
+                journal.append(record);
+            } catch (IOException e) {
+                System.err.println("[HeadlessCapture] 寫入日誌錯誤: " + e.getMessage());
+            }
+        }
+        if (history != null) {
+            history.append(record);
+        }
+        deliver(record);
+    }
+
+    /**
+     * 交給推送端點與在場引擎或標籤管線，處理後歸還記錄
+     */
+    private void deliver(TagRecord record) {
+        if (pushServer != null) {
+            pushServer.publish(record);
+        }
+        if (presence != null) {
+            presence.accept(record);
+            record.release();
+        } else {
+            pipeline.acceptRecord(record);
+        }
+    }
+
+    /**
+     * 讀取頭連接後若尚未盤存則依設定啟動（初次連接與重試連接皆同；斷線恢復時盤存已由 ManagedReader 恢復）
+     */
+    private void onReaderStateChanged(ManagedReader reader) {
+        TagReader tagReader = reader.getTagReader();
+        if (reader.getHealth() == ManagedReader.Health.CONNECTED && tagReader != null && !tagReader.isReading()
+                && !startInventory(tagReader)) {
+            System.err.println("[HeadlessCapture] " + reader.getName() + " 啟動盤存失敗");
+        }
+    }
+
+    /**
+     * 依設定啟動盤存
+     */
+    private boolean startInventory(TagReader tagReader) {
+        AntennaScheduler scheduler = tagReader.getAntennaScheduler();
+        scheduler.setConfiguredMask(config.getAntennaMask());
+        if (config.getDwellMillis() > 0) {
+            scheduler.setMode(AntennaScheduler.Mode.DWELL);
+            scheduler.setDwellMillis(config.getDwellMillis());
+        }
+        long mask = scheduler.prepare();
+        if (mask == 0) {
+            return false;
+        }
+        tagReader.setEpcFilter(config.getEpcFilter());
+        tagReader.setReportPolicy(config.getReportPolicy());
+        tagReader.setFastIdEnabled(config.isFastId());
+        return tagReader.startReadHybrid(mask, TagReader.ReadMode.CONTINUOUS, config.getProtocols(),
+            config.isReadTid(), config.isReadUserData());
+    }
+
+    /**
+     * 將管線中的標籤寫出（於輸出執行緒呼叫）
+     */
+    private synchronized void flush() {
+        try {
+            if (presence != null) {
+                PresenceEvent event;
+                while ((event = events.poll()) != null) {
+                    writeEvent(event);
+                }
+            } else {
+                pipeline.drain(this::write);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("[HeadlessCapture] 輸出錯誤: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.err.println("[HeadlessCapture] 輸出錯誤: " + e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            // 例外離開定期任務會取消之後所有的輸出，只記錄錯誤
+            System.err.println("[HeadlessCapture] 輸出錯誤: " + e);
+        }
+    }
+
+    private void write(TagInfo tagInfo) {
+        // 讀取時間只有毫秒精度；快取收取的讀取帶有斷線期間的讀取頭時間，不計入延遲
+        if (!tagInfo.isHarvested()) {
+            metrics.recordDisplayLatency(TagRecord.nowEpochNanos() - tagInfo.getReadTimeMillis() * 1_000_000L);
+        }
+        if (uniqueIndex != null) {
+            int size = uniqueIndex.size();
+            if (uniqueIndex.upsert(tagInfo) < size) {
+                return;
+            }
+        }
+        try {
+            writer.write(tagInfo.getReadTimeString());
+            writer.write(',');
+            writer.write(nullToEmpty(tagInfo.getReaderName()));
+            writer.write(',');
+            writer.write(tagInfo.getTagType() != null ? tagInfo.getTagType().name() : "");
+            writer.write(',');
+            writer.write(nullToEmpty(tagInfo.getEpc()));
+            writer.write(',');
+            writer.write(nullToEmpty(tagInfo.getTid()));
+            writer.write(',');
+            writer.write(nullToEmpty(tagInfo.getUserData()));
+            writer.write(',');
+            writer.write(Integer.toString(tagInfo.getRssi()));
+            writer.write(',');
+            writer.write(Integer.toString(tagInfo.getAntennaId()));
+            writer.write(',');
+            writer.write(Integer.toString(tagInfo.getReadCount()));
+            writer.write(',');
+            writer.write(Integer.toString(tagInfo.getSmoothedRssi()));
+            writer.write(',');
+            writer.write(directionName(tagInfo.getDirection()));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeEvent(PresenceEvent event) throws IOException {
+        writer.write(TagInfo.formatReadTime(event.getTimestampNanos() / 1_000_000L));
+        writer.write(',');
+        writer.write(event.getType().name());
+        writer.write(',');
+        writer.write(nullToEmpty(event.getZone()));
+        writer.write(',');
+        writer.write(nullToEmpty(event.getTagId()));
+        writer.write(',');
+        writer.write(event.getTagType() != null ? event.getTagType().name() : "");
+        writer.write(',');
+        writer.write(nullToEmpty(event.getReaderName()));
+        writer.write(',');
+        writer.write(Integer.toString(event.getAntennaId()));
+        writer.write(',');
+        writer.write(Long.toString(event.getDwellMillis()));
+        writer.write(',');
+        writer.write(Integer.toString(event.getReadCount()));
+        writer.write(',');
+        writer.write(Integer.toString(event.getPeakRssi()));
+        writer.write(',');
+        writer.write(directionName(event.getDirection()));
+        writer.write('\n');
+    }
+
+    private static String directionName(TagSignalModel.Direction direction) {
+        return direction != TagSignalModel.Direction.UNKNOWN ? direction.name() : "";
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * 停止盤存並輸出剩餘資料
+     */
+    public void shutdown() {
+        if (!shuttingDown.compareAndSet(false, true)) {
+            // 另一個執行緒正在停止，等待完成（關閉鉤子返回後 JVM 即結束）
+            try {
+                stopped.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        if (replayer != null) {
+            replayer.stop();
+        }
+        readerManager.stopAll();
+        readerManager.shutdown();
+        // 等待進行中的定期輸出結束，之後才做最後一次輸出並關閉輸出
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeOutputs();
+        }
+        stopped.countDown();
+    }
+
+    /**
+     * 最後一次輸出後關閉輸出、日誌、歷史與端點
+     */
+    private void closeOutputs() {
+        if (presence != null) {
+            presence.stop();
+        }
+        flush();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("[HeadlessCapture] 關閉輸出錯誤: " + e.getMessage());
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("[HeadlessCapture] 關閉日誌錯誤: " + e.getMessage());
+            }
+        }
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.err.println("[HeadlessCapture] 關閉標籤歷史錯誤: " + e.getMessage());
+            }
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        if (pushServer != null) {
+            pushServer.stop();
+        }
+        if (presence != null) {
+            System.err.println("[HeadlessCapture] 已結束，共接收 " + presence.getAcceptedCount()
+                + " 筆，事件 " + presence.getEventCount() + " 個（進入 " + presence.getEnterCount()
+                + "、停留 " + presence.getDwellCount() + "、離場 " + presence.getExitCount()
+                + "），略過 " + presence.getIgnoredCount() + " 筆");
+        } else {
+            System.err.println("[HeadlessCapture] 已結束，共接收 " + pipeline.getReceivedCount()
+                + " 筆，合併 " + pipeline.getMergedCount() + " 筆，丟棄 " + pipeline.getDroppedCount() + " 筆");
+        }
+    }
+
+    /**
+     * 查詢標籤歷史並以 CSV 輸出（由新到舊），不連接讀取頭
+     * 以唯讀方式開啟，可與寫入同一目錄的擷取程序同時執行
+     */
+    static void runQuery(CaptureConfig config, OutputStream dataOut) throws IOException {
+        long to = Long.MAX_VALUE;
+        long from = config.getQueryHours() > 0
+            ? TagRecord.nowEpochNanos() - TimeUnit.HOURS.toNanos(config.getQueryHours())
+            : Long.MIN_VALUE;
+        List<Sighting> sightings;
+        long start = System.nanoTime();
+        try (TagHistory history = TagHistory.openReadOnly(new File(config.getHistoryDirectory()))) {
+            sightings = history.findPrefix(config.getHistoryQuery(), from, to, QUERY_LIMIT);
+        }
+        System.err.println("[HeadlessCapture] 查詢到 " + sightings.size() + " 筆出現（"
+            + (System.nanoTime() - start) / 1_000_000L + " ms）");
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(dataOut, StandardCharsets.UTF_8), 64 * 1024);
+        out.write(SIGHTING_CSV_HEADER);
+        out.write('\n');
+        for (Sighting sighting : sightings) {
+            out.write(TagInfo.formatReadTime(sighting.getFirstSeenNanos() / 1_000_000L));
+            out.write(',');
+            out.write(TagInfo.formatReadTime(sighting.getLastSeenMillis()));
+            out.write(',');
+            out.write(sighting.getKey());
+            out.write(',');
+            out.write(sighting.isEpcKey() ? "EPC" : "TID");
+            out.write(',');
+            out.write(sighting.getTagType() != null ? sighting.getTagType().name() : "");
+            out.write(',');
+            out.write(nullToEmpty(sighting.getReaderName()));
+            out.write(',');
+            out.write(Integer.toString(sighting.getAntennaId()));
+            out.write(',');
+            out.write(Integer.toString(sighting.getReadCount()));
+            out.write(',');
+            out.write(Integer.toString(sighting.getMaxRssi()));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) {
+        CaptureConfig config;
+        try {
+            config = CaptureConfig.parse(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("參數錯誤: " + e.getMessage());
+            System.err.println(CaptureConfig.usage());
+            System.exit(2);
+            return;
+        }
+
+        // 資料輸出使用原本的 stdout，其餘元件的日誌改送 stderr
+        PrintStream dataOut = System.out;
+        System.setOut(System.err);
+
+        if (config.getHistoryQuery() != null) {
+            try {
+                runQuery(config, dataOut);
+            } catch (IllegalArgumentException | IOException e) {
+                System.err.println("查詢失敗: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        try {
+            boolean writeHeader = true;
+            OutputStream out = dataOut;
+            if (config.getOutput() != null) {
+                File file = new File(config.getOutput());
+                writeHeader = file.length() == 0;
+                out = new FileOutputStream(file, true);
+            }
+            new HeadlessCapture(config).run(out, writeHeader);
+        } catch (IOException e) {
+            System.err.println("無法開啟輸出: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
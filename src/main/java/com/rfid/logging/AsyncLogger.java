@@ -0,0 +1,385 @@
+package com.rfid.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 非同步日誌
+ * 呼叫端只做等級判斷、節流判斷與寫入環形緩衝區的欄位複製，
+ * 訊息格式化與輸出由背景執行緒批次處理；緩衝區滿時丟棄並計數
+ *
+ * 訊息以樣板（"{}" 為參數位置）作為訊息類型，可個別設定取樣與每秒上限。
+ * 等級未開啟時呼叫只需一次 volatile 讀取，不建立任何字串
+ */
+public final class AsyncLogger {
+
+    /** 日誌等級 */
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR,
+        OFF
+    }
+
+    /** 預設緩衝區大小（筆） */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** 預設每種訊息每秒上限，0 表示不限制 */
+    public static final int DEFAULT_RATE_LIMIT = 100;
+
+    /** 單次批次輸出上限 */
+    private static final int BATCH_SIZE = 256;
+
+    private static final long ONE_SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final AsyncLogger DEFAULT = new AsyncLogger(DEFAULT_CAPACITY,
+        parseLevel(System.getProperty("rfid.log.level"), Level.INFO),
+        Integer.getInteger("rfid.log.rateLimit", DEFAULT_RATE_LIMIT));
+
+    /** 環形緩衝區的槽位，重複使用 */
+    private static final class Event {
+        Level level;
+        String source;
+        String template;
+        Object arg1;
+        Object arg2;
+        long suppressed;
+        Consumer<String> listener;
+
+        void copyFrom(Event other) {
+            level = other.level;
+            source = other.source;
+            template = other.template;
+            arg1 = other.arg1;
+            arg2 = other.arg2;
+            suppressed = other.suppressed;
+            listener = other.listener;
+        }
+
+        void clear() {
+            source = null;
+            template = null;
+            arg1 = null;
+            arg2 = null;
+            listener = null;
+        }
+    }
+
+    /** 單一訊息類型的取樣與每秒上限 */
+    private static final class Throttle {
+        volatile int sampleEvery;
+        volatile int ratePerSecond;
+        final AtomicLong sampleCounter = new AtomicLong();
+        final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+        final AtomicLong windowCount = new AtomicLong();
+        final AtomicLong suppressed = new AtomicLong();
+
+        Throttle(int sampleEvery, int ratePerSecond) {
+            this.sampleEvery = sampleEvery;
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        boolean tryAcquire() {
+            int every = sampleEvery;
+            if (every > 1 && sampleCounter.getAndIncrement() % every != 0) {
+                suppressed.incrementAndGet();
+                return false;
+            }
+            int limit = ratePerSecond;
+            if (limit > 0) {
+                long now = System.nanoTime();
+                long start = windowStart.get();
+                if (now - start >= ONE_SECOND_NANOS && windowStart.compareAndSet(start, now)) {
+                    windowCount.set(0);
+                }
+                if (windowCount.incrementAndGet() > limit) {
+                    suppressed.incrementAndGet();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private volatile Level level;
+    private volatile int defaultRateLimit;
+    private final Map<String, Throttle> throttles = new ConcurrentHashMap<>();
+
+    // 環形緩衝區
+    private final Event[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int head;
+    private int size;
+
+    // 統計資訊
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+
+    private final Thread writer;
+
+    /**
+     * @param capacity 緩衝區大小（筆）
+     * @param level 最低輸出等級
+     * @param defaultRateLimit 每種訊息每秒上限，0 表示不限制
+     */
+    public AsyncLogger(int capacity, Level level, int defaultRateLimit) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.ring = new Event[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Event();
+        }
+        this.level = level;
+        this.defaultRateLimit = Math.max(0, defaultRateLimit);
+
+        writer = new Thread(this::writeLoop, "async-logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            flush();
+            long dropped = droppedCount.get();
+            if (dropped > 0) {
+                System.err.println("[AsyncLogger] 緩衝區已滿，共丟棄 " + dropped + " 筆訊息");
+            }
+        }, "async-logger-flush"));
+    }
+
+    /**
+     * 取得程式共用的日誌（等級與每秒上限可由系統屬性 rfid.log.level、rfid.log.rateLimit 設定）
+     */
+    public static AsyncLogger getDefault() {
+        return DEFAULT;
+    }
+
+    static Level parseLevel(String value, Level defaultLevel) {
+        if (value == null) {
+            return defaultLevel;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel.ordinal() >= level.ordinal();
+    }
+
+    public void debug(String source, String template) {
+        log(Level.DEBUG, source, template, null, null, null);
+    }
+
+    public void debug(String source, String template, Object arg) {
+        log(Level.DEBUG, source, template, arg, null, null);
+    }
+
+    public void info(String source, String template) {
+        log(Level.INFO, source, template, null, null, null);
+    }
+
+    public void info(String source, String template, Object arg) {
+        log(Level.INFO, source, template, arg, null, null);
+    }
+
+    public void warn(String source, String template, Object arg1, Object arg2) {
+        log(Level.WARN, source, template, arg1, arg2, null);
+    }
+
+    public void error(String source, String template, Object arg) {
+        log(Level.ERROR, source, template, arg, null, null);
+    }
+
+    /**
+     * 記錄一筆訊息
+     * @param template 訊息樣板，"{}" 依序替換為 arg1、arg2；同時作為取樣與節流的訊息類型
+     * @param listener 輸出後另外收到格式化訊息的回調（於日誌執行緒呼叫），可為 null
+     */
+    public void log(Level messageLevel, String source, String template, Object arg1, Object arg2,
+                    Consumer<String> listener) {
+        if (messageLevel.ordinal() < level.ordinal()) {
+            return;
+        }
+        Throttle throttle = throttle(template);
+        if (!throttle.tryAcquire()) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (size == ring.length) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            Event event = ring[(head + size) % ring.length];
+            event.level = messageLevel;
+            event.source = source;
+            event.template = template;
+            event.arg1 = arg1;
+            event.arg2 = arg2;
+            event.suppressed = throttle.suppressed.getAndSet(0);
+            event.listener = listener;
+            if (size++ == 0) {
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Throttle throttle(String template) {
+        Throttle throttle = throttles.get(template);
+        if (throttle == null) {
+            throttle = throttles.computeIfAbsent(template, t -> new Throttle(1, defaultRateLimit));
+        }
+        return throttle;
+    }
+
+    private void writeLoop() {
+        Event[] batch = new Event[BATCH_SIZE];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new Event();
+        }
+        StringBuilder sb = new StringBuilder(8192);
+        while (true) {
+            try {
+                lock.lock();
+                try {
+                    while (size == 0) {
+                        notEmpty.await();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                drain(batch, sb);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("[AsyncLogger] 輸出錯誤: " + e);
+            }
+        }
+    }
+
+    /**
+     * 輸出緩衝區中目前所有訊息（於日誌執行緒或關閉時呼叫）
+     */
+    private synchronized void drain(Event[] batch, StringBuilder sb) {
+        while (true) {
+            int count;
+            lock.lock();
+            try {
+                count = Math.min(size, batch.length);
+                for (int i = 0; i < count; i++) {
+                    Event slot = ring[head];
+                    batch[i].copyFrom(slot);
+                    slot.clear();
+                    head = (head + 1) % ring.length;
+                }
+                size -= count;
+            } finally {
+                lock.unlock();
+            }
+            if (count == 0) {
+                return;
+            }
+
+            sb.setLength(0);
+            for (int i = 0; i < count; i++) {
+                Event event = batch[i];
+                int start = sb.length();
+                sb.append('[').append(event.source).append("] ");
+                int messageStart = sb.length();
+                format(sb, event.template, event.arg1, event.arg2);
+                if (event.suppressed > 0) {
+                    sb.append("（已略過 ").append(event.suppressed).append(" 筆同類訊息）");
+                }
+                if (event.listener != null) {
+                    event.listener.accept(sb.substring(messageStart));
+                }
+                sb.append(System.lineSeparator());
+                if (event.level == Level.ERROR) {
+                    // 錯誤訊息另外輸出到 stderr
+                    System.err.print(sb.substring(start));
+                    sb.setLength(start);
+                }
+                event.clear();
+            }
+            System.out.print(sb);
+            System.out.flush();
+            writtenCount.addAndGet(count);
+        }
+    }
+
+    static void format(StringBuilder sb, String template, Object arg1, Object arg2) {
+        int from = 0;
+        int argIndex = 0;
+        int at;
+        while (argIndex < 2 && (at = template.indexOf("{}", from)) >= 0) {
+            sb.append(template, from, at).append(argIndex == 0 ? arg1 : arg2);
+            from = at + 2;
+            argIndex++;
+        }
+        sb.append(template, from, template.length());
+    }
+
+    /**
+     * 立即輸出緩衝區中的訊息（於呼叫端執行緒）
+     */
+    public void flush() {
+        Event[] batch = new Event[BATCH_SIZE];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new Event();
+        }
+        drain(batch, new StringBuilder(8192));
+    }
+
+    // Getters
+    public Level getLevel() {
+        return level;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    // Setters
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * 設置訊息類型的取樣：每 n 筆只輸出 1 筆
+     */
+    public void setSampling(String template, int everyN) {
+        if (everyN < 1) {
+            throw new IllegalArgumentException("everyN must be positive: " + everyN);
+        }
+        throttle(template).sampleEvery = everyN;
+    }
+
+    /**
+     * 設置訊息類型的每秒上限，0 表示不限制
+     */
+    public void setRateLimit(String template, int perSecond) {
+        throttle(template).ratePerSecond = Math.max(0, perSecond);
+    }
+
+    /**
+     * 設置尚未個別設定的訊息類型的每秒上限
+     */
+    public void setDefaultRateLimit(int perSecond) {
+        this.defaultRateLimit = Math.max(0, perSecond);
+    }
+}
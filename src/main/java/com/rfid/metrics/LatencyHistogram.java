@@ -0,0 +1,99 @@
+package com.rfid.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延遲直方圖
+ * 以 2 的次方微秒為桶界（<1µs、<2µs、<4µs…），記錄時不配置物件，
+ * 百分位數回傳所在桶的上界，誤差在 2 倍以內
+ */
+public class LatencyHistogram {
+
+    /** 桶數量，最後一桶涵蓋約 2^38 微秒（約 3 天）以上 */
+    static final int BUCKET_COUNT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * 記錄一次耗時
+     * @param nanos 耗時（奈秒），負值視為 0
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucketOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // 重試直到更新成功或已有更大的值
+        }
+    }
+
+    static int bucketOf(long micros) {
+        return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /** 桶上界（微秒，不含） */
+    static long bucketUpperMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * 取得百分位數（微秒）
+     * @param percentile 0~100
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperMicros(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n > 0 ? (double) sumMicros.sum() / n : 0;
+    }
+
+    /**
+     * 清除所有記錄
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sumMicros.reset();
+        maxMicros.set(0);
+    }
+}
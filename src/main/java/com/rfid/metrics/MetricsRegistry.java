@@ -0,0 +1,355 @@
+package com.rfid.metrics;
+
+import com.rfid.reader.TagInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 效能指標登錄
+ * 讀取路徑上只做 LongAdder 累加與直方圖記錄，不配置物件；
+ * 每秒由背景執行緒計算讀取速率，供狀態面板與本機抓取端點讀取
+ */
+public class MetricsRegistry {
+
+    /** 天線編號上限，超過時計入編號 0 */
+    public static final int MAX_ANTENNA_ID = 32;
+
+    /** 等待顯示或輸出的標籤數（數值量測名稱） */
+    public static final String TAG_BACKLOG = "rfid_tag_backlog";
+
+    /** 速率計算間隔（毫秒） */
+    static final long TICK_INTERVAL_MS = 1000;
+
+    private static final TagInfo.TagType[] TAG_TYPES = TagInfo.TagType.values();
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    /**
+     * 單一讀取頭的讀取計數
+     * 以 [標籤類型][天線] 儲存，未知類型使用最後一列
+     */
+    public static final class ReaderStats {
+        private final String readerName;
+        private final LongAdder[][] reads;
+        private final long[][] previous;
+        private final LongAdder partialFailures = new LongAdder();
+        private volatile double[][] rates;
+
+        ReaderStats(String readerName) {
+            this.readerName = readerName;
+            this.reads = new LongAdder[TAG_TYPES.length + 1][MAX_ANTENNA_ID + 1];
+            for (LongAdder[] row : reads) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = new LongAdder();
+                }
+            }
+            this.previous = new long[reads.length][MAX_ANTENNA_ID + 1];
+            this.rates = new double[reads.length][MAX_ANTENNA_ID + 1];
+        }
+
+        void record(TagInfo.TagType tagType, int antennaId, int result) {
+            int type = tagType != null ? tagType.ordinal() : TAG_TYPES.length;
+            int antenna = antennaId > 0 && antennaId <= MAX_ANTENNA_ID ? antennaId : 0;
+            reads[type][antenna].increment();
+            if (result != 0) {
+                partialFailures.increment();
+            }
+        }
+
+        void tick(double seconds) {
+            double[][] next = new double[reads.length][MAX_ANTENNA_ID + 1];
+            for (int t = 0; t < reads.length; t++) {
+                for (int a = 0; a <= MAX_ANTENNA_ID; a++) {
+                    long total = reads[t][a].sum();
+                    next[t][a] = (total - previous[t][a]) / seconds;
+                    previous[t][a] = total;
+                }
+            }
+            rates = next;
+        }
+
+        public String getReaderName() {
+            return readerName;
+        }
+
+        /** 標籤類型為 null 表示未知類型 */
+        public long getReads(TagInfo.TagType tagType, int antennaId) {
+            return reads[tagType != null ? tagType.ordinal() : TAG_TYPES.length][antennaId].sum();
+        }
+
+        public double getReadRate(TagInfo.TagType tagType, int antennaId) {
+            return rates[tagType != null ? tagType.ordinal() : TAG_TYPES.length][antennaId];
+        }
+
+        /** 單一天線所有標籤類型的讀取筆數 */
+        public long getReads(int antennaId) {
+            long total = 0;
+            for (LongAdder[] row : reads) {
+                total += row[antennaId].sum();
+            }
+            return total;
+        }
+
+        /** 單一天線所有標籤類型最近一秒的讀取速率 */
+        public double getReadRate(int antennaId) {
+            double total = 0;
+            for (double[] row : rates) {
+                total += row[antennaId];
+            }
+            return total;
+        }
+
+        public long getTotalReads() {
+            long total = 0;
+            for (LongAdder[] row : reads) {
+                for (LongAdder adder : row) {
+                    total += adder.sum();
+                }
+            }
+            return total;
+        }
+
+        /** 最近一秒的總讀取速率（筆/秒） */
+        public double getReadRate() {
+            double total = 0;
+            for (double[] row : rates) {
+                for (double rate : row) {
+                    total += rate;
+                }
+            }
+            return total;
+        }
+
+        public long getPartialFailures() {
+            return partialFailures.sum();
+        }
+    }
+
+    /** 數值量測（例如待處理標籤數） */
+    private static final class Gauge {
+        final String help;
+        final LongSupplier supplier;
+
+        Gauge(String help, LongSupplier supplier) {
+            this.help = help;
+            this.supplier = supplier;
+        }
+    }
+
+    private final Map<String, ReaderStats> readers = new ConcurrentSkipListMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final LatencyHistogram displayLatency = new LatencyHistogram();
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+    private final ScheduledExecutorService ticker;
+    private long lastTickNanos = System.nanoTime();
+
+    public MetricsRegistry() {
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_INTERVAL_MS, TICK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 取得程式共用的指標登錄
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 記錄一筆讀取（於讀取器回調執行緒呼叫）
+     * @param result 原廠回傳的結果碼，非 0 表示 TID/用戶數據讀取失敗
+     */
+    public void recordRead(String readerName, TagInfo.TagType tagType, int antennaId, int result) {
+        String name = readerName != null ? readerName : "";
+        ReaderStats stats = readers.get(name);
+        if (stats == null) {
+            stats = readers.computeIfAbsent(name, ReaderStats::new);
+        }
+        stats.record(tagType, antennaId, result);
+    }
+
+    /**
+     * 記錄從原廠回調到顯示（或輸出）的延遲
+     */
+    public void recordDisplayLatency(long nanos) {
+        displayLatency.record(nanos);
+    }
+
+    /**
+     * 記錄同步指令往返時間
+     */
+    public void recordCommandLatency(long nanos) {
+        commandLatency.record(nanos);
+    }
+
+    /**
+     * 登錄數值量測，同名時取代
+     */
+    public void registerGauge(String name, String help, LongSupplier supplier) {
+        gauges.put(name, new Gauge(help, supplier));
+    }
+
+    public void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * 取得數值量測目前的值，未登錄時回傳 -1
+     */
+    public long getGauge(String name) {
+        Gauge gauge = gauges.get(name);
+        return gauge != null ? gauge.supplier.getAsLong() : -1;
+    }
+
+    private synchronized void tick() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastTickNanos) / 1e9);
+        lastTickNanos = now;
+        for (ReaderStats stats : readers.values()) {
+            stats.tick(seconds);
+        }
+    }
+
+    /**
+     * 以 Prometheus 文字格式輸出所有指標
+     */
+    public String toPrometheusText() {
+        StringBuilder sb = new StringBuilder(4096);
+
+        sb.append("# HELP rfid_reads_total 標籤讀取筆數\n");
+        sb.append("# TYPE rfid_reads_total counter\n");
+        forEachSeries((stats, type, antenna) -> {
+            long reads = stats.reads[type][antenna].sum();
+            if (reads > 0) {
+                appendSeries(sb, "rfid_reads_total", stats, type, antenna).append(reads).append('\n');
+            }
+        });
+
+        sb.append("# HELP rfid_read_rate 最近一秒的讀取速率（筆/秒）\n");
+        sb.append("# TYPE rfid_read_rate gauge\n");
+        forEachSeries((stats, type, antenna) -> {
+            if (stats.reads[type][antenna].sum() > 0) {
+                appendSeries(sb, "rfid_read_rate", stats, type, antenna)
+                    .append(format(stats.rates[type][antenna])).append('\n');
+            }
+        });
+
+        sb.append("# HELP rfid_partial_failures_total 結果碼非 0 的讀取筆數\n");
+        sb.append("# TYPE rfid_partial_failures_total counter\n");
+        for (ReaderStats stats : readers.values()) {
+            sb.append("rfid_partial_failures_total{reader=\"").append(escape(stats.readerName)).append("\"} ")
+              .append(stats.getPartialFailures()).append('\n');
+        }
+
+        appendSummary(sb, "rfid_display_latency_seconds", "原廠回調到表格更新（或輸出）的延遲", displayLatency);
+        appendSummary(sb, "rfid_command_rtt_seconds", "同步指令往返時間", commandLatency);
+
+        List<String> names = new ArrayList<>(gauges.keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            Gauge gauge = gauges.get(name);
+            if (gauge == null) {
+                continue;
+            }
+            sb.append("# HELP ").append(name).append(' ').append(gauge.help).append('\n');
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            sb.append(name).append(' ').append(gauge.supplier.getAsLong()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private interface SeriesVisitor {
+        void visit(ReaderStats stats, int type, int antenna);
+    }
+
+    private void forEachSeries(SeriesVisitor visitor) {
+        for (ReaderStats stats : readers.values()) {
+            for (int type = 0; type < stats.reads.length; type++) {
+                for (int antenna = 0; antenna <= MAX_ANTENNA_ID; antenna++) {
+                    visitor.visit(stats, type, antenna);
+                }
+            }
+        }
+    }
+
+    private static StringBuilder appendSeries(StringBuilder sb, String metric, ReaderStats stats, int type, int antenna) {
+        return sb.append(metric)
+                 .append("{reader=\"").append(escape(stats.readerName))
+                 .append("\",antenna=\"").append(antenna)
+                 .append("\",protocol=\"").append(type < TAG_TYPES.length ? TAG_TYPES[type].name() : "UNKNOWN")
+                 .append("\"} ");
+    }
+
+    private static void appendSummary(StringBuilder sb, String name, String help, LatencyHistogram histogram) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        for (String quantile : new String[] {"0.5", "0.9", "0.99"}) {
+            sb.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+              .append(format(histogram.getPercentileMicros(Double.parseDouble(quantile) * 100) / 1e6)).append('\n');
+        }
+        sb.append(name).append("_sum ").append(format(histogram.getSumMicros() / 1e6)).append('\n');
+        sb.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Getters
+    /**
+     * 取得所有讀取頭的計數（依名稱排序）
+     */
+    public List<ReaderStats> getReaderStats() {
+        return new ArrayList<>(readers.values());
+    }
+
+    /**
+     * 取得單一讀取頭的計數，尚未有讀取時回傳 null
+     */
+    public ReaderStats getReaderStats(String readerName) {
+        return readers.get(readerName);
+    }
+
+    /** 所有讀取頭最近一秒的總讀取速率 */
+    public double getTotalReadRate() {
+        double total = 0;
+        for (ReaderStats stats : readers.values()) {
+            total += stats.getReadRate();
+        }
+        return total;
+    }
+
+    public long getTotalPartialFailures() {
+        long total = 0;
+        for (ReaderStats stats : readers.values()) {
+            total += stats.getPartialFailures();
+        }
+        return total;
+    }
+
+    public LatencyHistogram getDisplayLatency() {
+        return displayLatency;
+    }
+
+    public LatencyHistogram getCommandLatency() {
+        return commandLatency;
+    }
+}
@@ -0,0 +1,91 @@
+package com.rfid.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 本機指標抓取端點
+ * 只監聽 127.0.0.1，GET /metrics 回傳 Prometheus 文字格式
+ */
+public class MetricsServer {
+
+    /** 預設端口 */
+    public static final int DEFAULT_PORT = 9464;
+
+    private final MetricsRegistry registry;
+    private final int port;
+    private HttpServer server;
+
+    // 回調函數
+    private Consumer<String> onLogCallback;
+
+    public MetricsServer(MetricsRegistry registry, int port) {
+        this.registry = registry;
+        this.port = port;
+    }
+
+    /**
+     * 開始監聽
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        log("指標端點已啟動: http://127.0.0.1:" + getPort() + "/metrics");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 停止監聽
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            log("指標端點已停止");
+        }
+    }
+
+    private void log(String message) {
+        System.out.println("[MetricsServer] " + message);
+        if (onLogCallback != null) {
+            onLogCallback.accept(message);
+        }
+    }
+
+    // Getters
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    // Setters for callbacks
+    public void setOnLogCallback(Consumer<String> callback) {
+        this.onLogCallback = callback;
+    }
+}
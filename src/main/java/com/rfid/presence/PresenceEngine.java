@@ -0,0 +1,407 @@
+package com.rfid.presence;
+
+import com.rfid.reader.AntennaScheduler;
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagKey;
+import com.rfid.reader.TagRecord;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 區域在場引擎
+ * 接在 TagReader 的讀取串流之後，為每個標籤在每個區域維護一個狀態機：
+ * 第一次讀到發出 ENTER，持續在場時每個停留報告間隔發出 DWELL，
+ * 超過離場逾時沒有讀到發出 EXIT。下游只需處理狀態轉換而不是每筆讀取。
+ *
+ * 逾時由單一時間輪管理而非每個標籤一個計時器：讀取只更新最後讀取時間，
+ * 不重新排程；到期時才檢查最後讀取時間，仍在場則重新排程到新的到期時間。
+ *
+ * 時間以讀取記錄的時間為準（重播日誌時依日誌時間推進），沒有讀取時依系統時間推進。
+ * 所有狀態由同一個鎖保護，事件回調在持鎖時於讀取或計時執行緒呼叫，不可阻塞
+ */
+public class PresenceEngine {
+
+    /** 預設離場逾時（毫秒） */
+    public static final int DEFAULT_ABSENCE_MILLIS = 3000;
+
+    /** 預設停留報告間隔（毫秒），0 表示不發出 DWELL */
+    public static final int DEFAULT_DWELL_MILLIS = 10_000;
+
+    /** 時間輪刻度（毫秒），也是離場判斷的精度 */
+    public static final int TICK_MILLIS = 100;
+
+    private static final int WHEEL_SLOTS = 512;
+
+    /**
+     * 區域
+     */
+    private static final class Zone {
+        final String name;
+        final long absenceNanos;
+
+        Zone(String name, long absenceNanos) {
+            this.name = name;
+            this.absenceNanos = absenceNanos;
+        }
+    }
+
+    /** 不屬於任何區域的天線 */
+    private static final Zone NO_ZONE = new Zone("", 0);
+
+    /**
+     * 標籤在單一區域的狀態，同一標籤在不同區域的狀態以 nextInTag 串接
+     */
+    private static final class ZoneState extends TimerWheel.Entry {
+        final TagKey key;
+        final Zone zone;
+        final String tagId;
+        final TagInfo.TagType tagType;
+        ZoneState nextInTag;
+        String readerName;
+        int antennaId;
+        long enteredNanos;
+        long lastSeenNanos;
+        long nextDwellNanos;
+        int readCount;
+        int peakRssi;
+        int entryAntenna;          // 信號模型判斷的通過方向，0 表示無法判斷
+        int exitAntenna;
+
+        ZoneState(TagKey key, Zone zone, String tagId, TagInfo.TagType tagType) {
+            this.key = key;
+            this.zone = zone;
+            this.tagId = tagId;
+            this.tagType = tagType;
+        }
+    }
+
+    private final ZoneMap zoneMap;
+    private final long defaultAbsenceNanos;
+    private final long dwellNanos;
+
+    // 標籤鍵 -> 第一個區域狀態
+    private final Map<TagKey, ZoneState> states = new HashMap<>();
+    // 讀取頭名稱 -> 依天線編號的區域
+    private final Map<String, Zone[]> readerZones = new HashMap<>();
+    private final Map<String, Zone> zonesByName = new HashMap<>();
+    private final TagKey probe = new TagKey();
+    private TimerWheel<ZoneState> wheel;
+
+    // 引擎時間：最新的讀取時間加上之後經過的系統時間
+    private long watermarkNanos;
+    private long watermarkNanoTime;
+
+    private final Consumer<ZoneState> onExpired = this::onExpired;
+    private ScheduledExecutorService ticker;
+
+    // 統計資訊（於鎖內更新）
+    private volatile int presentCount;
+    private volatile long acceptedCount;
+    private volatile long ignoredCount;
+    private volatile long enterCount;
+    private volatile long dwellCount;
+    private volatile long exitCount;
+
+    // 回調函數
+    private volatile Consumer<PresenceEvent> onPresenceEventCallback;
+
+    public PresenceEngine() {
+        this(ZoneMap.perAntenna(), DEFAULT_ABSENCE_MILLIS, DEFAULT_DWELL_MILLIS);
+    }
+
+    /**
+     * @param zoneMap 區域設定
+     * @param absenceMillis 預設離場逾時（區域可另行設定）
+     * @param dwellMillis 停留報告間隔，0 表示不發出 DWELL
+     */
+    public PresenceEngine(ZoneMap zoneMap, int absenceMillis, int dwellMillis) {
+        if (absenceMillis <= 0) {
+            throw new IllegalArgumentException("absenceMillis must be positive: " + absenceMillis);
+        }
+        if (dwellMillis < 0) {
+            throw new IllegalArgumentException("dwellMillis must not be negative: " + dwellMillis);
+        }
+        this.zoneMap = zoneMap;
+        this.defaultAbsenceNanos = absenceMillis * 1_000_000L;
+        this.dwellNanos = dwellMillis * 1_000_000L;
+    }
+
+    /**
+     * 以固定刻度推進時間輪（於背景執行緒）
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "presence-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止推進（保留目前的在場狀態，不發出 EXIT）
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * 接收一筆讀取（不保留也不歸還記錄）
+     */
+    public void accept(TagRecord record) {
+        synchronized (states) {
+            Zone zone = resolveZone(record.getReaderName(), record.getAntennaId());
+            if (zone == null || !probe.set(record)) {
+                ignoredCount++;
+                return;
+            }
+            acceptedCount++;
+            long timestamp = record.getTimestampNanos();
+            observe(timestamp);
+
+            ZoneState head = states.get(probe);
+            ZoneState state = head;
+            while (state != null && state.zone != zone) {
+                state = state.nextInTag;
+            }
+            boolean entered = state == null;
+            if (entered) {
+                state = enter(head, zone, record, timestamp);
+            }
+            if (timestamp > state.lastSeenNanos) {
+                state.lastSeenNanos = timestamp;
+            }
+            state.readCount++;
+            if (record.getRssi() > state.peakRssi) {
+                state.peakRssi = record.getRssi();
+            }
+            state.readerName = record.getReaderName();
+            state.antennaId = record.getAntennaId();
+            if (record.getEntryAntenna() > 0 && record.getExitAntenna() > 0) {
+                state.entryAntenna = record.getEntryAntenna();
+                state.exitAntenna = record.getExitAntenna();
+            }
+            if (entered) {
+                emit(PresenceEvent.Type.ENTER, state, timestamp);
+            }
+        }
+    }
+
+    private ZoneState enter(ZoneState head, Zone zone, TagRecord record, long timestamp) {
+        String tagId = record.getEpcLength() > 0 ? record.getEpcHex() : record.getTidHex();
+        ZoneState state = new ZoneState(head != null ? head.key : probe.copy(), zone, tagId, record.getTagType());
+        state.enteredNanos = timestamp;
+        state.lastSeenNanos = timestamp;
+        state.nextDwellNanos = timestamp + dwellNanos;
+        state.peakRssi = record.getRssi();
+        if (head != null) {
+            state.nextInTag = head.nextInTag;
+            head.nextInTag = state;
+        } else {
+            states.put(state.key, state);
+        }
+        if (wheel == null) {
+            wheel = new TimerWheel<>(TICK_MILLIS * 1_000_000L, WHEEL_SLOTS, now());
+        }
+        wheel.schedule(state, nextDeadline(state));
+        presentCount++;
+        enterCount++;
+        return state;
+    }
+
+    /**
+     * 推進到目前時間，處理到期的狀態
+     */
+    public void tick() {
+        synchronized (states) {
+            if (wheel != null) {
+                wheel.advance(now(), onExpired);
+            }
+        }
+    }
+
+    /**
+     * 到期：超過離場逾時則離場，否則視需要發出 DWELL 並重新排程
+     */
+    private void onExpired(ZoneState state) {
+        long now = now();
+        if (now - state.lastSeenNanos >= state.zone.absenceNanos) {
+            remove(state);
+            presentCount--;
+            exitCount++;
+            emit(PresenceEvent.Type.EXIT, state, now);
+            return;
+        }
+        if (dwellNanos > 0 && now >= state.nextDwellNanos) {
+            dwellCount++;
+            emit(PresenceEvent.Type.DWELL, state, now);
+            state.nextDwellNanos = Math.max(state.nextDwellNanos + dwellNanos, now + 1);
+        }
+        wheel.schedule(state, nextDeadline(state));
+    }
+
+    private long nextDeadline(ZoneState state) {
+        long exit = state.lastSeenNanos + state.zone.absenceNanos;
+        return dwellNanos > 0 ? Math.min(exit, state.nextDwellNanos) : exit;
+    }
+
+    private void remove(ZoneState state) {
+        ZoneState head = states.get(state.key);
+        if (head == state) {
+            if (state.nextInTag != null) {
+                states.put(state.key, state.nextInTag);
+            } else {
+                states.remove(state.key);
+            }
+            return;
+        }
+        for (ZoneState s = head; s != null; s = s.nextInTag) {
+            if (s.nextInTag == state) {
+                s.nextInTag = state.nextInTag;
+                return;
+            }
+        }
+    }
+
+    private void emit(PresenceEvent.Type type, ZoneState state, long timestamp) {
+        Consumer<PresenceEvent> callback = onPresenceEventCallback;
+        if (callback != null) {
+            callback.accept(new PresenceEvent(type, state.zone.name, state.tagId, state.tagType,
+                state.readerName, state.antennaId, timestamp, state.enteredNanos, state.lastSeenNanos,
+                state.readCount, state.peakRssi, state.entryAntenna, state.exitAntenna));
+        }
+    }
+
+    /**
+     * 清除所有在場狀態（不發出 EXIT）
+     */
+    public void clear() {
+        synchronized (states) {
+            for (ZoneState head : states.values()) {
+                for (ZoneState s = head; s != null; s = s.nextInTag) {
+                    wheel.cancel(s);
+                }
+            }
+            states.clear();
+            presentCount = 0;
+        }
+    }
+
+    /**
+     * 找出讀取所屬的區域（依讀取頭快取）
+     * @return 區域，不屬於任何區域時回傳 null
+     */
+    private Zone resolveZone(String readerName, int antennaId) {
+        if (antennaId < 0 || antennaId > AntennaScheduler.MAX_ANTENNA_ID) {
+            return null;
+        }
+        String reader = readerName != null ? readerName : "";
+        Zone[] zones = readerZones.get(reader);
+        if (zones == null) {
+            zones = new Zone[AntennaScheduler.MAX_ANTENNA_ID + 1];
+            readerZones.put(reader, zones);
+        }
+        Zone zone = zones[antennaId];
+        if (zone == null) {
+            zone = createZone(reader, antennaId);
+            zones[antennaId] = zone;
+        }
+        return zone != NO_ZONE ? zone : null;
+    }
+
+    private Zone createZone(String reader, int antennaId) {
+        String name;
+        long absenceNanos = defaultAbsenceNanos;
+        if (zoneMap.isPerAntenna()) {
+            name = reader + "#" + antennaId;
+        } else {
+            ZoneMap.Rule rule = zoneMap.match(reader, antennaId);
+            if (rule == null) {
+                return NO_ZONE;
+            }
+            name = rule.zone;
+            if (rule.absenceMillis > 0) {
+                absenceNanos = rule.absenceMillis * 1_000_000L;
+            }
+        }
+        // 同名區域共用同一個狀態（以第一條規則的離場逾時為準）
+        Zone zone = zonesByName.get(name);
+        if (zone == null) {
+            zone = new Zone(name, absenceNanos);
+            zonesByName.put(name, zone);
+        }
+        return zone;
+    }
+
+    /**
+     * 以讀取時間推進引擎時間（只前進不後退）
+     */
+    private void observe(long timestampNanos) {
+        if (watermarkNanoTime == 0 || timestampNanos > now()) {
+            watermarkNanos = timestampNanos;
+            watermarkNanoTime = System.nanoTime();
+        }
+    }
+
+    private long now() {
+        if (watermarkNanoTime == 0) {
+            return TagRecord.nowEpochNanos();
+        }
+        return watermarkNanos + (System.nanoTime() - watermarkNanoTime);
+    }
+
+    // Getters
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
+    /**
+     * 目前在場的（標籤, 區域）數
+     */
+    public int getPresentCount() {
+        return presentCount;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /**
+     * 不屬於任何區域而略過的讀取數
+     */
+    public long getIgnoredCount() {
+        return ignoredCount;
+    }
+
+    public long getEnterCount() {
+        return enterCount;
+    }
+
+    public long getDwellCount() {
+        return dwellCount;
+    }
+
+    public long getExitCount() {
+        return exitCount;
+    }
+
+    public long getEventCount() {
+        return enterCount + dwellCount + exitCount;
+    }
+
+    // Setters for callbacks
+    public void setOnPresenceEventCallback(Consumer<PresenceEvent> callback) {
+        this.onPresenceEventCallback = callback;
+    }
+}
@@ -0,0 +1,135 @@
+package com.rfid.presence;
+
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagSignalModel;
+
+/**
+ * 標籤在場事件
+ *   ENTER - 標籤在區域內第一次讀到
+ *   DWELL - 標籤持續在區域內，每個停留報告間隔一次
+ *   EXIT  - 超過離場逾時沒有讀到
+ */
+public final class PresenceEvent {
+
+    /** 事件類型 */
+    public enum Type {
+        ENTER,
+        DWELL,
+        EXIT
+    }
+
+    private final Type type;
+    private final String zone;
+    private final String tagId;       // EPC，無 EPC 時為 TID
+    private final TagInfo.TagType tagType;
+    private final String readerName;
+    private final int antennaId;      // 最後讀到的天線
+    private final long timestampNanos; // 事件時間（epoch 奈秒）
+    private final long enteredNanos;
+    private final long lastSeenNanos;
+    private final int readCount;      // 進入後的讀取次數
+    private final int peakRssi;
+    private final int entryAntenna;   // 最先到達峰值的天線，0 表示無法判斷方向
+    private final int exitAntenna;    // 最後到達峰值的天線
+
+    PresenceEvent(Type type, String zone, String tagId, TagInfo.TagType tagType, String readerName,
+                  int antennaId, long timestampNanos, long enteredNanos, long lastSeenNanos,
+                  int readCount, int peakRssi, int entryAntenna, int exitAntenna) {
+        this.type = type;
+        this.zone = zone;
+        this.tagId = tagId;
+        this.tagType = tagType;
+        this.readerName = readerName;
+        this.antennaId = antennaId;
+        this.timestampNanos = timestampNanos;
+        this.enteredNanos = enteredNanos;
+        this.lastSeenNanos = lastSeenNanos;
+        this.readCount = readCount;
+        this.peakRssi = peakRssi;
+        this.entryAntenna = entryAntenna;
+        this.exitAntenna = exitAntenna;
+    }
+
+    /**
+     * 在區域內停留的時間（毫秒），離場時計算到最後一次讀取
+     */
+    public long getDwellMillis() {
+        long end = type == Type.EXIT ? lastSeenNanos : timestampNanos;
+        return Math.max(0, (end - enteredNanos) / 1_000_000L);
+    }
+
+    /**
+     * 通過區域內多支天線的方向，依各天線到達平滑 RSSI 峰值的先後判斷
+     */
+    public TagSignalModel.Direction getDirection() {
+        return TagSignalModel.Direction.of(entryAntenna, exitAntenna);
+    }
+
+    // Getters
+    public Type getType() {
+        return type;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public String getTagId() {
+        return tagId;
+    }
+
+    public TagInfo.TagType getTagType() {
+        return tagType;
+    }
+
+    public String getReaderName() {
+        return readerName;
+    }
+
+    public int getAntennaId() {
+        return antennaId;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public long getEnteredNanos() {
+        return enteredNanos;
+    }
+
+    public long getLastSeenNanos() {
+        return lastSeenNanos;
+    }
+
+    public int getReadCount() {
+        return readCount;
+    }
+
+    public int getPeakRssi() {
+        return peakRssi;
+    }
+
+    public int getEntryAntenna() {
+        return entryAntenna;
+    }
+
+    public int getExitAntenna() {
+        return exitAntenna;
+    }
+
+    @Override
+    public String toString() {
+        return "PresenceEvent{" +
+                "type=" + type +
+                ", zone='" + zone + '\'' +
+                ", tagId='" + tagId + '\'' +
+                ", reader='" + readerName + '\'' +
+                ", antenna=" + antennaId +
+                ", dwellMs=" + getDwellMillis() +
+                ", readCount=" + readCount +
+                ", peakRssi=" + peakRssi +
+                ", direction=" + getDirection() +
+                '}';
+    }
+}
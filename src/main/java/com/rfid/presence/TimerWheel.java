@@ -0,0 +1,133 @@
+package com.rfid.presence;
+
+import java.util.function.Consumer;
+
+/**
+ * 雜湊時間輪
+ * 以固定刻度將逾時項目放入環狀槽位，排程與取消為 O(1)，每個刻度只檢查一個槽位；
+ * 超過一圈的逾時以到期刻度比對，轉到時尚未到期的項目留在原槽位。
+ * 項目本身即為雙向鏈結串列節點，排程不配置物件。此類別非執行緒安全
+ */
+final class TimerWheel<T extends TimerWheel.Entry> {
+
+    /**
+     * 時間輪項目
+     */
+    static class Entry {
+        Entry prev;
+        Entry next;
+        long deadlineTick;
+        int slot = -1; // -1 表示未排程
+
+        boolean isScheduled() {
+            return slot >= 0;
+        }
+    }
+
+    private final long tickNanos;
+    private final Entry[] slots;
+    private final int mask;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickNanos 刻度（奈秒）
+     * @param slotCount 槽位數，取大於等於的 2 的次方
+     * @param startNanos 起始時間
+     */
+    TimerWheel(long tickNanos, int slotCount, long startNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos must be positive: " + tickNanos);
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, slotCount - 1)) << 1;
+        this.tickNanos = tickNanos;
+        this.slots = new Entry[capacity];
+        this.mask = capacity - 1;
+        this.currentTick = startNanos / tickNanos;
+    }
+
+    /**
+     * 排程（已排程時改為新的到期時間）；到期時間不早於下一個刻度
+     */
+    void schedule(T entry, long deadlineNanos) {
+        if (entry.isScheduled()) {
+            unlink(entry);
+        }
+        long tick = Math.max(currentTick + 1, (deadlineNanos + tickNanos - 1) / tickNanos);
+        int slot = (int) (tick & mask);
+        entry.deadlineTick = tick;
+        entry.slot = slot;
+        entry.prev = null;
+        entry.next = slots[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        slots[slot] = entry;
+        size++;
+    }
+
+    void cancel(T entry) {
+        if (entry.isScheduled()) {
+            unlink(entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            slots[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.slot = -1;
+        size--;
+    }
+
+    /**
+     * 推進到指定時間，依序移除並回調已到期的項目
+     * 回調中可重新排程該項目（到期時間至少為下一個刻度）
+     * @return 到期的項目數
+     */
+    @SuppressWarnings("unchecked")
+    int advance(long nowNanos, Consumer<T> onExpired) {
+        long target = nowNanos / tickNanos;
+        if (target <= currentTick) {
+            return 0;
+        }
+        // 超過一圈時每個槽位只需檢查一次
+        long from = currentTick + 1;
+        long steps = Math.min(target - currentTick, slots.length);
+        currentTick = target;
+
+        int expired = 0;
+        for (long i = 0; i < steps; i++) {
+            int slot = (int) ((from + i) & mask);
+            Entry entry = slots[slot];
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.deadlineTick <= target) {
+                    unlink(entry);
+                    expired++;
+                    onExpired.accept((T) entry);
+                }
+                entry = next;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * 已排程的項目數
+     */
+    int size() {
+        return size;
+    }
+
+    long getTickNanos() {
+        return tickNanos;
+    }
+}
@@ -0,0 +1,147 @@
+package com.rfid.presence;
+
+import com.rfid.reader.AntennaScheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 區域設定：將讀取頭天線對應到區域
+ * 格式為以分號分隔的「名稱=[讀取頭/]天線[@離場逾時毫秒]」，例如
+ * "dock=1,2;shelf=3-4@10000;gate=192.168.1.169:8160/1"。
+ * 未指定讀取頭時適用所有讀取頭，同名規則屬於同一個區域；
+ * 沒有任何規則時每個讀取頭的每支天線各為一個區域（名稱為「讀取頭#天線」），
+ * 有規則時不屬於任何區域的天線讀取會被略過
+ */
+public final class ZoneMap {
+
+    /**
+     * 區域規則
+     */
+    static final class Rule {
+        final String zone;
+        final String readerName;   // null 表示所有讀取頭
+        final long antennaMask;
+        final int absenceMillis;   // 0 表示使用引擎預設值
+
+        Rule(String zone, String readerName, long antennaMask, int absenceMillis) {
+            this.zone = zone;
+            this.readerName = readerName;
+            this.antennaMask = antennaMask;
+            this.absenceMillis = absenceMillis;
+        }
+
+        boolean matches(String reader, int antennaId) {
+            return (readerName == null || readerName.equals(reader))
+                && antennaId >= 1 && antennaId <= AntennaScheduler.MAX_ANTENNA_ID
+                && (antennaMask & (1L << (antennaId - 1))) != 0;
+        }
+    }
+
+    private static final ZoneMap PER_ANTENNA = new ZoneMap(Collections.<Rule>emptyList());
+
+    private final List<Rule> rules;
+
+    private ZoneMap(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * 每個讀取頭的每支天線各為一個區域
+     */
+    public static ZoneMap perAntenna() {
+        return PER_ANTENNA;
+    }
+
+    /**
+     * 解析區域設定，空字串表示每支天線各為一個區域
+     */
+    public static ZoneMap parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return PER_ANTENNA;
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (String part : spec.split(";")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int eq = part.indexOf('=');
+            if (eq <= 0 || eq == part.length() - 1) {
+                throw new IllegalArgumentException("區域設定格式錯誤（名稱=天線）: " + part);
+            }
+            String zone = part.substring(0, eq).trim();
+            String value = part.substring(eq + 1).trim();
+
+            int absence = 0;
+            int at = value.lastIndexOf('@');
+            if (at >= 0) {
+                try {
+                    absence = Integer.parseInt(value.substring(at + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("離場逾時格式錯誤: " + part);
+                }
+                if (absence <= 0) {
+                    throw new IllegalArgumentException("離場逾時必須大於 0: " + part);
+                }
+                value = value.substring(0, at).trim();
+            }
+
+            String reader = null;
+            int slash = value.lastIndexOf('/');
+            if (slash >= 0) {
+                reader = value.substring(0, slash).trim();
+                value = value.substring(slash + 1).trim();
+            }
+            long mask = AntennaScheduler.parseMask(value);
+            if (mask == 0) {
+                mask = -1L; // 全部天線
+            }
+            rules.add(new Rule(zone, reader, mask, absence));
+        }
+        return rules.isEmpty() ? PER_ANTENNA : new ZoneMap(Collections.unmodifiableList(rules));
+    }
+
+    /**
+     * 找出讀取所屬的區域規則
+     * @return 第一條符合的規則，沒有規則或不屬於任何區域時回傳 null
+     */
+    Rule match(String readerName, int antennaId) {
+        for (Rule rule : rules) {
+            if (rule.matches(readerName, antennaId)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 是否為每支天線各一個區域（沒有規則）
+     */
+    public boolean isPerAntenna() {
+        return rules.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        if (rules.isEmpty()) {
+            return "每支天線各一個區域";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Rule rule : rules) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(rule.zone).append('=');
+            if (rule.readerName != null) {
+                sb.append(rule.readerName).append('/');
+            }
+            sb.append(rule.antennaMask == -1L ? "all" : AntennaScheduler.describeMask(rule.antennaMask));
+            if (rule.absenceMillis > 0) {
+                sb.append('@').append(rule.absenceMillis);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,465 @@
+package com.rfid.push;
+
+import com.rfid.logging.AsyncLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 一個推送連線
+ * 連線執行緒負責交握與讀取（WebSocket 的 ping/close），另一條傳送執行緒從訂閱者佇列取出事件寫出，
+ * 跟不上的訂閱者只影響自己的佇列
+ *
+ * 傳輸方式由第一個訊息判斷：
+ *   WebSocket：HTTP GET 升級請求，訂閱參數放在網址查詢字串，事件為文字訊框
+ *   TCP：每個訊框為 4 位元組大端序長度加 UTF-8 內容，第一個訊框為訂閱查詢字串（可為空）
+ * 兩者的事件內容都是一筆 JSON
+ */
+final class PushSubscriber {
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final int MAX_REQUEST_BYTES = 4096;
+    private static final int MAX_CONTROL_PAYLOAD = 125;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final int SEND_BATCH = 256;
+
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+
+    private final TagPushServer server;
+    private final Socket socket;
+    private final String name;
+    private final Object writeLock = new Object();
+
+    private InputStream in;
+    private OutputStream out;
+    private boolean websocket;
+    private volatile Subscription subscription;
+    private volatile SubscriberQueue queue;
+    private volatile boolean closed;
+    private volatile long sentCount;
+
+    PushSubscriber(TagPushServer server, Socket socket, int id) {
+        this.server = server;
+        this.socket = socket;
+        this.name = "#" + id + " " + socket.getRemoteSocketAddress();
+    }
+
+    /**
+     * 連線執行緒：交握、註冊後持續讀取直到連線結束
+     */
+    void run() {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            if (!handshake()) {
+                return;
+            }
+            socket.setSoTimeout(0);
+
+            queue = new SubscriberQueue(subscription.getQueueSize(), subscription.getPolicy());
+            if (!server.register(this)) {
+                sendText("{\"error\":\"訂閱者已達上限\"}");
+                return;
+            }
+            sendText("{\"subscribed\":" + TagPushServer.quote(subscription.toString()) + "}");
+
+            Thread sender = new Thread(this::sendLoop, "push-send-" + name);
+            sender.setDaemon(true);
+            sender.start();
+
+            if (websocket) {
+                readFrames();
+            } else {
+                // TCP 訂閱後不再接收資料，讀到結尾即表示對方已關閉
+                while (in.read() >= 0) {
+                    // 忽略
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            server.log(AsyncLogger.Level.WARN, "訂閱者 {} 交握逾時", name, null);
+        } catch (IOException e) {
+            if (!closed) {
+                server.log(AsyncLogger.Level.WARN, "訂閱者 {} 連線錯誤: {}", name, e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 判斷傳輸方式並取得訂閱設定
+     * @return 是否成功
+     */
+    private boolean handshake() throws IOException {
+        in.mark(4);
+        byte[] head = new byte[4];
+        readFully(head, 4);
+        in.reset();
+        websocket = head[0] == 'G' && head[1] == 'E' && head[2] == 'T' && head[3] == ' ';
+        return websocket ? acceptWebSocket() : acceptTcp();
+    }
+
+    private boolean acceptTcp() throws IOException {
+        byte[] header = new byte[4];
+        readFully(header, 4);
+        int length = ((header[0] & 0xFF) << 24) | ((header[1] & 0xFF) << 16) | ((header[2] & 0xFF) << 8)
+            | (header[3] & 0xFF);
+        if (length < 0 || length > MAX_REQUEST_BYTES) {
+            sendText("{\"error\":\"訂閱訊框長度錯誤\"}");
+            return false;
+        }
+        byte[] request = new byte[length];
+        readFully(request, length);
+        try {
+            subscription = Subscription.parse(new String(request, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            sendText("{\"error\":" + TagPushServer.quote(e.getMessage()) + "}");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean acceptWebSocket() throws IOException {
+        String[] lines = readHttpHeader().split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        String key = null;
+        String upgrade = null;
+        String origin = null;
+        for (int i = 1; i < lines.length; i++) {
+            int separator = lines[i].indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            String header = lines[i].substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            String value = lines[i].substring(separator + 1).trim();
+            if ("sec-websocket-key".equals(header)) {
+                key = value;
+            } else if ("upgrade".equals(header)) {
+                upgrade = value;
+            } else if ("origin".equals(header)) {
+                origin = value;
+            }
+        }
+        if (requestLine.length < 3 || key == null || !"websocket".equalsIgnoreCase(upgrade)) {
+            sendHttpError("400 Bad Request", "需要 WebSocket 升級請求");
+            return false;
+        }
+        // 瀏覽器中任意網頁都能連到本機，只接受本機頁面或非瀏覽器的連線
+        if (origin != null && !isLocalOrigin(origin)) {
+            sendHttpError("403 Forbidden", "不接受來自 " + origin + " 的連線");
+            return false;
+        }
+
+        String target = requestLine[1];
+        int query = target.indexOf('?');
+        try {
+            subscription = Subscription.parse(query >= 0 ? target.substring(query + 1) : "");
+        } catch (IllegalArgumentException e) {
+            sendHttpError("400 Bad Request", e.getMessage());
+            return false;
+        }
+
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+        synchronized (writeLock) {
+            out.write(response.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+        return true;
+    }
+
+    private String readHttpHeader() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < MAX_HEADER_BYTES) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("請求標頭不完整");
+            }
+            sb.append((char) b);
+            int n = sb.length();
+            if (n >= 4 && sb.charAt(n - 4) == '\r' && sb.charAt(n - 3) == '\n'
+                    && sb.charAt(n - 2) == '\r' && sb.charAt(n - 1) == '\n') {
+                return sb.substring(0, n - 4);
+            }
+        }
+        throw new IOException("請求標頭過長");
+    }
+
+    private static boolean isLocalOrigin(String origin) {
+        if ("null".equals(origin)) {
+            return true; // 本機檔案
+        }
+        try {
+            String host = new URI(origin).getHost();
+            return "localhost".equalsIgnoreCase(host) || "127.0.0.1".equals(host) || "[::1]".equals(host);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void sendHttpError(String status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        String header = "HTTP/1.1 " + status + "\r\n"
+            + "Content-Type: text/plain; charset=utf-8\r\n"
+            + "Content-Length: " + body.length + "\r\n"
+            + "Connection: close\r\n\r\n";
+        synchronized (writeLock) {
+            out.write(header.getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+        }
+    }
+
+    /**
+     * 讀取用戶端的 WebSocket 訊框，回應 ping 與 close，其餘忽略
+     */
+    private void readFrames() throws IOException {
+        byte[] payload = new byte[MAX_CONTROL_PAYLOAD];
+        while (!closed) {
+            int b0 = in.read();
+            if (b0 < 0) {
+                return;
+            }
+            int b1 = readByte();
+            int opcode = b0 & 0x0F;
+            long length = b1 & 0x7F;
+            if (length == 126) {
+                length = (readByte() << 8) | readByte();
+            } else if (length == 127) {
+                length = 0;
+                for (int i = 0; i < 8; i++) {
+                    length = (length << 8) | readByte();
+                }
+            }
+            byte[] mask = new byte[4];
+            boolean masked = (b1 & 0x80) != 0;
+            if (masked) {
+                readFully(mask, 4);
+            }
+            if (opcode >= OPCODE_CLOSE) {
+                if (length > MAX_CONTROL_PAYLOAD) {
+                    throw new IOException("控制訊框過長");
+                }
+                readFully(payload, (int) length);
+                if (masked) {
+                    for (int i = 0; i < length; i++) {
+                        payload[i] ^= mask[i & 3];
+                    }
+                }
+                if (opcode == OPCODE_CLOSE) {
+                    writeFrame(OPCODE_CLOSE, payload, 0, (int) Math.min(length, 2));
+                    flush();
+                    return;
+                }
+                if (opcode == OPCODE_PING) {
+                    writeFrame(OPCODE_PONG, payload, 0, (int) length);
+                    flush();
+                }
+            } else {
+                // 資料訊框不使用，直接略過
+                skipFully(length);
+            }
+        }
+    }
+
+    /**
+     * 傳送執行緒：批次取出事件並寫出，寫入失敗時關閉連線
+     */
+    private void sendLoop() {
+        List<byte[]> batch = new ArrayList<>(SEND_BATCH);
+        try {
+            while (!closed) {
+                batch.clear();
+                int count = queue.drainTo(batch, SEND_BATCH, 1000);
+                if (count < 0) {
+                    return;
+                }
+                if (count == 0) {
+                    continue;
+                }
+                synchronized (writeLock) {
+                    for (byte[] event : batch) {
+                        writeEvent(event);
+                    }
+                    out.flush();
+                }
+                sentCount += count;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!closed) {
+                server.log(AsyncLogger.Level.WARN, "訂閱者 {} 傳送失敗: {}", name, e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void sendText(String text) throws IOException {
+        synchronized (writeLock) {
+            writeEvent(text.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private void writeEvent(byte[] event) throws IOException {
+        if (websocket) {
+            writeFrame(OPCODE_TEXT, event, 0, event.length);
+        } else {
+            int length = event.length;
+            out.write(length >>> 24);
+            out.write(length >>> 16);
+            out.write(length >>> 8);
+            out.write(length);
+            out.write(event);
+        }
+    }
+
+    /**
+     * 寫出一個伺服器端 WebSocket 訊框（不遮罩）
+     */
+    private void writeFrame(int opcode, byte[] payload, int offset, int length) throws IOException {
+        synchronized (writeLock) {
+            out.write(0x80 | opcode);
+            if (length < 126) {
+                out.write(length);
+            } else if (length <= 0xFFFF) {
+                out.write(126);
+                out.write(length >>> 8);
+                out.write(length);
+            } else {
+                out.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) ((long) length >>> shift));
+                }
+            }
+            out.write(payload, offset, length);
+        }
+    }
+
+    private void flush() throws IOException {
+        synchronized (writeLock) {
+            out.flush();
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private void readFully(byte[] dest, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int n = in.read(dest, offset, length - offset);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            offset += n;
+        }
+    }
+
+    private void skipFully(long length) throws IOException {
+        while (length > 0) {
+            long n = in.skip(length);
+            if (n <= 0) {
+                readByte();
+                n = 1;
+            }
+            length -= n;
+        }
+    }
+
+    /**
+     * 佇列已滿且策略為 DISCONNECT 時由分派執行緒呼叫
+     */
+    void disconnectSlow() {
+        if (!closed) {
+            server.log(AsyncLogger.Level.WARN, "訂閱者 {} 跟不上（佇列 {} 筆已滿），中斷連線", name, subscription.getQueueSize());
+            close();
+        }
+    }
+
+    /**
+     * 關閉連線並從伺服器移除
+     */
+    void close() {
+        synchronized (socket) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        SubscriberQueue current = queue;
+        if (current != null) {
+            current.close();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // 已關閉
+        }
+        if (server.unregister(this)) {
+            server.log(AsyncLogger.Level.INFO, "訂閱者 {} 已離線，傳送 {} 筆", name, sentCount
+                + (current != null && current.getDroppedCount() > 0 ? "，丟棄 " + current.getDroppedCount() + " 筆" : "")
+                + (current != null && current.getCoalescedCount() > 0 ? "，合併 " + current.getCoalescedCount() + " 筆" : ""));
+        }
+    }
+
+    // Getters
+    String getName() {
+        return name;
+    }
+
+    boolean isWebSocket() {
+        return websocket;
+    }
+
+    Subscription getSubscription() {
+        return subscription;
+    }
+
+    SubscriberQueue getQueue() {
+        return queue;
+    }
+
+    long getSentCount() {
+        return sentCount;
+    }
+}
@@ -0,0 +1,133 @@
+package com.rfid.push;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 單一訂閱者的有界事件佇列
+ * 由分派執行緒放入、該訂閱者的傳送執行緒取出；佇列已滿時依背壓策略處理，放入永不阻塞
+ */
+final class SubscriberQueue {
+
+    private final int capacity;
+    private final Subscription.BackpressurePolicy policy;
+
+    // COALESCE 使用以標籤鍵索引的插入順序表，其他策略使用一般佇列
+    private final ArrayDeque<byte[]> queue;
+    private final LinkedHashMap<String, byte[]> latest;
+
+    private boolean closed;
+
+    // 統計資訊（受 this 保護）
+    private long droppedCount;
+    private long coalescedCount;
+
+    SubscriberQueue(int capacity, Subscription.BackpressurePolicy policy) {
+        this.capacity = capacity;
+        this.policy = policy;
+        if (policy == Subscription.BackpressurePolicy.COALESCE) {
+            this.queue = null;
+            this.latest = new LinkedHashMap<>(Math.min(capacity, 1024) * 2);
+        } else {
+            this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+            this.latest = null;
+        }
+    }
+
+    /**
+     * 放入一筆事件
+     * @param key 標籤鍵（COALESCE 用）
+     * @return false 表示佇列已滿且策略為 DISCONNECT，呼叫端應中斷訂閱者
+     */
+    synchronized boolean offer(String key, byte[] payload) {
+        if (closed) {
+            return true;
+        }
+        boolean wasEmpty = size() == 0;
+        if (latest != null) {
+            if (latest.containsKey(key)) {
+                // 取代值不改變排隊位置
+                latest.put(key, payload);
+                coalescedCount++;
+                return true;
+            }
+            if (latest.size() >= capacity) {
+                Iterator<byte[]> eldest = latest.values().iterator();
+                eldest.next();
+                eldest.remove();
+                droppedCount++;
+            }
+            latest.put(key, payload);
+        } else {
+            if (queue.size() >= capacity) {
+                if (policy == Subscription.BackpressurePolicy.DISCONNECT) {
+                    return false;
+                }
+                queue.poll();
+                droppedCount++;
+            }
+            queue.offer(payload);
+        }
+        if (wasEmpty) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * 等待並取出目前所有事件（最多 max 筆）
+     * @return 取出的筆數，佇列已關閉時為 -1
+     */
+    synchronized int drainTo(List<byte[]> into, int max, long timeoutMillis) throws InterruptedException {
+        if (size() == 0 && !closed) {
+            wait(timeoutMillis);
+        }
+        if (closed) {
+            return -1;
+        }
+        int count = 0;
+        if (latest != null) {
+            Iterator<byte[]> it = latest.values().iterator();
+            while (count < max && it.hasNext()) {
+                into.add(it.next());
+                it.remove();
+                count++;
+            }
+        } else {
+            byte[] payload;
+            while (count < max && (payload = queue.poll()) != null) {
+                into.add(payload);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 關閉佇列並喚醒等待中的傳送執行緒
+     */
+    synchronized void close() {
+        closed = true;
+        if (queue != null) {
+            queue.clear();
+        } else {
+            latest.clear();
+        }
+        notifyAll();
+    }
+
+    // Getters
+    synchronized int size() {
+        return latest != null ? latest.size() : queue.size();
+    }
+
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+}
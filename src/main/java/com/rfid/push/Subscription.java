@@ -0,0 +1,192 @@
+package com.rfid.push;
+
+import com.rfid.reader.AntennaScheduler;
+import com.rfid.reader.EpcFilter;
+import com.rfid.reader.TagRecord;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+
+/**
+ * 訂閱設定：過濾條件、佇列大小與背壓策略
+ * 以查詢字串表示，WebSocket 放在網址（如 /tags?filter=E280&amp;policy=coalesce），
+ * TCP 為連線後的第一個訊框，例如 "filter=sgtin:0614141&amp;antennas=1-2&amp;queue=5000&amp;policy=disconnect"
+ */
+public final class Subscription {
+
+    /** 預設佇列大小 */
+    public static final int DEFAULT_QUEUE_SIZE = 10_000;
+    /** 佇列大小上限 */
+    public static final int MAX_QUEUE_SIZE = 1_000_000;
+
+    /**
+     * 訂閱者佇列已滿時的處理方式
+     */
+    public enum BackpressurePolicy {
+        /** 丟棄最舊的事件 */
+        DROP_OLDEST,
+        /** 同一標籤只保留最新一筆（保留原本的排隊位置），新標籤才丟棄最舊的事件 */
+        COALESCE,
+        /** 中斷跟不上的訂閱者 */
+        DISCONNECT
+    }
+
+    private static final Subscription ALL = new Subscription(null, 0, null, DEFAULT_QUEUE_SIZE,
+        BackpressurePolicy.DROP_OLDEST);
+
+    private final EpcFilter epcFilter;  // null 表示不過濾
+    private final long antennaMask;     // 0 表示所有天線
+    private final String readerName;    // null 表示所有讀取頭
+    private final int queueSize;
+    private final BackpressurePolicy policy;
+
+    private Subscription(EpcFilter epcFilter, long antennaMask, String readerName, int queueSize,
+                         BackpressurePolicy policy) {
+        this.epcFilter = epcFilter;
+        this.antennaMask = antennaMask;
+        this.readerName = readerName;
+        this.queueSize = queueSize;
+        this.policy = policy;
+    }
+
+    /**
+     * 不過濾、預設佇列與策略
+     */
+    public static Subscription all() {
+        return ALL;
+    }
+
+    /**
+     * 解析查詢字串（可含開頭的 ?），空字串表示 all()
+     * 參數：filter（EPC 過濾規則，格式同 EpcFilter.parse）、antennas（天線編號或範圍）、
+     * reader（讀取頭名稱）、queue（佇列大小）、policy（drop-oldest | coalesce | disconnect）
+     * @throws IllegalArgumentException 參數格式錯誤
+     */
+    public static Subscription parse(String query) {
+        String value = query != null ? query.trim() : "";
+        if (value.startsWith("?")) {
+            value = value.substring(1);
+        }
+        if (value.isEmpty()) {
+            return ALL;
+        }
+
+        EpcFilter epcFilter = null;
+        long antennaMask = 0;
+        String readerName = null;
+        int queueSize = DEFAULT_QUEUE_SIZE;
+        BackpressurePolicy policy = BackpressurePolicy.DROP_OLDEST;
+        for (String pair : value.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String name = decode(separator >= 0 ? pair.substring(0, separator) : pair).trim();
+            String argument = separator >= 0 ? decode(pair.substring(separator + 1)).trim() : "";
+            switch (name) {
+                case "filter":
+                    epcFilter = argument.isEmpty() ? null : EpcFilter.parse(argument);
+                    break;
+                case "antennas":
+                    antennaMask = AntennaScheduler.parseMask(argument);
+                    break;
+                case "reader":
+                    readerName = argument.isEmpty() ? null : argument;
+                    break;
+                case "queue":
+                    queueSize = parseQueueSize(argument);
+                    break;
+                case "policy":
+                    policy = parsePolicy(argument);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的訂閱參數: " + name);
+            }
+        }
+        return new Subscription(epcFilter, antennaMask, readerName, queueSize, policy);
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int parseQueueSize(String value) {
+        int size;
+        try {
+            size = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("queue 必須是整數: " + value);
+        }
+        if (size <= 0 || size > MAX_QUEUE_SIZE) {
+            throw new IllegalArgumentException("queue 必須介於 1 與 " + MAX_QUEUE_SIZE + ": " + value);
+        }
+        return size;
+    }
+
+    private static BackpressurePolicy parsePolicy(String value) {
+        switch (value.toLowerCase()) {
+            case "drop-oldest":
+            case "drop":
+                return BackpressurePolicy.DROP_OLDEST;
+            case "coalesce":
+                return BackpressurePolicy.COALESCE;
+            case "disconnect":
+                return BackpressurePolicy.DISCONNECT;
+            default:
+                throw new IllegalArgumentException("policy 應為 drop-oldest、coalesce 或 disconnect: " + value);
+        }
+    }
+
+    /**
+     * 記錄是否符合此訂閱
+     */
+    public boolean matches(TagRecord record) {
+        if (readerName != null && !readerName.equals(record.getReaderName())) {
+            return false;
+        }
+        if (antennaMask != 0) {
+            int antennaId = record.getAntennaId();
+            if (antennaId < 1 || antennaId > AntennaScheduler.MAX_ANTENNA_ID
+                    || (antennaMask & (1L << (antennaId - 1))) == 0) {
+                return false;
+            }
+        }
+        return epcFilter == null || epcFilter.matches(record);
+    }
+
+    // Getters
+    public EpcFilter getEpcFilter() {
+        return epcFilter;
+    }
+
+    public long getAntennaMask() {
+        return antennaMask;
+    }
+
+    public String getReaderName() {
+        return readerName;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return "Subscription{" +
+                "filter=" + (epcFilter != null ? epcFilter : "全部") +
+                ", antennas=" + (antennaMask != 0 ? "0x" + Long.toHexString(antennaMask) : "全部") +
+                ", reader=" + (readerName != null ? readerName : "全部") +
+                ", queue=" + queueSize +
+                ", policy=" + policy +
+                '}';
+    }
+}
@@ -0,0 +1,355 @@
+package com.rfid.push;
+
+import com.rfid.logging.AsyncLogger;
+import com.rfid.reader.TagRecord;
+import com.rfid.reader.TagRecordPool;
+import com.rfid.reader.TagSignalModel;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 本機標籤推送伺服器
+ * 只監聽 127.0.0.1，同一個端口同時接受 WebSocket 與長度前綴 TCP 連線（見 PushSubscriber），
+ * 每個訂閱者以查詢字串指定過濾條件、佇列大小與背壓策略（見 Subscription）
+ *
+ * publish() 於讀取回調執行緒呼叫，只把記錄複製到池化記錄並放入有界的入口佇列，不會阻塞；
+ * 分派執行緒將每筆記錄編碼為 JSON 一次，再放入各個符合的訂閱者佇列，
+ * 由各訂閱者自己的傳送執行緒寫出，慢的訂閱者不影響讀取與其他訂閱者
+ */
+public class TagPushServer {
+
+    /** 預設端口 */
+    public static final int DEFAULT_PORT = 9465;
+    /** 最多同時連線的訂閱者 */
+    public static final int MAX_SUBSCRIBERS = 64;
+    /** 入口佇列大小，分派執行緒跟不上時丟棄新的記錄 */
+    static final int INBOUND_CAPACITY = 8192;
+
+    private static final AsyncLogger LOGGER = AsyncLogger.getDefault();
+
+    private static final int DISPATCH_BATCH = 512;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final int port;
+    private final TagRecordPool recordPool = new TagRecordPool(INBOUND_CAPACITY);
+    private final ArrayBlockingQueue<TagRecord> inbound = new ArrayBlockingQueue<>(INBOUND_CAPACITY);
+    private final CopyOnWriteArrayList<PushSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private Thread dispatchThread;
+    private volatile boolean running;
+
+    // 統計資訊
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong inboundDroppedCount = new AtomicLong();
+    private final AtomicLong disconnectedSlowCount = new AtomicLong();
+
+    // 回調函數
+    private Consumer<String> onLogCallback;
+
+    public TagPushServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * 開始監聽
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        running = true;
+
+        dispatchThread = new Thread(this::dispatchLoop, "push-dispatch");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+        acceptThread = new Thread(this::acceptLoop, "push-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log(AsyncLogger.Level.INFO, "推送端點已啟動: ws://127.0.0.1:{}/tags 與 tcp://127.0.0.1:{}", getPort(), getPort());
+    }
+
+    /**
+     * 停止監聽並中斷所有訂閱者
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // 已關閉
+        }
+        dispatchThread.interrupt();
+        for (PushSubscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        TagRecord record;
+        while ((record = inbound.poll()) != null) {
+            record.release();
+        }
+        log("推送端點已停止");
+    }
+
+    /**
+     * 發布一筆讀取（於讀取回調執行緒呼叫，不阻塞，呼叫端保有記錄）
+     */
+    public void publish(TagRecord record) {
+        if (!running || subscribers.isEmpty()) {
+            return;
+        }
+        TagRecord copy = recordPool.acquire();
+        copy.copyFrom(record);
+        if (inbound.offer(copy)) {
+            publishedCount.incrementAndGet();
+        } else {
+            copy.release();
+            inboundDroppedCount.incrementAndGet();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                return; // stop() 關閉了監聽
+            } catch (IOException e) {
+                log(AsyncLogger.Level.WARN, "接受連線錯誤: {}", e.getMessage(), null);
+                continue;
+            }
+            int id = nextId.getAndIncrement();
+            PushSubscriber subscriber = new PushSubscriber(this, socket, id);
+            Thread thread = new Thread(subscriber::run, "push-client-" + id);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * 分派執行緒：每筆記錄編碼一次，放入符合的訂閱者佇列
+     */
+    private void dispatchLoop() {
+        List<TagRecord> batch = new ArrayList<>(DISPATCH_BATCH);
+        StringBuilder sb = new StringBuilder(256);
+        while (running) {
+            try {
+                TagRecord first = inbound.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                inbound.drainTo(batch, DISPATCH_BATCH - 1);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                TagRecord record = batch.get(i);
+                try {
+                    dispatch(record, sb);
+                } finally {
+                    record.release();
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void dispatch(TagRecord record, StringBuilder sb) {
+        String epc = null;
+        String key = null;
+        byte[] payload = null;
+        for (PushSubscriber subscriber : subscribers) {
+            if (!subscriber.getSubscription().matches(record)) {
+                continue;
+            }
+            if (payload == null) {
+                epc = record.getEpcLength() > 0 ? hex(record.getEpcBytes(), record.getEpcLength()) : null;
+                String tid = record.getTidLength() > 0 ? hex(record.getTidBytes(), record.getTidLength()) : null;
+                key = epc != null ? epc : "TID:" + tid;
+                payload = encode(record, epc, tid, sb);
+            }
+            if (!subscriber.getQueue().offer(key, payload)) {
+                disconnectedSlowCount.incrementAndGet();
+                subscriber.disconnectSlow();
+            }
+        }
+    }
+
+    /**
+     * 將記錄編碼為一筆 JSON，例如
+     * {"time":1700000000123,"reader":"192.168.1.169:8160","type":"EPC_6C","epc":"E200...","rssi":70,"antenna":1}
+     */
+    static byte[] encode(TagRecord record, String epc, String tid, StringBuilder sb) {
+        sb.setLength(0);
+        sb.append("{\"time\":").append(record.getTimestampNanos() / 1_000_000L);
+        if (record.getReaderName() != null) {
+            sb.append(",\"reader\":");
+            appendQuoted(sb, record.getReaderName());
+        }
+        if (record.getTagType() != null) {
+            sb.append(",\"type\":\"").append(record.getTagType().name()).append('"');
+        }
+        if (epc != null) {
+            sb.append(",\"epc\":\"").append(epc).append('"');
+        }
+        if (tid != null) {
+            sb.append(",\"tid\":\"").append(tid).append('"');
+        }
+        if (record.getUserDataLength() > 0) {
+            sb.append(",\"userData\":\"").append(hex(record.getUserDataBytes(), record.getUserDataLength())).append('"');
+        }
+        sb.append(",\"rssi\":").append(record.getRssi());
+        sb.append(",\"antenna\":").append(record.getAntennaId());
+        if (record.getSmoothedRssi() != 0) {
+            sb.append(",\"smoothedRssi\":").append(record.getSmoothedRssi());
+        }
+        TagSignalModel.Direction direction = TagSignalModel.Direction.of(record.getEntryAntenna(), record.getExitAntenna());
+        if (direction != TagSignalModel.Direction.UNKNOWN) {
+            sb.append(",\"direction\":\"").append(direction.name()).append('"');
+        }
+        sb.append('}');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String hex(byte[] bytes, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = bytes[i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[b >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * JSON 字串（含引號）
+     */
+    static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        appendQuoted(sb, value);
+        return sb.toString();
+    }
+
+    private static void appendQuoted(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * 加入訂閱者
+     * @return false 表示已達上限或伺服器已停止
+     */
+    boolean register(PushSubscriber subscriber) {
+        synchronized (subscribers) {
+            if (!running || subscribers.size() >= MAX_SUBSCRIBERS) {
+                return false;
+            }
+            subscribers.add(subscriber);
+        }
+        log(AsyncLogger.Level.INFO, "訂閱者 {} 已連線: {}", subscriber.getName(),
+            (subscriber.isWebSocket() ? "WebSocket " : "TCP ") + subscriber.getSubscription());
+        return true;
+    }
+
+    /**
+     * 移除訂閱者
+     * @return 是否曾經註冊
+     */
+    boolean unregister(PushSubscriber subscriber) {
+        return subscribers.remove(subscriber);
+    }
+
+    private void log(String message) {
+        log(AsyncLogger.Level.INFO, message, null, null);
+    }
+
+    /**
+     * 非同步記錄，樣板中的 "{}" 依序替換為參數（訂閱者也經由此記錄）
+     */
+    void log(AsyncLogger.Level level, String template, Object arg1, Object arg2) {
+        LOGGER.log(level, "TagPushServer", template, arg1, arg2, onLogCallback);
+    }
+
+    // Getters
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        return socket != null && socket.isBound() ? socket.getLocalPort() : port;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 進入分派佇列的讀取數（沒有訂閱者時不計）
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * 分派執行緒跟不上而丟棄的讀取數
+     */
+    public long getInboundDroppedCount() {
+        return inboundDroppedCount.get();
+    }
+
+    /**
+     * 因佇列已滿（DISCONNECT 策略）而中斷的訂閱者數
+     */
+    public long getDisconnectedSlowCount() {
+        return disconnectedSlowCount.get();
+    }
+
+    /**
+     * 目前所有訂閱者佇列中丟棄的事件總數
+     */
+    public long getSubscriberDroppedCount() {
+        long total = 0;
+        for (PushSubscriber subscriber : subscribers) {
+            total += subscriber.getQueue().getDroppedCount();
+        }
+        return total;
+    }
+
+    // Setters for callbacks
+    public void setOnLogCallback(Consumer<String> callback) {
+        this.onLogCallback = callback;
+    }
+}
@@ -0,0 +1,256 @@
+package com.rfid.reader;
+
+import com.gg.reader.api.protocol.gx.EnumG;
+import com.rfid.connection.DeviceInfo;
+import com.rfid.connection.ReaderConnection;
+import com.rfid.logging.AsyncLogger;
+import com.rfid.metrics.MetricsRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 天線排程
+ * 依設定與讀取頭回報的天線數量產生盤存用的天線遮罩，並設置天線切換方式：
+ *   ROUND_ROBIN - 每輪盤存後即切換到下一支天線（駐留時間 0）
+ *   DWELL       - 每支天線連續盤存指定毫秒後才切換（MsgBaseSetResidenceTime）
+ * 切換由讀取頭執行，不需在盤存中重新下指令
+ */
+public class AntennaScheduler {
+
+    /** 天線切換方式 */
+    public enum Mode {
+        ROUND_ROBIN,
+        DWELL
+    }
+
+    /** 預設駐留時間（毫秒） */
+    public static final int DEFAULT_DWELL_MILLIS = 200;
+
+    /** 駐留時間上限（協議欄位為 16 位元） */
+    public static final int MAX_DWELL_MILLIS = 0xFFFF;
+
+    /** 天線編號上限 */
+    public static final int MAX_ANTENNA_ID = 32;
+
+    /** 剛連接時等待設備資訊（天線數量）的時間（毫秒） */
+    private static final long DEVICE_INFO_TIMEOUT_MS = 3000;
+
+    private static final AsyncLogger LOGGER = AsyncLogger.getDefault();
+
+    private final ReaderConnection connection;
+
+    private volatile long configuredMask; // 0 表示使用所有天線
+    private volatile Mode mode = Mode.ROUND_ROBIN;
+    private volatile int dwellMillis = DEFAULT_DWELL_MILLIS;
+    private volatile boolean applied;
+
+    // 回調函數
+    private Consumer<String> onLogCallback;
+
+    public AntennaScheduler(ReaderConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * 解析天線設定
+     * 支援「全部」/all（回傳 0）、以逗號分隔的天線編號或範圍（如 1,2,5-8）、十六進位遮罩（如 0x0F）
+     */
+    public static long parseMask(String value) {
+        value = value.trim();
+        if (value.isEmpty() || "全部".equals(value) || "all".equalsIgnoreCase(value)) {
+            return 0;
+        }
+        try {
+            if (value.startsWith("0x") || value.startsWith("0X")) {
+                return Long.parseLong(value.substring(2), 16);
+            }
+            long mask = 0;
+            for (String part : value.split(",")) {
+                String[] range = part.trim().split("-");
+                int from = Integer.parseInt(range[0].trim());
+                int to = range.length > 1 ? Integer.parseInt(range[1].trim()) : from;
+                if (range.length > 2 || from < 1 || to > MAX_ANTENNA_ID || from > to) {
+                    throw new IllegalArgumentException("天線編號超出範圍 (1~" + MAX_ANTENNA_ID + "): " + part.trim());
+                }
+                for (int antenna = from; antenna <= to; antenna++) {
+                    mask |= 1L << (antenna - 1);
+                }
+            }
+            return mask;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("天線設定格式錯誤: " + value);
+        }
+    }
+
+    /**
+     * 將遮罩轉為天線編號列表（如 "1,2,4"）
+     */
+    public static String describeMask(long mask) {
+        StringBuilder sb = new StringBuilder();
+        for (int antenna = 1; antenna <= MAX_ANTENNA_ID; antenna++) {
+            if ((mask & (1L << (antenna - 1))) != 0) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(antenna);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 依設定與讀取頭天線數量產生天線遮罩
+     * 無法取得設備資訊時使用設定值（未設定則為天線 1）
+     * @return 天線遮罩，設定的天線都不存在時回傳 0
+     */
+    public long buildMask() {
+        DeviceInfo info = connection.getDeviceInfo();
+        if (info == null && connection.isConnected()) {
+            // 剛連接時設備資訊仍在背景查詢，等待結果以取得天線數量
+            try {
+                info = connection.refreshDeviceInfo().get(DEVICE_INFO_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                log(AsyncLogger.Level.WARN, "取得天線數量失敗，使用設定的天線", null, null);
+            }
+        }
+        int antennaCount = info != null ? Math.min(info.getAntennaCount(), MAX_ANTENNA_ID) : 0;
+        long available = antennaCount > 0 ? (1L << antennaCount) - 1 : 0;
+
+        long mask = configuredMask;
+        if (mask == 0) {
+            return antennaCount > 0 ? available : EnumG.AntennaNo_1;
+        }
+        if (antennaCount > 0 && (mask & ~available) != 0) {
+            log(AsyncLogger.Level.WARN, "讀取頭只有 {} 支天線，略過天線 {}", antennaCount,
+                describeMask(mask & ~available));
+            mask &= available;
+        }
+        return mask;
+    }
+
+    /**
+     * 設置讀取頭的天線切換方式
+     * @return 是否設置成功（不支援駐留時間的讀取頭會失敗，仍可盤存）
+     */
+    public boolean apply() {
+        int residence = mode == Mode.DWELL ? dwellMillis : 0;
+        boolean success = connection.setAntennaResidenceTime(residence);
+        applied = success;
+        return success;
+    }
+
+    /**
+     * 開始盤存前呼叫：設置切換方式並回傳天線遮罩
+     * @return 天線遮罩，0 表示設定無效
+     */
+    public long prepare() {
+        long mask = buildMask();
+        if (mask == 0) {
+            log(AsyncLogger.Level.WARN, "沒有可用的天線", null, null);
+            return 0;
+        }
+        // 只有一支天線時不需要切換
+        if (Long.bitCount(mask) > 1 && !apply()) {
+            log(AsyncLogger.Level.WARN, "設置天線切換方式失敗，使用讀取頭目前的設定", null, null);
+        }
+        log(AsyncLogger.Level.INFO, "盤存天線: {}（{}）", describeMask(mask),
+            mode == Mode.DWELL ? "駐留 " + dwellMillis + " ms" : "輪詢");
+        return mask;
+    }
+
+    /**
+     * 各天線最近一秒的讀取速率（筆/秒），依天線編號排序
+     */
+    public Map<Integer, Double> getAntennaReadRates() {
+        Map<Integer, Double> rates = new LinkedHashMap<>();
+        MetricsRegistry.ReaderStats stats = MetricsRegistry.getDefault().getReaderStats(getReaderName());
+        if (stats == null) {
+            return rates;
+        }
+        for (int antenna = 1; antenna <= MAX_ANTENNA_ID; antenna++) {
+            if (stats.getReads(antenna) > 0) {
+                rates.put(antenna, stats.getReadRate(antenna));
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * 各天線累計讀取筆數，依天線編號排序
+     */
+    public Map<Integer, Long> getAntennaReadCounts() {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        MetricsRegistry.ReaderStats stats = MetricsRegistry.getDefault().getReaderStats(getReaderName());
+        if (stats == null) {
+            return counts;
+        }
+        for (int antenna = 1; antenna <= MAX_ANTENNA_ID; antenna++) {
+            long reads = stats.getReads(antenna);
+            if (reads > 0) {
+                counts.put(antenna, reads);
+            }
+        }
+        return counts;
+    }
+
+    /** 原廠回調中的讀取頭名稱（與 openTcp 的連接字串相同） */
+    private String getReaderName() {
+        return connection.getIp() + ":" + connection.getPort();
+    }
+
+    /**
+     * 非同步記錄，樣板中的 "{}" 依序替換為參數
+     */
+    private void log(AsyncLogger.Level level, String template, Object arg1, Object arg2) {
+        LOGGER.log(level, "AntennaScheduler", template, arg1, arg2, onLogCallback);
+    }
+
+    // Getters
+    public long getConfiguredMask() {
+        return configuredMask;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getDwellMillis() {
+        return dwellMillis;
+    }
+
+    /** 是否已成功設置過切換方式（重連後需重新設置） */
+    public boolean isApplied() {
+        return applied;
+    }
+
+    // Setters
+    /**
+     * 設置要使用的天線遮罩，0 表示使用讀取頭所有天線
+     */
+    public void setConfiguredMask(long configuredMask) {
+        this.configuredMask = configuredMask;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public void setDwellMillis(int dwellMillis) {
+        if (dwellMillis < 1 || dwellMillis > MAX_DWELL_MILLIS) {
+            throw new IllegalArgumentException("dwellMillis out of range (1~" + MAX_DWELL_MILLIS + "): " + dwellMillis);
+        }
+        this.dwellMillis = dwellMillis;
+    }
+
+    // Setters for callbacks
+    public void setOnLogCallback(Consumer<String> callback) {
+        this.onLogCallback = callback;
+    }
+}
@@ -0,0 +1,424 @@
+package com.rfid.reader;
+
+import com.gg.reader.api.protocol.gx.EnumG;
+import com.gg.reader.api.protocol.gx.ParamEpcFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EPC 過濾條件
+ * 由一或多條規則組成，標籤符合任一規則即通過。每條規則比對 EPC 中一段連續位元（前綴或遮罩），
+ * 並可限制另一段位元的數值範圍（如 SGTIN 序號範圍）。
+ *
+ * 位元比對可交由讀取頭執行（ParamEpcFilter / MsgBaseSetMultiMatchRule），不符合的標籤不會上報；
+ * 數值範圍只能在主機比對，此時讀取頭以位元部分先過濾，主機再以 matches() 精確比對。
+ */
+public final class EpcFilter {
+
+    /** 讀取頭 EPC 區中 EPC 的起始位元（CRC 與 PC 之後） */
+    static final int EPC_BANK_OFFSET_BITS = 0x20;
+
+    /** 單條規則的最大比對位元數（ParamEpcFilter 長度欄位為 8 位元） */
+    public static final int MAX_RULE_BITS = 255;
+
+    /** 數值範圍的最大位元數 */
+    public static final int MAX_RANGE_BITS = 56;
+
+    // SGTIN-96：標頭(8) 過濾值(3) 分區(3) 廠商碼+品項碼(44) 序號(38)
+    private static final int SGTIN96_PARTITION_START = 11;
+    private static final int SGTIN96_SERIAL_START = 58;
+    private static final int SGTIN96_SERIAL_BITS = 38;
+    // 依分區值 0~6：廠商碼位數與位元數、品項碼位元數
+    private static final int[] SGTIN96_COMPANY_DIGITS = {12, 11, 10, 9, 8, 7, 6};
+    private static final int[] SGTIN96_COMPANY_BITS = {40, 37, 34, 30, 27, 24, 20};
+    private static final int[] SGTIN96_ITEM_BITS = {4, 7, 10, 14, 17, 20, 24};
+
+    private final List<Rule> rules;
+
+    private EpcFilter(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    /**
+     * 單條過濾規則
+     * 位元遮罩於建立時展開為逐位元組的遮罩與期望值，比對時不配置物件
+     */
+    public static final class Rule {
+        private final int bitStart;
+        private final int bitLength;
+        private final byte[] value;       // 左對齊，長度為 ceil(bitLength / 8)
+
+        private final int rangeStart;
+        private final int rangeLength;    // 0 表示沒有數值範圍
+        private final long rangeMin;
+        private final long rangeMax;
+
+        private final String description;
+
+        // 展開後的比對表
+        private final int[] byteIndexes;
+        private final byte[] byteMasks;
+        private final byte[] byteValues;
+        private final int requiredBytes;
+
+        Rule(int bitStart, int bitLength, byte[] value, int rangeStart, int rangeLength,
+             long rangeMin, long rangeMax, String description) {
+            if (bitStart < 0 || bitLength < 1 || bitLength > MAX_RULE_BITS
+                    || bitStart + bitLength > TagRecord.MAX_EPC_BYTES * 8) {
+                throw new IllegalArgumentException("過濾位元超出範圍: " + bitStart + "+" + bitLength);
+            }
+            if (value.length * 8 < bitLength) {
+                throw new IllegalArgumentException("過濾資料不足 " + bitLength + " 位元");
+            }
+            if (rangeLength < 0 || rangeLength > MAX_RANGE_BITS) {
+                throw new IllegalArgumentException("範圍位元數超出上限 (" + MAX_RANGE_BITS + "): " + rangeLength);
+            }
+            this.bitStart = bitStart;
+            this.bitLength = bitLength;
+            this.value = new byte[(bitLength + 7) / 8];
+            for (int bit = 0; bit < bitLength; bit++) {
+                if (getBit(value, bit)) {
+                    this.value[bit >> 3] |= (byte) (0x80 >>> (bit & 7));
+                }
+            }
+            this.rangeStart = rangeStart;
+            this.rangeLength = rangeLength;
+            this.rangeMin = rangeMin;
+            this.rangeMax = rangeMax;
+            this.description = description;
+
+            int first = bitStart >> 3;
+            int last = (bitStart + bitLength - 1) >> 3;
+            byteIndexes = new int[last - first + 1];
+            byteMasks = new byte[byteIndexes.length];
+            byteValues = new byte[byteIndexes.length];
+            for (int i = 0; i < byteIndexes.length; i++) {
+                byteIndexes[i] = first + i;
+            }
+            for (int bit = 0; bit < bitLength; bit++) {
+                int target = bitStart + bit;
+                int slot = (target >> 3) - first;
+                int flag = 0x80 >>> (target & 7);
+                byteMasks[slot] |= (byte) flag;
+                if (getBit(this.value, bit)) {
+                    byteValues[slot] |= (byte) flag;
+                }
+            }
+            int end = Math.max(bitStart + bitLength, rangeStart + rangeLength);
+            requiredBytes = (end + 7) / 8;
+        }
+
+        /**
+         * 比對 EPC 位元組
+         */
+        public boolean matches(byte[] epc, int length) {
+            if (length < requiredBytes) {
+                return false;
+            }
+            for (int i = 0; i < byteIndexes.length; i++) {
+                if ((epc[byteIndexes[i]] & byteMasks[i]) != byteValues[i]) {
+                    return false;
+                }
+            }
+            if (rangeLength > 0) {
+                long number = readBits(epc, rangeStart, rangeLength);
+                return number >= rangeMin && number <= rangeMax;
+            }
+            return true;
+        }
+
+        /**
+         * 是否能完全由讀取頭比對（沒有數值範圍）
+         */
+        public boolean isPushable() {
+            return rangeLength == 0;
+        }
+
+        /**
+         * 轉換為讀取頭過濾參數（只包含位元比對部分）
+         */
+        public ParamEpcFilter toParam() {
+            ParamEpcFilter param = new ParamEpcFilter();
+            param.setArea(EnumG.ParamFilterArea_EPC);
+            param.setBitStart(EPC_BANK_OFFSET_BITS + bitStart);
+            param.setBitLength(bitLength);
+            param.setHexData(TagRecord.toHex(value, value.length));
+            return param;
+        }
+
+        public int getBitStart() {
+            return bitStart;
+        }
+
+        public int getBitLength() {
+            return bitLength;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * 是否有任一規則符合
+     */
+    public boolean matches(byte[] epc, int length) {
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i).matches(epc, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean matches(TagRecord record) {
+        return matches(record.getEpcBytes(), record.getEpcLength());
+    }
+
+    /**
+     * 是否所有規則都能由讀取頭比對
+     */
+    public boolean isFullyPushable() {
+        for (Rule rule : rules) {
+            if (!rule.isPushable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 轉換為讀取頭過濾參數，每條規則一個
+     */
+    public List<ParamEpcFilter> toReaderFilters() {
+        List<ParamEpcFilter> params = new ArrayList<>(rules.size());
+        for (Rule rule : rules) {
+            params.add(rule.toParam());
+        }
+        return params;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Rule rule : rules) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(rule);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析過濾設定，以逗號分隔多條規則：
+     *   E2801160                EPC 前綴（十六進位）
+     *   mask:32:16:ABCD         從 EPC 第 32 位元起 16 位元等於 ABCD
+     *   sgtin:0614141           SGTIN-96 廠商碼
+     *   sgtin:0614141.812345    廠商碼與品項碼
+     *   sgtin:0614141.812345:1000-1999   再限制序號範圍（主機比對）
+     */
+    public static EpcFilter parse(String spec) {
+        Builder builder = builder();
+        for (String part : spec.split(",")) {
+            String entry = part.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            String lower = entry.toLowerCase();
+            try {
+                if (lower.startsWith("mask:")) {
+                    String[] fields = entry.split(":");
+                    if (fields.length != 4) {
+                        throw new IllegalArgumentException("格式應為 mask:<起始位元>:<位元數>:<十六進位>");
+                    }
+                    builder.mask(Integer.parseInt(fields[1].trim()), Integer.parseInt(fields[2].trim()), fields[3].trim());
+                } else if (lower.startsWith("sgtin:")) {
+                    String[] fields = entry.substring(6).split(":");
+                    String[] codes = fields[0].trim().split("\\.");
+                    if (codes.length > 2 || fields.length > 2) {
+                        throw new IllegalArgumentException("格式應為 sgtin:<廠商碼>[.<品項碼>][:<序號起>-<序號迄>]");
+                    }
+                    String item = codes.length > 1 ? codes[1].trim() : null;
+                    if (fields.length > 1) {
+                        String[] range = fields[1].trim().split("-");
+                        if (range.length != 2 || item == null) {
+                            throw new IllegalArgumentException("序號範圍需要品項碼，格式為 <起>-<迄>");
+                        }
+                        builder.sgtin96(codes[0].trim(), item, Long.parseLong(range[0].trim()), Long.parseLong(range[1].trim()));
+                    } else {
+                        builder.sgtin96(codes[0].trim(), item);
+                    }
+                } else {
+                    builder.prefix(entry);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("過濾設定格式錯誤: " + entry);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("過濾設定錯誤 (" + entry + "): " + e.getMessage());
+            }
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 過濾條件建構器
+     */
+    public static final class Builder {
+        private final List<Rule> rules = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * EPC 前綴
+         * @param hex 十六進位字串，每個字元 4 位元
+         */
+        public Builder prefix(String hex) {
+            return mask(0, hex.length() * 4, hex);
+        }
+
+        /**
+         * EPC 中從 bitStart 起 bitLength 位元等於 hex（左對齊）
+         */
+        public Builder mask(int bitStart, int bitLength, String hex) {
+            byte[] value = parseHex(hex);
+            String description = bitStart == 0 && bitLength == hex.length() * 4
+                ? "前綴 " + hex.toUpperCase()
+                : "位元 " + bitStart + "+" + bitLength + "=" + hex.toUpperCase();
+            rules.add(new Rule(bitStart, bitLength, value, 0, 0, 0, 0, description));
+            return this;
+        }
+
+        /**
+         * SGTIN-96 廠商碼（與品項碼）
+         * @param companyPrefix 廠商碼（6~12 位數字，位數決定分區值）
+         * @param itemReference 品項碼（含指示碼），null 表示不限
+         */
+        public Builder sgtin96(String companyPrefix, String itemReference) {
+            rules.add(sgtinRule(companyPrefix, itemReference, 0, 0, 0));
+            return this;
+        }
+
+        /**
+         * SGTIN-96 廠商碼、品項碼與序號範圍（序號範圍於主機比對）
+         */
+        public Builder sgtin96(String companyPrefix, String itemReference, long serialFrom, long serialTo) {
+            if (serialFrom < 0 || serialFrom > serialTo || serialTo >= 1L << SGTIN96_SERIAL_BITS) {
+                throw new IllegalArgumentException("序號範圍錯誤: " + serialFrom + "-" + serialTo);
+            }
+            rules.add(sgtinRule(companyPrefix, itemReference, SGTIN96_SERIAL_BITS, serialFrom, serialTo));
+            return this;
+        }
+
+        public EpcFilter build() {
+            if (rules.isEmpty()) {
+                throw new IllegalArgumentException("過濾條件沒有規則");
+            }
+            return new EpcFilter(rules);
+        }
+
+        /**
+         * SGTIN-96 規則：從分區值開始比對分區、廠商碼（與品項碼），
+         * 標頭與過濾值之間不連續且過濾值因用途而異，因此不比對標頭
+         */
+        private static Rule sgtinRule(String companyPrefix, String itemReference,
+                                      int serialBits, long serialFrom, long serialTo) {
+            int partition = -1;
+            for (int i = 0; i < SGTIN96_COMPANY_DIGITS.length; i++) {
+                if (SGTIN96_COMPANY_DIGITS[i] == companyPrefix.length()) {
+                    partition = i;
+                }
+            }
+            if (partition < 0 || !isDigits(companyPrefix)) {
+                throw new IllegalArgumentException("廠商碼需為 6~12 位數字: " + companyPrefix);
+            }
+            int companyBits = SGTIN96_COMPANY_BITS[partition];
+            int itemBits = SGTIN96_ITEM_BITS[partition];
+            int itemDigits = 13 - companyPrefix.length();
+            if (itemReference != null && (itemReference.length() != itemDigits || !isDigits(itemReference))) {
+                throw new IllegalArgumentException("品項碼需為 " + itemDigits + " 位數字: " + itemReference);
+            }
+
+            int bitLength = 3 + companyBits + (itemReference != null ? itemBits : 0);
+            byte[] value = new byte[(bitLength + 7) / 8];
+            int bit = writeBits(value, 0, 3, partition);
+            bit = writeBits(value, bit, companyBits, Long.parseLong(companyPrefix));
+            if (itemReference != null) {
+                writeBits(value, bit, itemBits, Long.parseLong(itemReference));
+            }
+
+            String description = "SGTIN " + companyPrefix + (itemReference != null ? "." + itemReference : "")
+                + (serialBits > 0 ? " 序號 " + serialFrom + "-" + serialTo : "");
+            return new Rule(SGTIN96_PARTITION_START, bitLength, value,
+                SGTIN96_SERIAL_START, serialBits, serialFrom, serialTo, description);
+        }
+    }
+
+    private static boolean isDigits(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] parseHex(String hex) {
+        if (hex.isEmpty() || hex.length() > TagRecord.MAX_EPC_BYTES * 2) {
+            throw new IllegalArgumentException("過濾資料長度錯誤: " + hex);
+        }
+        // 奇數長度時補 0，前綴以位元數為準
+        String padded = hex.length() % 2 == 0 ? hex : hex + "0";
+        byte[] bytes = new byte[padded.length() / 2];
+        if (TagRecord.parseHex(padded, bytes) != bytes.length) {
+            throw new IllegalArgumentException("不是十六進位: " + hex);
+        }
+        return bytes;
+    }
+
+    private static boolean getBit(byte[] bytes, int bit) {
+        return (bytes[bit >> 3] & (0x80 >>> (bit & 7))) != 0;
+    }
+
+    /**
+     * 以大端序寫入 length 位元，回傳下一個位元位置
+     */
+    private static int writeBits(byte[] bytes, int bitStart, int length, long number) {
+        for (int i = 0; i < length; i++) {
+            if (((number >>> (length - 1 - i)) & 1) != 0) {
+                int bit = bitStart + i;
+                bytes[bit >> 3] |= (byte) (0x80 >>> (bit & 7));
+            }
+        }
+        return bitStart + length;
+    }
+
+    /**
+     * 以大端序讀取 length 位元（length 不超過 MAX_RANGE_BITS）
+     */
+    private static long readBits(byte[] bytes, int bitStart, int length) {
+        int first = bitStart >> 3;
+        int last = (bitStart + length - 1) >> 3;
+        long accumulator = 0;
+        for (int i = first; i <= last; i++) {
+            accumulator = (accumulator << 8) | (bytes[i] & 0xFF);
+        }
+        int trailing = (last + 1) * 8 - (bitStart + length);
+        return (accumulator >>> trailing) & ((1L << length) - 1);
+    }
+}
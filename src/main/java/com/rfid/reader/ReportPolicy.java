@@ -0,0 +1,170 @@
+package com.rfid.reader;
+
+/**
+ * 標籤上報策略
+ * 對應讀取頭的重複標籤過濾設定（MsgBaseSetTagLog）：同一標籤在時間窗內只上報一次，
+ * 連續盤存時靜止的標籤不會每秒經網路上報數百次。
+ *   ALL       - 每次讀到都上報（讀取頭預設）
+ *   INTERVAL  - 同一標籤每個時間窗最多上報一次
+ *   ON_CHANGE - 讀取頭以時間窗過濾，主機只轉送新標籤或天線改變的讀取
+ *   ONCE      - 讀取頭以最長時間窗過濾，主機只轉送每次盤存中第一次讀到的標籤
+ */
+public final class ReportPolicy {
+
+    /** 上報模式 */
+    public enum Mode {
+        ALL,
+        INTERVAL,
+        ON_CHANGE,
+        ONCE
+    }
+
+    /** 讀取頭重複過濾時間的單位（毫秒） */
+    public static final int REPEATED_TIME_UNIT_MS = 10;
+
+    /** 最長時間窗（協議欄位為 16 位元） */
+    public static final int MAX_WINDOW_MILLIS = 0xFFFF * REPEATED_TIME_UNIT_MS;
+
+    /** ON_CHANGE 預設的讀取頭時間窗 */
+    public static final int DEFAULT_WINDOW_MILLIS = 1000;
+
+    private static final ReportPolicy ALL = new ReportPolicy(Mode.ALL, 0, 0);
+
+    private final Mode mode;
+    private final int windowMillis;
+    private final int rssiThreshold; // 0 表示不限制
+
+    private ReportPolicy(Mode mode, int windowMillis, int rssiThreshold) {
+        if (windowMillis < 0 || windowMillis > MAX_WINDOW_MILLIS) {
+            throw new IllegalArgumentException("時間窗超出範圍 (0~" + MAX_WINDOW_MILLIS + " ms): " + windowMillis);
+        }
+        if (rssiThreshold < 0 || rssiThreshold > 0xFF) {
+            throw new IllegalArgumentException("RSSI 門檻超出範圍 (0~255): " + rssiThreshold);
+        }
+        this.mode = mode;
+        this.windowMillis = windowMillis;
+        this.rssiThreshold = rssiThreshold;
+    }
+
+    /** 每次讀到都上報 */
+    public static ReportPolicy all() {
+        return ALL;
+    }
+
+    /** 同一標籤每 windowMillis 最多上報一次 */
+    public static ReportPolicy interval(int windowMillis) {
+        if (windowMillis < REPEATED_TIME_UNIT_MS) {
+            throw new IllegalArgumentException("時間窗至少 " + REPEATED_TIME_UNIT_MS + " ms: " + windowMillis);
+        }
+        return new ReportPolicy(Mode.INTERVAL, windowMillis, 0);
+    }
+
+    /** 只轉送新標籤或天線改變的讀取，讀取頭以 windowMillis 過濾重複 */
+    public static ReportPolicy onChange(int windowMillis) {
+        return new ReportPolicy(Mode.ON_CHANGE, windowMillis, 0);
+    }
+
+    /** 每次盤存每個標籤只上報一次 */
+    public static ReportPolicy once() {
+        return new ReportPolicy(Mode.ONCE, MAX_WINDOW_MILLIS, 0);
+    }
+
+    /**
+     * 同時要求讀取頭只上報 RSSI 不低於門檻的讀取
+     */
+    public ReportPolicy withRssiThreshold(int rssiThreshold) {
+        return new ReportPolicy(mode, windowMillis, rssiThreshold);
+    }
+
+    /**
+     * 解析上報設定：all、once、change[:ms]、<ms>（每個時間窗一次），可附加 @<RSSI 門檻>
+     * 例如 "500"、"change:2000"、"once@60"
+     */
+    public static ReportPolicy parse(String value) {
+        String spec = value.trim().toLowerCase();
+        int rssi = 0;
+        int at = spec.indexOf('@');
+        try {
+            if (at >= 0) {
+                rssi = Integer.parseInt(spec.substring(at + 1).trim());
+                spec = spec.substring(0, at).trim();
+            }
+            ReportPolicy policy;
+            if (spec.isEmpty() || "all".equals(spec)) {
+                policy = ALL;
+            } else if ("once".equals(spec)) {
+                policy = once();
+            } else if (spec.startsWith("change")) {
+                policy = onChange(spec.startsWith("change:")
+                    ? parseMillis(spec.substring(7)) : DEFAULT_WINDOW_MILLIS);
+            } else {
+                policy = interval(parseMillis(spec));
+            }
+            return rssi > 0 ? policy.withRssiThreshold(rssi) : policy;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("上報設定格式錯誤: " + value);
+        }
+    }
+
+    private static int parseMillis(String value) {
+        value = value.trim();
+        if (value.endsWith("ms")) {
+            value = value.substring(0, value.length() - 2).trim();
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * 讀取頭重複過濾時間（單位 REPEATED_TIME_UNIT_MS）
+     */
+    int getRepeatedTime() {
+        return windowMillis / REPEATED_TIME_UNIT_MS;
+    }
+
+    /**
+     * 是否需要主機端判斷（新標籤、天線改變）
+     */
+    boolean needsHostGate() {
+        return mode == Mode.ON_CHANGE || mode == Mode.ONCE;
+    }
+
+    /**
+     * 是否需要設置讀取頭（ALL 且不限 RSSI 時為讀取頭預設值）
+     */
+    boolean isReaderDefault() {
+        return mode == Mode.ALL && rssiThreshold == 0;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getRssiThreshold() {
+        return rssiThreshold;
+    }
+
+    @Override
+    public String toString() {
+        String text;
+        switch (mode) {
+            case INTERVAL:
+                text = "每 " + windowMillis + " ms 一次";
+                break;
+            case ON_CHANGE:
+                text = "新標籤或天線改變（讀取頭 " + windowMillis + " ms）";
+                break;
+            case ONCE:
+                text = "每次盤存一次";
+                break;
+            case ALL:
+            default:
+                text = "全部上報";
+                break;
+        }
+        return rssiThreshold > 0 ? text + "，RSSI ≥ " + rssiThreshold : text;
+    }
+}
@@ -0,0 +1,207 @@
+package com.rfid.reader;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 標籤事件管線
+ * 位於 TagReader 回調與 UI 之間，在讀取執行緒上以標籤鍵合併重複讀取，
+ * 再由消費端以固定頻率批次取出，避免每筆讀取都排入 EDT
+ */
+public class TagEventPipeline implements Consumer<TagInfo> {
+
+    /** 預設待處理標籤上限 */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    /** 待處理項目，drained 後不再接受合併 */
+    private static final class Entry {
+        final TagKey key;
+        final TagInfo tagInfo;
+        boolean drained;
+
+        Entry(TagKey key, TagInfo tagInfo) {
+            this.key = key;
+            this.tagInfo = tagInfo;
+        }
+    }
+
+    // 每個讀取執行緒重複使用的查詢鍵
+    private static final ThreadLocal<TagKey> PROBE = ThreadLocal.withInitial(TagKey::new);
+
+    private final int capacity;
+
+    // 待處理標籤（鍵 -> 合併後的標籤）與新標籤的到達順序
+    private final ConcurrentHashMap<TagKey, Entry> pending;
+    private final ConcurrentLinkedQueue<Entry> order;
+    private final AtomicInteger pendingCount;
+
+    // 統計資訊
+    private final AtomicLong receivedCount;
+    private final AtomicLong mergedCount;
+    private final AtomicLong droppedCount;
+
+    public TagEventPipeline() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 兩次取出之間最多保留的不同標籤數，超過時丟棄新標籤
+     */
+    public TagEventPipeline(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.pending = new ConcurrentHashMap<>();
+        this.order = new ConcurrentLinkedQueue<>();
+        this.pendingCount = new AtomicInteger();
+        this.receivedCount = new AtomicLong();
+        this.mergedCount = new AtomicLong();
+        this.droppedCount = new AtomicLong();
+    }
+
+    /**
+     * 接收一筆標籤讀取（於讀取器回調執行緒呼叫）
+     * 相同鍵的標籤會累加次數並保留最新的 RSSI、天線與時間
+     */
+    @Override
+    public void accept(TagInfo tagInfo) {
+        if (tagInfo == null) {
+            return;
+        }
+        receivedCount.incrementAndGet();
+
+        TagKey key = TagKey.of(tagInfo);
+        if (key == null) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+
+        while (true) {
+            Entry existing = pending.get(key);
+            if (existing != null) {
+                synchronized (existing) {
+                    if (!existing.drained) {
+                        existing.tagInfo.merge(tagInfo);
+                        mergedCount.incrementAndGet();
+                        return;
+                    }
+                }
+            }
+            if (insert(new Entry(key, tagInfo))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 接收一筆池化記錄（於讀取器回調執行緒呼叫）
+     * 重複標籤只更新既有資料而不配置新物件，處理完畢後記錄會歸還物件池
+     */
+    public void acceptRecord(TagRecord record) {
+        try {
+            receivedCount.incrementAndGet();
+
+            TagKey probe = PROBE.get();
+            if (!probe.set(record)) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+
+            while (true) {
+                Entry existing = pending.get(probe);
+                if (existing != null) {
+                    synchronized (existing) {
+                        if (!existing.drained) {
+                            existing.tagInfo.merge(record);
+                            mergedCount.incrementAndGet();
+                            return;
+                        }
+                    }
+                }
+                if (insert(new Entry(probe.copy(), record.toTagInfo()))) {
+                    return;
+                }
+            }
+        } finally {
+            record.release();
+        }
+    }
+
+    /**
+     * 新增待處理項目
+     * @return 是否已處理完畢；false 表示同鍵已被其他執行緒新增，需重試合併
+     */
+    private boolean insert(Entry entry) {
+        if (pendingCount.get() >= capacity) {
+            droppedCount.incrementAndGet();
+            return true;
+        }
+        if (pending.putIfAbsent(entry.key, entry) != null) {
+            return false;
+        }
+        pendingCount.incrementAndGet();
+        order.offer(entry);
+        return true;
+    }
+
+    /**
+     * 依到達順序取出目前所有待處理標籤
+     * @param consumer 處理每一筆合併後的標籤
+     * @return 取出的標籤數
+     */
+    public int drain(Consumer<TagInfo> consumer) {
+        int drained = 0;
+        // 只處理呼叫當下已存在的項目，避免高流量時無法結束
+        int limit = pendingCount.get();
+        Entry entry;
+        while (drained < limit && (entry = order.poll()) != null) {
+            take(entry);
+            consumer.accept(entry.tagInfo);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * 清除所有待處理標籤
+     */
+    public void clear() {
+        Entry entry;
+        while ((entry = order.poll()) != null) {
+            take(entry);
+        }
+    }
+
+    private void take(Entry entry) {
+        pending.remove(entry.key, entry);
+        synchronized (entry) {
+            entry.drained = true;
+        }
+        pendingCount.decrementAndGet();
+    }
+
+    // Getters
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    public long getMergedCount() {
+        return mergedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
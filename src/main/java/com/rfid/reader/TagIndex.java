@@ -0,0 +1,501 @@
+package com.rfid.reader;
+
+import java.util.Arrays;
+
+/**
+ * 標籤去重索引
+ * 以 EPC（無 EPC 時為 TID）的原始位元組為鍵，使用開放定址雜湊表，
+ * 每個標籤佔用固定的一列欄位式儲存（次數、首次/最後讀取時間、RSSI 統計）。
+ *
+ * 鍵的前 128 bits 直接存放於兩個 long；超過 128 bits 的 EPC 另以長度與
+ * 尾段雜湊區分。此類別非執行緒安全，須限定在單一執行緒（通常為 EDT）使用。
+ */
+public class TagIndex {
+
+    /** 預設最多保存的標籤數 */
+    public static final int DEFAULT_MAX_TAGS = 4_000_000;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int KEY_BYTES = 16;
+
+    private static final int KIND_EPC = 1;
+    private static final int KIND_TID = 2;
+
+    private static final TagInfo.TagType[] TAG_TYPES = TagInfo.TagType.values();
+
+    private final int maxTags;
+
+    // 雜湊槽：存放列號 + 1，0 表示空槽
+    private int[] slots;
+    private int slotMask;
+
+    // 欄位式列資料
+    private long[] keyHi;
+    private long[] keyLo;
+    private int[] keyMeta;        // 標籤類型 | 鍵種類 | 鍵長度 | 尾段雜湊（完整尾段另與 longKeyText 比對）
+    private int[] readCounts;
+    private long[] firstSeenNanos;
+    private long[] lastSeenNanos;
+    private short[] lastRssi;
+    private short[] maxRssi;
+    private long[] rssiSum;
+    private byte[] antennaIds;
+    private short[] smoothedRssi;
+    private byte[] entryAntennas; // 最先到達峰值的天線，0 表示無法判斷方向
+    private byte[] exitAntennas;
+    private String[] longKeyText; // 超過 128 bits 的鍵的顯示字串
+    private String[] tidText;
+    private String[] userDataText;
+    private int size;
+
+    // 因達上限而拒絕的新標籤數
+    private long rejectedCount;
+
+    // 解析十六進位字串用的暫存區
+    private final byte[] scratch = new byte[TagRecord.MAX_EPC_BYTES];
+
+    public TagIndex() {
+        this(DEFAULT_MAX_TAGS);
+    }
+
+    /**
+     * @param maxTags 最多保存的標籤數，達上限後新標籤會被拒絕
+     */
+    public TagIndex(int maxTags) {
+        if (maxTags <= 0) {
+            throw new IllegalArgumentException("maxTags must be positive: " + maxTags);
+        }
+        this.maxTags = maxTags;
+        allocate(Math.min(INITIAL_CAPACITY, maxTags));
+    }
+
+    /**
+     * 建立目前內容的唯讀副本，供其他執行緒讀取（如背景匯出）
+     * 只複製已使用的列，於擁有此索引的執行緒呼叫
+     */
+    public TagIndex snapshot() {
+        TagIndex copy = new TagIndex(maxTags, size);
+        copy.slots = slots.clone();
+        copy.slotMask = slotMask;
+        System.arraycopy(keyHi, 0, copy.keyHi, 0, size);
+        System.arraycopy(keyLo, 0, copy.keyLo, 0, size);
+        System.arraycopy(keyMeta, 0, copy.keyMeta, 0, size);
+        System.arraycopy(readCounts, 0, copy.readCounts, 0, size);
+        System.arraycopy(firstSeenNanos, 0, copy.firstSeenNanos, 0, size);
+        System.arraycopy(lastSeenNanos, 0, copy.lastSeenNanos, 0, size);
+        System.arraycopy(lastRssi, 0, copy.lastRssi, 0, size);
+        System.arraycopy(maxRssi, 0, copy.maxRssi, 0, size);
+        System.arraycopy(rssiSum, 0, copy.rssiSum, 0, size);
+        System.arraycopy(antennaIds, 0, copy.antennaIds, 0, size);
+        System.arraycopy(smoothedRssi, 0, copy.smoothedRssi, 0, size);
+        System.arraycopy(entryAntennas, 0, copy.entryAntennas, 0, size);
+        System.arraycopy(exitAntennas, 0, copy.exitAntennas, 0, size);
+        System.arraycopy(longKeyText, 0, copy.longKeyText, 0, size);
+        System.arraycopy(tidText, 0, copy.tidText, 0, size);
+        System.arraycopy(userDataText, 0, copy.userDataText, 0, size);
+        copy.size = size;
+        copy.rejectedCount = rejectedCount;
+        return copy;
+    }
+
+    // 副本用：列容量等於來源的列數，雜湊槽另外複製
+    private TagIndex(int maxTags, int size) {
+        this.maxTags = maxTags;
+        allocate(Math.max(size, Math.min(INITIAL_CAPACITY, maxTags)));
+    }
+
+    /**
+     * 更新或新增一筆池化記錄
+     * @return 標籤所在列號，達上限或沒有鍵時回傳 -1
+     */
+    public int upsert(TagRecord record) {
+        int row;
+        if (record.getEpcLength() > 0) {
+            row = findOrInsert(KIND_EPC, record.getTagType(), record.getEpcBytes(), record.getEpcLength());
+        } else if (record.getTidLength() > 0) {
+            row = findOrInsert(KIND_TID, record.getTagType(), record.getTidBytes(), record.getTidLength());
+        } else {
+            return -1;
+        }
+        if (row < 0) {
+            return -1;
+        }
+        if (tidText[row] == null && record.getTidLength() > 0 && record.getEpcLength() > 0) {
+            tidText[row] = record.getTidHex();
+        }
+        if (userDataText[row] == null && record.getUserDataLength() > 0) {
+            userDataText[row] = record.getUserDataHex();
+        }
+        update(row, 1, record.getTimestampNanos(), record.getRssi(), record.getAntennaId());
+        updateSignal(row, record.getSmoothedRssi(), record.getEntryAntenna(), record.getExitAntenna());
+        return row;
+    }
+
+    /**
+     * 更新或新增一筆（可能已合併多次讀取的）TagInfo
+     * @return 標籤所在列號，達上限或沒有鍵時回傳 -1
+     */
+    public int upsert(TagInfo tagInfo) {
+        int row;
+        int len = TagRecord.parseHex(tagInfo.getEpc(), scratch);
+        if (len > 0) {
+            row = findOrInsert(KIND_EPC, tagInfo.getTagType(), scratch, len);
+        } else if ((len = TagRecord.parseHex(tagInfo.getTid(), scratch)) > 0) {
+            row = findOrInsert(KIND_TID, tagInfo.getTagType(), scratch, len);
+        } else {
+            return -1;
+        }
+        if (row < 0) {
+            return -1;
+        }
+        if (tidText[row] == null && getKind(row) == KIND_EPC) {
+            tidText[row] = tagInfo.getTid();
+        }
+        if (userDataText[row] == null) {
+            userDataText[row] = tagInfo.getUserData();
+        }
+        update(row, tagInfo.getReadCount(), tagInfo.getReadTimeMillis() * 1_000_000L,
+            tagInfo.getRssi(), tagInfo.getAntennaId());
+        updateSignal(row, tagInfo.getSmoothedRssi(), tagInfo.getEntryAntenna(), tagInfo.getExitAntenna());
+        return row;
+    }
+
+    private void update(int row, int count, long timestampNanos, int rssi, int antennaId) {
+        if (readCounts[row] == 0) {
+            firstSeenNanos[row] = timestampNanos;
+            maxRssi[row] = (short) rssi;
+        } else if (rssi > maxRssi[row]) {
+            maxRssi[row] = (short) rssi;
+        }
+        readCounts[row] += count;
+        rssiSum[row] += (long) rssi * count;
+        lastRssi[row] = (short) rssi;
+        lastSeenNanos[row] = timestampNanos;
+        antennaIds[row] = (byte) antennaId;
+    }
+
+    private void updateSignal(int row, int smoothed, int entryAntenna, int exitAntenna) {
+        smoothedRssi[row] = (short) smoothed;
+        // 尚無法判斷方向時保留已知的方向
+        if (entryAntenna > 0 && exitAntenna > 0) {
+            entryAntennas[row] = (byte) entryAntenna;
+            exitAntennas[row] = (byte) exitAntenna;
+        }
+    }
+
+    /**
+     * 查詢標籤列號
+     * @return 列號，不存在時回傳 -1
+     */
+    public int find(TagRecord record) {
+        if (record.getEpcLength() > 0) {
+            return find(KIND_EPC, record.getTagType(), record.getEpcBytes(), record.getEpcLength());
+        }
+        if (record.getTidLength() > 0) {
+            return find(KIND_TID, record.getTagType(), record.getTidBytes(), record.getTidLength());
+        }
+        return -1;
+    }
+
+    private int find(int kind, TagInfo.TagType type, byte[] bytes, int length) {
+        long hi = pack(bytes, 0, length);
+        long lo = pack(bytes, 8, length);
+        int meta = meta(kind, type, bytes, length);
+        int slot = hash(hi, lo, meta) & slotMask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int row = entry - 1;
+            if (keyHi[row] == hi && keyLo[row] == lo && keyMeta[row] == meta
+                    && (length <= KEY_BYTES || tailEquals(row, bytes, length))) {
+                return row;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    private int findOrInsert(int kind, TagInfo.TagType type, byte[] bytes, int length) {
+        long hi = pack(bytes, 0, length);
+        long lo = pack(bytes, 8, length);
+        int meta = meta(kind, type, bytes, length);
+        int slot = hash(hi, lo, meta) & slotMask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                break;
+            }
+            int row = entry - 1;
+            if (keyHi[row] == hi && keyLo[row] == lo && keyMeta[row] == meta
+                    && (length <= KEY_BYTES || tailEquals(row, bytes, length))) {
+                return row;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+
+        // 新標籤
+        if (size >= maxTags) {
+            rejectedCount++;
+            return -1;
+        }
+        if (size >= keyHi.length) {
+            grow();
+            slot = hash(hi, lo, meta) & slotMask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & slotMask;
+            }
+        }
+
+        int row = size++;
+        keyHi[row] = hi;
+        keyLo[row] = lo;
+        keyMeta[row] = meta;
+        readCounts[row] = 0;
+        rssiSum[row] = 0;
+        entryAntennas[row] = 0;
+        exitAntennas[row] = 0;
+        tidText[row] = null;
+        userDataText[row] = null;
+        longKeyText[row] = length > KEY_BYTES ? TagRecord.toHex(bytes, length) : null;
+        slots[slot] = row + 1;
+        return row;
+    }
+
+    /**
+     * 清除所有標籤，保留已配置的空間供下次使用
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        Arrays.fill(longKeyText, 0, size, null);
+        Arrays.fill(tidText, 0, size, null);
+        Arrays.fill(userDataText, 0, size, null);
+        size = 0;
+        rejectedCount = 0;
+    }
+
+    private void allocate(int capacity) {
+        keyHi = new long[capacity];
+        keyLo = new long[capacity];
+        keyMeta = new int[capacity];
+        readCounts = new int[capacity];
+        firstSeenNanos = new long[capacity];
+        lastSeenNanos = new long[capacity];
+        lastRssi = new short[capacity];
+        maxRssi = new short[capacity];
+        rssiSum = new long[capacity];
+        antennaIds = new byte[capacity];
+        smoothedRssi = new short[capacity];
+        entryAntennas = new byte[capacity];
+        exitAntennas = new byte[capacity];
+        longKeyText = new String[capacity];
+        tidText = new String[capacity];
+        userDataText = new String[capacity];
+        // 負載因子不超過 0.5
+        slots = new int[Integer.highestOneBit(capacity) << 2];
+        slotMask = slots.length - 1;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) keyHi.length * 2, maxTags);
+        keyHi = Arrays.copyOf(keyHi, capacity);
+        keyLo = Arrays.copyOf(keyLo, capacity);
+        keyMeta = Arrays.copyOf(keyMeta, capacity);
+        readCounts = Arrays.copyOf(readCounts, capacity);
+        firstSeenNanos = Arrays.copyOf(firstSeenNanos, capacity);
+        lastSeenNanos = Arrays.copyOf(lastSeenNanos, capacity);
+        lastRssi = Arrays.copyOf(lastRssi, capacity);
+        maxRssi = Arrays.copyOf(maxRssi, capacity);
+        rssiSum = Arrays.copyOf(rssiSum, capacity);
+        antennaIds = Arrays.copyOf(antennaIds, capacity);
+        smoothedRssi = Arrays.copyOf(smoothedRssi, capacity);
+        entryAntennas = Arrays.copyOf(entryAntennas, capacity);
+        exitAntennas = Arrays.copyOf(exitAntennas, capacity);
+        longKeyText = Arrays.copyOf(longKeyText, capacity);
+        tidText = Arrays.copyOf(tidText, capacity);
+        userDataText = Arrays.copyOf(userDataText, capacity);
+
+        slots = new int[Integer.highestOneBit(capacity) << 2];
+        slotMask = slots.length - 1;
+        for (int row = 0; row < size; row++) {
+            int slot = hash(keyHi[row], keyLo[row], keyMeta[row]) & slotMask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & slotMask;
+            }
+            slots[slot] = row + 1;
+        }
+    }
+
+    /** 以大端序將 bytes[offset, offset+8) 打包成 long，不足補 0 */
+    private static long pack(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (i < length ? (bytes[i] & 0xFFL) : 0);
+        }
+        return value;
+    }
+
+    private static int meta(int kind, TagInfo.TagType type, byte[] bytes, int length) {
+        int tail = 0;
+        for (int i = KEY_BYTES; i < length; i++) {
+            tail = 31 * tail + bytes[i];
+        }
+        int typeBits = type != null ? type.ordinal() + 1 : 0;
+        return (typeBits << 28) | (kind << 26) | (length << 20) | (tail & 0xFFFFF);
+    }
+
+    /**
+     * 比對超過 128 bits 的鍵的尾段（meta 中的尾段雜湊只用於預先篩選）
+     */
+    private boolean tailEquals(int row, byte[] bytes, int length) {
+        String text = longKeyText[row];
+        if (text == null || text.length() != length * 2) {
+            return false;
+        }
+        for (int i = KEY_BYTES; i < length; i++) {
+            int value = (Character.digit(text.charAt(i * 2), 16) << 4) | Character.digit(text.charAt(i * 2 + 1), 16);
+            if (value != (bytes[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(long hi, long lo, int meta) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo * 0xC2B2AE3D27D4EB4FL ^ meta;
+        h ^= h >>> 32;
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    private int getKind(int row) {
+        return (keyMeta[row] >>> 26) & 0x3;
+    }
+
+    private int getKeyLength(int row) {
+        return (keyMeta[row] >>> 20) & 0x3F;
+    }
+
+    /**
+     * 取得鍵的十六進位字串（顯示用）
+     */
+    private String getKeyHex(int row) {
+        if (longKeyText[row] != null) {
+            return longKeyText[row];
+        }
+        int length = getKeyLength(row);
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            long word = i < 8 ? keyHi[row] : keyLo[row];
+            int b = (int) (word >>> (56 - (i % 8) * 8)) & 0xFF;
+            chars[i * 2] = Character.toUpperCase(Character.forDigit(b >>> 4, 16));
+            chars[i * 2 + 1] = Character.toUpperCase(Character.forDigit(b & 0x0F, 16));
+        }
+        return new String(chars);
+    }
+
+    // 列資料存取
+    public int size() {
+        return size;
+    }
+
+    public int getMaxTags() {
+        return maxTags;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public String getEpc(int row) {
+        return getKind(row) == KIND_EPC ? getKeyHex(row) : null;
+    }
+
+    public String getTid(int row) {
+        return getKind(row) == KIND_TID ? getKeyHex(row) : tidText[row];
+    }
+
+    public String getUserData(int row) {
+        return userDataText[row];
+    }
+
+    public TagInfo.TagType getTagType(int row) {
+        int typeBits = keyMeta[row] >>> 28;
+        return typeBits > 0 ? TAG_TYPES[typeBits - 1] : null;
+    }
+
+    public int getReadCount(int row) {
+        return readCounts[row];
+    }
+
+    public long getFirstSeenNanos(int row) {
+        return firstSeenNanos[row];
+    }
+
+    public long getLastSeenNanos(int row) {
+        return lastSeenNanos[row];
+    }
+
+    public long getLastSeenMillis(int row) {
+        return lastSeenNanos[row] / 1_000_000L;
+    }
+
+    public int getLastRssi(int row) {
+        return lastRssi[row];
+    }
+
+    public int getMaxRssi(int row) {
+        return maxRssi[row];
+    }
+
+    public double getAvgRssi(int row) {
+        return readCounts[row] > 0 ? (double) rssiSum[row] / readCounts[row] : 0;
+    }
+
+    public int getAntennaId(int row) {
+        return antennaIds[row];
+    }
+
+    public int getSmoothedRssi(int row) {
+        return smoothedRssi[row];
+    }
+
+    public int getEntryAntenna(int row) {
+        return entryAntennas[row];
+    }
+
+    public int getExitAntenna(int row) {
+        return exitAntennas[row];
+    }
+
+    /**
+     * 鍵是否為 EPC（否則為 TID）
+     */
+    public boolean isEpcKey(int row) {
+        return getKind(row) == KIND_EPC;
+    }
+
+    /**
+     * 將鍵的原始位元組寫入目標陣列
+     * @param dest 至少 TagRecord.MAX_EPC_BYTES 位元組
+     * @return 鍵長度
+     */
+    public int getKeyBytes(int row, byte[] dest) {
+        if (longKeyText[row] != null) {
+            return TagRecord.parseHex(longKeyText[row], dest);
+        }
+        int length = getKeyLength(row);
+        for (int i = 0; i < length; i++) {
+            long word = i < 8 ? keyHi[row] : keyLo[row];
+            dest[i] = (byte) (word >>> (56 - (i % 8) * 8));
+        }
+        return length;
+    }
+
+    /**
+     * RSSI 總和（與讀取次數一起計算平均）
+     */
+    public long getRssiSum(int row) {
+        return rssiSum[row];
+    }
+}
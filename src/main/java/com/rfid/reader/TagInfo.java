@@ -1,6 +1,8 @@
 package com.rfid.reader;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -9,6 +11,10 @@ import java.time.format.DateTimeFormatter;
  */
 public class TagInfo {
 
+    /** 讀取時間顯示格式 */
+    private static final DateTimeFormatter READ_TIME_FORMATTER =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
     /** 標籤類型枚舉 */
     public enum TagType {
         EPC_6C("EPC (6C)"),
@@ -32,12 +38,17 @@ public class TagInfo {
     private String userData;      // 用戶數據區
     private int rssi;             // 信號強度
     private int antennaId;        // 天線編號
-    private LocalDateTime readTime; // 讀取時間
+    private long readTimeMillis;  // 讀取時間（epoch 毫秒）
     private TagType tagType;      // 標籤類型
     private int readCount;        // 讀取次數
+    private String readerName;    // 讀取頭名稱
+    private int smoothedRssi;     // 平滑後的信號強度
+    private int entryAntenna;     // 最先到達峰值的天線，0 表示無法判斷
+    private int exitAntenna;      // 最後到達峰值的天線
+    private boolean harvested;    // 收取自讀取頭快取，讀取時間為讀取頭記錄的時間
 
     public TagInfo() {
-        this.readTime = LocalDateTime.now();
+        this.readTimeMillis = System.currentTimeMillis();
         this.readCount = 1;
     }
 
@@ -48,7 +59,7 @@ public class TagInfo {
         this.rssi = rssi;
         this.antennaId = antennaId;
         this.tagType = tagType;
-        this.readTime = LocalDateTime.now();
+        this.readTimeMillis = System.currentTimeMillis();
         this.readCount = 1;
     }
 
@@ -94,16 +105,31 @@ public class TagInfo {
     }
 
     public LocalDateTime getReadTime() {
-        return readTime;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(readTimeMillis), ZoneId.systemDefault());
     }
 
     public void setReadTime(LocalDateTime readTime) {
-        this.readTime = readTime;
+        this.readTimeMillis = readTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public long getReadTimeMillis() {
+        return readTimeMillis;
+    }
+
+    public void setReadTimeMillis(long readTimeMillis) {
+        this.readTimeMillis = readTimeMillis;
     }
 
     public String getReadTimeString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return readTime.format(formatter);
+        return formatReadTime(readTimeMillis);
+    }
+
+    /**
+     * 以表格顯示格式輸出讀取時間
+     * @param epochMillis epoch 毫秒
+     */
+    public static String formatReadTime(long epochMillis) {
+        return READ_TIME_FORMATTER.format(Instant.ofEpochMilli(epochMillis));
     }
 
     public TagType getTagType() {
@@ -126,9 +152,116 @@ public class TagInfo {
         this.readCount = readCount;
     }
 
+    public String getReaderName() {
+        return readerName;
+    }
+
+    public void setReaderName(String readerName) {
+        this.readerName = readerName;
+    }
+
+    public int getSmoothedRssi() {
+        return smoothedRssi;
+    }
+
+    public void setSmoothedRssi(int smoothedRssi) {
+        this.smoothedRssi = smoothedRssi;
+    }
+
+    public int getEntryAntenna() {
+        return entryAntenna;
+    }
+
+    public int getExitAntenna() {
+        return exitAntenna;
+    }
+
+    public void setPassAntennas(int entryAntenna, int exitAntenna) {
+        this.entryAntenna = entryAntenna;
+        this.exitAntenna = exitAntenna;
+    }
+
+    public boolean isHarvested() {
+        return harvested;
+    }
+
+    public void setHarvested(boolean harvested) {
+        this.harvested = harvested;
+    }
+
+    /**
+     * 通過多天線門架的方向
+     */
+    public TagSignalModel.Direction getDirection() {
+        return TagSignalModel.Direction.of(entryAntenna, exitAntenna);
+    }
+
     public void incrementReadCount() {
         this.readCount++;
-        this.readTime = LocalDateTime.now();
+        this.readTimeMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 取得標籤去重用的鍵
+     * 優先使用 EPC，沒有 EPC 的標籤（如 6B）使用 TID
+     */
+    public String getKey() {
+        if (epc != null && !epc.isEmpty()) {
+            return epc;
+        }
+        return tid != null && !tid.isEmpty() ? tid : null;
+    }
+
+    /**
+     * 合併同一標籤的另一筆讀取
+     * 累加次數，並以較新的讀取更新 RSSI、天線與時間
+     */
+    public void merge(TagInfo other) {
+        this.readCount += other.readCount;
+        this.rssi = other.rssi;
+        this.antennaId = other.antennaId;
+        this.readTimeMillis = other.readTimeMillis;
+        this.readerName = other.readerName;
+        this.smoothedRssi = other.smoothedRssi;
+        this.harvested = other.harvested;
+        mergePassAntennas(other.entryAntenna, other.exitAntenna);
+        if (tid == null) {
+            this.tid = other.tid;
+        }
+        if (userData == null) {
+            this.userData = other.userData;
+        }
+    }
+
+    /**
+     * 合併同一標籤的一筆池化記錄
+     * 只更新基本型別欄位，缺少的 TID/用戶數據才轉成字串
+     */
+    public void merge(TagRecord record) {
+        this.readCount++;
+        this.rssi = record.getRssi();
+        this.antennaId = record.getAntennaId();
+        this.readTimeMillis = record.getTimestampNanos() / 1_000_000L;
+        this.readerName = record.getReaderName();
+        this.smoothedRssi = record.getSmoothedRssi();
+        this.harvested = record.isHarvested();
+        mergePassAntennas(record.getEntryAntenna(), record.getExitAntenna());
+        if (tid == null && record.getTidLength() > 0) {
+            this.tid = record.getTidHex();
+        }
+        if (userData == null && record.getUserDataLength() > 0) {
+            this.userData = record.getUserDataHex();
+        }
+    }
+
+    /**
+     * 較新的讀取尚無法判斷方向時保留已知的方向
+     */
+    private void mergePassAntennas(int entry, int exit) {
+        if (entry > 0 && exit > 0) {
+            this.entryAntenna = entry;
+            this.exitAntenna = exit;
+        }
     }
 
     /** 用於表格顯示的資料陣列 */
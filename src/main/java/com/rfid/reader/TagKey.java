@@ -0,0 +1,124 @@
+package com.rfid.reader;
+
+import java.util.Arrays;
+
+/**
+ * 以原始位元組表示的標籤去重鍵
+ * 有 EPC 時使用 EPC，否則使用 TID；可作為可重用的查詢探針，
+ * 需要長期保存時以 copy() 取得不可變副本
+ */
+public final class TagKey {
+
+    private static final byte KIND_EPC = 1;
+    private static final byte KIND_TID = 2;
+
+    private byte kind;
+    private byte[] bytes;
+    private int length;
+    private int hash;
+
+    public TagKey() {
+        this.bytes = new byte[TagRecord.MAX_EPC_BYTES];
+    }
+
+    private TagKey(byte kind, byte[] bytes, int length, int hash) {
+        this.kind = kind;
+        this.bytes = bytes;
+        this.length = length;
+        this.hash = hash;
+    }
+
+    /**
+     * 以記錄內容設置此探針
+     * @return 記錄是否有可用的鍵
+     */
+    public boolean set(TagRecord record) {
+        if (record.getEpcLength() > 0) {
+            return set(KIND_EPC, record.getEpcBytes(), record.getEpcLength());
+        }
+        if (record.getTidLength() > 0) {
+            return set(KIND_TID, record.getTidBytes(), record.getTidLength());
+        }
+        length = 0;
+        return false;
+    }
+
+    private boolean set(byte kind, byte[] src, int len) {
+        if (bytes.length < len) {
+            bytes = new byte[len];
+        }
+        System.arraycopy(src, 0, bytes, 0, len);
+        this.kind = kind;
+        this.length = len;
+        this.hash = computeHash(kind, bytes, len);
+        return true;
+    }
+
+    /**
+     * 由 TagInfo 建立鍵，沒有 EPC 與 TID 時回傳 null
+     */
+    public static TagKey of(TagInfo tagInfo) {
+        TagKey key = new TagKey();
+        byte[] buffer = new byte[TagRecord.MAX_EPC_BYTES];
+        int len = TagRecord.parseHex(tagInfo.getEpc(), buffer);
+        if (len > 0) {
+            key.set(KIND_EPC, buffer, len);
+            return key.copy();
+        }
+        len = TagRecord.parseHex(tagInfo.getTid(), buffer);
+        if (len > 0) {
+            key.set(KIND_TID, buffer, len);
+            return key.copy();
+        }
+        return null;
+    }
+
+    /**
+     * 建立不可變副本
+     */
+    public TagKey copy() {
+        return new TagKey(kind, Arrays.copyOf(bytes, length), length, hash);
+    }
+
+    private static int computeHash(byte kind, byte[] bytes, int length) {
+        int h = kind;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    public boolean isEpc() {
+        return kind == KIND_EPC;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TagKey)) return false;
+        TagKey other = (TagKey) o;
+        if (kind != other.kind || length != other.length || hash != other.hash) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != other.bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return (kind == KIND_EPC ? "EPC:" : "TID:") + TagRecord.toHex(bytes, length);
+    }
+}
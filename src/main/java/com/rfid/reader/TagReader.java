@@ -3,7 +3,25 @@ package com.rfid.reader;
 import com.gg.reader.api.dal.*;
 import com.gg.reader.api.protocol.gx.*;
 import com.rfid.connection.ReaderConnection;
+import com.rfid.logging.AsyncLogger;
+import com.rfid.metrics.MetricsRegistry;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 /**
@@ -36,12 +54,76 @@ public class TagReader {
         GJB
     }
 
+    private static final AsyncLogger LOGGER = AsyncLogger.getDefault();
+
+    // 所有讀取器共用的 FastID 退回執行緒，回調執行緒不可送出同步指令，由此重新下盤存指令
+    private static final ExecutorService FASTID_FALLBACK_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "fastid-fallback");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** FastID 偵測的讀取筆數 */
+    private static final int FASTID_PROBE_READS = 64;
+    /** 偵測期間未回傳 TID 的讀取超過此數量才改用一般 TID 讀取，少數不支援的晶片不影響其他標籤 */
+    private static final int FASTID_MAX_MISSES = FASTID_PROBE_READS / 2;
+
+    /** 讀取頭上報的讀取時間格式（SDK 已轉為本機時區） */
+    private static final DateTimeFormatter READER_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private ReaderConnection connection;
-    private boolean isReading;
+    private volatile boolean isReading;
     private TagProtocol currentProtocol;
+    private volatile Set<TagProtocol> currentProtocols;
+
+    // 最後一次連續盤存的啟動動作，用於重連後恢復
+    private volatile BooleanSupplier lastInventory;
+
+    // 標籤記錄物件池
+    private final TagRecordPool recordPool;
+
+    // 天線遮罩與切換方式
+    private final AntennaScheduler antennaScheduler;
+
+    // EPC 過濾：設定的條件，以及讀取頭無法完全過濾時於主機比對的條件
+    private volatile EpcFilter epcFilter;
+    private volatile EpcFilter hostFilter;
+    private volatile boolean multiMatchApplied;
+    private final LongAdder filteredCount = new LongAdder();
+
+    // FastID：TID 隨盤存回應一併上報，不需每個標籤另外讀取；偵測到不支援時改用一般 TID 讀取
+    private volatile boolean fastIdEnabled;
+    private volatile boolean fastIdActive;
+    private volatile boolean fastIdFallback;
+    private int fastIdProbeReads;  // 只在回調執行緒累加
+    private int fastIdProbeMisses; // 偵測期間未回傳 TID 的讀取
+
+    // 上報策略：設定的策略、目前盤存套用的策略，以及主機端閘門（ON_CHANGE/ONCE 或讀取頭不支援時）
+    private volatile ReportPolicy reportPolicy = ReportPolicy.all();
+    private volatile ReportPolicy activePolicy = ReportPolicy.all();
+    private volatile boolean readerPolicyApplied;
+    private volatile boolean hostFallback;
+    private volatile TagIndex reportIndex;
+    private final LongAdder suppressedCount = new LongAdder();
+    private final LongAdder dispatchedCount = new LongAdder();
+
+    // 斷線快取收取：收取期間的讀取先暫存，依讀取時間排序後再分派
+    private final Object harvestLock = new Object();
+    private volatile List<TagRecord> harvestBuffer;
+    private volatile CountDownLatch cacheOver;
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder harvestedCount = new LongAdder();
+    private volatile int lastHarvestCount;
+
+    // 每個標籤的平滑 RSSI 與通過方向，以上報閘門前的全部讀取更新
+    private final TagSignalModel signalModel = new TagSignalModel();
+
+    // 讀取計數
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
 
     // 回調函數
     private Consumer<TagInfo> onTagReadCallback;
+    private Consumer<TagRecord> onTagRecordCallback;
     private Runnable onReadOverCallback;
     private Consumer<String> onLogCallback;
 
@@ -49,6 +131,9 @@ public class TagReader {
         this.connection = connection;
         this.isReading = false;
         this.currentProtocol = TagProtocol.EPC_6C;
+        this.currentProtocols = Collections.unmodifiableSet(EnumSet.of(TagProtocol.EPC_6C));
+        this.recordPool = new TagRecordPool();
+        this.antennaScheduler = new AntennaScheduler(connection);
     }
 
     /**
@@ -65,26 +150,41 @@ public class TagReader {
             @Override
             public void log(String readerName, LogBaseEpcInfo info) {
                 if (info != null) {
-                    TagInfo tagInfo = new TagInfo();
-                    tagInfo.setEpc(info.getEpc());
+                    TagRecord record = recordPool.acquire();
+                    // 改用一般 TID 讀取後仍可能收到 FastID 的讀取，啟用期間都需分割
+                    int fastIdEpcLength = fastIdEnabled ? fastIdEpcLength(info) : -1;
+                    if (fastIdEpcLength > 0) {
+                        record.setEpc(info.getbEpc(), 0, fastIdEpcLength);
+                    } else {
+                        record.setEpcHex(info.getEpc());
+                    }
+                    if (!acceptEpc(record)) {
+                        return;
+                    }
 
                     // 只有 result == 0 時才設置 TID 和 UserData
                     if (info.getResult() == 0) {
-                        tagInfo.setTid(info.getTid());
-                        tagInfo.setUserData(info.getUserdata());
+                        if (fastIdEpcLength > 0) {
+                            record.setTid(info.getbEpc(), fastIdEpcLength, info.getbEpc().length - fastIdEpcLength);
+                        } else {
+                            record.setTidHex(info.getTid());
+                        }
+                        record.setUserDataHex(info.getUserdata());
+                        if (fastIdActive) {
+                            probeFastId(record);
+                        }
                     } else {
                         // 記錄錯誤但仍顯示 EPC
-                        TagReader.this.log("標籤讀取部分失敗 (result=" + info.getResult() + "): " + info.getEpc());
+                        TagReader.this.log(AsyncLogger.Level.WARN, "標籤讀取部分失敗 (result={}): {}", info.getResult(), info.getEpc());
                     }
 
-                    tagInfo.setRssi(info.getRssi());
-                    tagInfo.setAntennaId(info.getAntId());
-                    tagInfo.setTagType(TagInfo.TagType.EPC_6C);
-
-                    if (onTagReadCallback != null) {
-                        onTagReadCallback.accept(tagInfo);
+                    fillRecord(record, readerName, info.getResult(), info.getRssi(), info.getAntId(), TagInfo.TagType.EPC_6C);
+                    // 快取的讀取以讀取頭記錄的時間排序（只有 EPC 上報帶有時間）
+                    if (harvestBuffer != null && info.getStrUtc() != null) {
+                        applyReaderTime(record, info.getStrUtc());
                     }
-                    TagReader.this.log("讀取到 EPC 標籤: " + info.getEpc());
+                    TagReader.this.log(AsyncLogger.Level.DEBUG, "讀取到 EPC 標籤: {}", info.getEpc(), null);
+                    dispatch(record);
                 }
             }
         };
@@ -105,23 +205,18 @@ public class TagReader {
             @Override
             public void log(String readerName, LogBase6bInfo info) {
                 if (info != null) {
-                    TagInfo tagInfo = new TagInfo();
-                    tagInfo.setTid(info.getTid());
+                    TagRecord record = recordPool.acquire();
+                    record.setTidHex(info.getTid());
 
                     if (info.getResult() == 0) {
-                        tagInfo.setUserData(info.getUserdata());
+                        record.setUserDataHex(info.getUserdata());
                     } else {
-                        TagReader.this.log("6B 標籤讀取部分失敗 (result=" + info.getResult() + "): " + info.getTid());
+                        TagReader.this.log(AsyncLogger.Level.WARN, "6B 標籤讀取部分失敗 (result={}): {}", info.getResult(), info.getTid());
                     }
 
-                    tagInfo.setRssi(info.getRssi());
-                    tagInfo.setAntennaId(info.getAntId());
-                    tagInfo.setTagType(TagInfo.TagType.ISO_6B);
-
-                    if (onTagReadCallback != null) {
-                        onTagReadCallback.accept(tagInfo);
-                    }
-                    TagReader.this.log("讀取到 6B 標籤: " + info.getTid());
+                    fillRecord(record, readerName, info.getResult(), info.getRssi(), info.getAntId(), TagInfo.TagType.ISO_6B);
+                    TagReader.this.log(AsyncLogger.Level.DEBUG, "讀取到 6B 標籤: {}", info.getTid(), null);
+                    dispatch(record);
                 }
             }
         };
@@ -142,24 +237,22 @@ public class TagReader {
             @Override
             public void log(String readerName, LogBaseGbInfo info) {
                 if (info != null) {
-                    TagInfo tagInfo = new TagInfo();
-                    tagInfo.setEpc(info.getEpc());
+                    TagRecord record = recordPool.acquire();
+                    record.setEpcHex(info.getEpc());
+                    if (!acceptEpc(record)) {
+                        return;
+                    }
 
                     if (info.getResult() == 0) {
-                        tagInfo.setTid(info.getTid());
-                        tagInfo.setUserData(info.getUserdata());
+                        record.setTidHex(info.getTid());
+                        record.setUserDataHex(info.getUserdata());
                     } else {
-                        TagReader.this.log("GB 標籤讀取部分失敗 (result=" + info.getResult() + "): " + info.getEpc());
+                        TagReader.this.log(AsyncLogger.Level.WARN, "GB 標籤讀取部分失敗 (result={}): {}", info.getResult(), info.getEpc());
                     }
 
-                    tagInfo.setRssi(info.getRssi());
-                    tagInfo.setAntennaId(info.getAntId());
-                    tagInfo.setTagType(TagInfo.TagType.GB);
-
-                    if (onTagReadCallback != null) {
-                        onTagReadCallback.accept(tagInfo);
-                    }
-                    TagReader.this.log("讀取到 GB 標籤: " + info.getEpc());
+                    fillRecord(record, readerName, info.getResult(), info.getRssi(), info.getAntId(), TagInfo.TagType.GB);
+                    TagReader.this.log(AsyncLogger.Level.DEBUG, "讀取到 GB 標籤: {}", info.getEpc(), null);
+                    dispatch(record);
                 }
             }
         };
@@ -180,24 +273,22 @@ public class TagReader {
             @Override
             public void log(String readerName, LogBaseGJbInfo info) {
                 if (info != null) {
-                    TagInfo tagInfo = new TagInfo();
-                    tagInfo.setEpc(info.getEpc());
+                    TagRecord record = recordPool.acquire();
+                    record.setEpcHex(info.getEpc());
+                    if (!acceptEpc(record)) {
+                        return;
+                    }
 
                     if (info.getResult() == 0) {
-                        tagInfo.setTid(info.getTid());
-                        tagInfo.setUserData(info.getUserdata());
+                        record.setTidHex(info.getTid());
+                        record.setUserDataHex(info.getUserdata());
                     } else {
-                        TagReader.this.log("GJB 標籤讀取部分失敗 (result=" + info.getResult() + "): " + info.getEpc());
+                        TagReader.this.log(AsyncLogger.Level.WARN, "GJB 標籤讀取部分失敗 (result={}): {}", info.getResult(), info.getEpc());
                     }
 
-                    tagInfo.setRssi(info.getRssi());
-                    tagInfo.setAntennaId(info.getAntId());
-                    tagInfo.setTagType(TagInfo.TagType.GJB);
-
-                    if (onTagReadCallback != null) {
-                        onTagReadCallback.accept(tagInfo);
-                    }
-                    TagReader.this.log("讀取到 GJB 標籤: " + info.getEpc());
+                    fillRecord(record, readerName, info.getResult(), info.getRssi(), info.getAntId(), TagInfo.TagType.GJB);
+                    TagReader.this.log(AsyncLogger.Level.DEBUG, "讀取到 GJB 標籤: {}", info.getEpc(), null);
+                    dispatch(record);
                 }
             }
         };
@@ -213,9 +304,233 @@ public class TagReader {
             }
         };
 
+        // 讀取頭快取上報結束事件
+        client.cacheDataOver = new HandlerCacheDataOver() {
+            @Override
+            public void log(String readerName, MsgAppGetCacheTagData info) {
+                drainHarvest();
+                CountDownLatch over = cacheOver;
+                if (over != null) {
+                    over.countDown();
+                }
+            }
+        };
+
         log("事件處理器設置完成");
     }
 
+    /**
+     * 填入記錄的共同欄位
+     */
+    private void fillRecord(TagRecord record, String readerName, int result, int rssi, int antennaId, TagInfo.TagType tagType) {
+        record.setReaderName(readerName);
+        record.setResult(result);
+        record.setRssi(rssi);
+        record.setAntennaId(antennaId);
+        record.setTagType(tagType);
+        record.setTimestampNanos(TagRecord.nowEpochNanos());
+        metrics.recordRead(readerName, tagType, antennaId, result);
+        receivedCount.increment();
+    }
+
+    /**
+     * 以讀取頭記錄的時間取代接收時間並標記為快取讀取，格式錯誤時保留接收時間
+     */
+    private static void applyReaderTime(TagRecord record, String readerTime) {
+        try {
+            long millis = LocalDateTime.parse(readerTime, READER_TIME_FORMAT)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            record.setTimestampNanos(millis * 1_000_000L);
+            record.setHarvested(true);
+        } catch (DateTimeParseException e) {
+            // 保留接收時間
+        }
+    }
+
+    /**
+     * FastID 盤存時部分讀取頭將 TID 接在 EPC 之後上報，依 PC 的 EPC 長度分割
+     * @return EPC 位元組數，已有 TID 欄位或不需分割時回傳 -1
+     */
+    private static int fastIdEpcLength(LogBaseEpcInfo info) {
+        byte[] epc = info.getbEpc();
+        byte[] tid = info.getbTid();
+        int length = ((info.getPc() >> 11) & 0x1F) * 2;
+        if (epc == null || (tid != null && tid.length > 0) || length == 0 || epc.length <= length) {
+            return -1;
+        }
+        return length;
+    }
+
+    /**
+     * FastID 偵測：盤存開始後的前 FASTID_PROBE_READS 筆讀取中超過 FASTID_MAX_MISSES 筆沒有回傳 TID，
+     * 表示多數晶片不支援 FastID，改以一般 TID 讀取重新下盤存指令（不停止，介面狀態不變）；
+     * 混合標籤中只有少數不支援時保留 FastID，這些標籤不會有 TID
+     */
+    private void probeFastId(TagRecord record) {
+        if (fastIdProbeReads >= FASTID_PROBE_READS) {
+            return;
+        }
+        fastIdProbeReads++;
+        if (record.getTidLength() == 0) {
+            fastIdProbeMisses++;
+        }
+        if (fastIdProbeMisses <= FASTID_MAX_MISSES) {
+            if (fastIdProbeReads == FASTID_PROBE_READS && fastIdProbeMisses > 0) {
+                log(AsyncLogger.Level.WARN, "FastID 偵測: {} 筆讀取中 {} 筆未回傳 TID，保留 FastID",
+                    FASTID_PROBE_READS, fastIdProbeMisses);
+            }
+            return;
+        }
+        fastIdActive = false;
+        fastIdFallback = true;
+        log(AsyncLogger.Level.WARN, "FastID 偵測: {} 筆讀取中 {} 筆未回傳 TID，改用一般 TID 讀取",
+            fastIdProbeReads, fastIdProbeMisses);
+
+        BooleanSupplier inventory = lastInventory;
+        if (inventory != null) {
+            FASTID_FALLBACK_EXECUTOR.execute(() -> {
+                if (isReading && lastInventory == inventory) {
+                    inventory.getAsBoolean();
+                }
+            });
+        }
+    }
+
+    /**
+     * 主機端 EPC 過濾，不符合時歸還記錄並計數
+     */
+    private boolean acceptEpc(TagRecord record) {
+        EpcFilter filter = hostFilter;
+        if (filter == null || filter.matches(record)) {
+            return true;
+        }
+        record.release();
+        filteredCount.increment();
+        return false;
+    }
+
+    /**
+     * 分派標籤記錄
+     * 只有設置 onTagReadCallback 時才轉換成 TagInfo；
+     * 設置 onTagRecordCallback 時記錄交由其處理並歸還，否則直接歸還物件池
+     */
+    private void dispatch(TagRecord record) {
+        // 收取快取期間先暫存（排序後分派時持有鎖，不再暫存）
+        if (harvestBuffer != null && !Thread.holdsLock(harvestLock) && holdForHarvest(record)) {
+            return;
+        }
+        signalModel.update(record);
+        if (!passReportGate(record)) {
+            return;
+        }
+        dispatchedCount.increment();
+        if (onTagReadCallback != null) {
+            onTagReadCallback.accept(record.toTagInfo());
+        }
+        if (onTagRecordCallback != null) {
+            onTagRecordCallback.accept(record);
+        } else {
+            record.release();
+        }
+    }
+
+    private boolean holdForHarvest(TagRecord record) {
+        synchronized (harvestLock) {
+            List<TagRecord> buffer = harvestBuffer;
+            if (buffer == null) {
+                return false;
+            }
+            buffer.add(record);
+            return true;
+        }
+    }
+
+    /**
+     * 收取讀取頭快取（於重新連接後、非回調執行緒呼叫）
+     * 快取的讀取與收取期間即時上報的讀取一起依讀取時間排序後併入讀取串流，
+     * 讀取頭上報完畢後清除快取；逾時未完成時已收到的部分已併入串流，同樣清除快取，
+     * 避免下次收取時重複輸出（尚未上報的部分捨棄）
+     * @return 併入讀取串流的筆數
+     */
+    public int harvestCache(long timeoutMillis) {
+        if (!checkConnection()) return 0;
+
+        CountDownLatch over = new CountDownLatch(1);
+        synchronized (harvestLock) {
+            harvestBuffer = new ArrayList<>();
+            lastHarvestCount = 0;
+        }
+        cacheOver = over;
+        boolean complete = true;
+        boolean hasData = false;
+        try {
+            hasData = connection.requestCachedTags();
+            if (hasData) {
+                complete = over.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete = false;
+        } finally {
+            cacheOver = null;
+        }
+        // 正常情況已於結束事件中分派，逾時時於此分派已收到的部分
+        drainHarvest();
+        int count = lastHarvestCount;
+
+        if (!hasData) {
+            return count;
+        }
+        connection.clearCachedTags();
+        if (complete) {
+            log(AsyncLogger.Level.INFO, "已收取讀取頭快取（併入 {} 筆讀取）", count, null);
+        } else {
+            log(AsyncLogger.Level.WARN, "收取讀取頭快取逾時，已併入 {} 筆，捨棄其餘快取", count, null);
+        }
+        return count;
+    }
+
+    /**
+     * 依讀取時間排序並分派收取期間暫存的讀取（已分派過時不做任何事）
+     */
+    private void drainHarvest() {
+        synchronized (harvestLock) {
+            List<TagRecord> buffer = harvestBuffer;
+            if (buffer == null) {
+                return;
+            }
+            // 穩定排序，相同時間保留上報順序
+            buffer.sort(Comparator.comparingLong(TagRecord::getTimestampNanos));
+            for (TagRecord record : buffer) {
+                dispatch(record);
+            }
+            harvestBuffer = null;
+            lastHarvestCount = buffer.size();
+            harvestedCount.add(buffer.size());
+        }
+    }
+
+    /**
+     * 等待讀取頭上報讀取（開啟斷點續傳時讀取頭於斷線期間持續盤存，重新連接後直接繼續上報）
+     * @return 等待期間是否收到讀取
+     */
+    public boolean awaitReads(long timeoutMillis) {
+        long start = receivedCount.sum();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (receivedCount.sum() == start) {
+                if (System.nanoTime() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(20);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     /**
      * 開始讀取 EPC 標籤
      */
@@ -223,40 +538,52 @@ public class TagReader {
         if (!checkConnection()) return false;
 
         try {
-            currentProtocol = TagProtocol.EPC_6C;
+            beginInventory(EnumSet.of(TagProtocol.EPC_6C));
 
             MsgBaseInventoryEpc msg = new MsgBaseInventoryEpc();
             msg.setAntennaEnable(antennaEnable);
             msg.setInventoryMode(mode.getValue());
+            msg.setFilter(pushDownFilter());
 
-            // 設置讀取 TID
-            if (readTid) {
-                ParamEpcReadTid tidParam = new ParamEpcReadTid();
-                tidParam.setMode(0); // 自適應模式
-                tidParam.setLen(6);  // 6 個字
-                msg.setReadTid(tidParam);
+            // 設置讀取 TID：FastID 於盤存回應中一併取得，否則每個標籤另外讀取
+            boolean fastId = readTid && fastIdEnabled && !fastIdFallback;
+            if (fastId) {
+                msg.setParamFastId(new ParamFastId(1, 0));
+            } else if (readTid) {
+                msg.setReadTid(createTidParam());
             }
 
             // 設置讀取用戶數據
             if (readUserData) {
-                ParamEpcReadUserdata userParam = new ParamEpcReadUserdata();
-                userParam.setStart(0);
-                userParam.setLen(4); // 4 個字
-                msg.setReadUserdata(userParam);
+                msg.setReadUserdata(createEpcUserdataParam());
             }
 
-            connection.getClient().sendSynMsg(msg);
+            fastIdProbeReads = 0;
+            fastIdProbeMisses = 0;
+            fastIdActive = fastId;
+            connection.sendSynMsg(msg);
+
+            if (fastId && msg.getRtCode() != 0) {
+                log(AsyncLogger.Level.WARN, "讀取頭不支援 FastID ({})，改用一般 TID 讀取", msg.getRtMsg(), null);
+                fastIdActive = false;
+                fastIdFallback = true;
+                fastId = false;
+                msg.setParamFastId(null);
+                msg.setReadTid(createTidParam());
+                connection.sendSynMsg(msg);
+            }
 
             if (msg.getRtCode() == 0) {
                 isReading = true;
-                log("開始讀取 EPC 標籤");
+                rememberInventory(mode, () -> startReadEpc(antennaEnable, mode, readTid, readUserData));
+                log(fastId ? "開始讀取 EPC 標籤（FastID）" : "開始讀取 EPC 標籤");
                 return true;
             } else {
-                log("啟動讀取失敗: " + msg.getRtMsg());
+                log(AsyncLogger.Level.WARN, "啟動讀取失敗: {}", msg.getRtMsg(), null);
                 return false;
             }
         } catch (Exception e) {
-            log("讀取錯誤: " + e.getMessage());
+            log(AsyncLogger.Level.ERROR, "讀取錯誤: {}", e.getMessage(), null);
             return false;
         }
     }
@@ -268,7 +595,7 @@ public class TagReader {
         if (!checkConnection()) return false;
 
         try {
-            currentProtocol = TagProtocol.ISO_6B;
+            beginInventory(EnumSet.of(TagProtocol.ISO_6B));
 
             MsgBaseInventory6b msg = new MsgBaseInventory6b();
             msg.setAntennaEnable(antennaEnable);
@@ -276,23 +603,21 @@ public class TagReader {
             msg.setArea(1); // 讀取 TID + 用戶數據
 
             // 設置用戶數據讀取參數
-            Param6bReadUserdata userParam = new Param6bReadUserdata();
-            userParam.setStart(0);
-            userParam.setLen(8); // 8 bytes
-            msg.setReadUserdata(userParam);
+            msg.setReadUserdata(create6bUserdataParam());
 
-            connection.getClient().sendSynMsg(msg);
+            connection.sendSynMsg(msg);
 
             if (msg.getRtCode() == 0) {
                 isReading = true;
+                rememberInventory(mode, () -> startRead6b(antennaEnable, mode));
                 log("開始讀取 6B 標籤");
                 return true;
             } else {
-                log("啟動讀取失敗: " + msg.getRtMsg());
+                log(AsyncLogger.Level.WARN, "啟動讀取失敗: {}", msg.getRtMsg(), null);
                 return false;
             }
         } catch (Exception e) {
-            log("讀取錯誤: " + e.getMessage());
+            log(AsyncLogger.Level.ERROR, "讀取錯誤: {}", e.getMessage(), null);
             return false;
         }
     }
@@ -304,45 +629,331 @@ public class TagReader {
         if (!checkConnection()) return false;
 
         try {
-            currentProtocol = TagProtocol.GB;
+            beginInventory(EnumSet.of(TagProtocol.GB));
 
             MsgBaseInventoryGb msg = new MsgBaseInventoryGb();
             msg.setAntennaEnable(antennaEnable);
             msg.setInventoryMode(mode.getValue());
+            msg.setFilter(pushDownFilter());
 
             // 設置讀取 TID（標籤信息區）
             if (readTid) {
-                ParamEpcReadTid tidParam = new ParamEpcReadTid();
-                tidParam.setMode(0);
-                tidParam.setLen(6);
-                msg.setReadTid(tidParam);
+                msg.setReadTid(createTidParam());
             }
 
             // 設置讀取用戶數據
             if (readUserData) {
-                ParamGbReadUserdata userParam = new ParamGbReadUserdata();
-                userParam.setChildArea(0x30); // 用戶子區 0
-                userParam.setStart(0);
-                userParam.setLen(4);
-                msg.setReadUserdata(userParam);
+                msg.setReadUserdata(createGbUserdataParam());
             }
 
-            connection.getClient().sendSynMsg(msg);
+            connection.sendSynMsg(msg);
 
             if (msg.getRtCode() == 0) {
                 isReading = true;
+                rememberInventory(mode, () -> startReadGb(antennaEnable, mode, readTid, readUserData));
                 log("開始讀取 GB 標籤");
                 return true;
             } else {
-                log("啟動讀取失敗: " + msg.getRtMsg());
+                log(AsyncLogger.Level.WARN, "啟動讀取失敗: {}", msg.getRtMsg(), null);
+                return false;
+            }
+        } catch (Exception e) {
+            log(AsyncLogger.Level.ERROR, "讀取錯誤: {}", e.getMessage(), null);
+            return false;
+        }
+    }
+
+    /**
+     * 開始讀取 GJB 國軍標標籤
+     */
+    public boolean startReadGjb(long antennaEnable, ReadMode mode, boolean readTid, boolean readUserData) {
+        if (!checkConnection()) return false;
+
+        try {
+            beginInventory(EnumSet.of(TagProtocol.GJB));
+
+            MsgBaseInventoryGJb msg = new MsgBaseInventoryGJb();
+            msg.setAntennaEnable(antennaEnable);
+            msg.setInventoryMode(mode.getValue());
+            msg.setFilter(pushDownFilter());
+
+            if (readTid) {
+                msg.setReadTid(createTidParam());
+            }
+
+            if (readUserData) {
+                msg.setReadUserdata(createEpcUserdataParam());
+            }
+
+            connection.sendSynMsg(msg);
+
+            if (msg.getRtCode() == 0) {
+                isReading = true;
+                rememberInventory(mode, () -> startReadGjb(antennaEnable, mode, readTid, readUserData));
+                log("開始讀取 GJB 標籤");
+                return true;
+            } else {
+                log(AsyncLogger.Level.WARN, "啟動讀取失敗: {}", msg.getRtMsg(), null);
+                return false;
+            }
+        } catch (Exception e) {
+            log(AsyncLogger.Level.ERROR, "讀取錯誤: {}", e.getMessage(), null);
+            return false;
+        }
+    }
+
+    /**
+     * 開始混合盤存
+     * 以一道指令同時盤存多種協議，由讀取頭在每輪盤存中切換協議，
+     * 不需要主機停止再重新下指令；各協議的標籤仍由各自的事件上報，合併為同一個讀取串流
+     * @param protocols 要盤存的協議，只有一種時改用該協議的單一盤存指令
+     */
+    public boolean startReadHybrid(long antennaEnable, ReadMode mode, Set<TagProtocol> protocols,
+                                   boolean readTid, boolean readUserData) {
+        if (protocols.isEmpty()) {
+            throw new IllegalArgumentException("protocols must not be empty");
+        }
+        if (protocols.size() == 1) {
+            return startRead(protocols.iterator().next(), antennaEnable, mode, readTid, readUserData);
+        }
+        if (!checkConnection()) return false;
+
+        try {
+            EnumSet<TagProtocol> selected = EnumSet.copyOf(protocols);
+            beginInventory(selected);
+
+            MsgBaseInventoryHybrid msg = new MsgBaseInventoryHybrid();
+            msg.setAntennaEnable(antennaEnable);
+            msg.setInventoryMode(mode.getValue());
+            // 6B 標籤沒有 EPC，過濾條件只用於 EPC/GB/GJB
+            ParamEpcFilter filterParam = pushDownFilter();
+
+            if (selected.contains(TagProtocol.EPC_6C)) {
+                HybridEpcParam epcParam = new HybridEpcParam();
+                epcParam.setFilter(filterParam);
+                if (readTid) {
+                    epcParam.setReadTid(createTidParam());
+                }
+                if (readUserData) {
+                    epcParam.setReadUserdata(createEpcUserdataParam());
+                }
+                msg.setHybridEpcParam(epcParam);
+            }
+            if (selected.contains(TagProtocol.ISO_6B)) {
+                Hybrid6bParam param6b = new Hybrid6bParam();
+                param6b.setArea(1); // 讀取 TID + 用戶數據
+                param6b.setReadUserdata(create6bUserdataParam());
+                msg.setHybrid6bParam(param6b);
+            }
+            if (selected.contains(TagProtocol.GB)) {
+                HybridGbParam gbParam = new HybridGbParam();
+                gbParam.setFilter(filterParam);
+                if (readTid) {
+                    gbParam.setReadTid(createTidParam());
+                }
+                if (readUserData) {
+                    gbParam.setReadUserdata(createGbUserdataParam());
+                }
+                msg.setHybridGbParam(gbParam);
+            }
+            if (selected.contains(TagProtocol.GJB)) {
+                HybridGJbParam gjbParam = new HybridGJbParam();
+                gjbParam.setFilter(filterParam);
+                if (readTid) {
+                    gjbParam.setReadTid(createTidParam());
+                }
+                if (readUserData) {
+                    gjbParam.setReadUserdata(createEpcUserdataParam());
+                }
+                msg.setHybridGJbParam(gjbParam);
+            }
+
+            connection.sendSynMsg(msg);
+
+            if (msg.getRtCode() == 0) {
+                isReading = true;
+                rememberInventory(mode, () -> startReadHybrid(antennaEnable, mode, selected, readTid, readUserData));
+                log(AsyncLogger.Level.INFO, "開始混合盤存: {}", selected, null);
+                return true;
+            } else {
+                log(AsyncLogger.Level.WARN, "啟動混合盤存失敗（讀取頭可能不支援）: {}", msg.getRtMsg(), null);
                 return false;
             }
         } catch (Exception e) {
-            log("讀取錯誤: " + e.getMessage());
+            log(AsyncLogger.Level.ERROR, "讀取錯誤: {}", e.getMessage(), null);
             return false;
         }
     }
 
+    /**
+     * 依協議開始讀取（6B 固定讀取 TID 與用戶數據）
+     */
+    public boolean startRead(TagProtocol protocol, long antennaEnable, ReadMode mode, boolean readTid, boolean readUserData) {
+        switch (protocol) {
+            case ISO_6B:
+                return startRead6b(antennaEnable, mode);
+            case GB:
+                return startReadGb(antennaEnable, mode, readTid, readUserData);
+            case GJB:
+                return startReadGjb(antennaEnable, mode, readTid, readUserData);
+            case EPC_6C:
+            default:
+                return startReadEpc(antennaEnable, mode, readTid, readUserData);
+        }
+    }
+
+    /** TID 讀取參數：自適應模式，6 個字 */
+    private static ParamEpcReadTid createTidParam() {
+        ParamEpcReadTid tidParam = new ParamEpcReadTid();
+        tidParam.setMode(0); // 自適應模式
+        tidParam.setLen(6);  // 6 個字
+        return tidParam;
+    }
+
+    /** EPC/GJB 用戶數據讀取參數：從 0 開始 4 個字 */
+    private static ParamEpcReadUserdata createEpcUserdataParam() {
+        ParamEpcReadUserdata userParam = new ParamEpcReadUserdata();
+        userParam.setStart(0);
+        userParam.setLen(4); // 4 個字
+        return userParam;
+    }
+
+    /** GB 用戶數據讀取參數：用戶子區 0 從 0 開始 4 個字 */
+    private static ParamGbReadUserdata createGbUserdataParam() {
+        ParamGbReadUserdata userParam = new ParamGbReadUserdata();
+        userParam.setChildArea(0x30); // 用戶子區 0
+        userParam.setStart(0);
+        userParam.setLen(4);
+        return userParam;
+    }
+
+    /** 6B 用戶數據讀取參數：從 0 開始 8 位元組 */
+    private static Param6bReadUserdata create6bUserdataParam() {
+        Param6bReadUserdata userParam = new Param6bReadUserdata();
+        userParam.setStart(0);
+        userParam.setLen(8); // 8 bytes
+        return userParam;
+    }
+
+    /**
+     * 將 EPC 過濾條件交給讀取頭（於開始盤存時呼叫）
+     * 單條規則放入盤存指令的過濾參數，多條規則設為讀取頭的匹配規則；
+     * 有序號範圍或設置失敗時，讀取頭無法完全過濾，改由主機再比對一次
+     * @return 盤存指令的過濾參數，沒有過濾或已設為匹配規則時回傳 null
+     */
+    private ParamEpcFilter pushDownFilter() {
+        EpcFilter filter = epcFilter;
+        ParamEpcFilter param = null;
+        boolean pushed = false;
+        if (filter != null && filter.getRules().size() == 1) {
+            param = filter.getRules().get(0).toParam();
+            pushed = true;
+        }
+        if (filter == null || param != null) {
+            clearMultiMatchRules();
+        }
+        if (filter != null && param == null) {
+            pushed = connection.setMultiMatchRules(filter.toReaderFilters());
+            multiMatchApplied = pushed;
+        }
+
+        hostFilter = filter != null && (!pushed || !filter.isFullyPushable()) ? filter : null;
+        if (filter != null) {
+            log(AsyncLogger.Level.INFO, "EPC 過濾: {}（{}）", filter,
+                !pushed ? "讀取頭不支援，主機比對" : hostFilter != null ? "讀取頭過濾，主機比對序號範圍" : "讀取頭過濾");
+        }
+        return param;
+    }
+
+    private void clearMultiMatchRules() {
+        if (multiMatchApplied) {
+            connection.clearMultiMatchRules();
+            multiMatchApplied = false;
+        }
+    }
+
+    /**
+     * 記錄盤存協議並套用上報策略（各開始盤存方法送出指令前呼叫）
+     */
+    private void beginInventory(EnumSet<TagProtocol> protocols) {
+        fastIdActive = false;
+        currentProtocol = protocols.iterator().next();
+        currentProtocols = Collections.unmodifiableSet(protocols);
+        applyReportPolicy();
+    }
+
+    /**
+     * 將上報策略設給讀取頭並準備主機端閘門
+     * 讀取頭不支援重複過濾時，時間窗與 RSSI 門檻改由主機判斷；
+     * 重連恢復盤存時保留已上報的標籤，ONCE 不會重複上報
+     */
+    private void applyReportPolicy() {
+        ReportPolicy policy = reportPolicy;
+        boolean pushed = true;
+        // 讀取頭預設即為全部上報，只在需要變更或還原時送出設定
+        if (!policy.isReaderDefault() || readerPolicyApplied) {
+            pushed = connection.setTagLog(policy.getRepeatedTime(), policy.getRssiThreshold());
+            readerPolicyApplied = policy.isReaderDefault() ? !pushed : pushed;
+        }
+        boolean fallback = !pushed && !policy.isReaderDefault();
+
+        TagIndex index = reportIndex;
+        if (!policy.needsHostGate() && !fallback) {
+            index = null;
+        } else if (index == null || !isReading || policy != activePolicy) {
+            index = new TagIndex();
+        }
+        activePolicy = policy;
+        hostFallback = fallback;
+        reportIndex = index;
+
+        if (!policy.isReaderDefault()) {
+            log(AsyncLogger.Level.INFO, "上報策略: {}（{}）", policy,
+                fallback ? "讀取頭不支援，主機過濾" : policy.needsHostGate() ? "讀取頭過濾，主機判斷變化" : "讀取頭過濾");
+        }
+    }
+
+    /**
+     * 主機端上報閘門，不需上報時歸還記錄並計數
+     * 只在回調執行緒存取索引，索引只記錄已上報的讀取
+     */
+    private boolean passReportGate(TagRecord record) {
+        TagIndex index = reportIndex;
+        if (index == null) {
+            return true;
+        }
+        ReportPolicy policy = activePolicy;
+        boolean pass;
+        if (hostFallback && record.getRssi() < policy.getRssiThreshold()) {
+            pass = false;
+        } else {
+            int row = index.find(record);
+            switch (policy.getMode()) {
+                case ONCE:
+                    pass = row < 0;
+                    break;
+                case ON_CHANGE:
+                    pass = row < 0 || index.getAntennaId(row) != record.getAntennaId();
+                    break;
+                case INTERVAL:
+                    pass = row < 0 || record.getTimestampNanos() - index.getLastSeenNanos(row)
+                        >= policy.getWindowMillis() * 1_000_000L;
+                    break;
+                case ALL:
+                default:
+                    pass = true;
+                    break;
+            }
+        }
+        if (pass) {
+            index.upsert(record);
+            return true;
+        }
+        record.release();
+        suppressedCount.increment();
+        return false;
+    }
+
     /**
      * 停止讀取
      */
@@ -354,27 +965,60 @@ public class TagReader {
         boolean result = connection.stop();
         if (result) {
             isReading = false;
+            lastInventory = null;
+            // 匹配規則是讀取頭的全域設定，停止後清除以免影響其他盤存
+            clearMultiMatchRules();
+            // 重複過濾同為全域設定，還原為全部上報，其他程式連接時不受影響
+            if (readerPolicyApplied && connection.setTagLog(0, 0)) {
+                readerPolicyApplied = false;
+            }
             log("已停止讀取");
         }
         return result;
     }
 
+    /**
+     * 重新連接後恢復斷線前的連續盤存（使用相同參數）
+     * @return 是否已恢復；斷線前未在連續盤存時回傳 false
+     */
+    public boolean resumeInventory() {
+        BooleanSupplier inventory = lastInventory;
+        if (!isReading || inventory == null) {
+            return false;
+        }
+        log(AsyncLogger.Level.INFO, "恢復盤存: {}", currentProtocols, null);
+        // 讀取頭可能已重新啟動，重新設置天線切換方式
+        if (antennaScheduler.isApplied()) {
+            antennaScheduler.apply();
+        }
+        return inventory.getAsBoolean();
+    }
+
+    private void rememberInventory(ReadMode mode, BooleanSupplier inventory) {
+        // 單次讀取會自行結束，不需要恢復
+        lastInventory = mode == ReadMode.CONTINUOUS ? inventory : null;
+    }
+
     /**
      * 檢查連接狀態
      */
     private boolean checkConnection() {
         if (connection == null || !connection.isConnected()) {
-            log("錯誤：未連接讀取頭");
+            log(AsyncLogger.Level.WARN, "錯誤：未連接讀取頭", null, null);
             return false;
         }
         return true;
     }
 
     private void log(String message) {
-        System.out.println("[TagReader] " + message);
-        if (onLogCallback != null) {
-            onLogCallback.accept(message);
-        }
+        log(AsyncLogger.Level.INFO, message, null, null);
+    }
+
+    /**
+     * 非同步記錄，樣板中的 "{}" 依序替換為參數；等級未開啟時不建立字串
+     */
+    private void log(AsyncLogger.Level level, String template, Object arg1, Object arg2) {
+        LOGGER.log(level, "TagReader", template, arg1, arg2, onLogCallback);
     }
 
     // Getters
@@ -382,15 +1026,137 @@ public class TagReader {
         return isReading;
     }
 
+    public AntennaScheduler getAntennaScheduler() {
+        return antennaScheduler;
+    }
+
+    /**
+     * 目前盤存的協議（混合盤存時為其中第一種）
+     */
     public TagProtocol getCurrentProtocol() {
         return currentProtocol;
     }
 
+    /**
+     * 目前盤存的所有協議
+     */
+    public Set<TagProtocol> getCurrentProtocols() {
+        return currentProtocols;
+    }
+
+    public boolean isHybrid() {
+        return currentProtocols.size() > 1;
+    }
+
+    public TagRecordPool getRecordPool() {
+        return recordPool;
+    }
+
+    public EpcFilter getEpcFilter() {
+        return epcFilter;
+    }
+
+    /**
+     * 主機端過濾掉的讀取筆數（讀取頭已過濾的標籤不會上報，不在此計數）
+     */
+    public long getFilteredCount() {
+        return filteredCount.sum();
+    }
+
+    public boolean isFastIdEnabled() {
+        return fastIdEnabled;
+    }
+
+    /**
+     * 目前盤存是否以 FastID 取得 TID（偵測到不支援後為 false）
+     */
+    public boolean isFastIdActive() {
+        return fastIdActive;
+    }
+
+    /**
+     * 從讀取頭快取併入讀取串流的累計筆數
+     */
+    public long getHarvestedCount() {
+        return harvestedCount.sum();
+    }
+
+    public ReportPolicy getReportPolicy() {
+        return reportPolicy;
+    }
+
+    /**
+     * 查詢讀取頭目前的重複過濾設定
+     * @return 對應的上報策略（ALL 或 INTERVAL），查詢失敗時回傳 null
+     */
+    public ReportPolicy queryReaderReportPolicy() {
+        MsgBaseGetTagLog tagLog = connection.queryTagLog();
+        if (tagLog == null) {
+            return null;
+        }
+        int windowMillis = Math.min(tagLog.getRepeatedTime(), 0xFFFF) * ReportPolicy.REPEATED_TIME_UNIT_MS;
+        ReportPolicy policy = windowMillis > 0 ? ReportPolicy.interval(windowMillis) : ReportPolicy.all();
+        int rssiThreshold = tagLog.getRssiTV() & 0xFF;
+        return rssiThreshold > 0 ? policy.withRssiThreshold(rssiThreshold) : policy;
+    }
+
+    /**
+     * 主機端上報閘門略過的讀取筆數
+     */
+    public long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    /**
+     * 每個標籤的信號模型
+     */
+    public TagSignalModel getSignalModel() {
+        return signalModel;
+    }
+
+    /**
+     * 交給回調的讀取筆數
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount.sum();
+    }
+
+    // Setters
+    /**
+     * 設置 EPC 過濾條件（6B 不適用），null 表示不過濾；於下次開始盤存時生效
+     */
+    public void setEpcFilter(EpcFilter epcFilter) {
+        this.epcFilter = epcFilter;
+    }
+
+    /**
+     * 設置 EPC 盤存讀取 TID 時是否使用 FastID（混合盤存不適用）；於下次開始盤存時生效，
+     * 重新啟用時清除先前偵測到不支援的記錄
+     */
+    public void setFastIdEnabled(boolean fastIdEnabled) {
+        this.fastIdEnabled = fastIdEnabled;
+        this.fastIdFallback = false;
+    }
+
+    /**
+     * 設置上報策略，null 表示全部上報；於下次開始盤存時生效
+     */
+    public void setReportPolicy(ReportPolicy reportPolicy) {
+        this.reportPolicy = reportPolicy != null ? reportPolicy : ReportPolicy.all();
+    }
+
     // Setters for callbacks
     public void setOnTagReadCallback(Consumer<TagInfo> callback) {
         this.onTagReadCallback = callback;
     }
 
+    /**
+     * 設置池化記錄回調，接收端處理完畢後須呼叫 TagRecord.release()
+     */
+    public void setOnTagRecordCallback(Consumer<TagRecord> callback) {
+        this.onTagRecordCallback = callback;
+    }
+
     public void setOnReadOverCallback(Runnable callback) {
         this.onReadOverCallback = callback;
     }
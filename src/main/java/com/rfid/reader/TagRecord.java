@@ -0,0 +1,337 @@
+package com.rfid.reader;
+
+/**
+ * 精簡標籤讀取記錄
+ * EPC/TID/用戶數據以位元組存放，時間為 epoch 奈秒，RSSI/天線為基本型別；
+ * 由 TagRecordPool 重複使用，只有顯示時才轉成字串
+ */
+public final class TagRecord {
+
+    /** EPC 最大長度（位元組，496 bits） */
+    public static final int MAX_EPC_BYTES = 62;
+    /** TID 最大長度（位元組） */
+    public static final int MAX_TID_BYTES = 32;
+    /** 用戶數據最大長度（位元組） */
+    public static final int MAX_USER_DATA_BYTES = 64;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    // 以 currentTimeMillis 為基準，nanoTime 推進，避免每次取時間都配置物件
+    private static final long CLOCK_BASE_EPOCH_NANOS = System.currentTimeMillis() * 1_000_000L;
+    private static final long CLOCK_BASE_NANO_TIME = System.nanoTime();
+
+    private final byte[] epc = new byte[MAX_EPC_BYTES];
+    private final byte[] tid = new byte[MAX_TID_BYTES];
+    private final byte[] userData = new byte[MAX_USER_DATA_BYTES];
+    private int epcLength;
+    private int tidLength;
+    private int userDataLength;
+
+    private long timestampNanos;  // epoch 奈秒
+    private int rssi;
+    private int antennaId;
+    private int result;           // 讀取結果，0 為完整成功
+    private TagInfo.TagType tagType;
+    private String readerName;
+
+    // 信號模型寫入：平滑 RSSI、最強峰值時間、最先與最後到達峰值的天線（0 表示無法判斷）
+    private int smoothedRssi;
+    private long peakNanos;
+    private int entryAntenna;
+    private int exitAntenna;
+
+    // 收取自讀取頭快取，時間戳為讀取頭記錄的讀取時間而非接收時間
+    private boolean harvested;
+
+    // 所屬的物件池，為 null 表示非池化配置
+    private final TagRecordPool pool;
+
+    TagRecord(TagRecordPool pool) {
+        this.pool = pool;
+    }
+
+    public TagRecord() {
+        this(null);
+    }
+
+    /**
+     * 取得目前時間（epoch 奈秒）
+     */
+    public static long nowEpochNanos() {
+        return CLOCK_BASE_EPOCH_NANOS + (System.nanoTime() - CLOCK_BASE_NANO_TIME);
+    }
+
+    /**
+     * 重置所有欄位以便重複使用
+     */
+    public void reset() {
+        epcLength = 0;
+        tidLength = 0;
+        userDataLength = 0;
+        timestampNanos = 0;
+        rssi = 0;
+        antennaId = 0;
+        result = 0;
+        tagType = null;
+        readerName = null;
+        smoothedRssi = 0;
+        peakNanos = 0;
+        entryAntenna = 0;
+        exitAntenna = 0;
+        harvested = false;
+    }
+
+    /**
+     * 歸還至物件池
+     */
+    public void release() {
+        if (pool != null) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * 複製另一筆記錄的內容
+     */
+    public void copyFrom(TagRecord other) {
+        System.arraycopy(other.epc, 0, epc, 0, other.epcLength);
+        System.arraycopy(other.tid, 0, tid, 0, other.tidLength);
+        System.arraycopy(other.userData, 0, userData, 0, other.userDataLength);
+        epcLength = other.epcLength;
+        tidLength = other.tidLength;
+        userDataLength = other.userDataLength;
+        timestampNanos = other.timestampNanos;
+        rssi = other.rssi;
+        antennaId = other.antennaId;
+        result = other.result;
+        tagType = other.tagType;
+        readerName = other.readerName;
+        smoothedRssi = other.smoothedRssi;
+        peakNanos = other.peakNanos;
+        entryAntenna = other.entryAntenna;
+        exitAntenna = other.exitAntenna;
+        harvested = other.harvested;
+    }
+
+    // 以十六進位字串設置資料（不配置新物件）
+    public void setEpcHex(String hex) {
+        epcLength = parseHex(hex, epc);
+    }
+
+    public void setTidHex(String hex) {
+        tidLength = parseHex(hex, tid);
+    }
+
+    public void setUserDataHex(String hex) {
+        userDataLength = parseHex(hex, userData);
+    }
+
+    public void setEpc(byte[] src, int offset, int length) {
+        epcLength = copyBytes(src, offset, length, epc);
+    }
+
+    public void setTid(byte[] src, int offset, int length) {
+        tidLength = copyBytes(src, offset, length, tid);
+    }
+
+    public void setUserData(byte[] src, int offset, int length) {
+        userDataLength = copyBytes(src, offset, length, userData);
+    }
+
+    // 顯示用字串（每次呼叫都會建立新字串）
+    public String getEpcHex() {
+        return toHex(epc, epcLength);
+    }
+
+    public String getTidHex() {
+        return toHex(tid, tidLength);
+    }
+
+    public String getUserDataHex() {
+        return toHex(userData, userDataLength);
+    }
+
+    /**
+     * 轉換為顯示用的 TagInfo
+     */
+    public TagInfo toTagInfo() {
+        TagInfo tagInfo = new TagInfo();
+        tagInfo.setEpc(toHexOrNull(epc, epcLength));
+        tagInfo.setTid(toHexOrNull(tid, tidLength));
+        tagInfo.setUserData(toHexOrNull(userData, userDataLength));
+        tagInfo.setRssi(rssi);
+        tagInfo.setAntennaId(antennaId);
+        tagInfo.setTagType(tagType);
+        tagInfo.setReadTimeMillis(timestampNanos / 1_000_000L);
+        tagInfo.setReaderName(readerName);
+        tagInfo.setSmoothedRssi(smoothedRssi);
+        tagInfo.setPassAntennas(entryAntenna, exitAntenna);
+        tagInfo.setHarvested(harvested);
+        return tagInfo;
+    }
+
+    /**
+     * 將十六進位字串解析到目標陣列，回傳位元組長度
+     * 超出容量或奇數結尾的部分會被忽略
+     */
+    static int parseHex(String hex, byte[] dest) {
+        if (hex == null) {
+            return 0;
+        }
+        int length = Math.min(hex.length() / 2, dest.length);
+        for (int i = 0; i < length; i++) {
+            int hi = Character.digit(hex.charAt(i * 2), 16);
+            int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return i;
+            }
+            dest[i] = (byte) ((hi << 4) | lo);
+        }
+        return length;
+    }
+
+    static String toHex(byte[] bytes, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = bytes[i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[b >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static String toHexOrNull(byte[] bytes, int length) {
+        return length > 0 ? toHex(bytes, length) : null;
+    }
+
+    private static int copyBytes(byte[] src, int offset, int length, byte[] dest) {
+        int n = Math.min(length, dest.length);
+        System.arraycopy(src, offset, dest, 0, n);
+        return n;
+    }
+
+    // Getters and Setters
+    public byte[] getEpcBytes() {
+        return epc;
+    }
+
+    public int getEpcLength() {
+        return epcLength;
+    }
+
+    public byte[] getTidBytes() {
+        return tid;
+    }
+
+    public int getTidLength() {
+        return tidLength;
+    }
+
+    public byte[] getUserDataBytes() {
+        return userData;
+    }
+
+    public int getUserDataLength() {
+        return userDataLength;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public void setTimestampNanos(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    public void setRssi(int rssi) {
+        this.rssi = rssi;
+    }
+
+    public int getAntennaId() {
+        return antennaId;
+    }
+
+    public void setAntennaId(int antennaId) {
+        this.antennaId = antennaId;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public void setResult(int result) {
+        this.result = result;
+    }
+
+    public TagInfo.TagType getTagType() {
+        return tagType;
+    }
+
+    public void setTagType(TagInfo.TagType tagType) {
+        this.tagType = tagType;
+    }
+
+    public String getReaderName() {
+        return readerName;
+    }
+
+    public void setReaderName(String readerName) {
+        this.readerName = readerName;
+    }
+
+    public int getSmoothedRssi() {
+        return smoothedRssi;
+    }
+
+    public void setSmoothedRssi(int smoothedRssi) {
+        this.smoothedRssi = smoothedRssi;
+    }
+
+    public long getPeakNanos() {
+        return peakNanos;
+    }
+
+    public void setPeakNanos(long peakNanos) {
+        this.peakNanos = peakNanos;
+    }
+
+    public int getEntryAntenna() {
+        return entryAntenna;
+    }
+
+    public int getExitAntenna() {
+        return exitAntenna;
+    }
+
+    /**
+     * 設置最先與最後到達峰值的天線，0 表示無法判斷方向
+     */
+    public void setPassAntennas(int entryAntenna, int exitAntenna) {
+        this.entryAntenna = entryAntenna;
+        this.exitAntenna = exitAntenna;
+    }
+
+    public boolean isHarvested() {
+        return harvested;
+    }
+
+    public void setHarvested(boolean harvested) {
+        this.harvested = harvested;
+    }
+
+    @Override
+    public String toString() {
+        return "TagRecord{" +
+                "epc=" + getEpcHex() +
+                ", tid=" + getTidHex() +
+                ", rssi=" + rssi +
+                ", antennaId=" + antennaId +
+                ", tagType=" + tagType +
+                ", timestampNanos=" + timestampNanos +
+                '}';
+    }
+}
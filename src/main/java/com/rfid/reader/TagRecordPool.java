@@ -0,0 +1,70 @@
+package com.rfid.reader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TagRecord 物件池
+ * 預先配置固定數量的記錄，讀取回調取用後由消費端歸還，
+ * 讓長時間連續盤存時回調執行緒不產生垃圾物件
+ */
+public class TagRecordPool {
+
+    /** 預設池大小 */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private final ArrayBlockingQueue<TagRecord> free;
+    private final int size;
+
+    // 池耗盡時額外配置的次數
+    private final AtomicLong overflowCount;
+
+    public TagRecordPool() {
+        this(DEFAULT_SIZE);
+    }
+
+    public TagRecordPool(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        this.size = size;
+        this.free = new ArrayBlockingQueue<>(size);
+        this.overflowCount = new AtomicLong();
+        for (int i = 0; i < size; i++) {
+            free.offer(new TagRecord(this));
+        }
+    }
+
+    /**
+     * 取得一筆已重置的記錄，池耗盡時額外配置
+     */
+    public TagRecord acquire() {
+        TagRecord record = free.poll();
+        if (record == null) {
+            overflowCount.incrementAndGet();
+            return new TagRecord(this);
+        }
+        return record;
+    }
+
+    /**
+     * 歸還記錄，池已滿時交由 GC 回收
+     */
+    void release(TagRecord record) {
+        record.reset();
+        free.offer(record);
+    }
+
+    // Getters
+    public int getSize() {
+        return size;
+    }
+
+    public int getAvailable() {
+        return free.size();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+}
@@ -0,0 +1,261 @@
+package com.rfid.reader;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 每個標籤的信號模型
+ * 依每支天線以時間加權的指數移動平均（EWMA）平滑 RSSI，並記錄平滑值的峰值與峰值時間；
+ * 由各天線到達峰值的先後推斷標籤通過多天線門架的方向（天線編號沿通道順序排列時，
+ * 先到峰值的天線編號較小為 FORWARD，較大為 REVERSE）。
+ *
+ * 每筆讀取 O(1)：每個標籤固定保留 ANTENNA_SLOTS 支天線的狀態，超過時取代最久未讀到的天線；
+ * 追蹤的標籤數有上限，超過時淘汰最久未讀到的標籤。標籤超過通過間隔沒有讀到時，
+ * 下一次讀取視為新的通過，重新計算峰值。
+ *
+ * 讀取時間須為讀取頭時間或接收時間（epoch 奈秒），同一時間的多筆讀取以最小權重平滑
+ */
+public class TagSignalModel {
+
+    /** 每個標籤保留的天線數 */
+    public static final int ANTENNA_SLOTS = 4;
+    /** 預設平滑時間常數（毫秒） */
+    public static final int DEFAULT_TAU_MILLIS = 200;
+    /** 預設通過間隔（毫秒），超過此時間沒有讀到即視為新的通過 */
+    public static final int DEFAULT_PASS_GAP_MILLIS = 2000;
+    /** 預設最多追蹤的標籤數 */
+    public static final int DEFAULT_MAX_TAGS = 65536;
+
+    // 天線至少讀到幾次，峰值才列入方向判斷
+    private static final int MIN_PEAK_READS = 3;
+    // 讀取時間相同或倒退時的最小平滑權重
+    private static final double MIN_ALPHA = 0.1;
+
+    /** 通過方向 */
+    public enum Direction {
+        UNKNOWN,
+        FORWARD,
+        REVERSE;
+
+        /**
+         * 由最先與最後到達峰值的天線判斷方向，任一為 0 時為 UNKNOWN
+         */
+        public static Direction of(int entryAntenna, int exitAntenna) {
+            if (entryAntenna <= 0 || exitAntenna <= 0 || entryAntenna == exitAntenna) {
+                return UNKNOWN;
+            }
+            return entryAntenna < exitAntenna ? FORWARD : REVERSE;
+        }
+
+        /**
+         * 顯示用字串，例如「1→3」，無法判斷時為空字串
+         */
+        public static String describe(int entryAntenna, int exitAntenna) {
+            return of(entryAntenna, exitAntenna) == UNKNOWN ? "" : entryAntenna + "→" + exitAntenna;
+        }
+    }
+
+    // 單一標籤的信號狀態存放於一個 long[]，連續記憶體減少快取失誤；
+    // 每支天線一組欄位（天線編號<<32|讀取次數、平滑值、峰值、最後讀取時間、峰值時間），最後一格為標籤最後讀取時間
+    private static final int ANTENNA_READS = 0;
+    private static final int SMOOTHED = 1;
+    private static final int PEAK = 2;
+    private static final int LAST_NANOS = 3;
+    private static final int PEAK_NANOS = 4;
+    private static final int SLOT_FIELDS = 5;
+    private static final int LAST_SEEN = ANTENNA_SLOTS * SLOT_FIELDS;
+    private static final int SIGNAL_LENGTH = LAST_SEEN + 1;
+
+    private static int antennaOf(long[] signal, int base) {
+        return (int) (signal[base + ANTENNA_READS] >>> 32);
+    }
+
+    private static int readsOf(long[] signal, int base) {
+        return (int) signal[base + ANTENNA_READS];
+    }
+
+    private static double doubleOf(long[] signal, int index) {
+        return Double.longBitsToDouble(signal[index]);
+    }
+
+    private static void setDouble(long[] signal, int index, double value) {
+        signal[index] = Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * 清除所有天線（新的通過）
+     */
+    private static void resetAntennas(long[] signal) {
+        for (int base = 0; base < LAST_SEEN; base += SLOT_FIELDS) {
+            signal[base + ANTENNA_READS] = 0;
+        }
+    }
+
+    /**
+     * 取得天線所在槽位的起始索引，沒有時使用空槽或取代最久未讀到的天線
+     */
+    private static int slotFor(long[] signal, int antennaId) {
+        int empty = -1;
+        int oldest = 0;
+        for (int base = 0; base < LAST_SEEN; base += SLOT_FIELDS) {
+            int antenna = antennaOf(signal, base);
+            if (antenna == antennaId && readsOf(signal, base) > 0) {
+                return base;
+            }
+            if (readsOf(signal, base) == 0) {
+                if (empty < 0) {
+                    empty = base;
+                }
+            } else if (signal[base + LAST_NANOS] < signal[oldest + LAST_NANOS]) {
+                oldest = base;
+            }
+        }
+        int base = empty >= 0 ? empty : oldest;
+        signal[base + ANTENNA_READS] = (long) antennaId << 32;
+        return base;
+    }
+
+    private final double tauNanos;
+    private final long passGapNanos;
+    private final int maxTags;
+
+    // 存取順序的 LinkedHashMap，超過上限時淘汰最久未讀到的標籤；以自身為鎖
+    private final LinkedHashMap<TagKey, long[]> signals;
+    private final TagKey probe = new TagKey();
+    private long evictedCount;
+
+    public TagSignalModel() {
+        this(DEFAULT_TAU_MILLIS, DEFAULT_PASS_GAP_MILLIS, DEFAULT_MAX_TAGS);
+    }
+
+    /**
+     * @param tauMillis 平滑時間常數（毫秒），越大越平滑、反應越慢
+     * @param passGapMillis 通過間隔（毫秒）
+     * @param maxTags 最多追蹤的標籤數
+     */
+    public TagSignalModel(int tauMillis, int passGapMillis, int maxTags) {
+        if (tauMillis <= 0 || passGapMillis <= 0 || maxTags <= 0) {
+            throw new IllegalArgumentException("tauMillis, passGapMillis and maxTags must be positive");
+        }
+        this.tauNanos = tauMillis * 1_000_000.0;
+        this.passGapNanos = passGapMillis * 1_000_000L;
+        this.maxTags = maxTags;
+        this.signals = new LinkedHashMap<TagKey, long[]>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TagKey, long[]> eldest) {
+                if (size() > TagSignalModel.this.maxTags) {
+                    evictedCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 以一筆讀取更新標籤的信號狀態，並將平滑 RSSI、峰值時間與通過方向寫回記錄
+     */
+    public void update(TagRecord record) {
+        synchronized (signals) {
+            if (!probe.set(record)) {
+                return;
+            }
+            long now = record.getTimestampNanos();
+            long[] signal = signals.get(probe);
+            if (signal == null) {
+                signal = new long[SIGNAL_LENGTH];
+                signals.put(probe.copy(), signal);
+            } else if (now - signal[LAST_SEEN] > passGapNanos) {
+                resetAntennas(signal);
+            }
+            signal[LAST_SEEN] = Math.max(signal[LAST_SEEN], now);
+
+            int slot = slotFor(signal, record.getAntennaId());
+            double rssi = record.getRssi();
+            double smoothed;
+            if (readsOf(signal, slot) == 0) {
+                smoothed = rssi;
+                setDouble(signal, slot + PEAK, rssi);
+                signal[slot + PEAK_NANOS] = now;
+                signal[slot + LAST_NANOS] = now;
+            } else {
+                // 依與上一筆的時間差調整權重，讀取速率不同時平滑程度一致
+                long dt = now - signal[slot + LAST_NANOS];
+                double alpha = dt > 0 ? Math.max(MIN_ALPHA, 1 - Math.exp(-dt / tauNanos)) : MIN_ALPHA;
+                smoothed = doubleOf(signal, slot + SMOOTHED);
+                smoothed += alpha * (rssi - smoothed);
+                if (smoothed > doubleOf(signal, slot + PEAK)) {
+                    setDouble(signal, slot + PEAK, smoothed);
+                    signal[slot + PEAK_NANOS] = now;
+                }
+                signal[slot + LAST_NANOS] = Math.max(signal[slot + LAST_NANOS], now);
+            }
+            setDouble(signal, slot + SMOOTHED, smoothed);
+            signal[slot + ANTENNA_READS]++;
+
+            // 最先與最後到達峰值的天線，以及最強峰值的時間
+            int entry = 0;
+            int exit = 0;
+            long entryNanos = Long.MAX_VALUE;
+            long exitNanos = Long.MIN_VALUE;
+            int strongest = slot;
+            for (int base = 0; base < LAST_SEEN; base += SLOT_FIELDS) {
+                int reads = readsOf(signal, base);
+                if (reads == 0) {
+                    continue;
+                }
+                if (doubleOf(signal, base + PEAK) > doubleOf(signal, strongest + PEAK)) {
+                    strongest = base;
+                }
+                if (reads < MIN_PEAK_READS) {
+                    continue;
+                }
+                long peakNanos = signal[base + PEAK_NANOS];
+                if (peakNanos < entryNanos) {
+                    entryNanos = peakNanos;
+                    entry = antennaOf(signal, base);
+                }
+                if (peakNanos > exitNanos) {
+                    exitNanos = peakNanos;
+                    exit = antennaOf(signal, base);
+                }
+            }
+            record.setSmoothedRssi((int) Math.round(smoothed));
+            record.setPeakNanos(signal[strongest + PEAK_NANOS]);
+            if (entry != exit && entryNanos < exitNanos) {
+                record.setPassAntennas(entry, exit);
+            } else {
+                record.setPassAntennas(0, 0);
+            }
+        }
+    }
+
+    /**
+     * 清除所有標籤的信號狀態
+     */
+    public void clear() {
+        synchronized (signals) {
+            signals.clear();
+        }
+    }
+
+    // Getters
+    public int size() {
+        synchronized (signals) {
+            return signals.size();
+        }
+    }
+
+    public int getMaxTags() {
+        return maxTags;
+    }
+
+    /**
+     * 因達上限而淘汰的標籤數
+     */
+    public long getEvictedCount() {
+        synchronized (signals) {
+            return evictedCount;
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.rfid.simulator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 本機讀取頭模擬器
+ * 實作 GClient.openTcp 使用的 TCP 協議中足夠的部分：
+ * 設備資訊、版本、能力、功率查詢與設置、EPC/6B/GB/GJB 與混合盤存（含 FastID）、停止、匹配規則與重複標籤過濾、
+ * 斷點續傳與快取收取，並可注入斷線與慢回應，作為負載與延遲測試的基礎
+ */
+public class ReaderSimulator {
+
+    /** 預設監聽端口 */
+    public static final int DEFAULT_PORT = 8160;
+
+    /** 斷線快取的容量（筆），已滿時不再快取新的讀取 */
+    public static final int MAX_CACHED_READS = 100_000;
+
+    private final int port;
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+    private Thread acceptThread;
+    private final List<SimulatorSession> sessions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+
+    // 模擬設備參數
+    private volatile String serialNumber = "SIM00000001";
+    private volatile String appVersion = "1.0.0.0";
+    private volatile String baseVersion = "1.0.0.0";
+    private volatile int antennaCount = 4;
+    private volatile int maxPower = 33;
+    private volatile int minPower = 0;
+    private final Map<Integer, Integer> antennaPowers = new ConcurrentHashMap<>();
+
+    // 盤存負載
+    private volatile int tagPopulation = 100;
+    private volatile int readsPerSecond = 1000;
+    private volatile int fastIdPercent = 100; // 支援 FastID 的標籤比例，負值表示讀取頭不支援 FastID
+
+    // 斷點續傳：開啟時斷線後繼續盤存，讀取存入快取，由下一個連接接手
+    private volatile boolean breakpointResume;
+    private final List<CachedRead> cache = new ArrayList<>();
+    private SimulatorSession.Inventory detachedInventory;
+    private long droppedReads;
+
+    // 故障注入
+    private volatile int responseDelayMillis;
+    private ScheduledExecutorService faultScheduler;
+
+    // 回調函數
+    private Consumer<String> onLogCallback;
+
+    public ReaderSimulator() {
+        this(DEFAULT_PORT);
+    }
+
+    /**
+     * @param port 監聽端口，0 表示自動分配
+     */
+    public ReaderSimulator(int port) {
+        this.port = port;
+    }
+
+    /**
+     * 開始監聽
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        running = true;
+
+        acceptThread = new Thread(this::acceptLoop, "simulator-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log("模擬器已啟動，端口 " + getPort());
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                SimulatorSession session = new SimulatorSession(this, socket, sessionCounter.incrementAndGet());
+                sessions.add(session);
+                session.start();
+                log("客戶端已連接: " + socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (running) {
+                    log("接受連接錯誤: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止模擬器並關閉所有連接
+     */
+    public synchronized void stop() {
+        running = false;
+        if (faultScheduler != null) {
+            faultScheduler.shutdownNow();
+            faultScheduler = null;
+        }
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            log("關閉監聽錯誤: " + e.getMessage());
+        }
+        injectDisconnect();
+        stopDetachedInventory();
+        log("模擬器已停止");
+    }
+
+    /**
+     * 注入斷線：立即關閉所有客戶端連接
+     */
+    public void injectDisconnect() {
+        for (SimulatorSession session : sessions) {
+            session.close();
+        }
+        if (!sessions.isEmpty()) {
+            log("已注入斷線");
+        }
+    }
+
+    /**
+     * 定期注入斷線
+     * @param intervalMillis 間隔（毫秒），0 表示停用
+     */
+    public synchronized void setDisconnectEveryMillis(long intervalMillis) {
+        if (faultScheduler != null) {
+            faultScheduler.shutdownNow();
+            faultScheduler = null;
+        }
+        if (intervalMillis > 0) {
+            faultScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "simulator-fault");
+                thread.setDaemon(true);
+                return thread;
+            });
+            faultScheduler.scheduleAtFixedRate(this::injectDisconnect, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void removeSession(SimulatorSession session) {
+        sessions.remove(session);
+    }
+
+    /**
+     * 快取的讀取：上報訊息編號與資料（已含讀取時間）
+     */
+    static final class CachedRead {
+        final int logId;
+        final byte[] data;
+
+        CachedRead(int logId, byte[] data) {
+            this.logId = logId;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 連接關閉時保留進行中的盤存，之後的讀取存入快取
+     */
+    void detachInventory(SimulatorSession.Inventory inventory) {
+        synchronized (cache) {
+            if (detachedInventory != null && detachedInventory != inventory) {
+                detachedInventory.active = false;
+            }
+            inventory.owner = null;
+            detachedInventory = inventory;
+        }
+    }
+
+    /**
+     * 停止斷線期間保留的盤存（新的盤存或停止指令）
+     */
+    void stopDetachedInventory() {
+        SimulatorSession.Inventory detached;
+        synchronized (cache) {
+            detached = detachedInventory;
+            detachedInventory = null;
+        }
+        if (detached != null) {
+            detached.replaced = true;
+            detached.active = false;
+        }
+    }
+
+    /**
+     * 由新的連接接手斷線期間保留的盤存，同時取得目前快取的讀取
+     * 兩者在同一個鎖內完成，快取與接手後的上報之間不會遺漏讀取
+     * @param cachedReads 輸出目前快取的讀取
+     * @return 接手的盤存，沒有時回傳 null
+     */
+    SimulatorSession.Inventory adoptInventory(SimulatorSession session, List<CachedRead> cachedReads) {
+        synchronized (cache) {
+            cachedReads.addAll(cache);
+            SimulatorSession.Inventory detached = detachedInventory;
+            detachedInventory = null;
+            if (detached != null && detached.active) {
+                detached.owner = session;
+                return detached;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 將斷線期間的讀取存入快取
+     * @return 已存入（或快取已滿而捨棄）時回傳 true；盤存已由新的連接接手時回傳 false
+     */
+    boolean cacheRead(SimulatorSession.Inventory inventory, int logId, byte[] data) {
+        synchronized (cache) {
+            if (inventory.owner != null) {
+                return false;
+            }
+            if (cache.size() < MAX_CACHED_READS) {
+                cache.add(new CachedRead(logId, data));
+            } else if (droppedReads++ == 0) {
+                log("斷線快取已滿（" + MAX_CACHED_READS + " 筆），之後的讀取將被捨棄");
+            }
+            return true;
+        }
+    }
+
+    void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            droppedReads = 0;
+        }
+    }
+
+    void log(String message) {
+        System.out.println("[ReaderSimulator] " + message);
+        if (onLogCallback != null) {
+            onLogCallback.accept(message);
+        }
+    }
+
+    // Getters
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    public String getAppVersion() {
+        return appVersion;
+    }
+
+    public String getBaseVersion() {
+        return baseVersion;
+    }
+
+    public int getAntennaCount() {
+        return antennaCount;
+    }
+
+    public int getMaxPower() {
+        return maxPower;
+    }
+
+    public int getMinPower() {
+        return minPower;
+    }
+
+    /**
+     * 取得各天線功率，未設置的天線為最大功率
+     */
+    public Map<Integer, Integer> getAntennaPowers() {
+        Map<Integer, Integer> powers = new HashMap<>();
+        for (int i = 1; i <= antennaCount; i++) {
+            Integer power = antennaPowers.get(i);
+            powers.put(i, power != null ? power : maxPower);
+        }
+        return powers;
+    }
+
+    public int getTagPopulation() {
+        return tagPopulation;
+    }
+
+    public int getReadsPerSecond() {
+        return readsPerSecond;
+    }
+
+    public int getFastIdPercent() {
+        return fastIdPercent;
+    }
+
+    public int getResponseDelayMillis() {
+        return responseDelayMillis;
+    }
+
+    public boolean isBreakpointResume() {
+        return breakpointResume;
+    }
+
+    public int getCachedReadCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    // Setters
+    public void setSerialNumber(String serialNumber) {
+        this.serialNumber = serialNumber;
+    }
+
+    public void setAppVersion(String appVersion) {
+        this.appVersion = appVersion;
+    }
+
+    public void setBaseVersion(String baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    public void setAntennaCount(int antennaCount) {
+        if (antennaCount < 1 || antennaCount > 32) {
+            throw new IllegalArgumentException("antennaCount out of range (1~32): " + antennaCount);
+        }
+        this.antennaCount = antennaCount;
+    }
+
+    public void setPowerRange(int minPower, int maxPower) {
+        this.minPower = minPower;
+        this.maxPower = maxPower;
+    }
+
+    public void setAntennaPower(int antennaId, int power) {
+        antennaPowers.put(antennaId, Math.max(minPower, Math.min(maxPower, power)));
+    }
+
+    /**
+     * 設置標籤群體數量（盤存時隨機讀到其中的標籤）
+     */
+    public void setTagPopulation(int tagPopulation) {
+        if (tagPopulation < 1) {
+            throw new IllegalArgumentException("tagPopulation must be positive: " + tagPopulation);
+        }
+        this.tagPopulation = tagPopulation;
+    }
+
+    /**
+     * 設置每秒上報的讀取筆數（每個連接）
+     */
+    public void setReadsPerSecond(int readsPerSecond) {
+        if (readsPerSecond < 1) {
+            throw new IllegalArgumentException("readsPerSecond must be positive: " + readsPerSecond);
+        }
+        this.readsPerSecond = readsPerSecond;
+    }
+
+    /**
+     * 設置支援 FastID 的標籤比例（0~100），負值表示讀取頭拒絕 FastID 盤存指令
+     */
+    public void setFastIdPercent(int fastIdPercent) {
+        if (fastIdPercent > 100) {
+            throw new IllegalArgumentException("fastIdPercent out of range (~100): " + fastIdPercent);
+        }
+        this.fastIdPercent = fastIdPercent;
+    }
+
+    /**
+     * 設置斷點續傳（對應 MsgAppSetBreakpointResume），關閉時停止斷線期間保留的盤存
+     */
+    public void setBreakpointResume(boolean breakpointResume) {
+        this.breakpointResume = breakpointResume;
+        if (!breakpointResume) {
+            stopDetachedInventory();
+        }
+    }
+
+    /**
+     * 設置每個指令回應的延遲（毫秒），用於模擬慢回應
+     */
+    public void setResponseDelayMillis(int responseDelayMillis) {
+        this.responseDelayMillis = Math.max(0, responseDelayMillis);
+    }
+
+    // Setters for callbacks
+    public void setOnLogCallback(Consumer<String> callback) {
+        this.onLogCallback = callback;
+    }
+
+    /**
+     * 命令列用法說明
+     */
+    public static String usage() {
+        return "用法: ReaderSimulator [選項]\n" +
+               "  --port <port>              監聽端口（預設 8160）\n" +
+               "  --tags <n>                 標籤群體數量（預設 100）\n" +
+               "  --rate <n>                 每秒讀取筆數（預設 1000）\n" +
+               "  --antennas <n>             天線數量（預設 4）\n" +
+               "  --fastid <percent|off>     支援 FastID 的標籤比例（預設 100），off 表示讀取頭不支援\n" +
+               "  --delay-ms <ms>            指令回應延遲\n" +
+               "  --disconnect-every-ms <ms> 定期注入斷線";
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int tags = 100;
+        int rate = 1000;
+        int antennas = 4;
+        int fastId = 100;
+        int delay = 0;
+        long disconnectEvery = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException(arg + " 缺少參數值");
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--tags":
+                        tags = Integer.parseInt(value);
+                        break;
+                    case "--rate":
+                        rate = Integer.parseInt(value);
+                        break;
+                    case "--antennas":
+                        antennas = Integer.parseInt(value);
+                        break;
+                    case "--fastid":
+                        fastId = "off".equals(value) ? -1 : Integer.parseInt(value);
+                        break;
+                    case "--delay-ms":
+                        delay = Integer.parseInt(value);
+                        break;
+                    case "--disconnect-every-ms":
+                        disconnectEvery = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知參數: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("參數錯誤: " + e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+
+        ReaderSimulator simulator = new ReaderSimulator(port);
+        simulator.setTagPopulation(tags);
+        simulator.setReadsPerSecond(rate);
+        simulator.setFastIdPercent(fastId);
+        simulator.setAntennaCount(antennas);
+        simulator.setResponseDelayMillis(delay);
+        simulator.start();
+        simulator.setDisconnectEveryMillis(disconnectEvery);
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop, "simulator-shutdown"));
+        Thread.currentThread().join();
+    }
+}
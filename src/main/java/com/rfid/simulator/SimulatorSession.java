@@ -0,0 +1,847 @@
+package com.rfid.simulator;
+
+import com.gg.reader.api.protocol.gx.EnumG;
+import com.gg.reader.api.protocol.gx.Message;
+import com.gg.reader.api.protocol.gx.MsgAppClearCacheData;
+import com.gg.reader.api.protocol.gx.MsgAppGetBreakpointResume;
+import com.gg.reader.api.protocol.gx.MsgAppGetCacheTagData;
+import com.gg.reader.api.protocol.gx.MsgAppGetBaseVersion;
+import com.gg.reader.api.protocol.gx.MsgAppGetReaderInfo;
+import com.gg.reader.api.protocol.gx.MsgAppSetBreakpointResume;
+import com.gg.reader.api.protocol.gx.MsgBaseGetCapabilities;
+import com.gg.reader.api.protocol.gx.MsgBaseGetPower;
+import com.gg.reader.api.protocol.gx.MsgBaseGetTagLog;
+import com.gg.reader.api.protocol.gx.MsgBaseInventory6b;
+import com.gg.reader.api.protocol.gx.MsgBaseInventoryEpc;
+import com.gg.reader.api.protocol.gx.MsgBaseInventoryGJb;
+import com.gg.reader.api.protocol.gx.MsgBaseInventoryGb;
+import com.gg.reader.api.protocol.gx.MsgBaseInventoryHybrid;
+import com.gg.reader.api.protocol.gx.MsgBaseSetMultiMatchRule;
+import com.gg.reader.api.protocol.gx.MsgBaseSetPower;
+import com.gg.reader.api.protocol.gx.MsgBaseSetTagLog;
+import com.gg.reader.api.protocol.gx.MsgBaseStop;
+import com.gg.reader.api.protocol.gx.MsgType;
+import com.gg.reader.api.protocol.gx.ParamEpcFilter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模擬器的單一客戶端連接
+ * 解析指令框架並以原廠 SDK 的訊息類別打包回應，盤存時以獨立執行緒上報標籤
+ */
+class SimulatorSession {
+
+    /** 框架起始位元組 */
+    private static final int FRAME_HEAD = 0x5A;
+
+    // 上報訊息編號（基礎指令類別 0010）
+    private static final int LOG_EPC = 0x00;
+    private static final int LOG_EPC_OVER = 0x01;
+    private static final int LOG_6B = 0x20;
+    private static final int LOG_6B_OVER = 0x21;
+    private static final int LOG_GB = 0x30;
+    private static final int LOG_GB_OVER = 0x31;
+    private static final int LOG_GJB = 0x40;
+    private static final int LOG_GJB_OVER = 0x41;
+
+    /** 快取上報結束（應用指令類別 0001，與收取快取指令同編號） */
+    private static final int LOG_CACHE_OVER = 27;
+
+    // 收取快取的結果：有資料、無資料、上報結束
+    private static final int CACHE_HAVE_DATA = 0;
+    private static final int CACHE_NO_DATA = 1;
+    private static final int CACHE_END_OF_DATA = 2;
+
+    // 指令類型鍵（類別與編號），由 SDK 訊息類別取得
+    private static final int KEY_READER_INFO = key(new MsgAppGetReaderInfo().msgType);
+    private static final int KEY_BASE_VERSION = key(new MsgAppGetBaseVersion().msgType);
+    private static final int KEY_CAPABILITIES = key(new MsgBaseGetCapabilities().msgType);
+    private static final int KEY_GET_POWER = key(new MsgBaseGetPower().msgType);
+    private static final int KEY_SET_POWER = key(new MsgBaseSetPower().msgType);
+    private static final int KEY_INVENTORY_EPC = key(new MsgBaseInventoryEpc().msgType);
+    private static final int KEY_INVENTORY_6B = key(new MsgBaseInventory6b().msgType);
+    private static final int KEY_INVENTORY_GB = key(new MsgBaseInventoryGb().msgType);
+    private static final int KEY_INVENTORY_GJB = key(new MsgBaseInventoryGJb().msgType);
+    private static final int KEY_INVENTORY_HYBRID = key(new MsgBaseInventoryHybrid().msgType);
+    private static final int KEY_STOP = key(new MsgBaseStop().msgType);
+    private static final int KEY_SET_MULTI_MATCH = key(new MsgBaseSetMultiMatchRule().msgType);
+    private static final int KEY_SET_TAG_LOG = key(new MsgBaseSetTagLog().msgType);
+    private static final int KEY_GET_TAG_LOG = key(new MsgBaseGetTagLog().msgType);
+    private static final int KEY_SET_BREAKPOINT = key(new MsgAppSetBreakpointResume().msgType);
+    private static final int KEY_GET_BREAKPOINT = key(new MsgAppGetBreakpointResume().msgType);
+    private static final int KEY_GET_CACHE = key(new MsgAppGetCacheTagData().msgType);
+    private static final int KEY_CLEAR_CACHE = key(new MsgAppClearCacheData().msgType);
+
+    // 匹配規則封包編號：最後一個封包、清除
+    private static final long MULTI_MATCH_LAST_PACKET = 0xFFFFFFFEL;
+    private static final long MULTI_MATCH_CLEAR = 0xFFFFFFFFL;
+
+    /** 盤存上報的時間片（奈秒） */
+    private static final long STREAM_TICK_NANOS = 10_000_000L;
+
+    private final ReaderSimulator simulator;
+    private final Socket socket;
+    private final int id;
+    private final OutputStream out;
+    private volatile boolean open = true;
+
+    // 目前的盤存設定
+    private volatile Inventory inventory;
+
+    // 讀取頭的多組匹配規則（盤存指令沒有過濾參數時使用）
+    private final List<ParamEpcFilter> pendingRules = new ArrayList<>();
+    private volatile List<ParamEpcFilter> matchRules = Collections.emptyList();
+
+    // 重複標籤過濾：時間（單位 10 ms）與 RSSI 門檻，0 表示不限制
+    private volatile int repeatedTime;
+    private volatile int rssiThreshold;
+
+    /**
+     * 盤存設定
+     * 開啟斷點續傳時盤存可在連接關閉後繼續，由下一個連接接手上報
+     */
+    static final class Inventory {
+        final int[] logIds;   // 混合盤存時有多種協議
+        final int[] overIds;
+        final int[] antennas;
+        final boolean continuous;
+        final boolean readTid;
+        final boolean readUserData;
+        List<ParamEpcFilter> filters = Collections.emptyList(); // 符合任一條即上報
+        boolean fastId;
+        long repeatNanos;     // 同一標籤兩次上報的最短間隔，0 表示每次讀到都上報
+        int rssiThreshold;
+        long[] lastReportNanos; // 依 協議序號 * 標籤數 + 標籤序號
+        Thread thread;
+        volatile SimulatorSession owner; // 目前上報的連接，null 表示斷線中（存入快取）
+        volatile boolean active = true;
+        volatile boolean replaced; // 被新的盤存指令取代，不送結束事件
+
+        Inventory(int logId, int overId, int[] antennas, boolean continuous, boolean readTid, boolean readUserData) {
+            this(new int[]{logId}, new int[]{overId}, antennas, continuous, readTid, readUserData);
+        }
+
+        Inventory(int[] logIds, int[] overIds, int[] antennas, boolean continuous, boolean readTid, boolean readUserData) {
+            this.logIds = logIds;
+            this.overIds = overIds;
+            this.antennas = antennas;
+            this.continuous = continuous;
+            this.readTid = readTid;
+            this.readUserData = readUserData;
+        }
+    }
+
+    SimulatorSession(ReaderSimulator simulator, Socket socket, int id) throws IOException {
+        this.simulator = simulator;
+        this.socket = socket;
+        this.id = id;
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+    }
+
+    void start() {
+        Thread thread = new Thread(this::readLoop, "simulator-session-" + id);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 讀取並處理指令框架
+     */
+    private void readLoop() {
+        try (DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            while (open) {
+                Message request = readFrame(in);
+                if (request != null) {
+                    handle(request);
+                }
+            }
+        } catch (EOFException e) {
+            // 客戶端關閉連接
+        } catch (IOException e) {
+            if (open) {
+                simulator.log("連接 " + id + " 錯誤: " + e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 讀取一個框架：頭(1) 類型(4) [RS485 位址(1)] 長度(2) 資料 CRC(2)
+     * @return 解析後的訊息，CRC 錯誤時回傳 null
+     */
+    private Message readFrame(DataInputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) != FRAME_HEAD) {
+            if (b < 0) {
+                throw new EOFException();
+            }
+        }
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(64);
+        frame.write(FRAME_HEAD);
+
+        byte[] type = new byte[4];
+        in.readFully(type);
+        frame.write(type);
+        if ((type[2] & 0x20) != 0) {
+            frame.write(in.readUnsignedByte());
+        }
+        int length = in.readUnsignedShort();
+        frame.write(length >> 8);
+        frame.write(length);
+        byte[] rest = new byte[length + 2];
+        in.readFully(rest);
+        frame.write(rest);
+
+        Message message = new Message(frame.toByteArray());
+        if (!message.checkCrc()) {
+            simulator.log("連接 " + id + " 收到 CRC 錯誤的框架，已略過");
+            return null;
+        }
+        return message;
+    }
+
+    private void handle(Message request) throws IOException {
+        int delay = simulator.getResponseDelayMillis();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        byte[] data = request.cData != null ? request.cData : new byte[0];
+        int key = key(request.msgType);
+        Message response;
+
+        if (key == KEY_READER_INFO) {
+            MsgAppGetReaderInfo info = new MsgAppGetReaderInfo();
+            info.setReaderSerialNumber(simulator.getSerialNumber());
+            info.setPowerOnTime(0);
+            info.setBaseCompileTime("");
+            info.setAppVersions(simulator.getAppVersion());
+            info.setSystemVersions("");
+            info.setAppCompileTime("");
+            info.ackPack();
+            response = info;
+        } else if (key == KEY_BASE_VERSION) {
+            MsgAppGetBaseVersion version = new MsgAppGetBaseVersion();
+            version.setBaseVersions(simulator.getBaseVersion());
+            version.ackPack();
+            response = version;
+        } else if (key == KEY_CAPABILITIES) {
+            MsgBaseGetCapabilities capabilities = new MsgBaseGetCapabilities();
+            capabilities.setMaxPower(simulator.getMaxPower());
+            capabilities.setMinPower(simulator.getMinPower());
+            capabilities.setAntennaCount(simulator.getAntennaCount());
+            capabilities.setFrequencyArray(new ArrayList<>(Arrays.asList(0)));
+            capabilities.setProtocolArray(new ArrayList<>(Arrays.asList(0, 1, 2, 3)));
+            capabilities.ackPack();
+            response = capabilities;
+        } else if (key == KEY_GET_POWER) {
+            MsgBaseGetPower power = new MsgBaseGetPower();
+            power.setDicPower(new Hashtable<>(simulator.getAntennaPowers()));
+            power.ackPack();
+            response = power;
+        } else if (key == KEY_SET_POWER) {
+            Map<Integer, Integer> powers = new MsgBaseSetPower(data).getDicPower();
+            if (powers != null) {
+                for (Map.Entry<Integer, Integer> entry : powers.entrySet()) {
+                    simulator.setAntennaPower(entry.getKey(), entry.getValue());
+                }
+            }
+            response = ack(0);
+        } else if (key == KEY_INVENTORY_EPC) {
+            MsgBaseInventoryEpc msg = new MsgBaseInventoryEpc(data);
+            Inventory epc = new Inventory(LOG_EPC, LOG_EPC_OVER, antennas(msg.getAntennaEnable()),
+                msg.getInventoryMode() != 0, msg.getReadTid() != null, msg.getReadUserdata() != null);
+            epc.fastId = msg.getParamFastId() != null && msg.getParamFastId().getFastId() != 0;
+            if (epc.fastId && simulator.getFastIdPercent() < 0) {
+                response = ack(6); // 其他錯誤
+            } else {
+                response = startInventory(epc, msg.getFilter());
+            }
+        } else if (key == KEY_INVENTORY_6B) {
+            MsgBaseInventory6b msg = new MsgBaseInventory6b(data);
+            response = startInventory(new Inventory(LOG_6B, LOG_6B_OVER, antennas(msg.getAntennaEnable()),
+                msg.getInventoryMode() != 0, true, msg.getReadUserdata() != null), null);
+        } else if (key == KEY_INVENTORY_GB) {
+            MsgBaseInventoryGb msg = new MsgBaseInventoryGb(data);
+            response = startInventory(new Inventory(LOG_GB, LOG_GB_OVER, antennas(msg.getAntennaEnable()),
+                msg.getInventoryMode() != 0, msg.getReadTid() != null, msg.getReadUserdata() != null), msg.getFilter());
+        } else if (key == KEY_INVENTORY_GJB) {
+            MsgBaseInventoryGJb msg = new MsgBaseInventoryGJb(data);
+            response = startInventory(new Inventory(LOG_GJB, LOG_GJB_OVER, antennas(msg.getAntennaEnable()),
+                msg.getInventoryMode() != 0, msg.getReadTid() != null, msg.getReadUserdata() != null), msg.getFilter());
+        } else if (key == KEY_INVENTORY_HYBRID) {
+            Inventory hybrid = parseHybrid(data);
+            response = startInventory(hybrid, hybrid.filters.isEmpty() ? null : hybrid.filters.get(0));
+        } else if (key == KEY_SET_MULTI_MATCH) {
+            // 回應格式：封包編號(4) 結果(1)
+            Message ruleAck = new Message();
+            ruleAck.cData = Arrays.copyOf(data, 5);
+            ruleAck.cData[4] = (byte) (setMatchRule(data) ? 0 : 1);
+            ruleAck.dataLen = 5;
+            response = ruleAck;
+        } else if (key == KEY_SET_TAG_LOG) {
+            MsgBaseSetTagLog msg = new MsgBaseSetTagLog(data);
+            if (msg.getRepeatedTime() != Integer.MAX_VALUE) {
+                repeatedTime = msg.getRepeatedTime();
+            }
+            if (msg.getRssiTV() != Integer.MAX_VALUE) {
+                rssiThreshold = msg.getRssiTV();
+            }
+            simulator.log("連接 " + id + " 設置重複過濾時間 " + repeatedTime + "、RSSI 門檻 " + rssiThreshold);
+            response = ack(0);
+        } else if (key == KEY_GET_TAG_LOG) {
+            MsgBaseGetTagLog tagLog = new MsgBaseGetTagLog();
+            tagLog.setRepeatedTime(repeatedTime);
+            tagLog.setRssiTV(rssiThreshold);
+            tagLog.ackPack();
+            response = tagLog;
+        } else if (key == KEY_SET_BREAKPOINT) {
+            boolean on = new MsgAppSetBreakpointResume(data).getOnOrOff() != 0;
+            simulator.setBreakpointResume(on);
+            simulator.log("連接 " + id + (on ? " 開啟" : " 關閉") + "斷點續傳");
+            response = ack(0);
+        } else if (key == KEY_GET_BREAKPOINT) {
+            MsgAppGetBreakpointResume breakpoint = new MsgAppGetBreakpointResume();
+            breakpoint.setOnOrOff(simulator.isBreakpointResume() ? 1 : 0);
+            breakpoint.ackPack();
+            response = breakpoint;
+        } else if (key == KEY_GET_CACHE) {
+            sendCache(request.msgType);
+            return;
+        } else if (key == KEY_CLEAR_CACHE) {
+            simulator.clearCache();
+            response = ack(0);
+        } else if (key == KEY_STOP) {
+            respond(request.msgType, ack(0));
+            stopInventory();
+            simulator.stopDetachedInventory();
+            return;
+        } else {
+            // 未支援的指令一律回覆成功
+            response = ack(0);
+        }
+        respond(request.msgType, response);
+    }
+
+    /**
+     * 上報快取：回覆有無資料，之後送出快取的讀取與結束事件（快取保留至清除指令）
+     * 斷線期間保留的盤存於此時由本連接接手，之後的讀取直接上報
+     */
+    private void sendCache(MsgType requestType) throws IOException {
+        List<ReaderSimulator.CachedRead> cached = new ArrayList<>();
+        synchronized (out) {
+            Inventory adopted = simulator.adoptInventory(this, cached);
+            if (adopted != null) {
+                Inventory current = inventory;
+                if (current != null) {
+                    current.replaced = true;
+                    current.active = false;
+                }
+                inventory = adopted;
+            }
+            respond(requestType, ack(cached.isEmpty() ? CACHE_NO_DATA : CACHE_HAVE_DATA));
+            for (ReaderSimulator.CachedRead read : cached) {
+                sendUpload(read.logId, read.data);
+            }
+            if (!cached.isEmpty()) {
+                Message over = new Message();
+                over.cData = new byte[]{CACHE_END_OF_DATA};
+                over.dataLen = 1;
+                send(new MsgType((byte) LOG_CACHE_OVER, "0001", "1", "0"), over);
+            }
+            out.flush();
+            simulator.log("連接 " + id + " 上報 " + cached.size() + " 筆快取" + (adopted != null ? "，接手斷線期間的盤存" : ""));
+        }
+    }
+
+    /**
+     * 解析混合盤存指令：天線(4) 模式(1)，之後為協議參數 PID(1) 長度(2) 資料
+     * PID 1=EPC 2=6B 3=GB 4=GJB；協議參數內 PID 2 為讀取 TID、PID 3 為讀取用戶數據
+     */
+    private Inventory parseHybrid(byte[] data) {
+        int[] antennas = antennas(new MsgBaseInventoryHybrid(data).getAntennaEnable());
+        boolean continuous = data.length > 4 && data[4] != 0;
+        List<Integer> logIds = new ArrayList<>();
+        List<Integer> overIds = new ArrayList<>();
+        boolean readTid = false;
+        boolean readUserData = false;
+        ParamEpcFilter filter = null;
+
+        int offset = 5;
+        while (offset + 3 <= data.length) {
+            int pid = data[offset] & 0xFF;
+            int length = ((data[offset + 1] & 0xFF) << 8) | (data[offset + 2] & 0xFF);
+            int start = offset + 3;
+            offset = start + length;
+            if (pid < 1 || pid > 4) {
+                continue;
+            }
+            logIds.add(pid == 1 ? LOG_EPC : pid == 2 ? LOG_6B : pid == 3 ? LOG_GB : LOG_GJB);
+            overIds.add(pid == 1 ? LOG_EPC_OVER : pid == 2 ? LOG_6B_OVER : pid == 3 ? LOG_GB_OVER : LOG_GJB_OVER);
+            if (pid == 2) {
+                continue;
+            }
+            // 略過過濾條件（PID 1，長度2+資料），讀取 TID（PID 2）固定 2 位元組
+            int i = start;
+            while (i < Math.min(offset, data.length)) {
+                int inner = data[i] & 0xFF;
+                if (inner == 1 && i + 3 <= data.length) {
+                    int filterLength = ((data[i + 1] & 0xFF) << 8) | (data[i + 2] & 0xFF);
+                    filter = new ParamEpcFilter(Arrays.copyOfRange(data, i + 3, Math.min(i + 3 + filterLength, data.length)));
+                    i += 3 + filterLength;
+                } else if (inner == 2) {
+                    readTid = true;
+                    i += 3;
+                } else {
+                    readUserData |= inner == 3;
+                    break;
+                }
+            }
+        }
+        Inventory hybrid = new Inventory(toArray(logIds), toArray(overIds), antennas, continuous, readTid, readUserData);
+        if (filter != null) {
+            hybrid.filters = Collections.singletonList(filter);
+        }
+        return hybrid;
+    }
+
+    /**
+     * 設置匹配規則：封包編號(4) 過濾參數長度(2) 過濾參數
+     * 依序累積規則，收到最後一個封包時生效；編號 0xFFFFFFFF 清除所有規則
+     */
+    private boolean setMatchRule(byte[] data) {
+        if (data.length < 4) {
+            return false;
+        }
+        long packet = ((long) (data[0] & 0xFF) << 24) | ((data[1] & 0xFF) << 16) | ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+        synchronized (pendingRules) {
+            if (packet == MULTI_MATCH_CLEAR) {
+                pendingRules.clear();
+                matchRules = Collections.emptyList();
+                return true;
+            }
+            if (data.length < 6) {
+                return false;
+            }
+            int length = ((data[4] & 0xFF) << 8) | (data[5] & 0xFF);
+            pendingRules.add(new ParamEpcFilter(Arrays.copyOfRange(data, 6, Math.min(6 + length, data.length))));
+            if (packet == MULTI_MATCH_LAST_PACKET) {
+                matchRules = new ArrayList<>(pendingRules);
+                pendingRules.clear();
+                simulator.log("連接 " + id + " 設置 " + matchRules.size() + " 條匹配規則");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 比對 EPC 過濾參數（只模擬 EPC 區）
+     */
+    private static boolean matchesFilter(ParamEpcFilter filter, byte[] epc) {
+        if (filter.getArea() != EnumG.ParamFilterArea_EPC) {
+            return true;
+        }
+        byte[] value = filter.getbData();
+        int start = filter.getBitStart() - 0x20; // EPC 區前 32 位元為 CRC 與 PC
+        for (int i = 0; i < filter.getBitLength(); i++) {
+            int bit = start + i;
+            if (bit < 0 || bit >= epc.length * 8 || value == null || (i >> 3) >= value.length) {
+                return false;
+            }
+            boolean expected = (value[i >> 3] & (0x80 >>> (i & 7))) != 0;
+            boolean actual = (epc[bit >> 3] & (0x80 >>> (bit & 7))) != 0;
+            if (expected != actual) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param filter 盤存指令中的過濾參數，null 表示使用目前的匹配規則
+     */
+    private Message startInventory(Inventory next, ParamEpcFilter filter) {
+        if (next.antennas.length == 0 || next.logIds.length == 0) {
+            return ack(1);
+        }
+        next.filters = filter != null ? Collections.singletonList(filter) : matchRules;
+        // 重複過濾於每次盤存重新計時
+        next.repeatNanos = repeatedTime * 10_000_000L;
+        next.rssiThreshold = rssiThreshold;
+        if (next.repeatNanos > 0) {
+            next.lastReportNanos = new long[next.logIds.length * simulator.getTagPopulation()];
+        }
+        Inventory current = inventory;
+        if (current != null) {
+            current.replaced = true;
+        }
+        stopInventory();
+        simulator.stopDetachedInventory();
+        next.owner = this;
+        inventory = next;
+        next.thread = new Thread(() -> stream(next), "simulator-stream-" + id);
+        next.thread.setDaemon(true);
+        next.thread.start();
+        return ack(0);
+    }
+
+    private void stopInventory() {
+        Inventory current = inventory;
+        if (current != null) {
+            current.active = false;
+            inventory = null;
+            try {
+                current.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 上報標籤：連續模式依設定速率持續上報，單次模式每個標籤上報一次
+     */
+    private void stream(Inventory current) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            if (!current.continuous) {
+                for (int i = 0; i < simulator.getTagPopulation() && current.active; i++) {
+                    sendTag(current, i, random);
+                }
+            } else {
+                double budget = 0;
+                long last = System.nanoTime();
+                while (current.active) {
+                    LockSupport.parkNanos(STREAM_TICK_NANOS);
+                    long now = System.nanoTime();
+                    budget += simulator.getReadsPerSecond() * (now - last) / 1e9;
+                    last = now;
+                    int population = simulator.getTagPopulation();
+                    for (; budget >= 1 && current.active; budget--) {
+                        sendTag(current, random.nextInt(population), random);
+                    }
+                    flush(current);
+                }
+            }
+            SimulatorSession owner = current.owner;
+            if (!current.replaced && owner != null) {
+                for (int overId : current.overIds) {
+                    owner.sendUpload(overId, new byte[]{0});
+                }
+                owner.flush();
+            }
+        } catch (IOException e) {
+            SimulatorSession owner = current.owner;
+            if (owner != null && owner.open) {
+                simulator.log("連接 " + owner.id + " 上報錯誤: " + e.getMessage());
+                owner.close();
+            }
+        }
+    }
+
+    /**
+     * 上報一筆讀取至目前的連接；斷線中（已保留盤存）時存入讀取頭快取
+     */
+    private void emit(Inventory current, int logId, byte[] data) throws IOException {
+        while (current.active) {
+            SimulatorSession owner = current.owner;
+            if (owner == null) {
+                if (simulator.cacheRead(current, logId, withReaderTime(logId, data))) {
+                    return;
+                }
+                continue; // 已由新的連接接手
+            }
+            try {
+                owner.sendUpload(logId, data);
+                return;
+            } catch (IOException e) {
+                owner.close();
+                if (current.owner == owner) {
+                    throw e; // 未保留盤存
+                }
+            }
+        }
+    }
+
+    private void flush(Inventory current) throws IOException {
+        SimulatorSession owner = current.owner;
+        if (owner == null) {
+            return;
+        }
+        try {
+            owner.flush();
+        } catch (IOException e) {
+            owner.close();
+            if (current.owner == owner) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 快取的 EPC 讀取附加讀取時間：PID 7，UTC 秒(4) 微秒(4)
+     */
+    private static byte[] withReaderTime(int logId, byte[] data) {
+        if (logId != LOG_EPC) {
+            return data;
+        }
+        long micros = System.currentTimeMillis() * 1000L;
+        long seconds = micros / 1_000_000L;
+        byte[] timed = Arrays.copyOf(data, data.length + 9);
+        int i = data.length;
+        timed[i++] = 7;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            timed[i++] = (byte) (seconds >>> shift);
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            timed[i++] = (byte) ((micros % 1_000_000L) >>> shift);
+        }
+        return timed;
+    }
+
+    private void sendTag(Inventory current, int index, ThreadLocalRandom random) throws IOException {
+        int antenna = current.antennas[random.nextInt(current.antennas.length)];
+        int slot = current.logIds.length == 1 ? 0 : random.nextInt(current.logIds.length);
+        int logId = current.logIds[slot];
+        int rssi = 40 + random.nextInt(41);
+        if (rssi < current.rssiThreshold || suppressRepeat(current, slot, index)) {
+            return;
+        }
+        byte[] tid = current.readTid ? tagBytes(0xE2801160, index, 12) : null;
+        byte[] userData = current.readUserData ? tagBytes(0x55534552, index, 8) : null;
+
+        byte[] data;
+        if (logId == LOG_6B) {
+            data = encode6b(tagBytes(0xE0040000, index, 8), antenna, rssi, userData);
+        } else {
+            // 不同協議的標籤使用不同的 EPC 前綴，混合盤存時不會重複
+            byte[] epc = tagBytes(0xE2000000 | (logId << 16), index, 12);
+            if (!accepts(current, epc)) {
+                return;
+            }
+            if (current.fastId && index % 100 < simulator.getFastIdPercent()) {
+                // FastID：TID 接在 EPC 之後上報，PC 仍為 EPC 長度；不支援的晶片只回傳 EPC
+                byte[] epcAndTid = Arrays.copyOf(epc, epc.length + 12);
+                System.arraycopy(tagBytes(0xE2801160, index, 12), 0, epcAndTid, epc.length, 12);
+                epc = epcAndTid;
+            }
+            data = encodeEpc(epc, antenna, rssi, tid, userData);
+        }
+        emit(current, logId, data);
+    }
+
+    /**
+     * 同一標籤在重複過濾時間內已上報過時回傳 true（讀到但不上報）
+     */
+    private boolean suppressRepeat(Inventory current, int slot, int index) {
+        long[] lastReport = current.lastReportNanos;
+        int position = slot * simulator.getTagPopulation() + index;
+        if (lastReport == null || position >= lastReport.length) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (lastReport[position] != 0 && now - lastReport[position] < current.repeatNanos) {
+            return true;
+        }
+        lastReport[position] = now;
+        return false;
+    }
+
+    private static boolean accepts(Inventory current, byte[] epc) {
+        if (current.filters.isEmpty()) {
+            return true;
+        }
+        for (ParamEpcFilter filter : current.filters) {
+            if (matchesFilter(filter, epc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 上報資料依 SDK 各 LogBase*Info.ackUnpack 的格式編碼（SDK 的 pack() 不產生資料）
+
+    /**
+     * EPC/GB/GJB 上報格式：EPC 長度(2) EPC PC(2) 天線(1)，之後為 PID 欄位
+     * 1=RSSI(1) 2=結果(1) 3=TID(長度2+資料) 4=用戶數據(長度2+資料)
+     */
+    private static byte[] encodeEpc(byte[] epc, int antenna, int rssi, byte[] tid, byte[] userData) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        writeShort(buffer, epc.length);
+        buffer.write(epc, 0, epc.length);
+        writeShort(buffer, 0x3000);
+        buffer.write(antenna);
+        buffer.write(1);
+        buffer.write(rssi);
+        buffer.write(2);
+        buffer.write(0);
+        if (tid != null) {
+            buffer.write(3);
+            writeShort(buffer, tid.length);
+            buffer.write(tid, 0, tid.length);
+        }
+        if (userData != null) {
+            buffer.write(4);
+            writeShort(buffer, userData.length);
+            buffer.write(userData, 0, userData.length);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 6B 上報格式：TID(8) 天線(1)，之後為 PID 欄位 1=RSSI(1) 2=結果(1) 3=用戶數據(長度2+資料)
+     */
+    private static byte[] encode6b(byte[] tid, int antenna, int rssi, byte[] userData) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+        buffer.write(tid, 0, tid.length);
+        buffer.write(antenna);
+        buffer.write(1);
+        buffer.write(rssi);
+        buffer.write(2);
+        buffer.write(0);
+        if (userData != null) {
+            buffer.write(3);
+            writeShort(buffer, userData.length);
+            buffer.write(userData, 0, userData.length);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream buffer, int value) {
+        buffer.write(value >> 8);
+        buffer.write(value);
+    }
+
+    /**
+     * 產生固定的標籤資料：4 位元組前綴後接標籤序號
+     */
+    private static byte[] tagBytes(int prefix, int index, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < 4; i++) {
+            bytes[i] = (byte) (prefix >>> (24 - i * 8));
+        }
+        for (int i = 0; i < 4 && length - 1 - i >= 4; i++) {
+            bytes[length - 1 - i] = (byte) (index >>> (i * 8));
+        }
+        return bytes;
+    }
+
+    private int[] antennas(Long antennaEnable) {
+        long mask = antennaEnable != null ? antennaEnable : 1L;
+        int count = simulator.getAntennaCount();
+        List<Integer> enabled = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if ((mask & (1L << i)) != 0) {
+                enabled.add(i + 1);
+            }
+        }
+        return toArray(enabled);
+    }
+
+    private static Message ack(int rtCode) {
+        Message message = new Message();
+        message.cData = new byte[]{(byte) rtCode};
+        message.dataLen = 1;
+        return message;
+    }
+
+    private void sendUpload(int msgId, byte[] data) throws IOException {
+        Message message = new Message();
+        message.cData = data;
+        message.dataLen = data != null ? data.length : 0;
+        send(new MsgType((byte) msgId, "0010", "1", "0"), message);
+    }
+
+    /**
+     * 寫出上報框架（由上報執行緒批次 flush）
+     */
+    private void send(MsgType type, Message message) throws IOException {
+        message.msgType = type;
+        byte[] frame = message.toBytes();
+        synchronized (out) {
+            out.write(frame);
+        }
+    }
+
+    /**
+     * 回覆指令並立即送出
+     */
+    private void respond(MsgType type, Message message) throws IOException {
+        message.msgType = type;
+        byte[] frame = message.toBytes();
+        synchronized (out) {
+            out.write(frame);
+            out.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        synchronized (out) {
+            out.flush();
+        }
+    }
+
+    /**
+     * 關閉連接（可重複呼叫）
+     */
+    void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        Inventory current = inventory;
+        inventory = null;
+        if (current != null) {
+            if (simulator.isBreakpointResume() && simulator.isRunning() && current.continuous && current.owner == this) {
+                // 斷點續傳：讀取頭繼續盤存，讀取存入快取
+                simulator.detachInventory(current);
+                simulator.log("連接 " + id + " 斷線，盤存繼續並存入快取");
+            } else {
+                current.active = false;
+            }
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+        simulator.removeSession(this);
+        simulator.log("連接 " + id + " 已關閉");
+    }
+
+    /**
+     * 指令類型鍵：類別（低 4 位元）與訊息編號
+     */
+    private static int key(MsgType type) {
+        byte[] bytes = type.toBytes();
+        return ((bytes[2] & 0x0F) << 8) | (bytes[3] & 0xFF);
+    }
+}
@@ -0,0 +1,341 @@
+package com.rfid.storage;
+
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagRecord;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 欄位式匯出檔（.rfc）讀取器
+ * 一次解碼一個列群組，以 next() 逐列前進，記憶體用量與列群組大小成正比
+ */
+public class ColumnarTagReader implements Closeable {
+
+    private static final TagInfo.TagType[] TAG_TYPES = TagInfo.TagType.values();
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final DataInputStream in;
+    private final long rowCount;
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[64 * 1024];
+    private final ColumnInput[] columns = new ColumnInput[TagExporter.COLUMN_COUNT];
+
+    // 目前列群組的字典
+    private final List<Long> prefixDictionary = new ArrayList<>();
+    private final List<String> userDataDictionary = new ArrayList<>();
+
+    private int groupRemaining;
+    private long previousFirstSeen;
+    private boolean finished;
+
+    // 目前列
+    private final byte[] key = new byte[TagRecord.MAX_EPC_BYTES];
+    private int keyLength;
+    private boolean epcKey;
+    private TagInfo.TagType tagType;
+    private String tid;
+    private String userData;
+    private int readCount;
+    private long firstSeenNanos;
+    private long lastSeenNanos;
+    private int lastRssi;
+    private int maxRssi;
+    private int smoothedRssi;
+    private long rssiSum;
+    private int antennaId;
+    private int entryAntenna;
+    private int exitAntenna;
+
+    public ColumnarTagReader(File file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 20));
+        try {
+            if (in.readInt() != TagExporter.MAGIC) {
+                throw new IOException("不是欄位式匯出檔: " + file);
+            }
+            int version = in.readInt();
+            if (version != TagExporter.VERSION) {
+                throw new IOException("不支援的版本: " + version);
+            }
+            this.rowCount = in.readLong();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ColumnInput();
+        }
+    }
+
+    /**
+     * 前進到下一列
+     * @return 是否還有資料
+     */
+    public boolean next() throws IOException {
+        if (groupRemaining == 0 && !readGroup()) {
+            return false;
+        }
+        groupRemaining--;
+
+        int flags = columns[TagExporter.COLUMN_FLAGS].readByte();
+        epcKey = (flags & TagExporter.FLAG_EPC_KEY) != 0;
+        int typeBits = flags & 0x7F;
+        tagType = typeBits > 0 && typeBits <= TAG_TYPES.length ? TAG_TYPES[typeBits - 1] : null;
+
+        long prefix = prefixDictionary.get((int) columns[TagExporter.COLUMN_KEY_PREFIX].readVarint());
+        ColumnInput rest = columns[TagExporter.COLUMN_KEY_REST];
+        keyLength = (int) rest.readVarint();
+        for (int i = 0; i < Math.min(8, keyLength); i++) {
+            key[i] = (byte) (prefix >>> (56 - i * 8));
+        }
+        if (keyLength > 8) {
+            rest.readBytes(key, 8, keyLength - 8);
+        }
+
+        tid = columns[TagExporter.COLUMN_TID].readString();
+        int userDataId = (int) columns[TagExporter.COLUMN_USER_DATA].readVarint();
+        userData = userDataId > 0 ? userDataDictionary.get(userDataId - 1) : null;
+
+        readCount = (int) columns[TagExporter.COLUMN_READ_COUNT].readVarint();
+        firstSeenNanos = previousFirstSeen + columns[TagExporter.COLUMN_FIRST_SEEN].readZigZag();
+        previousFirstSeen = firstSeenNanos;
+        lastSeenNanos = firstSeenNanos + columns[TagExporter.COLUMN_LAST_SEEN].readZigZag();
+
+        ColumnInput rssi = columns[TagExporter.COLUMN_RSSI];
+        lastRssi = (int) rssi.readZigZag();
+        maxRssi = (int) rssi.readZigZag();
+        smoothedRssi = (int) rssi.readZigZag();
+        rssiSum = rssi.readZigZag();
+
+        ColumnInput antenna = columns[TagExporter.COLUMN_ANTENNA];
+        antennaId = antenna.readByte();
+        entryAntenna = antenna.readByte();
+        exitAntenna = antenna.readByte();
+        return true;
+    }
+
+    /**
+     * 讀取並解壓下一個列群組
+     */
+    private boolean readGroup() throws IOException {
+        if (finished) {
+            return false;
+        }
+        int rows;
+        try {
+            rows = in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("匯出檔不完整（缺少結束標記）");
+        }
+        if (rows <= 0) {
+            finished = true;
+            return false;
+        }
+        for (ColumnInput column : columns) {
+            readBlock(column);
+        }
+
+        prefixDictionary.clear();
+        ColumnInput prefixes = columns[TagExporter.COLUMN_KEY_PREFIX];
+        for (long i = prefixes.readVarint(); i > 0; i--) {
+            prefixDictionary.add(prefixes.readLong());
+        }
+        userDataDictionary.clear();
+        ColumnInput userDataColumn = columns[TagExporter.COLUMN_USER_DATA];
+        for (long i = userDataColumn.readVarint(); i > 0; i--) {
+            userDataDictionary.add(userDataColumn.readString());
+        }
+
+        groupRemaining = rows;
+        previousFirstSeen = 0;
+        return true;
+    }
+
+    private void readBlock(ColumnInput column) throws IOException {
+        int compressedLength = in.readInt();
+        int rawLength = in.readInt();
+        if (compressedLength < 0 || rawLength < 0) {
+            throw new IOException("欄位區塊長度錯誤");
+        }
+        if (compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        in.readFully(compressed, 0, compressedLength);
+        column.reset(rawLength);
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int length = 0;
+            while (length < rawLength) {
+                int n = inflater.inflate(column.data, length, rawLength - length);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("欄位區塊資料不完整");
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("欄位區塊解壓失敗: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    /**
+     * 解壓後的欄位資料
+     */
+    private static final class ColumnInput {
+        byte[] data = new byte[64 * 1024];
+        int position;
+        int size;
+
+        void reset(int length) {
+            if (data.length < length) {
+                data = new byte[length];
+            }
+            position = 0;
+            size = length;
+        }
+
+        private void require(int length) throws IOException {
+            if (position + length > size) {
+                throw new IOException("欄位資料不足");
+            }
+        }
+
+        int readByte() throws IOException {
+            require(1);
+            return data[position++] & 0xFF;
+        }
+
+        void readBytes(byte[] dest, int offset, int length) throws IOException {
+            require(length);
+            System.arraycopy(data, position, dest, offset, length);
+            position += length;
+        }
+
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("變長整數格式錯誤");
+        }
+
+        long readZigZag() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readLong() throws IOException {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (data[position++] & 0xFFL);
+            }
+            return value;
+        }
+
+        String readString() throws IOException {
+            int length = (int) readVarint();
+            if (length == 0) {
+                return null;
+            }
+            require(length - 1);
+            String value = new String(data, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+    }
+
+    // Getters
+    /**
+     * 檔頭記錄的總列數
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public String getEpc() {
+        return epcKey ? getKeyHex() : null;
+    }
+
+    public String getTid() {
+        return epcKey ? tid : getKeyHex();
+    }
+
+    private String getKeyHex() {
+        char[] chars = new char[keyLength * 2];
+        for (int i = 0; i < keyLength; i++) {
+            int b = key[i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[b >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    public String getUserData() {
+        return userData;
+    }
+
+    public TagInfo.TagType getTagType() {
+        return tagType;
+    }
+
+    public int getReadCount() {
+        return readCount;
+    }
+
+    public long getFirstSeenNanos() {
+        return firstSeenNanos;
+    }
+
+    public long getLastSeenNanos() {
+        return lastSeenNanos;
+    }
+
+    public int getLastRssi() {
+        return lastRssi;
+    }
+
+    public int getMaxRssi() {
+        return maxRssi;
+    }
+
+    public double getAvgRssi() {
+        return readCount > 0 ? (double) rssiSum / readCount : 0;
+    }
+
+    public int getSmoothedRssi() {
+        return smoothedRssi;
+    }
+
+    public int getAntennaId() {
+        return antennaId;
+    }
+
+    public int getEntryAntenna() {
+        return entryAntenna;
+    }
+
+    public int getExitAntenna() {
+        return exitAntenna;
+    }
+}
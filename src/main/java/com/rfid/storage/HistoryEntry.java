@@ -0,0 +1,125 @@
+package com.rfid.storage;
+
+import com.rfid.reader.TagInfo;
+
+import java.util.Comparator;
+
+/**
+ * 標籤歷史的一筆出現（可變，供記憶體表與區段讀寫重複使用）
+ */
+final class HistoryEntry {
+
+    static final int FLAG_EPC_KEY = 0x80;
+
+    private static final TagInfo.TagType[] TAG_TYPES = TagInfo.TagType.values();
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** 依鍵（無號位元組順序）、鍵種類、讀取頭、天線、首次讀取時間排序 */
+    static final Comparator<HistoryEntry> ORDER = (a, b) -> {
+        int c = compareKeys(a.key, a.keyLength, b.key, b.keyLength);
+        if (c != 0) {
+            return c;
+        }
+        c = Integer.compare(a.flags & FLAG_EPC_KEY, b.flags & FLAG_EPC_KEY);
+        if (c != 0) {
+            return c;
+        }
+        c = compareNames(a.readerName, b.readerName);
+        if (c != 0) {
+            return c;
+        }
+        c = Integer.compare(a.antennaId, b.antennaId);
+        return c != 0 ? c : Long.compare(a.firstSeenNanos, b.firstSeenNanos);
+    };
+
+    byte[] key;
+    int keyLength;
+    int flags;                 // FLAG_EPC_KEY | 標籤類型序號 + 1
+    String readerName;
+    int antennaId;
+    long firstSeenNanos;
+    long lastSeenNanos;
+    int readCount;
+    int maxRssi;
+
+    // 記憶體表中同一標籤的下一筆出現（與其他欄位一樣持 TagHistory 的 memLock 存取）
+    HistoryEntry next;
+
+    HistoryEntry() {
+    }
+
+    HistoryEntry(byte[] key, int keyLength) {
+        this.key = key;
+        this.keyLength = keyLength;
+    }
+
+    void copyFrom(HistoryEntry other) {
+        if (key == null || key.length < other.keyLength) {
+            key = new byte[Math.max(other.keyLength, 16)];
+        }
+        System.arraycopy(other.key, 0, key, 0, other.keyLength);
+        keyLength = other.keyLength;
+        flags = other.flags;
+        readerName = other.readerName;
+        antennaId = other.antennaId;
+        firstSeenNanos = other.firstSeenNanos;
+        lastSeenNanos = other.lastSeenNanos;
+        readCount = other.readCount;
+        maxRssi = other.maxRssi;
+    }
+
+    /**
+     * 是否為同一標籤在同一讀取頭、同一天線的出現
+     */
+    boolean sameSource(HistoryEntry other) {
+        return antennaId == other.antennaId
+            && (flags & FLAG_EPC_KEY) == (other.flags & FLAG_EPC_KEY)
+            && compareNames(readerName, other.readerName) == 0
+            && compareKeys(key, keyLength, other.key, other.keyLength) == 0;
+    }
+
+    /**
+     * 合併另一筆相鄰的出現
+     */
+    void absorb(HistoryEntry other) {
+        firstSeenNanos = Math.min(firstSeenNanos, other.firstSeenNanos);
+        lastSeenNanos = Math.max(lastSeenNanos, other.lastSeenNanos);
+        readCount += other.readCount;
+        maxRssi = Math.max(maxRssi, other.maxRssi);
+    }
+
+    boolean overlaps(long fromNanos, long toNanos) {
+        return lastSeenNanos >= fromNanos && firstSeenNanos <= toNanos;
+    }
+
+    Sighting toSighting() {
+        int typeBits = flags & 0x7F;
+        TagInfo.TagType type = typeBits > 0 && typeBits <= TAG_TYPES.length ? TAG_TYPES[typeBits - 1] : null;
+        char[] chars = new char[keyLength * 2];
+        for (int i = 0; i < keyLength; i++) {
+            int b = key[i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[b >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+        }
+        return new Sighting(new String(chars), (flags & FLAG_EPC_KEY) != 0, type, readerName, antennaId,
+            firstSeenNanos, lastSeenNanos, readCount, maxRssi);
+    }
+
+    static int compareKeys(byte[] a, int aLength, byte[] b, int bLength) {
+        int n = Math.min(aLength, bLength);
+        for (int i = 0; i < n; i++) {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private static int compareNames(String a, String b) {
+        if (a == null) {
+            return b == null ? 0 : -1;
+        }
+        return b == null ? 1 : a.compareTo(b);
+    }
+}
@@ -0,0 +1,398 @@
+package com.rfid.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 標籤歷史的不可變排序區段檔
+ * 出現依 HistoryEntry.ORDER 排序後分成約 BLOCK_SIZE 的區塊；檔尾的區塊索引記錄每個區塊的
+ * 第一個鍵、位置與時間範圍，開啟時載入記憶體，查詢以二分搜尋定位區塊並略過時間範圍不符的區塊。
+ *
+ * 檔案格式：檔頭（magic、版本）、區塊、區塊索引、讀取頭名稱表、檔尾（索引位置、最早/最晚時間、出現數、magic）。
+ * 出現：鍵長度(1) 鍵 旗標(1) 讀取頭編號(2) 天線(1) 首次讀取(8) 最後讀取(8) 讀取次數(4) 最大 RSSI(2)
+ */
+final class HistoryRun implements Closeable {
+
+    /** 區段檔 magic（"RFH1"） */
+    static final int MAGIC = 0x52464831;
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 16 * 1024;
+
+    static final String FILE_PREFIX = "hist-";
+    static final String FILE_SUFFIX = ".rfh";
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 8 + 8 + 8 + 8 + 4;
+    private static final int MAX_ENTRY_SIZE = 1 + 255 + 1 + 2 + 1 + 8 + 8 + 4 + 2;
+    private static final int NO_READER = 0xFFFF;
+
+    /**
+     * 區塊走訪回調
+     */
+    interface Visitor {
+        /**
+         * @return 是否繼續
+         */
+        boolean visit(HistoryEntry entry);
+    }
+
+    final File file;
+    final long sequence;
+    final long minTimeNanos;
+    final long maxTimeNanos;
+    final long entryCount;
+
+    private final FileChannel channel;
+    private final byte[][] blockKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final long[] blockMinTimes;
+    private final long[] blockMaxTimes;
+    private final String[] readerNames;
+
+    private HistoryRun(File file, long sequence) throws IOException {
+        this.file = file;
+        this.sequence = sequence;
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("區段檔過小: " + file);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            readFully(trailer, size - TRAILER_SIZE);
+            trailer.flip();
+            long indexOffset = trailer.getLong();
+            this.minTimeNanos = trailer.getLong();
+            this.maxTimeNanos = trailer.getLong();
+            this.entryCount = trailer.getLong();
+            if (trailer.getInt() != MAGIC || indexOffset < HEADER_SIZE || indexOffset > size - TRAILER_SIZE) {
+                throw new IOException("區段檔尾損壞: " + file);
+            }
+
+            ByteBuffer index = ByteBuffer.allocate((int) (size - TRAILER_SIZE - indexOffset));
+            readFully(index, indexOffset);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(index.array()));
+            int blocks = in.readInt();
+            blockKeys = new byte[blocks][];
+            blockOffsets = new long[blocks];
+            blockLengths = new int[blocks];
+            blockMinTimes = new long[blocks];
+            blockMaxTimes = new long[blocks];
+            for (int b = 0; b < blocks; b++) {
+                blockKeys[b] = new byte[in.readUnsignedByte()];
+                in.readFully(blockKeys[b]);
+                blockOffsets[b] = in.readLong();
+                blockLengths[b] = in.readInt();
+                blockMinTimes[b] = in.readLong();
+                blockMaxTimes[b] = in.readLong();
+            }
+            readerNames = new String[in.readInt()];
+            for (int i = 0; i < readerNames.length; i++) {
+                readerNames[i] = in.readUTF();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("區段檔損壞: " + file, e);
+        }
+    }
+
+    /**
+     * 開啟既有的區段檔
+     */
+    static HistoryRun open(File file) throws IOException {
+        return new HistoryRun(file, sequenceOf(file));
+    }
+
+    static File fileFor(File directory, long sequence) {
+        return new File(directory, String.format("%s%08d%s", FILE_PREFIX, sequence, FILE_SUFFIX));
+    }
+
+    /**
+     * 由檔名取得序號，不是區段檔時回傳 -1
+     */
+    static long sequenceOf(File file) {
+        String name = file.getName();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("區段檔不完整: " + file);
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * 可能包含鍵的第一個區塊：第一個鍵小於目標的最後一個區塊
+     */
+    int lowerBlock(byte[] key, int keyLength) {
+        int low = 0;
+        int high = blockKeys.length - 1;
+        int result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (HistoryEntry.compareKeys(blockKeys[mid], blockKeys[mid].length, key, keyLength) < 0) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    int getBlockCount() {
+        return blockKeys.length;
+    }
+
+    byte[] getBlockKey(int block) {
+        return blockKeys[block];
+    }
+
+    boolean blockOverlaps(int block, long fromNanos, long toNanos) {
+        return blockMaxTimes[block] >= fromNanos && blockMinTimes[block] <= toNanos;
+    }
+
+    boolean overlaps(long fromNanos, long toNanos) {
+        return maxTimeNanos >= fromNanos && minTimeNanos <= toNanos;
+    }
+
+    /**
+     * 解碼一個區塊並依序回調
+     * @param buffer 以 newBlockBuffer() 建立的暫存區
+     * @return 回調是否要求繼續
+     */
+    boolean visitBlock(int block, ByteBuffer buffer, HistoryEntry into, Visitor visitor) throws IOException {
+        buffer.clear();
+        buffer.limit(blockLengths[block]);
+        readFully(buffer, blockOffsets[block]);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            decode(buffer, into);
+            if (!visitor.visit(into)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static ByteBuffer newBlockBuffer() {
+        return ByteBuffer.allocate(BLOCK_SIZE + MAX_ENTRY_SIZE);
+    }
+
+    private void decode(ByteBuffer buffer, HistoryEntry into) {
+        int keyLength = buffer.get() & 0xFF;
+        if (into.key == null || into.key.length < keyLength) {
+            into.key = new byte[Math.max(keyLength, 16)];
+        }
+        buffer.get(into.key, 0, keyLength);
+        into.keyLength = keyLength;
+        into.flags = buffer.get() & 0xFF;
+        int readerId = buffer.getShort() & 0xFFFF;
+        into.readerName = readerId != NO_READER && readerId < readerNames.length ? readerNames[readerId] : null;
+        into.antennaId = buffer.get() & 0xFF;
+        into.firstSeenNanos = buffer.getLong();
+        into.lastSeenNanos = buffer.getLong();
+        into.readCount = buffer.getInt();
+        into.maxRssi = buffer.getShort();
+    }
+
+    /**
+     * 依序走訪所有出現（合併區段用）
+     */
+    final class Cursor {
+        private final ByteBuffer buffer = newBlockBuffer();
+        private int nextBlock;
+
+        Cursor() {
+            buffer.limit(0);
+        }
+
+        boolean next(HistoryEntry into) throws IOException {
+            while (!buffer.hasRemaining()) {
+                if (nextBlock >= blockKeys.length) {
+                    return false;
+                }
+                int block = nextBlock++;
+                buffer.clear();
+                buffer.limit(blockLengths[block]);
+                readFully(buffer, blockOffsets[block]);
+                buffer.flip();
+            }
+            decode(buffer, into);
+            return true;
+        }
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    long length() {
+        return file.length();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 區段檔寫入器，出現須依 HistoryEntry.ORDER 的順序加入
+     * 先寫入暫存檔，finish() 時改名為正式檔名
+     */
+    static final class Writer implements Closeable {
+        private final File target;
+        private final File temp;
+        private final long sequence;
+        private final DataOutputStream out;
+        private long position;
+
+        private final ByteBuffer block = newBlockBuffer();
+        private byte[] blockFirstKey;
+        private long blockMin = Long.MAX_VALUE;
+        private long blockMax = Long.MIN_VALUE;
+
+        private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        private final DataOutputStream index = new DataOutputStream(indexBytes);
+        private int blockCount;
+
+        private final Map<String, Integer> readerIds = new HashMap<>();
+        private final List<String> readerNames = new ArrayList<>();
+
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        private long count;
+        private boolean finished;
+
+        Writer(File directory, long sequence) throws IOException {
+            this.sequence = sequence;
+            this.target = fileFor(directory, sequence);
+            this.temp = new File(directory, target.getName() + TEMP_SUFFIX);
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 256 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            position = HEADER_SIZE;
+        }
+
+        void add(HistoryEntry entry) throws IOException {
+            if (block.position() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+            if (block.position() == 0) {
+                blockFirstKey = Arrays.copyOf(entry.key, entry.keyLength);
+            }
+            int readerId = NO_READER;
+            if (entry.readerName != null) {
+                Integer id = readerIds.get(entry.readerName);
+                if (id == null && readerNames.size() < NO_READER) {
+                    id = readerNames.size();
+                    readerIds.put(entry.readerName, id);
+                    readerNames.add(entry.readerName);
+                }
+                readerId = id != null ? id : NO_READER;
+            }
+            block.put((byte) entry.keyLength);
+            block.put(entry.key, 0, entry.keyLength);
+            block.put((byte) entry.flags);
+            block.putShort((short) readerId);
+            block.put((byte) entry.antennaId);
+            block.putLong(entry.firstSeenNanos);
+            block.putLong(entry.lastSeenNanos);
+            block.putInt(entry.readCount);
+            block.putShort((short) entry.maxRssi);
+
+            blockMin = Math.min(blockMin, entry.firstSeenNanos);
+            blockMax = Math.max(blockMax, entry.lastSeenNanos);
+            minTime = Math.min(minTime, entry.firstSeenNanos);
+            maxTime = Math.max(maxTime, entry.lastSeenNanos);
+            count++;
+        }
+
+        private void flushBlock() throws IOException {
+            int length = block.position();
+            if (length == 0) {
+                return;
+            }
+            out.write(block.array(), 0, length);
+            index.writeByte(blockFirstKey.length);
+            index.write(blockFirstKey);
+            index.writeLong(position);
+            index.writeInt(length);
+            index.writeLong(blockMin);
+            index.writeLong(blockMax);
+            blockCount++;
+            position += length;
+            block.clear();
+            blockMin = Long.MAX_VALUE;
+            blockMax = Long.MIN_VALUE;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * 寫入索引與檔尾並改名，回傳開啟的區段
+         */
+        HistoryRun finish() throws IOException {
+            flushBlock();
+            long indexOffset = position;
+            out.writeInt(blockCount);
+            out.write(indexBytes.toByteArray());
+            out.writeInt(readerNames.size());
+            for (String name : readerNames) {
+                out.writeUTF(name);
+            }
+            out.writeLong(indexOffset);
+            out.writeLong(count > 0 ? minTime : 0);
+            out.writeLong(count > 0 ? maxTime : 0);
+            out.writeLong(count);
+            out.writeInt(MAGIC);
+            out.close();
+            finished = true;
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return new HistoryRun(target, sequence);
+        }
+
+        /**
+         * 放棄寫入並刪除暫存檔（finish() 後無作用）
+         */
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                temp.delete();
+            }
+        }
+    }
+}
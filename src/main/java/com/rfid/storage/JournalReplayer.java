@@ -0,0 +1,222 @@
+package com.rfid.storage;
+
+import com.rfid.metrics.MetricsRegistry;
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagRecord;
+import com.rfid.reader.TagRecordPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 讀取日誌重播器
+ * 依原始時間間隔（可加速或以最快速度）重播日誌中的讀取，
+ * 回調契約與 TagReader 相同，下游元件不需區分即時讀取或重播
+ */
+public class JournalReplayer {
+
+    /** 以最快速度重播（不等待） */
+    public static final double MAX_SPEED = 0;
+
+    private final File directory;
+    private final TagRecordPool recordPool;
+
+    private volatile double speed = 1.0;
+    private volatile boolean loop;
+    private volatile boolean rewriteTimestamps = true;
+    private volatile boolean running;
+    private Thread thread;
+
+    // 統計資訊
+    private final AtomicLong replayedCount = new AtomicLong();
+
+    // 回調函數
+    private Consumer<TagInfo> onTagReadCallback;
+    private Consumer<TagRecord> onTagRecordCallback;
+    private Runnable onReadOverCallback;
+    private Consumer<String> onLogCallback;
+
+    public JournalReplayer(File directory) {
+        this.directory = directory;
+        this.recordPool = new TagRecordPool();
+    }
+
+    /**
+     * 開始重播（於背景執行緒）
+     */
+    public synchronized boolean start() {
+        if (running) {
+            log("重播已在進行中");
+            return false;
+        }
+        if (TagJournal.listSegments(directory).length == 0) {
+            log("日誌目錄沒有區段檔案: " + directory);
+            return false;
+        }
+        running = true;
+        replayedCount.set(0);
+        thread = new Thread(this::run, "journal-replay");
+        thread.setDaemon(true);
+        thread.start();
+        log("開始重播 " + directory + "，速度 " + (speed > 0 ? speed + "x" : "最快"));
+        return true;
+    }
+
+    /**
+     * 停止重播
+     */
+    public void stop() {
+        running = false;
+        Thread current;
+        synchronized (this) {
+            current = thread;
+        }
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    private void run() {
+        TagRecord scratch = new TagRecord();
+        try {
+            do {
+                replayOnce(scratch);
+            } while (running && loop);
+        } catch (IOException e) {
+            log("重播錯誤: " + e.getMessage());
+        } finally {
+            running = false;
+            log("重播結束，共 " + replayedCount.get() + " 筆");
+            if (onReadOverCallback != null) {
+                onReadOverCallback.run();
+            }
+        }
+    }
+
+    private void replayOnce(TagRecord scratch) throws IOException {
+        try (TagJournalReader reader = new TagJournalReader(directory)) {
+            long baseRecordNanos = 0;
+            long baseWallNanos = 0;
+            double baseSpeed = -1;
+
+            while (running && reader.next(scratch)) {
+                double currentSpeed = speed;
+                if (currentSpeed > 0) {
+                    // 第一筆或速度變更時重新對齊時間基準
+                    if (currentSpeed != baseSpeed) {
+                        baseSpeed = currentSpeed;
+                        baseRecordNanos = scratch.getTimestampNanos();
+                        baseWallNanos = System.nanoTime();
+                    }
+                    long due = baseWallNanos + (long) ((scratch.getTimestampNanos() - baseRecordNanos) / currentSpeed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                } else {
+                    baseSpeed = -1;
+                }
+
+                TagRecord record = recordPool.acquire();
+                record.copyFrom(scratch);
+                if (rewriteTimestamps) {
+                    record.setTimestampNanos(TagRecord.nowEpochNanos());
+                }
+                MetricsRegistry.getDefault().recordRead(record.getReaderName(), record.getTagType(),
+                    record.getAntennaId(), record.getResult());
+                dispatch(record);
+                replayedCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 分派記錄，規則與 TagReader 相同：記錄回調取得所有權，否則立即歸還
+     */
+    private void dispatch(TagRecord record) {
+        if (onTagReadCallback != null) {
+            onTagReadCallback.accept(record.toTagInfo());
+        }
+        if (onTagRecordCallback != null) {
+            onTagRecordCallback.accept(record);
+        } else {
+            record.release();
+        }
+    }
+
+    private void log(String message) {
+        System.out.println("[JournalReplayer] " + message);
+        if (onLogCallback != null) {
+            onLogCallback.accept(message);
+        }
+    }
+
+    // Getters
+    public File getDirectory() {
+        return directory;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    public TagRecordPool getRecordPool() {
+        return recordPool;
+    }
+
+    // Setters
+    /**
+     * 設置重播速度，1 為原速，MAX_SPEED (0) 為最快
+     */
+    public void setSpeed(double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("speed must not be negative: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * 是否在結尾後從頭重播
+     */
+    public void setLoop(boolean loop) {
+        this.loop = loop;
+    }
+
+    /**
+     * 是否將讀取時間改為重播當下時間（預設開啟）
+     */
+    public void setRewriteTimestamps(boolean rewriteTimestamps) {
+        this.rewriteTimestamps = rewriteTimestamps;
+    }
+
+    // Setters for callbacks
+    public void setOnTagReadCallback(Consumer<TagInfo> callback) {
+        this.onTagReadCallback = callback;
+    }
+
+    /**
+     * 設置池化記錄回調，接收端處理完畢後須呼叫 TagRecord.release()
+     */
+    public void setOnTagRecordCallback(Consumer<TagRecord> callback) {
+        this.onTagRecordCallback = callback;
+    }
+
+    public void setOnReadOverCallback(Runnable callback) {
+        this.onReadOverCallback = callback;
+    }
+
+    public void setOnLogCallback(Consumer<String> callback) {
+        this.onLogCallback = callback;
+    }
+}
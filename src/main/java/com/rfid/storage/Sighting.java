@@ -0,0 +1,91 @@
+package com.rfid.storage;
+
+import com.rfid.reader.TagInfo;
+
+/**
+ * 標籤歷史中的一次出現
+ * 同一標籤在同一讀取頭同一天線連續被讀到（間隔不超過出現間隔）的讀取合併為一筆
+ */
+public final class Sighting {
+
+    private final String key;          // EPC，無 EPC 的標籤為 TID
+    private final boolean epcKey;
+    private final TagInfo.TagType tagType;
+    private final String readerName;
+    private final int antennaId;
+    private final long firstSeenNanos; // epoch 奈秒
+    private final long lastSeenNanos;
+    private final int readCount;
+    private final int maxRssi;
+
+    Sighting(String key, boolean epcKey, TagInfo.TagType tagType, String readerName, int antennaId,
+             long firstSeenNanos, long lastSeenNanos, int readCount, int maxRssi) {
+        this.key = key;
+        this.epcKey = epcKey;
+        this.tagType = tagType;
+        this.readerName = readerName;
+        this.antennaId = antennaId;
+        this.firstSeenNanos = firstSeenNanos;
+        this.lastSeenNanos = lastSeenNanos;
+        this.readCount = readCount;
+        this.maxRssi = maxRssi;
+    }
+
+    // Getters
+    public String getKey() {
+        return key;
+    }
+
+    public String getEpc() {
+        return epcKey ? key : null;
+    }
+
+    public boolean isEpcKey() {
+        return epcKey;
+    }
+
+    public TagInfo.TagType getTagType() {
+        return tagType;
+    }
+
+    public String getReaderName() {
+        return readerName;
+    }
+
+    public int getAntennaId() {
+        return antennaId;
+    }
+
+    public long getFirstSeenNanos() {
+        return firstSeenNanos;
+    }
+
+    public long getLastSeenNanos() {
+        return lastSeenNanos;
+    }
+
+    public long getLastSeenMillis() {
+        return lastSeenNanos / 1_000_000L;
+    }
+
+    public int getReadCount() {
+        return readCount;
+    }
+
+    public int getMaxRssi() {
+        return maxRssi;
+    }
+
+    @Override
+    public String toString() {
+        return "Sighting{" +
+                "key='" + key + '\'' +
+                ", reader='" + readerName + '\'' +
+                ", antenna=" + antennaId +
+                ", first=" + TagInfo.formatReadTime(firstSeenNanos / 1_000_000L) +
+                ", last=" + TagInfo.formatReadTime(getLastSeenMillis()) +
+                ", readCount=" + readCount +
+                ", maxRssi=" + maxRssi +
+                '}';
+    }
+}
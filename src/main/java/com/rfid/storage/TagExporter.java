@@ -0,0 +1,500 @@
+package com.rfid.storage;
+
+import com.rfid.logging.AsyncLogger;
+import com.rfid.reader.TagIndex;
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagRecord;
+import com.rfid.reader.TagSignalModel;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * 標籤工作階段匯出器
+ * 於背景執行緒將 TagIndex 的副本逐列串流輸出，不在記憶體中建立完整結果。
+ *
+ * 兩種格式：
+ *   CSV      - 每個標籤一列，讀取時間格式與表格相同
+ *   欄位式   - 副檔名 .rfc，每 ROW_GROUP_SIZE 列為一個列群組，每個欄位各自編碼後以 Deflate 壓縮：
+ *              鍵的前 8 位元組以列群組內的字典編碼（同一公司/品項的 EPC 共用一個字典項），
+ *              其餘位元組直接存放；首次讀取時間與前一列的差、最後讀取時間與首次讀取時間的差
+ *              以 zigzag 變長整數存放；用戶數據以字典編碼
+ *
+ * 欄位式檔案格式：檔頭（magic、版本、列數）後接列群組，每個列群組為列數與 COLUMN_COUNT 個欄位區塊
+ * （壓縮後長度、原始長度、壓縮資料），列數 0 表示檔案結束。以 ColumnarTagReader 讀取
+ */
+public class TagExporter {
+
+    /** 匯出格式 */
+    public enum Format {
+        CSV,
+        COLUMNAR;
+
+        /**
+         * 依副檔名選擇格式，.rfc 為欄位式，其他為 CSV
+         */
+        public static Format forFile(File file) {
+            return file.getName().toLowerCase().endsWith(COLUMNAR_SUFFIX) ? COLUMNAR : CSV;
+        }
+    }
+
+    /** 欄位式檔案副檔名 */
+    public static final String COLUMNAR_SUFFIX = ".rfc";
+
+    /** 欄位式檔案 magic（"RFC1"） */
+    static final int MAGIC = 0x52464331;
+    static final int VERSION = 1;
+    /** 每個列群組的列數 */
+    static final int ROW_GROUP_SIZE = 65536;
+
+    // 欄位順序
+    static final int COLUMN_FLAGS = 0;          // 鍵種類 | 標籤類型
+    static final int COLUMN_KEY_PREFIX = 1;     // 鍵前 8 位元組的字典編號
+    static final int COLUMN_KEY_REST = 2;       // 鍵長度與第 8 位元組之後的資料
+    static final int COLUMN_TID = 3;            // 字串（EPC 為鍵時的 TID）
+    static final int COLUMN_USER_DATA = 4;      // 字典編碼字串
+    static final int COLUMN_READ_COUNT = 5;
+    static final int COLUMN_FIRST_SEEN = 6;     // 與前一列的差
+    static final int COLUMN_LAST_SEEN = 7;      // 與首次讀取時間的差
+    static final int COLUMN_RSSI = 8;           // 最後、最大、平滑 RSSI 與 RSSI 總和
+    static final int COLUMN_ANTENNA = 9;        // 最後讀到的天線、最先與最後到達峰值的天線
+    static final int COLUMN_COUNT = 10;
+
+    static final int FLAG_EPC_KEY = 0x80;
+
+    private static final AsyncLogger LOGGER = AsyncLogger.getDefault();
+
+    private static final String CSV_HEADER =
+        "epc,tid,user_data,type,count,first_seen,last_seen,last_rssi,max_rssi,avg_rssi,antenna,smoothed_rssi,direction";
+
+    private final TagIndex index;
+    private final File file;
+    private final Format format;
+
+    private volatile boolean running;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    private Thread thread;
+
+    // 統計資訊
+    private final AtomicLong exportedCount = new AtomicLong();
+    private volatile long elapsedMillis;
+    private volatile long fileSize;
+
+    // 回調函數
+    private Consumer<Long> onProgressCallback;
+    private Runnable onExportOverCallback;
+    private Consumer<String> onLogCallback;
+
+    /**
+     * @param index 要匯出的索引，須為 TagIndex.snapshot() 取得的副本（匯出期間不可再修改）
+     * @param file 輸出檔案
+     * @param format 匯出格式
+     */
+    public TagExporter(TagIndex index, File file, Format format) {
+        this.index = index;
+        this.file = file;
+        this.format = format;
+    }
+
+    /**
+     * 開始匯出（於背景執行緒）
+     */
+    public synchronized boolean start() {
+        if (running) {
+            log(AsyncLogger.Level.WARN, "匯出已在進行中", null, null);
+            return false;
+        }
+        running = true;
+        cancelled = false;
+        error = null;
+        exportedCount.set(0);
+        thread = new Thread(this::run, "tag-export");
+        thread.setDaemon(true);
+        thread.start();
+        log(AsyncLogger.Level.INFO, "開始匯出 {} 個標籤到 {}", index.size(), file);
+        return true;
+    }
+
+    /**
+     * 取消匯出，已寫入的部分檔案會被刪除
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void run() {
+        long startNanos = System.nanoTime();
+        try {
+            if (format == Format.COLUMNAR) {
+                writeColumnar();
+            } else {
+                writeCsv();
+            }
+            elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+            fileSize = file.length();
+            if (cancelled) {
+                file.delete();
+                log(AsyncLogger.Level.INFO, "匯出已取消", null, null);
+            } else {
+                log(AsyncLogger.Level.INFO, "匯出完成: {} 個標籤，{}", exportedCount.get(),
+                    fileSize / 1024 + " KB，" + elapsedMillis + " ms");
+            }
+        } catch (Throwable e) {
+            // 包含執行期例外與記憶體不足，一律記錄錯誤並刪除不完整的檔案
+            error = e;
+            file.delete();
+            log(AsyncLogger.Level.ERROR, "匯出失敗: {}", describe(e), null);
+        } finally {
+            running = false;
+            Runnable callback = onExportOverCallback;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * 以 CSV 串流輸出
+     */
+    private void writeCsv() throws IOException {
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 20)) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            int size = index.size();
+            int row = 0;
+            for (; row < size && !cancelled; row++) {
+                writer.write(nullToEmpty(index.getEpc(row)));
+                writer.write(',');
+                writer.write(nullToEmpty(index.getTid(row)));
+                writer.write(',');
+                writer.write(nullToEmpty(index.getUserData(row)));
+                writer.write(',');
+                TagInfo.TagType type = index.getTagType(row);
+                writer.write(type != null ? type.name() : "");
+                writer.write(',');
+                writer.write(Integer.toString(index.getReadCount(row)));
+                writer.write(',');
+                writer.write(TagInfo.formatReadTime(index.getFirstSeenNanos(row) / 1_000_000L));
+                writer.write(',');
+                writer.write(TagInfo.formatReadTime(index.getLastSeenMillis(row)));
+                writer.write(',');
+                writer.write(Integer.toString(index.getLastRssi(row)));
+                writer.write(',');
+                writer.write(Integer.toString(index.getMaxRssi(row)));
+                writer.write(',');
+                writer.write(Double.toString(Math.round(index.getAvgRssi(row) * 10) / 10.0));
+                writer.write(',');
+                writer.write(Integer.toString(index.getAntennaId(row)));
+                writer.write(',');
+                writer.write(Integer.toString(index.getSmoothedRssi(row)));
+                writer.write(',');
+                TagSignalModel.Direction direction =
+                    TagSignalModel.Direction.of(index.getEntryAntenna(row), index.getExitAntenna(row));
+                writer.write(direction != TagSignalModel.Direction.UNKNOWN ? direction.name() : "");
+                writer.write('\n');
+                if ((row + 1) % ROW_GROUP_SIZE == 0) {
+                    progress(row + 1);
+                }
+            }
+            progress(row);
+        }
+    }
+
+    /**
+     * 以欄位式格式串流輸出，每個列群組編碼後立即寫出
+     */
+    private void writeColumnar() throws IOException {
+        ColumnBuffer[] columns = new ColumnBuffer[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columns[i] = new ColumnBuffer();
+        }
+        byte[] key = new byte[TagRecord.MAX_EPC_BYTES];
+        byte[] compressed = new byte[64 * 1024];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        Map<Long, Integer> prefixIds = new HashMap<>();
+        Map<String, Integer> userDataIds = new HashMap<>();
+        ColumnBuffer prefixDictionary = new ColumnBuffer();
+        ColumnBuffer userDataDictionary = new ColumnBuffer();
+
+        int size = index.size();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+
+            for (int groupStart = 0; groupStart < size && !cancelled; groupStart += ROW_GROUP_SIZE) {
+                int groupEnd = Math.min(size, groupStart + ROW_GROUP_SIZE);
+                for (ColumnBuffer column : columns) {
+                    column.reset();
+                }
+                prefixIds.clear();
+                userDataIds.clear();
+                prefixDictionary.reset();
+                userDataDictionary.reset();
+                long previousFirstSeen = 0;
+
+                for (int row = groupStart; row < groupEnd; row++) {
+                    TagInfo.TagType type = index.getTagType(row);
+                    int flags = (index.isEpcKey(row) ? FLAG_EPC_KEY : 0) | (type != null ? type.ordinal() + 1 : 0);
+                    columns[COLUMN_FLAGS].writeByte(flags);
+
+                    int length = index.getKeyBytes(row, key);
+                    long prefix = 0;
+                    for (int i = 0; i < 8; i++) {
+                        prefix = (prefix << 8) | (i < length ? key[i] & 0xFFL : 0);
+                    }
+                    Integer prefixId = prefixIds.get(prefix);
+                    if (prefixId == null) {
+                        prefixId = prefixIds.size();
+                        prefixIds.put(prefix, prefixId);
+                        prefixDictionary.writeLong(prefix);
+                    }
+                    columns[COLUMN_KEY_PREFIX].writeVarint(prefixId);
+                    columns[COLUMN_KEY_REST].writeVarint(length);
+                    if (length > 8) {
+                        columns[COLUMN_KEY_REST].writeBytes(key, 8, length - 8);
+                    }
+
+                    columns[COLUMN_TID].writeString(index.isEpcKey(row) ? index.getTid(row) : null);
+
+                    String userData = index.getUserData(row);
+                    int userDataId = 0;
+                    if (userData != null) {
+                        Integer id = userDataIds.get(userData);
+                        if (id == null) {
+                            id = userDataIds.size() + 1;
+                            userDataIds.put(userData, id);
+                            userDataDictionary.writeString(userData);
+                        }
+                        userDataId = id;
+                    }
+                    columns[COLUMN_USER_DATA].writeVarint(userDataId);
+
+                    columns[COLUMN_READ_COUNT].writeVarint(index.getReadCount(row));
+                    long firstSeen = index.getFirstSeenNanos(row);
+                    columns[COLUMN_FIRST_SEEN].writeZigZag(firstSeen - previousFirstSeen);
+                    previousFirstSeen = firstSeen;
+                    columns[COLUMN_LAST_SEEN].writeZigZag(index.getLastSeenNanos(row) - firstSeen);
+
+                    ColumnBuffer rssi = columns[COLUMN_RSSI];
+                    rssi.writeZigZag(index.getLastRssi(row));
+                    rssi.writeZigZag(index.getMaxRssi(row));
+                    rssi.writeZigZag(index.getSmoothedRssi(row));
+                    rssi.writeZigZag(index.getRssiSum(row));
+
+                    ColumnBuffer antenna = columns[COLUMN_ANTENNA];
+                    antenna.writeByte(index.getAntennaId(row));
+                    antenna.writeByte(index.getEntryAntenna(row));
+                    antenna.writeByte(index.getExitAntenna(row));
+                }
+
+                // 字典放在使用它的欄位之前
+                columns[COLUMN_KEY_PREFIX].prepend(prefixIds.size(), prefixDictionary);
+                columns[COLUMN_USER_DATA].prepend(userDataIds.size(), userDataDictionary);
+
+                out.writeInt(groupEnd - groupStart);
+                for (ColumnBuffer column : columns) {
+                    compressed = writeBlock(out, deflater, column, compressed);
+                }
+                progress(groupEnd);
+            }
+            out.writeInt(0);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 壓縮並寫出一個欄位區塊
+     * @return 可重複使用的壓縮緩衝區（可能已擴大）
+     */
+    private static byte[] writeBlock(DataOutputStream out, Deflater deflater, ColumnBuffer column,
+                                     byte[] compressed) throws IOException {
+        deflater.reset();
+        deflater.setInput(column.data, 0, column.size);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        out.writeInt(length);
+        out.writeInt(column.size);
+        out.write(compressed, 0, length);
+        return compressed;
+    }
+
+    private void progress(long rows) {
+        exportedCount.set(rows);
+        Consumer<Long> callback = onProgressCallback;
+        if (callback != null) {
+            callback.accept(rows);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * 錯誤說明，沒有訊息的例外（如 NullPointerException）以類別名稱表示
+     */
+    public static String describe(Throwable error) {
+        return error instanceof IOException && error.getMessage() != null ? error.getMessage() : error.toString();
+    }
+
+    /**
+     * 非同步記錄，樣板中的 "{}" 依序替換為參數
+     */
+    private void log(AsyncLogger.Level level, String template, Object arg1, Object arg2) {
+        LOGGER.log(level, "TagExporter", template, arg1, arg2, onLogCallback);
+    }
+
+    /**
+     * 可重複使用的欄位編碼緩衝區
+     */
+    private static final class ColumnBuffer {
+        byte[] data = new byte[64 * 1024];
+        int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            data[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] src, int offset, int length) {
+            ensure(length);
+            System.arraycopy(src, offset, data, size, length);
+            size += length;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                data[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        /**
+         * 長度 + 1 後接 UTF-8 位元組，null 的長度為 0
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1L);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        /**
+         * 在目前內容前插入項目數與字典
+         */
+        void prepend(int count, ColumnBuffer dictionary) {
+            ColumnBuffer header = new ColumnBuffer();
+            header.writeVarint(count);
+            header.writeBytes(dictionary.data, 0, dictionary.size);
+            ensure(header.size);
+            System.arraycopy(data, 0, data, header.size, size);
+            System.arraycopy(header.data, 0, data, 0, header.size);
+            size += header.size;
+        }
+    }
+
+    // Getters
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getExportedCount() {
+        return exportedCount.get();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * 匯出失敗時的錯誤，成功或取消時為 null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    // Setters for callbacks
+    /**
+     * 設置進度回調（於匯出執行緒呼叫，參數為已匯出的列數）
+     */
+    public void setOnProgressCallback(Consumer<Long> callback) {
+        this.onProgressCallback = callback;
+    }
+
+    /**
+     * 設置匯出結束回調（完成、取消或失敗，於匯出執行緒呼叫）
+     */
+    public void setOnExportOverCallback(Runnable callback) {
+        this.onExportOverCallback = callback;
+    }
+
+    public void setOnLogCallback(Consumer<String> callback) {
+        this.onLogCallback = callback;
+    }
+}
@@ -0,0 +1,690 @@
+package com.rfid.storage;
+
+import com.rfid.logging.AsyncLogger;
+import com.rfid.reader.TagKey;
+import com.rfid.reader.TagRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 標籤歷史儲存（嵌入式 LSM）
+ * 讀取回調只把讀取合併到記憶體表：同一標籤在同一讀取頭同一天線、間隔不超過出現間隔的讀取
+ * 合併為一筆出現（首次/最後讀取時間、次數、最大 RSSI）。背景執行緒定期（或記憶體表達上限時）
+ * 將記憶體表排序寫成不可變的區段檔，並把同一天的區段合併成一個、刪除超過保留天數的區段。
+ *
+ * 查詢以鍵（EPC/TID）或十六進位前綴、時間範圍進行：每個區段以檔尾的區塊索引二分搜尋定位，
+ * 並以區段與區塊的時間範圍略過不相關的資料。記憶體用量為記憶體表上限加上每個區塊一筆索引。
+ *
+ * 記憶體表尚未寫出的出現（最多一個寫出間隔）在程序異常結束時會遺失，原始讀取仍保存在讀取日誌中
+ */
+public class TagHistory implements Closeable {
+
+    /** 預設寫出間隔（毫秒） */
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 60_000;
+    /** 預設出現間隔（毫秒），超過此時間沒有讀到即為新的出現 */
+    public static final long DEFAULT_GAP_MS = 5_000;
+    /** 預設保留天數 */
+    public static final int DEFAULT_RETENTION_DAYS = 30;
+    /** 記憶體表最多保存的出現數，達上限時提前寫出 */
+    public static final int MAX_MEMTABLE_ENTRIES = 200_000;
+    /** 當天的區段超過此數量時合併 */
+    static final int MAX_RUNS_PER_DAY = 8;
+
+    private static final AsyncLogger LOGGER = AsyncLogger.getDefault();
+
+    private static final Comparator<Sighting> BY_LAST_SEEN = Comparator.comparingLong(Sighting::getLastSeenNanos);
+
+    private final File directory;
+    private final long gapNanos;
+    private final int retentionDays;
+    private final boolean readOnly;
+    private final ScheduledExecutorService flusher; // 唯讀時為 null
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    // 記憶體表：標籤鍵 -> 出現串列；寫出中的記憶體表保留到區段可查詢為止
+    // 寫入持 memLock；查詢不加鎖比對串列開頭的鍵（建立後不變），符合前綴的串列才持 memLock 走訪，
+    // 讀取回調最多只等待一個串列
+    private final Object memLock = new Object();
+    private volatile Map<TagKey, HistoryEntry> memtable = new ConcurrentHashMap<>();
+    private volatile Map<TagKey, HistoryEntry> flushing;
+    private int memEntries;
+    private final TagKey probe = new TagKey();
+
+    // 區段依序號排序；查詢持讀鎖，替換區段持寫鎖
+    private final ReentrantReadWriteLock runsLock = new ReentrantReadWriteLock();
+    private volatile List<HistoryRun> runs;
+    private long nextSequence;
+    private boolean closed;
+
+    // 統計資訊
+    private final AtomicLong appendedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong compactionCount = new AtomicLong();
+
+    public TagHistory(File directory) throws IOException {
+        this(directory, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_GAP_MS, DEFAULT_RETENTION_DAYS);
+    }
+
+    /**
+     * @param directory 歷史目錄
+     * @param flushIntervalMs 記憶體表寫出間隔（毫秒）
+     * @param gapMs 出現間隔（毫秒）
+     * @param retentionDays 保留天數，0 表示不刪除
+     */
+    public TagHistory(File directory, long flushIntervalMs, long gapMs, int retentionDays) throws IOException {
+        if (flushIntervalMs <= 0 || gapMs <= 0 || retentionDays < 0) {
+            throw new IllegalArgumentException("flushIntervalMs and gapMs must be positive, retentionDays non-negative");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("無法建立歷史目錄: " + directory);
+        }
+        this.directory = directory;
+        this.gapNanos = gapMs * 1_000_000L;
+        this.retentionDays = retentionDays;
+        this.readOnly = false;
+        this.runs = openRuns();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "history-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAndCompact, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private TagHistory(File directory, boolean readOnly) throws IOException {
+        this.directory = directory;
+        this.gapNanos = DEFAULT_GAP_MS * 1_000_000L;
+        this.retentionDays = 0;
+        this.readOnly = readOnly;
+        this.flusher = null;
+        this.runs = openRuns();
+    }
+
+    /**
+     * 以唯讀方式開啟歷史目錄（例如另一個程序正在寫入時查詢）
+     * 不寫出、不合併也不刪除任何檔案，只看得到開啟當下已寫出的區段
+     */
+    public static TagHistory openReadOnly(File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException("歷史目錄不存在: " + directory);
+        }
+        return new TagHistory(directory, true);
+    }
+
+    /**
+     * 開啟既有區段，刪除未完成的暫存檔，略過損壞的區段
+     */
+    private List<HistoryRun> openRuns() {
+        List<HistoryRun> opened = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().endsWith(HistoryRun.TEMP_SUFFIX)) {
+                    if (!readOnly) {
+                        file.delete();
+                    }
+                    continue;
+                }
+                long sequence = HistoryRun.sequenceOf(file);
+                if (sequence < 0) {
+                    continue;
+                }
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                try {
+                    opened.add(HistoryRun.open(file));
+                } catch (IOException e) {
+                    log(AsyncLogger.Level.WARN, "略過損壞的區段 {}: {}", file.getName(), e.getMessage());
+                }
+            }
+        }
+        nextSequence = Math.max(nextSequence, 1);
+        return Collections.unmodifiableList(opened);
+    }
+
+    /**
+     * 合併一筆讀取到記憶體表（於讀取器回調執行緒呼叫）
+     */
+    public void append(TagRecord record) {
+        if (readOnly) {
+            throw new IllegalStateException("唯讀的標籤歷史");
+        }
+        boolean full;
+        synchronized (memLock) {
+            if (closed || !probe.set(record)) {
+                return;
+            }
+            long timestamp = record.getTimestampNanos();
+            String readerName = record.getReaderName();
+            int antennaId = record.getAntennaId();
+            HistoryEntry head = memtable.get(probe);
+            HistoryEntry entry = head;
+            while (entry != null && !(entry.antennaId == antennaId
+                    && (readerName == null ? entry.readerName == null : readerName.equals(entry.readerName))
+                    && timestamp - entry.lastSeenNanos <= gapNanos
+                    && entry.firstSeenNanos - timestamp <= gapNanos)) {
+                entry = entry.next;
+            }
+            if (entry == null) {
+                if (head != null) {
+                    entry = new HistoryEntry(head.key, head.keyLength);
+                } else {
+                    boolean epc = record.getEpcLength() > 0;
+                    byte[] bytes = epc ? record.getEpcBytes() : record.getTidBytes();
+                    int length = epc ? record.getEpcLength() : record.getTidLength();
+                    entry = new HistoryEntry(Arrays.copyOf(bytes, length), length);
+                }
+                entry.flags = (record.getEpcLength() > 0 ? HistoryEntry.FLAG_EPC_KEY : 0)
+                    | (record.getTagType() != null ? record.getTagType().ordinal() + 1 : 0);
+                entry.readerName = readerName;
+                entry.antennaId = antennaId;
+                entry.firstSeenNanos = timestamp;
+                entry.lastSeenNanos = timestamp;
+                entry.maxRssi = record.getRssi();
+                entry.readCount = 1;
+                if (head != null) {
+                    entry.next = head.next;
+                    head.next = entry;
+                } else {
+                    memtable.put(probe.copy(), entry);
+                }
+                memEntries++;
+            } else {
+                entry.firstSeenNanos = Math.min(entry.firstSeenNanos, timestamp);
+                entry.lastSeenNanos = Math.max(entry.lastSeenNanos, timestamp);
+                entry.maxRssi = Math.max(entry.maxRssi, record.getRssi());
+                entry.readCount++;
+            }
+            full = memEntries >= MAX_MEMTABLE_ENTRIES;
+        }
+        appendedCount.incrementAndGet();
+        if (full && flushPending.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushAndCompact);
+            } catch (RejectedExecutionException e) {
+                // 關閉中，由 close() 寫出
+            }
+        }
+    }
+
+    /**
+     * 立即將記憶體表寫成區段
+     */
+    public synchronized void flush() throws IOException {
+        Map<TagKey, HistoryEntry> table;
+        synchronized (memLock) {
+            if (memEntries == 0) {
+                return;
+            }
+            table = memtable;
+            flushing = table;
+            memtable = new ConcurrentHashMap<>();
+            memEntries = 0;
+        }
+
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (HistoryEntry head : table.values()) {
+            for (HistoryEntry entry = head; entry != null; entry = entry.next) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(HistoryEntry.ORDER);
+
+        HistoryRun run;
+        try (HistoryRun.Writer writer = new HistoryRun.Writer(directory, takeSequence())) {
+            for (HistoryEntry entry : entries) {
+                writer.add(entry);
+            }
+            run = writer.finish();
+        } catch (IOException e) {
+            // 寫出失敗時放回記憶體表，下次再寫
+            synchronized (memLock) {
+                for (Map.Entry<TagKey, HistoryEntry> e2 : table.entrySet()) {
+                    HistoryEntry head = memtable.get(e2.getKey());
+                    HistoryEntry tail = e2.getValue();
+                    while (tail.next != null) {
+                        tail = tail.next;
+                    }
+                    tail.next = head;
+                    memtable.put(e2.getKey(), e2.getValue());
+                }
+                memEntries += entries.size();
+                flushing = null;
+            }
+            throw e;
+        }
+
+        runsLock.writeLock().lock();
+        try {
+            List<HistoryRun> updated = new ArrayList<>(runs);
+            updated.add(run);
+            runs = Collections.unmodifiableList(updated);
+        } finally {
+            runsLock.writeLock().unlock();
+        }
+        synchronized (memLock) {
+            flushing = null;
+        }
+        flushCount.incrementAndGet();
+    }
+
+    private synchronized long takeSequence() {
+        return nextSequence++;
+    }
+
+    private void flushAndCompact() {
+        flushPending.set(false);
+        try {
+            flush();
+            compact();
+        } catch (IOException e) {
+            log(AsyncLogger.Level.ERROR, "寫出歷史失敗: {}", e.getMessage(), null);
+        }
+    }
+
+    /**
+     * 合併同一天的區段（當天的區段超過 MAX_RUNS_PER_DAY 才合併），刪除超過保留天數的區段
+     */
+    synchronized void compact() throws IOException {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate today = LocalDate.now(zone);
+        long expireBefore = retentionDays > 0
+            ? today.minusDays(retentionDays).atStartOfDay(zone).toInstant().toEpochMilli() * 1_000_000L
+            : Long.MIN_VALUE;
+
+        List<HistoryRun> expired = new ArrayList<>();
+        Map<LocalDate, List<HistoryRun>> byDay = new TreeMap<>();
+        for (HistoryRun run : runs) {
+            if (run.maxTimeNanos < expireBefore) {
+                expired.add(run);
+                continue;
+            }
+            LocalDate day = Instant.ofEpochMilli(run.minTimeNanos / 1_000_000L).atZone(zone).toLocalDate();
+            byDay.computeIfAbsent(day, d -> new ArrayList<>()).add(run);
+        }
+        if (!expired.isEmpty()) {
+            replaceRuns(expired, null);
+            log(AsyncLogger.Level.INFO, "刪除 {} 個超過 {} 天的區段", expired.size(), retentionDays);
+        }
+
+        for (Map.Entry<LocalDate, List<HistoryRun>> day : byDay.entrySet()) {
+            List<HistoryRun> group = day.getValue();
+            if (group.size() < 2 || (day.getKey().equals(today) && group.size() <= MAX_RUNS_PER_DAY)) {
+                continue;
+            }
+            HistoryRun merged = merge(group);
+            replaceRuns(group, merged);
+            compactionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 依序合併多個區段，相鄰（間隔不超過出現間隔）的同一來源出現合併為一筆
+     */
+    private HistoryRun merge(List<HistoryRun> group) throws IOException {
+        PriorityQueue<MergeSource> queue = new PriorityQueue<>((a, b) -> HistoryEntry.ORDER.compare(a.current, b.current));
+        for (HistoryRun run : group) {
+            MergeSource source = new MergeSource(run);
+            if (source.advance()) {
+                queue.add(source);
+            }
+        }
+        HistoryEntry pending = null;
+        try (HistoryRun.Writer writer = new HistoryRun.Writer(directory, takeSequence())) {
+            while (!queue.isEmpty()) {
+                MergeSource source = queue.poll();
+                HistoryEntry entry = source.current;
+                if (pending != null && pending.sameSource(entry)
+                        && entry.firstSeenNanos - pending.lastSeenNanos <= gapNanos) {
+                    pending.absorb(entry);
+                } else {
+                    if (pending != null) {
+                        writer.add(pending);
+                    } else {
+                        pending = new HistoryEntry();
+                    }
+                    pending.copyFrom(entry);
+                }
+                if (source.advance()) {
+                    queue.add(source);
+                }
+            }
+            if (pending != null) {
+                writer.add(pending);
+            }
+            return writer.finish();
+        }
+    }
+
+    private static final class MergeSource {
+        final HistoryRun.Cursor cursor;
+        final HistoryEntry current = new HistoryEntry();
+
+        MergeSource(HistoryRun run) {
+            this.cursor = run.cursor();
+        }
+
+        boolean advance() throws IOException {
+            return cursor.next(current);
+        }
+    }
+
+    /**
+     * 以合併結果取代區段（replacement 為 null 時只移除），並刪除被取代的檔案
+     */
+    private void replaceRuns(List<HistoryRun> removed, HistoryRun replacement) {
+        runsLock.writeLock().lock();
+        try {
+            List<HistoryRun> updated = new ArrayList<>(runs);
+            updated.removeAll(removed);
+            if (replacement != null) {
+                updated.add(replacement);
+                updated.sort(Comparator.comparingLong(run -> run.sequence));
+            }
+            runs = Collections.unmodifiableList(updated);
+            for (HistoryRun run : removed) {
+                try {
+                    run.close();
+                } catch (IOException e) {
+                    log(AsyncLogger.Level.WARN, "關閉區段錯誤: {}", e.getMessage(), null);
+                }
+                if (!run.file.delete()) {
+                    log(AsyncLogger.Level.WARN, "無法刪除區段 {}", run.file.getName(), null);
+                }
+            }
+        } finally {
+            runsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查詢標籤（EPC 或 TID）在時間範圍內的出現
+     * @return 最多 limit 筆，依最後讀取時間由新到舊
+     */
+    public List<Sighting> find(String keyHex, long fromNanos, long toNanos, int limit) throws IOException {
+        return query(KeyPrefix.parse(keyHex, true), fromNanos, toNanos, limit);
+    }
+
+    /**
+     * 查詢鍵以指定十六進位前綴開頭的標籤在時間範圍內的出現
+     * @return 最多 limit 筆，依最後讀取時間由新到舊
+     */
+    public List<Sighting> findPrefix(String hexPrefix, long fromNanos, long toNanos, int limit) throws IOException {
+        return query(KeyPrefix.parse(hexPrefix, false), fromNanos, toNanos, limit);
+    }
+
+    /**
+     * 標籤最後一次出現，沒有記錄時回傳 null
+     */
+    public Sighting lastSeen(String keyHex) throws IOException {
+        List<Sighting> result = find(keyHex, Long.MIN_VALUE, Long.MAX_VALUE, 1);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * 查詢時間範圍內所有標籤的出現
+     * @return 最多 limit 筆，依最後讀取時間由新到舊
+     */
+    public List<Sighting> findInRange(long fromNanos, long toNanos, int limit) throws IOException {
+        return query(KeyPrefix.parse("", false), fromNanos, toNanos, limit);
+    }
+
+    private List<Sighting> query(KeyPrefix prefix, long fromNanos, long toNanos, int limit) throws IOException {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        TopN top = new TopN(limit);
+        // 依資料移動的方向（記憶體表 -> 寫出中 -> 區段）取用，期間寫出的出現不會漏掉
+        Map<TagKey, HistoryEntry> table = memtable;
+        Map<TagKey, HistoryEntry> pending = flushing;
+        collect(table, prefix, fromNanos, toNanos, top);
+        if (pending != null && pending != table) {
+            collect(pending, prefix, fromNanos, toNanos, top);
+        }
+
+        runsLock.readLock().lock();
+        try {
+            ByteBuffer buffer = HistoryRun.newBlockBuffer();
+            HistoryEntry entry = new HistoryEntry();
+            for (HistoryRun run : runs) {
+                if (!run.overlaps(fromNanos, toNanos) || run.getBlockCount() == 0) {
+                    continue;
+                }
+                HistoryRun.Visitor visitor = e -> {
+                    int c = prefix.compareTo(e.key, e.keyLength);
+                    if (c > 0) {
+                        return false; // 已超過前綴範圍
+                    }
+                    if (c == 0 && e.overlaps(fromNanos, toNanos)) {
+                        top.offer(e);
+                    }
+                    return true;
+                };
+                for (int b = run.lowerBlock(prefix.lower, prefix.lower.length); b < run.getBlockCount(); b++) {
+                    byte[] first = run.getBlockKey(b);
+                    if (prefix.compareTo(first, first.length) > 0) {
+                        break;
+                    }
+                    if (!run.blockOverlaps(b, fromNanos, toNanos)) {
+                        continue;
+                    }
+                    if (!run.visitBlock(b, buffer, entry, visitor)) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            runsLock.readLock().unlock();
+        }
+        return top.toList();
+    }
+
+    /**
+     * 收集記憶體表中符合的出現；出現的欄位由 append 在 memLock 內更新，走訪串列時須持鎖
+     */
+    private void collect(Map<TagKey, HistoryEntry> table, KeyPrefix prefix, long fromNanos, long toNanos,
+                         TopN top) {
+        for (HistoryEntry head : table.values()) {
+            if (prefix.compareTo(head.key, head.keyLength) != 0) {
+                continue;
+            }
+            synchronized (memLock) {
+                for (HistoryEntry entry = head; entry != null; entry = entry.next) {
+                    if (entry.overlaps(fromNanos, toNanos)) {
+                        top.offer(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 十六進位鍵前綴（可為奇數個字元）
+     */
+    private static final class KeyPrefix {
+        final byte[] lower;   // 前綴範圍的下界
+        final int fullBytes;  // 完整位元組數
+        final int nibble;     // 奇數字元時最後半個位元組，否則 -1
+        final boolean exact;
+
+        private KeyPrefix(byte[] lower, int fullBytes, int nibble, boolean exact) {
+            this.lower = lower;
+            this.fullBytes = fullBytes;
+            this.nibble = nibble;
+            this.exact = exact;
+        }
+
+        static KeyPrefix parse(String hex, boolean exact) {
+            String value = hex != null ? hex.trim() : "";
+            if (exact && value.length() % 2 != 0) {
+                throw new IllegalArgumentException("標籤鍵須為完整位元組: " + hex);
+            }
+            int fullBytes = value.length() / 2;
+            boolean half = value.length() % 2 != 0;
+            byte[] lower = new byte[fullBytes + (half ? 1 : 0)];
+            for (int i = 0; i < value.length(); i++) {
+                int digit = Character.digit(value.charAt(i), 16);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("不是十六進位: " + hex);
+                }
+                lower[i / 2] |= (byte) (i % 2 == 0 ? digit << 4 : digit);
+            }
+            return new KeyPrefix(lower, fullBytes, half ? Character.digit(value.charAt(value.length() - 1), 16) : -1,
+                exact);
+        }
+
+        /**
+         * 鍵相對於前綴範圍的位置
+         * @return 負數表示在範圍之前，0 表示符合，正數表示在範圍之後
+         */
+        int compareTo(byte[] key, int keyLength) {
+            for (int i = 0; i < fullBytes; i++) {
+                if (i >= keyLength) {
+                    return -1;
+                }
+                int c = (key[i] & 0xFF) - (lower[i] & 0xFF);
+                if (c != 0) {
+                    return c < 0 ? -1 : 1;
+                }
+            }
+            if (nibble >= 0) {
+                if (fullBytes >= keyLength) {
+                    return -1;
+                }
+                int c = ((key[fullBytes] & 0xFF) >>> 4) - nibble;
+                if (c != 0) {
+                    return c < 0 ? -1 : 1;
+                }
+            }
+            if (exact && keyLength != fullBytes) {
+                return keyLength < fullBytes ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 只保留最後讀取時間最新的 limit 筆
+     */
+    private static final class TopN {
+        private final int limit;
+        private final PriorityQueue<Sighting> heap;
+
+        TopN(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 1024), BY_LAST_SEEN);
+        }
+
+        void offer(HistoryEntry entry) {
+            if (heap.size() >= limit) {
+                if (entry.lastSeenNanos <= heap.peek().getLastSeenNanos()) {
+                    return;
+                }
+                heap.poll();
+            }
+            heap.add(entry.toSighting());
+        }
+
+        List<Sighting> toList() {
+            List<Sighting> result = new ArrayList<>(heap);
+            result.sort(BY_LAST_SEEN.reversed());
+            return result;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // 先拒絕新的讀取再寫出，寫出之後不會再有讀取留在記憶體表
+        synchronized (memLock) {
+            closed = true;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        }
+        runsLock.writeLock().lock();
+        try {
+            for (HistoryRun run : runs) {
+                run.close();
+            }
+        } finally {
+            runsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 非同步記錄，樣板中的 "{}" 依序替換為參數
+     */
+    private void log(AsyncLogger.Level level, String template, Object arg1, Object arg2) {
+        LOGGER.log(level, "TagHistory", template, arg1, arg2, null);
+    }
+
+    // Getters
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getAppendedCount() {
+        return appendedCount.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getCompactionCount() {
+        return compactionCount.get();
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * 區段檔總大小（位元組）
+     */
+    public long getDiskBytes() {
+        long total = 0;
+        for (HistoryRun run : runs) {
+            total += run.length();
+        }
+        return total;
+    }
+
+    /**
+     * 記憶體表中的出現數
+     */
+    public int getMemtableEntries() {
+        synchronized (memLock) {
+            return memEntries;
+        }
+    }
+}
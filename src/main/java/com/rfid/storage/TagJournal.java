@@ -0,0 +1,498 @@
+package com.rfid.storage;
+
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 標籤讀取日誌
+ * 以固定大小的記憶體映射區段檔案附加寫入每一筆原始讀取，
+ * 由背景執行緒定期 force() 進行群組提交，讀取回調只做記憶體複製。
+ * 區段總大小超過上限時由提交執行緒刪除最舊的區段；開啟期間鎖定目錄，同一目錄只能由一個程序寫入
+ *
+ * 區段格式：檔頭（magic、版本）後接連續記錄，每筆記錄以長度開頭、以 CRC32 結尾，長度 0 表示資料結束。
+ * 記錄先寫入內容與 CRC、最後才寫入長度；程序中途結束留下的不完整記錄以長度、欄位長度與 CRC 檢查後捨棄。
+ * 記錄種類：
+ *   TAG    - 類型、天線、RSSI、讀取頭編號、結果、epoch 奈秒、EPC/TID/用戶數據位元組
+ *   READER - 讀取頭編號與名稱（第一次出現時寫入）
+ */
+public class TagJournal implements Closeable {
+
+    /** 區段檔案 magic（"RFJ1"） */
+    static final int MAGIC = 0x52464A31;
+    static final int VERSION = 2;
+    /** 版本 1 的區段沒有 CRC，仍可讀取 */
+    static final int VERSION_NO_CRC = 1;
+    static final int SEGMENT_HEADER_SIZE = 8;
+    /** 記錄結尾的 CRC32（涵蓋種類到記錄結束） */
+    static final int CRC_SIZE = 4;
+
+    static final byte KIND_TAG = 1;
+    static final byte KIND_READER = 2;
+
+    /** 記錄固定欄位長度：長度(4) 種類(1) 類型(1) 天線(1) 結果(1) RSSI(2) 讀取頭(2) 時間(8) EPC/TID/用戶數據長度(3) */
+    static final int TAG_FIXED_SIZE = 23;
+    /** 讀取頭定義固定欄位長度：長度(4) 種類(1) 編號(2) 名稱長度(2) */
+    static final int READER_FIXED_SIZE = 9;
+
+    static final String SEGMENT_PREFIX = "tags-";
+    static final String SEGMENT_SUFFIX = ".rfj";
+
+    /** 預設區段大小（64 MB） */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /** 預設群組提交間隔（毫秒） */
+    public static final long DEFAULT_COMMIT_INTERVAL_MS = 200;
+    /** 預設區段總大小上限（1 GB） */
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    static final String LOCK_FILE = ".lock";
+
+    private static final TagInfo.TagType[] TAG_TYPES = TagInfo.TagType.values();
+
+    private final File directory;
+    private final int segmentSize;
+    private final long maxBytes;    // 0 表示不限
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ScheduledExecutorService committer;
+
+    private int segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private ByteBuffer crcView;     // 計算 CRC 用的同一映射視圖
+    private final CRC32 crc = new CRC32();
+    private boolean dirty;
+    private boolean closed;
+
+    // 已寫滿、等待提交執行緒落盤並關閉的區段
+    private final List<FileChannel> retiredChannels = new ArrayList<>();
+    private final List<MappedByteBuffer> retiredBuffers = new ArrayList<>();
+
+    // 讀取頭名稱 -> 編號（每個區段重新定義）
+    private final Map<String, Integer> readerIds = new HashMap<>();
+
+    // 統計資訊
+    private final AtomicLong appendedCount = new AtomicLong();
+    private final AtomicLong commitCount = new AtomicLong();
+    private final AtomicLong deletedSegmentCount = new AtomicLong();
+
+    public TagJournal(File directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param directory 日誌目錄
+     * @param maxBytes 區段總大小上限（位元組），0 表示不限
+     */
+    public TagJournal(File directory, long maxBytes) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL_MS, maxBytes);
+    }
+
+    /**
+     * @param directory 日誌目錄
+     * @param segmentSize 區段檔案大小（位元組）
+     * @param commitIntervalMs 群組提交間隔（毫秒）
+     * @param maxBytes 區段總大小上限（位元組），0 表示不限；至少保留目前寫入的區段
+     * @throws IOException 無法建立目錄，或目錄已由另一個程序寫入
+     */
+    public TagJournal(File directory, int segmentSize, long commitIntervalMs, long maxBytes) throws IOException {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("無法建立日誌目錄: " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+
+        this.lockChannel = new RandomAccessFile(new File(directory, LOCK_FILE), "rw").getChannel();
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("日誌目錄已由另一個程序使用: " + directory);
+        }
+        this.lock = acquired;
+
+        try {
+            File[] segments = listSegments(directory);
+            if (segments.length > 0) {
+                segmentIndex = parseSegmentIndex(segments[segments.length - 1]);
+                openSegment(false);
+            } else {
+                segmentIndex = 1;
+                openSegment(true);
+            }
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        }
+        prune(segmentIndex);
+
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commit, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 附加一筆讀取（於讀取器回調執行緒呼叫）
+     */
+    public synchronized void append(TagRecord record) throws IOException {
+        if (closed) {
+            throw new IOException("日誌已關閉");
+        }
+
+        String readerName = record.getReaderName() != null ? record.getReaderName() : "";
+        int size = TAG_FIXED_SIZE + record.getEpcLength() + record.getTidLength() + record.getUserDataLength()
+            + CRC_SIZE;
+        // 預留讀取頭定義的空間，換區段後需重新定義
+        ensureCapacity(size + maxReaderRecordSize(readerName));
+        Integer id = readerIds.get(readerName);
+        int readerId = id != null ? id : defineReader(readerName);
+
+        TagInfo.TagType type = record.getTagType();
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(KIND_TAG);
+        buffer.put((byte) (type != null ? type.ordinal() + 1 : 0));
+        buffer.put((byte) record.getAntennaId());
+        buffer.put((byte) record.getResult());
+        buffer.putShort((short) record.getRssi());
+        buffer.putShort((short) readerId);
+        buffer.putLong(record.getTimestampNanos());
+        buffer.put((byte) record.getEpcLength());
+        buffer.put((byte) record.getTidLength());
+        buffer.put((byte) record.getUserDataLength());
+        buffer.put(record.getEpcBytes(), 0, record.getEpcLength());
+        buffer.put(record.getTidBytes(), 0, record.getTidLength());
+        buffer.put(record.getUserDataBytes(), 0, record.getUserDataLength());
+        publish(start);
+
+        dirty = true;
+        appendedCount.incrementAndGet();
+    }
+
+    private static int maxReaderRecordSize(String name) {
+        return READER_FIXED_SIZE + name.length() * 3 + CRC_SIZE;
+    }
+
+    /**
+     * 寫入 CRC 與下一筆的結束標記，最後才寫入長度，使記錄完整後才可見
+     * @param start 記錄開頭（內容已寫到目前位置）
+     */
+    private void publish(int start) {
+        int end = buffer.position();
+        buffer.putInt(checksum(buffer, crcView, crc, start, end));
+        int next = buffer.position();
+        buffer.putInt(next, 0);
+        buffer.putInt(start, next - start);
+    }
+
+    /**
+     * 記錄內容（種類到 CRC 之前）的 CRC32
+     */
+    static int checksum(ByteBuffer buffer, ByteBuffer view, CRC32 crc, int start, int end) {
+        view.limit(end);
+        view.position(start + 4);
+        crc.reset();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 檢查 start 處是否為完整的記錄：長度、種類、欄位長度（不超過 TagRecord 的容量）與 CRC
+     * @param version 區段版本，版本 1 沒有 CRC
+     * @return 記錄長度，資料結束、不完整或損毀時回傳 -1
+     */
+    static int recordSize(ByteBuffer buffer, ByteBuffer view, CRC32 crc, int start, int version) {
+        if (buffer.limit() - start < 4) {
+            return -1;
+        }
+        int size = buffer.getInt(start);
+        int trailer = version == VERSION_NO_CRC ? 0 : CRC_SIZE;
+        if (size < READER_FIXED_SIZE + trailer || size > buffer.limit() - start) {
+            return -1;
+        }
+        int body;
+        byte kind = buffer.get(start + 4);
+        if (kind == KIND_TAG) {
+            if (size < TAG_FIXED_SIZE + trailer) {
+                return -1;
+            }
+            int epcLength = buffer.get(start + 20) & 0xFF;
+            int tidLength = buffer.get(start + 21) & 0xFF;
+            int userDataLength = buffer.get(start + 22) & 0xFF;
+            if (epcLength > TagRecord.MAX_EPC_BYTES || tidLength > TagRecord.MAX_TID_BYTES
+                    || userDataLength > TagRecord.MAX_USER_DATA_BYTES) {
+                return -1;
+            }
+            body = TAG_FIXED_SIZE + epcLength + tidLength + userDataLength;
+        } else if (kind == KIND_READER) {
+            body = READER_FIXED_SIZE + (buffer.getShort(start + 7) & 0xFFFF);
+        } else {
+            return -1;
+        }
+        if (body + trailer != size) {
+            return -1;
+        }
+        if (trailer > 0 && checksum(buffer, view, crc, start, start + body) != buffer.getInt(start + body)) {
+            return -1;
+        }
+        return size;
+    }
+
+    /**
+     * 寫入讀取頭定義（呼叫前須已確保空間）
+     */
+    private int defineReader(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+
+        int id = readerIds.size();
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(KIND_READER);
+        buffer.putShort((short) id);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+        publish(start);
+        readerIds.put(name, id);
+        return id;
+    }
+
+    /**
+     * 確保目前區段有足夠空間（保留 4 位元組作為結束標記），不足時換新區段
+     */
+    private void ensureCapacity(int size) throws IOException {
+        if (buffer.remaining() >= size + 4) {
+            return;
+        }
+        // 結束目前區段，落盤與關閉交由提交執行緒處理
+        retiredChannels.add(channel);
+        retiredBuffers.add(buffer);
+        segmentIndex++;
+        openSegment(true);
+    }
+
+    private void openSegment(boolean create) throws IOException {
+        File file = segmentFile(directory, segmentIndex);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, create ? segmentSize : Math.max(raf.length(), SEGMENT_HEADER_SIZE));
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        crcView = buffer.duplicate();
+        readerIds.clear();
+
+        if (!create && buffer.getInt(0) == MAGIC && buffer.getInt(4) != VERSION) {
+            // 舊版本的區段不再附加，改寫新區段
+            closeQuietly(channel);
+            segmentIndex++;
+            openSegment(true);
+            return;
+        }
+        if (create || buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.position(SEGMENT_HEADER_SIZE);
+            return;
+        }
+
+        // 既有區段：跳到最後一筆完整記錄之後並重建讀取頭定義，不完整的記錄由下一筆覆寫
+        buffer.position(SEGMENT_HEADER_SIZE);
+        while (true) {
+            int start = buffer.position();
+            int size = recordSize(buffer, crcView, crc, start, VERSION);
+            if (size < 0) {
+                if (buffer.remaining() >= 4) {
+                    buffer.putInt(start, 0);
+                }
+                break;
+            }
+            if (buffer.get(start + 4) == KIND_READER) {
+                int id = buffer.getShort(start + 5) & 0xFFFF;
+                int length = buffer.getShort(start + 7) & 0xFFFF;
+                byte[] bytes = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    bytes[i] = buffer.get(start + READER_FIXED_SIZE + i);
+                }
+                readerIds.put(new String(bytes, StandardCharsets.UTF_8), id);
+            }
+            buffer.position(start + size);
+        }
+    }
+
+    /**
+     * 群組提交：將尚未落盤的資料 force() 到磁碟
+     */
+    private void commit() {
+        List<FileChannel> channels;
+        List<MappedByteBuffer> buffers;
+        MappedByteBuffer current;
+        int currentIndex;
+        synchronized (this) {
+            if (closed || (!dirty && retiredBuffers.isEmpty())) {
+                return;
+            }
+            channels = new ArrayList<>(retiredChannels);
+            buffers = new ArrayList<>(retiredBuffers);
+            retiredChannels.clear();
+            retiredBuffers.clear();
+            current = dirty ? buffer : null;
+            currentIndex = segmentIndex;
+            dirty = false;
+        }
+
+        // force 在鎖外執行，不阻塞讀取回調；通道只由此執行緒或 close() 關閉
+        for (MappedByteBuffer retired : buffers) {
+            retired.force();
+        }
+        for (FileChannel retired : channels) {
+            closeQuietly(retired);
+        }
+        if (!channels.isEmpty()) {
+            prune(currentIndex);
+        }
+        if (current != null) {
+            current.force();
+        }
+        commitCount.incrementAndGet();
+    }
+
+    @Override
+    public void close() throws IOException {
+        committer.shutdown();
+        try {
+            committer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (MappedByteBuffer retired : retiredBuffers) {
+                retired.force();
+            }
+            for (FileChannel retired : retiredChannels) {
+                closeQuietly(retired);
+            }
+            buffer.force();
+            channel.close();
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * 區段總大小超過上限時，由舊到新刪除目前區段以前的區段
+     */
+    private void prune(int currentIndex) {
+        if (maxBytes <= 0) {
+            return;
+        }
+        File[] segments = listSegments(directory);
+        long total = 0;
+        for (File segment : segments) {
+            total += segment.length();
+        }
+        for (int i = 0; i < segments.length && total > maxBytes; i++) {
+            File segment = segments[i];
+            if (parseSegmentIndex(segment) >= currentIndex) {
+                break;
+            }
+            long length = segment.length();
+            if (segment.delete()) {
+                total -= length;
+                deletedSegmentCount.incrementAndGet();
+            } else {
+                System.err.println("[TagJournal] 無法刪除舊區段: " + segment.getName());
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("[TagJournal] 關閉區段錯誤: " + e.getMessage());
+        }
+    }
+
+    static File[] listSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Integer.compare(parseSegmentIndex(a), parseSegmentIndex(b)));
+        return files;
+    }
+
+    static File segmentFile(File directory, int index) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    static int parseSegmentIndex(File file) {
+        String name = file.getName();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    static TagInfo.TagType tagType(int code) {
+        return code > 0 && code <= TAG_TYPES.length ? TAG_TYPES[code - 1] : null;
+    }
+
+    // Getters
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getAppendedCount() {
+        return appendedCount.get();
+    }
+
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 超過大小上限而刪除的區段數
+     */
+    public long getDeletedSegmentCount() {
+        return deletedSegmentCount.get();
+    }
+}
@@ -0,0 +1,175 @@
+package com.rfid.storage;
+
+import com.rfid.reader.TagRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 標籤讀取日誌讀取器
+ * 依序唯讀映射每個區段並解碼記錄，重複使用呼叫端提供的 TagRecord，不配置新物件
+ */
+public class TagJournalReader implements Closeable {
+
+    private final File[] segments;
+    private int nextSegment;
+    private MappedByteBuffer buffer;
+    private ByteBuffer crcView;
+    private int version;
+    private final CRC32 crc = new CRC32();
+
+    // 讀取頭編號 -> 名稱（每個區段重新定義）
+    private final List<String> readerNames = new ArrayList<>();
+
+    // 統計資訊
+    private long recordCount;
+
+    public TagJournalReader(File directory) {
+        this.segments = TagJournal.listSegments(directory);
+    }
+
+    /**
+     * 讀取下一筆標籤記錄
+     * @param into 寫入目標（會被覆寫）
+     * @return 是否還有資料
+     */
+    public boolean next(TagRecord into) throws IOException {
+        while (true) {
+            if (buffer == null || buffer.remaining() < 4) {
+                if (!openNextSegment()) {
+                    return false;
+                }
+                continue;
+            }
+
+            int start = buffer.position();
+            int size = TagJournal.recordSize(buffer, crcView, crc, start, version);
+            if (size < 0) {
+                // 區段資料結束，或最後一筆寫入不完整、損毀
+                if (buffer.getInt(start) != 0) {
+                    System.err.println("[TagJournalReader] " + segments[nextSegment - 1].getName() + " 位移 " + start
+                        + " 起的記錄不完整或損毀，略過區段其餘部分");
+                }
+                buffer.position(buffer.limit());
+                continue;
+            }
+            byte kind = buffer.get(start + 4);
+            if (kind == TagJournal.KIND_READER) {
+                defineReader(start);
+            } else if (kind == TagJournal.KIND_TAG) {
+                decodeTag(start, into);
+                recordCount++;
+            }
+            buffer.position(start + size);
+            if (kind == TagJournal.KIND_TAG) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 依序重播所有記錄
+     * @param consumer 每筆記錄的處理器（記錄物件會被重複使用，需保留時請複製）
+     * @return 記錄數
+     */
+    public long replay(Consumer<TagRecord> consumer) throws IOException {
+        TagRecord record = new TagRecord();
+        long count = 0;
+        while (next(record)) {
+            consumer.accept(record);
+            count++;
+        }
+        return count;
+    }
+
+    private void defineReader(int start) {
+        int id = buffer.getShort(start + 5) & 0xFFFF;
+        int length = buffer.getShort(start + 7) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(start + TagJournal.READER_FIXED_SIZE + i);
+        }
+        while (readerNames.size() <= id) {
+            readerNames.add(null);
+        }
+        readerNames.set(id, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private void decodeTag(int start, TagRecord into) {
+        into.reset();
+        into.setTagType(TagJournal.tagType(buffer.get(start + 5)));
+        into.setAntennaId(buffer.get(start + 6) & 0xFF);
+        into.setResult(buffer.get(start + 7));
+        into.setRssi(buffer.getShort(start + 8));
+        int readerId = buffer.getShort(start + 10) & 0xFFFF;
+        into.setTimestampNanos(buffer.getLong(start + 12));
+        // 欄位長度已由 TagJournal.recordSize 檢查不超過記錄長度與 TagRecord 的容量
+        int epcLength = buffer.get(start + 20) & 0xFF;
+        int tidLength = buffer.get(start + 21) & 0xFF;
+        int userDataLength = buffer.get(start + 22) & 0xFF;
+
+        // 直接讀入記錄的位元組陣列，再以同一陣列設定長度
+        buffer.position(start + TagJournal.TAG_FIXED_SIZE);
+        buffer.get(into.getEpcBytes(), 0, epcLength);
+        buffer.get(into.getTidBytes(), 0, tidLength);
+        buffer.get(into.getUserDataBytes(), 0, userDataLength);
+        into.setEpc(into.getEpcBytes(), 0, epcLength);
+        into.setTid(into.getTidBytes(), 0, tidLength);
+        into.setUserData(into.getUserDataBytes(), 0, userDataLength);
+        into.setReaderName(readerId < readerNames.size() ? readerNames.get(readerId) : null);
+    }
+
+    private boolean openNextSegment() throws IOException {
+        buffer = null;
+        while (nextSegment < segments.length) {
+            File file = segments[nextSegment++];
+            // 映射在通道關閉後仍然有效
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                if (raf.length() < TagJournal.SEGMENT_HEADER_SIZE) {
+                    continue;
+                }
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            readerNames.clear();
+
+            version = buffer.getInt(4);
+            if (buffer.getInt(0) != TagJournal.MAGIC
+                    || (version != TagJournal.VERSION && version != TagJournal.VERSION_NO_CRC)) {
+                System.err.println("[TagJournalReader] 略過無效區段: " + file.getName());
+                buffer = null;
+                continue;
+            }
+            crcView = buffer.duplicate();
+            buffer.position(TagJournal.SEGMENT_HEADER_SIZE);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        nextSegment = segments.length;
+    }
+
+    // Getters
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+}
@@ -1,14 +1,37 @@
 package com.rfid.ui;
 
-import com.gg.reader.api.protocol.gx.EnumG;
+import com.rfid.connection.ManagedReader;
 import com.rfid.connection.ReaderConnection;
+import com.rfid.connection.ReaderManager;
+import com.rfid.connection.ReconnectPolicy;
+import com.rfid.metrics.MetricsRegistry;
+import com.rfid.metrics.MetricsServer;
+import com.rfid.presence.PresenceEngine;
+import com.rfid.push.TagPushServer;
+import com.rfid.reader.AntennaScheduler;
+import com.rfid.reader.EpcFilter;
+import com.rfid.reader.ReportPolicy;
+import com.rfid.reader.TagEventPipeline;
 import com.rfid.reader.TagInfo;
 import com.rfid.reader.TagReader;
+import com.rfid.reader.TagRecord;
+import com.rfid.storage.JournalReplayer;
+import com.rfid.storage.Sighting;
+import com.rfid.storage.TagExporter;
+import com.rfid.storage.TagHistory;
+import com.rfid.storage.TagJournal;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
@@ -18,26 +41,89 @@ import java.util.function.Consumer;
  */
 public class MainControlPanel extends JPanel {
 
+    /** 表格批次更新間隔（毫秒），約 30 fps */
+    private static final int FLUSH_INTERVAL_MS = 33;
+
+    /** 原始讀取日誌預設目錄 */
+    private static final String JOURNAL_DIRECTORY = "journal";
+
+    /** 原始讀取日誌目錄的系統屬性，設為空字串時停用 */
+    private static final String JOURNAL_DIR_PROPERTY = "rfid.journal.dir";
+
+    /** 原始讀取日誌大小上限（MB）的系統屬性，設為 0 時不限 */
+    private static final String JOURNAL_MAX_MB_PROPERTY = "rfid.journal.max-mb";
+
+    /** 標籤歷史目錄 */
+    private static final String HISTORY_DIRECTORY = "history";
+
+    /** 歷史查詢最多顯示的筆數 */
+    private static final int HISTORY_QUERY_LIMIT = 1000;
+
+    /** 指標端點端口的系統屬性，設為 0 時停用 */
+    private static final String METRICS_PORT_PROPERTY = "rfid.metrics.port";
+
+    /** 推送端點端口的系統屬性，設為 0 時停用 */
+    private static final String PUSH_PORT_PROPERTY = "rfid.push.port";
+
     // 連接設定元件
     private JTextField ipField;
     private JTextField portField;
     private JButton connectButton;
     private JButton disconnectButton;
+    private JCheckBox autoReconnectCheckBox;
+    private JCheckBox offlineBufferCheckBox;
     private JLabel connectionStatusLabel;
 
     // 讀取控制元件
     private JComboBox<String> protocolComboBox;
+    private JTextField antennaField;
+    private JComboBox<String> antennaModeComboBox;
+    private JTextField dwellField;
+    private JTextField filterField;
+    private JComboBox<String> reportComboBox;
     private JButton fastReadButton;
     private JButton fullReadButton;
+    private JCheckBox fastIdCheckBox;
     private JButton stopReadButton;
     private JButton clearButton;
+    private JComboBox<String> replaySpeedComboBox;
+    private JButton replayButton;
+    private JButton exportButton;
+    private JButton historyButton;
 
     // 標籤資料表格
     private JTable tagTable;
-    private DefaultTableModel tableModel;
-    private Map<String, Integer> epcToRowMap; // EPC 到表格行的映射
+    private TagTableModel tableModel; // 直接以標籤索引為資料
+
+    // 標籤事件管線與批次更新計時器
+    private TagEventPipeline tagPipeline;
+    private Timer flushTimer;
+
+    // 區域在場（每支天線各一個區域）
+    private final PresenceEngine presenceEngine = new PresenceEngine();
+
+    // 原始讀取日誌（開啟失敗時為 null）
+    private volatile TagJournal tagJournal;
+
+    // 標籤歷史（開啟失敗時為 null）
+    private volatile TagHistory tagHistory;
+
+    // 日誌重播（與即時讀取共用同一條管線）
+    private JournalReplayer replayer;
+
+    // 背景匯出（匯出表格當下的副本）
+    private TagExporter exporter;
+
+    // 效能指標與本機抓取端點（啟動失敗時為 null）
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private MetricsServer metricsServer;
+
+    // 本機標籤推送端點（啟動失敗時為 null）
+    private TagPushServer pushServer;
 
     // 連接和讀取器
+    private ReaderManager readerManager;
+    private ManagedReader managedReader;
     private ReaderConnection connection;
     private TagReader tagReader;
 
@@ -46,6 +132,7 @@ public class MainControlPanel extends JPanel {
 
     // 統計資訊
     private JLabel totalTagsLabel;
+    private JLabel pipelineStatsLabel;
     private int totalTags = 0;
 
     // 斷線處理標記（防止重複觸發）
@@ -55,7 +142,17 @@ public class MainControlPanel extends JPanel {
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-        epcToRowMap = new HashMap<>();
+        tableModel = new TagTableModel();
+
+        tagPipeline = new TagEventPipeline();
+        flushTimer = new Timer(FLUSH_INTERVAL_MS, e -> flushTagPipeline());
+        flushTimer.setCoalesce(true);
+        openJournal();
+        openHistory();
+        metrics.registerGauge(MetricsRegistry.TAG_BACKLOG, "等待寫入表格的標籤數", tagPipeline::getPendingCount);
+        startMetricsServer();
+        startPushServer();
+        presenceEngine.start();
 
         // 建立頂部控制面板
         JPanel topPanel = createTopPanel();
@@ -69,8 +166,9 @@ public class MainControlPanel extends JPanel {
         JPanel bottomPanel = createBottomPanel();
         add(bottomPanel, BorderLayout.SOUTH);
 
-        // 初始化連接物件
-        connection = new ReaderConnection();
+        // 初始化讀取頭管理
+        readerManager = new ReaderManager(1);
+        updateReconnectPolicy();
         setupConnectionCallbacks();
     }
 
@@ -102,6 +200,15 @@ public class MainControlPanel extends JPanel {
         disconnectButton.addActionListener(e -> disconnect());
         connectionPanel.add(disconnectButton);
 
+        autoReconnectCheckBox = new JCheckBox("自動重連", true);
+        autoReconnectCheckBox.addActionListener(e -> updateReconnectPolicy());
+        connectionPanel.add(autoReconnectCheckBox);
+
+        offlineBufferCheckBox = new JCheckBox("斷線快取", true);
+        offlineBufferCheckBox.setToolTipText("斷線期間讀取頭繼續盤存並快取讀取，重新連接後收取（下次連接時生效）");
+        offlineBufferCheckBox.addActionListener(e -> readerManager.setOfflineBuffering(offlineBufferCheckBox.isSelected()));
+        connectionPanel.add(offlineBufferCheckBox);
+
         connectionStatusLabel = new JLabel("未連接");
         connectionStatusLabel.setForeground(Color.RED);
         connectionPanel.add(connectionStatusLabel);
@@ -113,9 +220,34 @@ public class MainControlPanel extends JPanel {
         readControlPanel.setBorder(BorderFactory.createTitledBorder("讀取控制"));
 
         readControlPanel.add(new JLabel("標籤協議:"));
-        protocolComboBox = new JComboBox<>(new String[]{"EPC (6C)", "ISO 6B", "國標 GB"});
+        protocolComboBox = new JComboBox<>(new String[]{"EPC (6C)", "ISO 6B", "國標 GB", "國軍標 GJB", "混合 EPC+GB", "混合 全部"});
         readControlPanel.add(protocolComboBox);
 
+        readControlPanel.add(new JLabel("天線:"));
+        antennaField = new JTextField("全部", 6);
+        antennaField.setToolTipText("天線編號 1,2,5-8、遮罩 0x0F 或「全部」");
+        readControlPanel.add(antennaField);
+
+        readControlPanel.add(new JLabel("切換:"));
+        antennaModeComboBox = new JComboBox<>(new String[]{"輪詢", "駐留"});
+        antennaModeComboBox.addActionListener(e -> dwellField.setEnabled(antennaModeComboBox.getSelectedIndex() == 1));
+        readControlPanel.add(antennaModeComboBox);
+
+        readControlPanel.add(new JLabel("駐留(ms):"));
+        dwellField = new JTextField(String.valueOf(AntennaScheduler.DEFAULT_DWELL_MILLIS), 4);
+        dwellField.setEnabled(false);
+        readControlPanel.add(dwellField);
+
+        readControlPanel.add(new JLabel("EPC 過濾:"));
+        filterField = new JTextField(10);
+        filterField.setToolTipText("以逗號分隔：EPC 前綴 E280、mask:<起始位元>:<位元數>:<hex>、sgtin:<廠商碼>[.<品項碼>][:<序號起>-<序號迄>]，空白表示不過濾");
+        readControlPanel.add(filterField);
+
+        readControlPanel.add(new JLabel("上報:"));
+        reportComboBox = new JComboBox<>(new String[]{"全部", "每秒一次", "變化時", "只一次"});
+        reportComboBox.setToolTipText("讀取頭重複標籤過濾：每秒一次為同一標籤每秒最多上報一次，變化時只上報新標籤或天線改變");
+        readControlPanel.add(reportComboBox);
+
         fastReadButton = new JButton("快速盤存(EPC)");
         fastReadButton.setEnabled(false);
         fastReadButton.addActionListener(e -> startReading(false, false));
@@ -126,6 +258,10 @@ public class MainControlPanel extends JPanel {
         fullReadButton.addActionListener(e -> startReading(true, true));
         readControlPanel.add(fullReadButton);
 
+        fastIdCheckBox = new JCheckBox("FastID", true);
+        fastIdCheckBox.setToolTipText("EPC 完整讀取時，支援的晶片隨 EPC 一併回傳 TID；不支援時自動改用一般 TID 讀取");
+        readControlPanel.add(fastIdCheckBox);
+
         stopReadButton = new JButton("停止讀取");
         stopReadButton.setEnabled(false);
         stopReadButton.addActionListener(e -> stopReading());
@@ -135,6 +271,30 @@ public class MainControlPanel extends JPanel {
         clearButton.addActionListener(e -> clearTable());
         readControlPanel.add(clearButton);
 
+        readControlPanel.add(new JLabel("重播速度:"));
+        replaySpeedComboBox = new JComboBox<>(new String[]{"1x", "2x", "10x", "100x", "最快"});
+        replaySpeedComboBox.addActionListener(e -> {
+            if (replayer != null) {
+                replayer.setSpeed(getReplaySpeed());
+            }
+        });
+        readControlPanel.add(replaySpeedComboBox);
+
+        replayButton = new JButton("重播日誌");
+        replayButton.addActionListener(e -> toggleReplay());
+        readControlPanel.add(replayButton);
+
+        exportButton = new JButton("匯出");
+        exportButton.setToolTipText("匯出目前的標籤資料；副檔名 .rfc 為壓縮欄位式格式，其他為 CSV");
+        exportButton.addActionListener(e -> toggleExport());
+        readControlPanel.add(exportButton);
+
+        historyButton = new JButton("歷史查詢");
+        historyButton.setToolTipText("以 EPC/TID 前綴查詢標籤的歷史出現");
+        historyButton.addActionListener(e -> showHistoryQuery());
+        historyButton.setEnabled(tagHistory != null);
+        readControlPanel.add(historyButton);
+
         panel.add(readControlPanel);
 
         return panel;
@@ -147,19 +307,27 @@ public class MainControlPanel extends JPanel {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createTitledBorder("標籤資料"));
 
-        // 表格欄位
-        String[] columns = {"EPC", "TID", "用戶數據", "RSSI", "天線", "讀取時間", "標籤類型", "次數"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-
         tagTable = new JTable(tableModel);
         tagTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         tagTable.getTableHeader().setReorderingAllowed(false);
 
+        // 點選欄位標題排序；字串欄位為十六進位資料，以字元順序比較即可（不使用語系排序）
+        TableRowSorter<TagTableModel> sorter = new TableRowSorter<>(tableModel);
+        for (int column = 0; column < tableModel.getColumnCount(); column++) {
+            if (tableModel.getColumnClass(column) == String.class) {
+                sorter.setComparator(column, Comparator.naturalOrder());
+            }
+        }
+        tagTable.setRowSorter(sorter);
+
+        // 讀取時間以 epoch 毫秒保存，只在繪製時格式化
+        tagTable.getColumnModel().getColumn(TagTableModel.COLUMN_READ_TIME).setCellRenderer(new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setText(value instanceof Long ? TagInfo.formatReadTime((Long) value) : "");
+            }
+        });
+
         // 設置欄位寬度
         tagTable.getColumnModel().getColumn(0).setPreferredWidth(200); // EPC
         tagTable.getColumnModel().getColumn(1).setPreferredWidth(200); // TID
@@ -169,6 +337,8 @@ public class MainControlPanel extends JPanel {
         tagTable.getColumnModel().getColumn(5).setPreferredWidth(130); // 讀取時間
         tagTable.getColumnModel().getColumn(6).setPreferredWidth(80);  // 標籤類型
         tagTable.getColumnModel().getColumn(7).setPreferredWidth(40);  // 次數
+        tagTable.getColumnModel().getColumn(8).setPreferredWidth(60);  // 平滑 RSSI
+        tagTable.getColumnModel().getColumn(9).setPreferredWidth(50);  // 方向
 
         JScrollPane scrollPane = new JScrollPane(tagTable);
         scrollPane.setPreferredSize(new Dimension(900, 400));
@@ -187,6 +357,12 @@ public class MainControlPanel extends JPanel {
         totalTagsLabel.setFont(new Font("Dialog", Font.BOLD, 14));
         panel.add(totalTagsLabel);
 
+        pipelineStatsLabel = new JLabel();
+        pipelineStatsLabel.setForeground(Color.GRAY);
+        panel.add(Box.createHorizontalStrut(20));
+        panel.add(pipelineStatsLabel);
+        updatePipelineStats();
+
         return panel;
     }
 
@@ -194,7 +370,38 @@ public class MainControlPanel extends JPanel {
      * 設置連接回調
      */
     private void setupConnectionCallbacks() {
-        connection.setOnDisconnectedCallback(readerName -> {
+        readerManager.setOnTagRecordCallback(this::onTagRecord);
+
+        readerManager.setOnReaderStateChangedCallback(reader -> {
+            if (reader != managedReader) {
+                return;
+            }
+            if (reader.getHealth() == ManagedReader.Health.RECONNECTING) {
+                SwingUtilities.invokeLater(() -> {
+                    connectionStatusLabel.setText("重新連接中... (第 " + reader.getReconnectAttempts() + " 次)");
+                    connectionStatusLabel.setForeground(Color.ORANGE);
+                });
+                return;
+            }
+            if (reader.getHealth() == ManagedReader.Health.CONNECTED && isDisconnectHandled) {
+                // 自動重連成功，盤存已由 ManagedReader 恢復
+                isDisconnectHandled = false;
+                SwingUtilities.invokeLater(() -> {
+                    updateConnectionStatus(true);
+                    boolean reading = tagReader != null && tagReader.isReading();
+                    fastReadButton.setEnabled(!reading);
+                    fullReadButton.setEnabled(!reading);
+                    stopReadButton.setEnabled(reading);
+                    connectionStatusLabel.setText("已連接 (恢復耗時 " + reader.getLastRecoveryMillis() + " ms)");
+                    if (onConnectionChangedCallback != null) {
+                        onConnectionChangedCallback.accept(connection);
+                    }
+                });
+                return;
+            }
+            if (reader.getHealth() != ManagedReader.Health.LOST) {
+                return;
+            }
             // 防止重複處理斷線事件
             if (!isDisconnectHandled) {
                 isDisconnectHandled = true;
@@ -203,14 +410,17 @@ public class MainControlPanel extends JPanel {
                     connectionStatusLabel.setText("連接已斷開");
                     connectionStatusLabel.setForeground(Color.ORANGE);
                     // 不再彈窗，只更新狀態和輸出日誌
-                    System.out.println("連接已斷開: " + readerName);
+                    System.out.println(reader.getLastError());
                 });
             }
         });
+    }
 
-        connection.setOnLogCallback(msg -> {
-            System.out.println(msg);
-        });
+    /**
+     * 依勾選狀態設置自動重連策略
+     */
+    private void updateReconnectPolicy() {
+        readerManager.setReconnectPolicy(autoReconnectCheckBox.isSelected() ? ReconnectPolicy.defaultPolicy() : null);
     }
 
     /**
@@ -238,20 +448,32 @@ public class MainControlPanel extends JPanel {
         connectionStatusLabel.setText("連接中...");
         connectionStatusLabel.setForeground(Color.ORANGE);
 
-        // 在背景執行緒中連接
-        new Thread(() -> {
-            boolean success = connection.connect(ip, port, 3000);
+        // 更換讀取頭位址時移除舊的讀取頭
+        if (managedReader != null) {
+            readerManager.removeReader(managedReader);
+        }
+        managedReader = readerManager.addReader(null, ip, port);
+        connection = managedReader.getConnection();
+
+        // 設備資訊於背景查詢完成後通知狀態面板
+        ReaderConnection current = connection;
+        connection.setOnDeviceInfoCallback(info -> SwingUtilities.invokeLater(() -> {
+            if (onConnectionChangedCallback != null && current == connection && current.isConnected()) {
+                onConnectionChangedCallback.accept(current);
+            }
+        }));
 
+        // 在連接執行緒池中連接
+        readerManager.connect(managedReader, 3000).thenAccept(success -> {
             SwingUtilities.invokeLater(() -> {
                 if (success) {
                     // 重置斷線處理標記
                     isDisconnectHandled = false;
                     updateConnectionStatus(true);
 
-                    // 建立標籤讀取器
-                    tagReader = new TagReader(connection);
-                    tagReader.setupEventHandlers();
-                    tagReader.setOnTagReadCallback(this::onTagRead);
+                    // 標籤讀取器由 ReaderManager 建立，標籤經合併串流進入管線
+                    tagReader = managedReader.getTagReader();
+                    flushTimer.start();
                     tagReader.setOnReadOverCallback(() -> {
                         SwingUtilities.invokeLater(() -> {
                             fastReadButton.setEnabled(true);
@@ -271,18 +493,20 @@ public class MainControlPanel extends JPanel {
                     JOptionPane.showMessageDialog(this, "連接失敗，請檢查 IP 和 Port", "錯誤", JOptionPane.ERROR_MESSAGE);
                 }
             });
-        }).start();
+        });
     }
 
     /**
      * 斷開連接
      */
     private void disconnect() {
-        if (tagReader != null && tagReader.isReading()) {
-            tagReader.stopRead();
+        if (managedReader != null) {
+            readerManager.disconnect(managedReader);
         }
-
-        connection.disconnect();
+        if (!isReplaying()) {
+            flushTimer.stop();
+        }
+        flushTagPipeline();
         updateConnectionStatus(false);
 
         if (onConnectionChangedCallback != null) {
@@ -302,8 +526,36 @@ public class MainControlPanel extends JPanel {
 
         boolean success = false;
 
-        // 天線設定：使用天線 1
-        long antennaEnable = EnumG.AntennaNo_1;
+        // 天線設定：依輸入產生遮罩並設置切換方式
+        AntennaScheduler scheduler = tagReader.getAntennaScheduler();
+        try {
+            scheduler.setConfiguredMask(AntennaScheduler.parseMask(antennaField.getText()));
+            if (antennaModeComboBox.getSelectedIndex() == 1) {
+                scheduler.setMode(AntennaScheduler.Mode.DWELL);
+                scheduler.setDwellMillis(Integer.parseInt(dwellField.getText().trim()));
+            } else {
+                scheduler.setMode(AntennaScheduler.Mode.ROUND_ROBIN);
+            }
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "天線設定錯誤: " + e.getMessage(), "錯誤", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        // EPC 過濾：盡量交由讀取頭過濾，其餘於主機比對
+        try {
+            String filterText = filterField.getText().trim();
+            tagReader.setEpcFilter(filterText.isEmpty() ? null : EpcFilter.parse(filterText));
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "錯誤", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        tagReader.setReportPolicy(selectedReportPolicy());
+        tagReader.setFastIdEnabled(fastIdCheckBox.isSelected());
+
+        long antennaEnable = scheduler.prepare();
+        if (antennaEnable == 0) {
+            JOptionPane.showMessageDialog(this, "讀取頭沒有設定的天線", "錯誤", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
         switch (protocolIndex) {
             case 0: // EPC 6C
@@ -315,6 +567,17 @@ public class MainControlPanel extends JPanel {
             case 2: // GB
                 success = tagReader.startReadGb(antennaEnable, TagReader.ReadMode.CONTINUOUS, readTid, readUserData);
                 break;
+            case 3: // GJB
+                success = tagReader.startReadGjb(antennaEnable, TagReader.ReadMode.CONTINUOUS, readTid, readUserData);
+                break;
+            case 4: // 混合 EPC + GB
+                success = tagReader.startReadHybrid(antennaEnable, TagReader.ReadMode.CONTINUOUS,
+                    EnumSet.of(TagReader.TagProtocol.EPC_6C, TagReader.TagProtocol.GB), readTid, readUserData);
+                break;
+            case 5: // 混合 全部協議
+                success = tagReader.startReadHybrid(antennaEnable, TagReader.ReadMode.CONTINUOUS,
+                    EnumSet.allOf(TagReader.TagProtocol.class), readTid, readUserData);
+                break;
         }
 
         if (success) {
@@ -339,37 +602,420 @@ public class MainControlPanel extends JPanel {
     }
 
     /**
-     * 標籤讀取回調
+     * 開始或停止日誌重播
+     */
+    private void toggleReplay() {
+        if (isReplaying()) {
+            replayer.stop();
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setDialogTitle("選擇讀取日誌目錄");
+        File defaultDirectory = new File(getJournalDirectory());
+        if (defaultDirectory.isDirectory()) {
+            chooser.setSelectedFile(defaultDirectory);
+        }
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        replayer = new JournalReplayer(chooser.getSelectedFile());
+        replayer.setSpeed(getReplaySpeed());
+        replayer.setOnTagRecordCallback(this::deliver);
+        replayer.setOnReadOverCallback(() -> SwingUtilities.invokeLater(() -> {
+            replayButton.setText("重播日誌");
+            if (connection == null || !connection.isConnected()) {
+                flushTimer.stop();
+            }
+            flushTagPipeline();
+        }));
+
+        if (replayer.start()) {
+            replayButton.setText("停止重播");
+            flushTimer.start();
+        } else {
+            JOptionPane.showMessageDialog(this, "所選目錄沒有讀取日誌", "錯誤", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * 開始或取消匯出
+     * 於 EDT 取得表格的副本後由背景執行緒寫檔，匯出期間可繼續讀取
+     */
+    private void toggleExport() {
+        if (exporter != null && exporter.isRunning()) {
+            exporter.cancel();
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setDialogTitle("匯出標籤資料");
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("CSV (*.csv)", "csv"));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter(
+            "欄位式 (*" + TagExporter.COLUMNAR_SUFFIX + ")", TagExporter.COLUMNAR_SUFFIX.substring(1)));
+        chooser.setSelectedFile(new File("tags.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+
+        flushTagPipeline();
+        TagExporter current = new TagExporter(tableModel.getTagIndex().snapshot(), file, TagExporter.Format.forFile(file));
+        long total = Math.max(1, tableModel.getTagIndex().size());
+        current.setOnProgressCallback(rows -> SwingUtilities.invokeLater(() -> {
+            if (current.isRunning()) {
+                exportButton.setText("取消匯出 (" + rows * 100 / total + "%)");
+            }
+        }));
+        current.setOnExportOverCallback(() -> SwingUtilities.invokeLater(() -> {
+            exportButton.setText("匯出");
+            if (current.getError() != null) {
+                JOptionPane.showMessageDialog(this, "匯出失敗: " + TagExporter.describe(current.getError()),
+                    "錯誤", JOptionPane.ERROR_MESSAGE);
+            } else if (!current.isCancelled()) {
+                JOptionPane.showMessageDialog(this, "已匯出 " + current.getExportedCount() + " 個標籤到 "
+                    + file.getName() + "（" + current.getElapsedMillis() + " ms）", "匯出完成",
+                    JOptionPane.INFORMATION_MESSAGE);
+            }
+        }));
+        exporter = current;
+        if (current.start()) {
+            exportButton.setText("取消匯出");
+        }
+    }
+
+    /**
+     * 以 EPC/TID 前綴查詢標籤歷史並以表格顯示（由新到舊）
+     */
+    private void showHistoryQuery() {
+        TagHistory history = tagHistory;
+        if (history == null) {
+            return;
+        }
+        String prefix = JOptionPane.showInputDialog(this, "EPC/TID 前綴（十六進位，空白為全部）:",
+            "歷史查詢", JOptionPane.QUESTION_MESSAGE);
+        if (prefix == null) {
+            return;
+        }
+
+        // 大範圍查詢需走訪多個區段，於背景執行緒查詢，完成後再回到 EDT 顯示
+        historyButton.setEnabled(false);
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                List<Sighting> sightings = history.findPrefix(prefix.replace(" ", ""), Long.MIN_VALUE,
+                    Long.MAX_VALUE, HISTORY_QUERY_LIMIT);
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+                SwingUtilities.invokeLater(() -> {
+                    historyButton.setEnabled(tagHistory != null);
+                    showHistoryResult(sightings, elapsedMillis);
+                });
+            } catch (IllegalArgumentException | IOException e) {
+                SwingUtilities.invokeLater(() -> {
+                    historyButton.setEnabled(tagHistory != null);
+                    JOptionPane.showMessageDialog(this, "查詢失敗: " + e.getMessage(), "錯誤",
+                        JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        }, "history-query");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 顯示歷史查詢結果
+     */
+    private void showHistoryResult(List<Sighting> sightings, long elapsedMillis) {
+        DefaultTableModel model = new DefaultTableModel(
+            new String[]{"EPC/TID", "讀取頭", "天線", "首次讀取", "最後讀取", "讀取次數", "最大 RSSI"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (Sighting sighting : sightings) {
+            model.addRow(new Object[]{
+                sighting.getKey(),
+                sighting.getReaderName(),
+                sighting.getAntennaId(),
+                TagInfo.formatReadTime(sighting.getFirstSeenNanos() / 1_000_000L),
+                TagInfo.formatReadTime(sighting.getLastSeenMillis()),
+                sighting.getReadCount(),
+                sighting.getMaxRssi()
+            });
+        }
+        JTable table = new JTable(model);
+        table.getColumnModel().getColumn(0).setPreferredWidth(220);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(800, 400));
+
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        panel.add(new JLabel(sightings.size() + " 筆出現" + (sightings.size() >= HISTORY_QUERY_LIMIT ? "（只顯示最新 "
+            + HISTORY_QUERY_LIMIT + " 筆）" : "") + "，查詢 " + elapsedMillis + " ms"), BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, panel, "歷史查詢", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    private boolean isReplaying() {
+        return replayer != null && replayer.isRunning();
+    }
+
+    private double getReplaySpeed() {
+        switch (replaySpeedComboBox.getSelectedIndex()) {
+            case 1:
+                return 2;
+            case 2:
+                return 10;
+            case 3:
+                return 100;
+            case 4:
+                return JournalReplayer.MAX_SPEED;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * 將管線中累積的標籤批次寫入表格（於 EDT 執行）
+     */
+    private void flushTagPipeline() {
+        int newTags = totalTags;
+        tagPipeline.drain(this::onTagRead);
+        tableModel.fireBatchChanges();
+        if (totalTags != newTags) {
+            totalTagsLabel.setText("總標籤數: " + totalTags);
+        }
+        updatePipelineStats();
+    }
+
+    /**
+     * 標籤讀取處理（每筆為管線合併後的結果）
      */
     private void onTagRead(TagInfo tagInfo) {
-        SwingUtilities.invokeLater(() -> {
-            String epc = tagInfo.getEpc();
-
-            if (epc != null && epcToRowMap.containsKey(epc)) {
-                // 更新已存在的標籤
-                int row = epcToRowMap.get(epc);
-                int currentCount = (int) tableModel.getValueAt(row, 7);
-                tableModel.setValueAt(currentCount + 1, row, 7);
-                tableModel.setValueAt(tagInfo.getReadTimeString(), row, 5);
-                tableModel.setValueAt(tagInfo.getRssi(), row, 3);
-            } else {
-                // 新增標籤
-                tableModel.addRow(tagInfo.toTableRow());
-                if (epc != null) {
-                    epcToRowMap.put(epc, tableModel.getRowCount() - 1);
-                }
-                totalTags++;
-                totalTagsLabel.setText("總標籤數: " + totalTags);
+        int size = tableModel.getTagIndex().size();
+        int row = tableModel.upsert(tagInfo);
+
+        if (row < 0) {
+            // 沒有 EPC/TID 或索引已滿，無法去重
+            return;
+        }
+        // 讀取時間只有毫秒精度；快取收取的讀取帶有斷線期間的讀取頭時間，不計入顯示延遲
+        if (!tagInfo.isHarvested()) {
+            metrics.recordDisplayLatency(TagRecord.nowEpochNanos() - tagInfo.getReadTimeMillis() * 1_000_000L);
+        }
+
+        if (row >= size) {
+            // 新增標籤（表格於批次結束時一次通知）
+            totalTags++;
+        }
+    }
+
+    /**
+     * 上報選項對應的上報策略
+     */
+    private ReportPolicy selectedReportPolicy() {
+        switch (reportComboBox.getSelectedIndex()) {
+            case 1:
+                return ReportPolicy.interval(1000);
+            case 2:
+                return ReportPolicy.onChange(ReportPolicy.DEFAULT_WINDOW_MILLIS);
+            case 3:
+                return ReportPolicy.once();
+            default:
+                return ReportPolicy.all();
+        }
+    }
+
+    /**
+     * 更新管線統計顯示
+     */
+    private void updatePipelineStats() {
+        TagJournal journal = tagJournal;
+        pipelineStatsLabel.setText("合併: " + tagPipeline.getMergedCount()
+            + "  丟棄: " + tagPipeline.getDroppedCount()
+            + (journal != null ? "  日誌: " + journal.getAppendedCount() : "")
+            + (tagHistory != null ? "  歷史區段: " + tagHistory.getRunCount() : "")
+            + (pushServer != null && pushServer.getSubscriberCount() > 0
+                ? "  推送訂閱: " + pushServer.getSubscriberCount() : "")
+            + (tagReader != null && tagReader.getFilteredCount() > 0 ? "  主機過濾: " + tagReader.getFilteredCount() : "")
+            + (tagReader != null && tagReader.getSuppressedCount() > 0 ? "  略過重複: " + tagReader.getSuppressedCount() : "")
+            + (tagReader != null && tagReader.getHarvestedCount() > 0 ? "  快取收取: " + tagReader.getHarvestedCount() : "")
+            + (presenceEngine.getEventCount() > 0
+                ? "  在場: " + presenceEngine.getPresentCount() + "  事件: " + presenceEngine.getEventCount() : "")
+            + formatAntennaRates());
+    }
+
+    /**
+     * 盤存中各天線的讀取速率（如「  天線 1: 120/s 2: 95/s」）
+     */
+    private String formatAntennaRates() {
+        if (tagReader == null || !tagReader.isReading()) {
+            return "";
+        }
+        Map<Integer, Double> rates = tagReader.getAntennaScheduler().getAntennaReadRates();
+        if (rates.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("  天線");
+        for (Map.Entry<Integer, Double> entry : rates.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append(": ").append(Math.round(entry.getValue())).append("/s");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 開啟原始讀取日誌，失敗時僅停用日誌
+     */
+    private void openJournal() {
+        String directory = getJournalDirectory();
+        if (directory.isEmpty()) {
+            return;
+        }
+        long maxMb = Long.getLong(JOURNAL_MAX_MB_PROPERTY, TagJournal.DEFAULT_MAX_BYTES / (1024 * 1024));
+        try {
+            tagJournal = new TagJournal(new File(directory), Math.max(0, maxMb) * 1024 * 1024);
+        } catch (IOException e) {
+            System.out.println("[MainControlPanel] 無法開啟讀取日誌: " + e.getMessage());
+        }
+    }
+
+    private static String getJournalDirectory() {
+        return System.getProperty(JOURNAL_DIR_PROPERTY, JOURNAL_DIRECTORY).trim();
+    }
+
+    /**
+     * 開啟標籤歷史，失敗時僅停用歷史
+     */
+    private void openHistory() {
+        try {
+            tagHistory = new TagHistory(new File(HISTORY_DIRECTORY));
+        } catch (IOException e) {
+            System.out.println("[MainControlPanel] 無法開啟標籤歷史: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 啟動本機指標端點，失敗時僅記錄（例如端口已被另一個實例使用）
+     */
+    private void startMetricsServer() {
+        int port = Integer.getInteger(METRICS_PORT_PROPERTY, MetricsServer.DEFAULT_PORT);
+        if (port <= 0) {
+            return;
+        }
+        MetricsServer server = new MetricsServer(metrics, port);
+        try {
+            server.start();
+            metricsServer = server;
+        } catch (IOException e) {
+            System.out.println("[MainControlPanel] 無法啟動指標端點: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 啟動本機標籤推送端點，失敗時僅記錄
+     */
+    private void startPushServer() {
+        int port = Integer.getInteger(PUSH_PORT_PROPERTY, TagPushServer.DEFAULT_PORT);
+        if (port <= 0) {
+            return;
+        }
+        TagPushServer server = new TagPushServer(port);
+        try {
+            server.start();
+            pushServer = server;
+        } catch (IOException e) {
+            System.out.println("[MainControlPanel] 無法啟動推送端點: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 處理原始讀取記錄（於讀取器回調執行緒呼叫）
+     * 先寫入日誌與歷史再交給管線，管線負責歸還記錄
+     */
+    private void onTagRecord(TagRecord record) {
+        TagJournal journal = tagJournal;
+        if (journal != null) {
+            try {
+                journal.append(record);
+            } catch (IOException e) {
+                System.out.println("[MainControlPanel] 寫入讀取日誌失敗，停用日誌: " + e.getMessage());
+                tagJournal = null;
+                closeJournal(journal);
             }
-        });
+        }
+        TagHistory history = tagHistory;
+        if (history != null) {
+            history.append(record);
+        }
+        deliver(record);
+    }
+
+    /**
+     * 交給在場引擎、推送端點與標籤管線，管線負責歸還記錄
+     */
+    private void deliver(TagRecord record) {
+        presenceEngine.accept(record);
+        if (pushServer != null) {
+            pushServer.publish(record);
+        }
+        tagPipeline.acceptRecord(record);
+    }
+
+    private static void closeJournal(TagJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("[MainControlPanel] 關閉讀取日誌錯誤: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 關閉應用程式前釋放資源
+     */
+    public void shutdown() {
+        flushTimer.stop();
+        presenceEngine.stop();
+        if (replayer != null) {
+            replayer.stop();
+        }
+        if (exporter != null) {
+            exporter.cancel();
+        }
+        readerManager.stopAll();
+        readerManager.disconnectAll();
+        readerManager.shutdown();
+        TagJournal journal = tagJournal;
+        tagJournal = null;
+        if (journal != null) {
+            closeJournal(journal);
+        }
+        TagHistory history = tagHistory;
+        tagHistory = null;
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.out.println("[MainControlPanel] 關閉標籤歷史錯誤: " + e.getMessage());
+            }
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        if (pushServer != null) {
+            pushServer.stop();
+        }
+        metrics.unregisterGauge(MetricsRegistry.TAG_BACKLOG);
     }
 
     /**
      * 清除表格資料
      */
     private void clearTable() {
-        tableModel.setRowCount(0);
-        epcToRowMap.clear();
+        tagPipeline.clear();
+        presenceEngine.clear();
+        tableModel.clear();
         totalTags = 0;
         totalTagsLabel.setText("總標籤數: 0");
     }
@@ -132,9 +132,9 @@ public class MainFrame extends JFrame {
         );
 
         if (result == JOptionPane.YES_OPTION) {
-            // 斷開連接
-            if (controlPanel != null && controlPanel.getConnection() != null) {
-                controlPanel.getConnection().disconnect();
+            // 停止讀取、斷開連接並關閉讀取日誌
+            if (controlPanel != null) {
+                controlPanel.shutdown();
             }
             // 關閉視窗
             dispose();
@@ -1,11 +1,15 @@
 package com.rfid.ui;
 
+import com.rfid.connection.DeviceInfo;
 import com.rfid.connection.ReaderConnection;
+import com.rfid.metrics.LatencyHistogram;
+import com.rfid.metrics.MetricsRegistry;
+import com.rfid.reader.TagInfo;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.Hashtable;
+import java.util.Map;
 
 /**
  * 讀取頭狀態顯示面板
@@ -13,6 +17,12 @@ import java.util.Hashtable;
  */
 public class StatusPanel extends JPanel {
 
+    /** 狀態自動刷新間隔（毫秒） */
+    private static final int REFRESH_INTERVAL_MS = 5000;
+
+    /** 效能指標刷新間隔（毫秒） */
+    private static final int METRICS_INTERVAL_MS = 1000;
+
     // 狀態指示燈
     private JPanel statusIndicator;
     private JLabel statusLabel;
@@ -33,6 +43,20 @@ public class StatusPanel extends JPanel {
     private JLabel minPowerValue;
     private JLabel antennaCountValue;
 
+    // 效能指標
+    private JLabel readRateValue;
+    private JLabel partialFailureValue;
+    private JLabel displayLatencyValue;
+    private JLabel commandLatencyValue;
+    private JLabel backlogValue;
+    private DefaultTableModel metricsTableModel;
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    // 目前顯示的連接與自動刷新計時器
+    private ReaderConnection currentConnection;
+    private Timer refreshTimer;
+    private Timer metricsTimer;
+
     public StatusPanel() {
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -63,10 +87,27 @@ public class StatusPanel extends JPanel {
         JPanel capabilityPanel = createCapabilityPanel();
         mainPanel.add(capabilityPanel);
 
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        // 效能指標區
+        JPanel metricsPanel = createMetricsPanel();
+        mainPanel.add(metricsPanel);
+
         add(mainPanel, BorderLayout.NORTH);
 
         // 初始化為未連接狀態
         updateStatus(null);
+
+        // 定期刷新，設備資訊過期時會於背景重新查詢
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> {
+            if (currentConnection != null) {
+                updateStatus(currentConnection);
+            }
+        });
+        refreshTimer.start();
+
+        metricsTimer = new Timer(METRICS_INTERVAL_MS, e -> updateMetrics());
+        metricsTimer.start();
     }
 
     /**
@@ -202,10 +243,116 @@ public class StatusPanel extends JPanel {
         return panel;
     }
 
+    /**
+     * 建立效能指標區
+     */
+    private JPanel createMetricsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createTitledBorder("效能指標"));
+
+        JPanel summaryPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 10, 5, 10);
+        gbc.anchor = GridBagConstraints.WEST;
+
+        // 讀取速率
+        gbc.gridx = 0; gbc.gridy = 0;
+        summaryPanel.add(new JLabel("讀取速率:"), gbc);
+        gbc.gridx = 1;
+        readRateValue = new JLabel("--");
+        summaryPanel.add(readRateValue, gbc);
+
+        // 部分失敗
+        gbc.gridx = 2;
+        summaryPanel.add(new JLabel("部分失敗:"), gbc);
+        gbc.gridx = 3;
+        partialFailureValue = new JLabel("--");
+        summaryPanel.add(partialFailureValue, gbc);
+
+        // 顯示延遲
+        gbc.gridx = 0; gbc.gridy = 1;
+        summaryPanel.add(new JLabel("顯示延遲:"), gbc);
+        gbc.gridx = 1;
+        displayLatencyValue = new JLabel("--");
+        summaryPanel.add(displayLatencyValue, gbc);
+
+        // 指令往返
+        gbc.gridx = 2;
+        summaryPanel.add(new JLabel("指令往返:"), gbc);
+        gbc.gridx = 3;
+        commandLatencyValue = new JLabel("--");
+        summaryPanel.add(commandLatencyValue, gbc);
+
+        // 待顯示標籤
+        gbc.gridx = 0; gbc.gridy = 2;
+        summaryPanel.add(new JLabel("待顯示標籤:"), gbc);
+        gbc.gridx = 1;
+        backlogValue = new JLabel("--");
+        summaryPanel.add(backlogValue, gbc);
+
+        panel.add(summaryPanel, BorderLayout.NORTH);
+
+        // 各讀取頭、天線、協議的讀取速率
+        String[] columns = {"讀取頭", "天線", "協議", "速率 (筆/秒)", "總筆數"};
+        metricsTableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable metricsTable = new JTable(metricsTableModel);
+        metricsTable.setRowHeight(22);
+
+        JScrollPane scrollPane = new JScrollPane(metricsTable);
+        scrollPane.setPreferredSize(new Dimension(250, 120));
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        return panel;
+    }
+
+    /**
+     * 更新效能指標顯示
+     */
+    private void updateMetrics() {
+        readRateValue.setText(String.format("%.0f 筆/秒", metrics.getTotalReadRate()));
+        partialFailureValue.setText(String.valueOf(metrics.getTotalPartialFailures()));
+        displayLatencyValue.setText(formatLatency(metrics.getDisplayLatency()));
+        commandLatencyValue.setText(formatLatency(metrics.getCommandLatency()));
+        long backlog = metrics.getGauge(MetricsRegistry.TAG_BACKLOG);
+        backlogValue.setText(backlog >= 0 ? String.valueOf(backlog) : "--");
+
+        metricsTableModel.setRowCount(0);
+        for (MetricsRegistry.ReaderStats stats : metrics.getReaderStats()) {
+            for (TagInfo.TagType type : TagInfo.TagType.values()) {
+                for (int antenna = 0; antenna <= MetricsRegistry.MAX_ANTENNA_ID; antenna++) {
+                    long reads = stats.getReads(type, antenna);
+                    if (reads > 0) {
+                        metricsTableModel.addRow(new Object[]{
+                            stats.getReaderName(),
+                            antenna > 0 ? String.valueOf(antenna) : "--",
+                            type.getDisplayName(),
+                            String.format("%.0f", stats.getReadRate(type, antenna)),
+                            reads
+                        });
+                    }
+                }
+            }
+        }
+    }
+
+    private static String formatLatency(LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return "--";
+        }
+        return String.format("p50 %.1f ms / p99 %.1f ms",
+            histogram.getPercentileMicros(50) / 1000.0, histogram.getPercentileMicros(99) / 1000.0);
+    }
+
     /**
      * 更新狀態顯示
      */
     public void updateStatus(ReaderConnection connection) {
+        currentConnection = connection;
         if (connection == null || !connection.isConnected()) {
             // 未連接狀態
             statusIndicator.setBackground(Color.RED);
@@ -230,27 +377,40 @@ public class StatusPanel extends JPanel {
             ipAddressValue.setText(connection.getIp());
             portValue.setText(String.valueOf(connection.getPort()));
 
-            String serialNumber = connection.getSerialNumber();
+            // 設備資訊由背景查詢，尚未取得時顯示查詢中
+            DeviceInfo info = connection.getDeviceInfo();
+            if (info == null) {
+                serialNumberValue.setText("查詢中...");
+                appVersionValue.setText("--");
+                baseVersionValue.setText("--");
+                maxPowerValue.setText("--");
+                minPowerValue.setText("--");
+                antennaCountValue.setText("--");
+                powerTableModel.setRowCount(0);
+                return;
+            }
+
+            String serialNumber = info.getSerialNumber();
             serialNumberValue.setText(serialNumber != null ? serialNumber : "--");
 
-            String appVersion = connection.getAppVersion();
+            String appVersion = info.getAppVersion();
             appVersionValue.setText(appVersion != null ? appVersion : "--");
 
-            String baseVersion = connection.getBaseVersion();
+            String baseVersion = info.getBaseVersion();
             baseVersionValue.setText(baseVersion != null ? baseVersion : "--");
 
-            int maxPower = connection.getMaxPower();
+            int maxPower = info.getMaxPower();
             maxPowerValue.setText(maxPower > 0 ? maxPower + " dBm" : "--");
 
-            int minPower = connection.getMinPower();
+            int minPower = info.getMinPower();
             minPowerValue.setText(minPower > 0 ? minPower + " dBm" : "--");
 
-            int antennaCount = connection.getAntennaCount();
+            int antennaCount = info.getAntennaCount();
             antennaCountValue.setText(antennaCount > 0 ? String.valueOf(antennaCount) : "--");
 
             // 更新天線功率表格
             powerTableModel.setRowCount(0);
-            Hashtable<Integer, Integer> powers = connection.getAntennaPowers();
+            Map<Integer, Integer> powers = info.getAntennaPowers();
             if (powers != null) {
                 powers.forEach((antenna, power) -> {
                     powerTableModel.addRow(new Object[]{"天線 " + antenna, power + " dBm"});
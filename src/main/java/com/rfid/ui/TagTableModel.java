@@ -0,0 +1,168 @@
+package com.rfid.ui;
+
+import com.rfid.reader.TagIndex;
+import com.rfid.reader.TagInfo;
+import com.rfid.reader.TagSignalModel;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * 標籤表格模型
+ * 直接以 TagIndex 的欄位式資料作為表格內容，不另外保存每列物件；
+ * 儲存格只在 JTable 繪製可見列時才轉成顯示值。
+ *
+ * 更新分兩步：upsert() 只寫入索引並記錄變動範圍，
+ * fireBatchChanges() 再以合併後的範圍一次通知。兩者須在同一個 EDT 工作中呼叫。
+ */
+public class TagTableModel extends AbstractTableModel {
+
+    public static final int COLUMN_EPC = 0;
+    public static final int COLUMN_TID = 1;
+    public static final int COLUMN_USER_DATA = 2;
+    public static final int COLUMN_RSSI = 3;
+    public static final int COLUMN_ANTENNA = 4;
+    public static final int COLUMN_READ_TIME = 5;
+    public static final int COLUMN_TAG_TYPE = 6;
+    public static final int COLUMN_READ_COUNT = 7;
+    public static final int COLUMN_SMOOTHED_RSSI = 8;
+    public static final int COLUMN_DIRECTION = 9;
+
+    private static final String[] COLUMN_NAMES = {
+        "EPC", "TID", "用戶數據", "RSSI", "天線", "讀取時間", "標籤類型", "次數", "平滑 RSSI", "方向"
+    };
+    private static final Class<?>[] COLUMN_CLASSES = {
+        String.class, String.class, String.class, Integer.class, Integer.class, Long.class, String.class, Integer.class,
+        Integer.class, String.class
+    };
+
+    private final TagIndex tagIndex;
+
+    // 尚未通知的變動：批次開始時的列數與既有列的更新範圍
+    private int batchStartRow = -1;
+    private int updatedFirstRow = Integer.MAX_VALUE;
+    private int updatedLastRow = -1;
+
+    public TagTableModel() {
+        this(new TagIndex());
+    }
+
+    public TagTableModel(TagIndex tagIndex) {
+        this.tagIndex = tagIndex;
+    }
+
+    /**
+     * 更新或新增一筆（已合併的）標籤，不立即通知表格
+     * @return 標籤所在列號，無法去重或索引已滿時回傳 -1
+     */
+    public int upsert(TagInfo tagInfo) {
+        int size = tagIndex.size();
+        int row = tagIndex.upsert(tagInfo);
+        if (row < 0) {
+            return -1;
+        }
+        if (batchStartRow < 0) {
+            batchStartRow = size;
+        }
+        // 本批次新增的列會以插入事件通知，不需列入更新範圍
+        if (row < batchStartRow) {
+            updatedFirstRow = Math.min(updatedFirstRow, row);
+            updatedLastRow = Math.max(updatedLastRow, row);
+        }
+        return row;
+    }
+
+    /**
+     * 以合併後的範圍通知本批次的更新與新增
+     */
+    public void fireBatchChanges() {
+        int startRow = batchStartRow;
+        if (startRow < 0) {
+            return;
+        }
+        int firstRow = updatedFirstRow;
+        int lastRow = updatedLastRow;
+        batchStartRow = -1;
+        updatedFirstRow = Integer.MAX_VALUE;
+        updatedLastRow = -1;
+
+        // 更新事件時表格仍為舊列數，先通知更新再通知新增
+        if (lastRow >= 0) {
+            fireTableRowsUpdated(firstRow, lastRow);
+        }
+        int size = tagIndex.size();
+        if (size > startRow) {
+            fireTableRowsInserted(startRow, size - 1);
+        }
+    }
+
+    /**
+     * 清除所有標籤
+     */
+    public void clear() {
+        tagIndex.clear();
+        batchStartRow = -1;
+        updatedFirstRow = Integer.MAX_VALUE;
+        updatedLastRow = -1;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        // 尚未通知的新增列不對外顯示，避免 JTable 與模型列數不一致
+        return batchStartRow >= 0 ? batchStartRow : tagIndex.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return COLUMN_CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case COLUMN_EPC:
+                return nullToEmpty(tagIndex.getEpc(row));
+            case COLUMN_TID:
+                return nullToEmpty(tagIndex.getTid(row));
+            case COLUMN_USER_DATA:
+                return nullToEmpty(tagIndex.getUserData(row));
+            case COLUMN_RSSI:
+                return tagIndex.getLastRssi(row);
+            case COLUMN_ANTENNA:
+                return tagIndex.getAntennaId(row);
+            case COLUMN_READ_TIME:
+                // 以數值排序，由 renderer 轉成顯示字串
+                return tagIndex.getLastSeenMillis(row);
+            case COLUMN_TAG_TYPE:
+                TagInfo.TagType type = tagIndex.getTagType(row);
+                return type != null ? type.getDisplayName() : "";
+            case COLUMN_READ_COUNT:
+                return tagIndex.getReadCount(row);
+            case COLUMN_SMOOTHED_RSSI:
+                return tagIndex.getSmoothedRssi(row);
+            case COLUMN_DIRECTION:
+                return TagSignalModel.Direction.describe(tagIndex.getEntryAntenna(row), tagIndex.getExitAntenna(row));
+            default:
+                return null;
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    // Getters
+    public TagIndex getTagIndex() {
+        return tagIndex;
+    }
+}